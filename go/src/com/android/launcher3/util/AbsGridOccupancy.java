@@ -32,19 +32,11 @@ public abstract class AbsGridOccupancy {
      *
      * @return true if a vacant cell was found
      */
-    protected boolean findVacantCell(int[] vacantOut, boolean[][] cells, int countX, int countY,
-            int spanX, int spanY) {
+    protected boolean findVacantCell(int[] vacantOut, int countX, int countY, int spanX,
+            int spanY) {
         for (int y = 0; (y + spanY) <= countY; y++) {
             for (int x = 0; (x + spanX) <= countX; x++) {
-                boolean available = !cells[x][y];
-                out:
-                for (int i = x; i < x + spanX; i++) {
-                    for (int j = y; j < y + spanY; j++) {
-                        available = available && !cells[i][j];
-                        if (!available) break out;
-                    }
-                }
-                if (available) {
+                if (isRegionVacant(x, y, spanX, spanY)) {
                     vacantOut[0] = x;
                     vacantOut[1] = y;
                     return true;
@@ -53,4 +45,9 @@ public abstract class AbsGridOccupancy {
         }
         return false;
     }
+
+    /**
+     * Returns whether all the cells of the region are within the grid and vacant
+     */
+    public abstract boolean isRegionVacant(int x, int y, int spanX, int spanY);
 }
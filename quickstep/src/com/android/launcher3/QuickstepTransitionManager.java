@@ -51,6 +51,10 @@ import static com.android.launcher3.config.FeatureFlags.ENABLE_BACK_SWIPE_HOME_A
 import static com.android.launcher3.config.FeatureFlags.ENABLE_SCRIM_FOR_APP_LAUNCH;
 import static com.android.launcher3.config.FeatureFlags.KEYGUARD_ANIMATION;
 import static com.android.launcher3.config.FeatureFlags.SEPARATE_RECENTS_ACTIVITY;
+import static com.android.launcher3.logging.TransitionFrameTracker.TRANSITION_APP_CLOSE_TO_HOME;
+import static com.android.launcher3.logging.TransitionFrameTracker.TRANSITION_APP_LAUNCH_FROM_ICON;
+import static com.android.launcher3.logging.TransitionFrameTracker.TRANSITION_APP_LAUNCH_FROM_RECENTS;
+import static com.android.launcher3.logging.TransitionFrameTracker.TRANSITION_APP_LAUNCH_FROM_WIDGET;
 import static com.android.launcher3.model.data.ItemInfo.NO_MATCHING_ID;
 import static com.android.launcher3.util.DisplayController.isTransientTaskbar;
 import static com.android.launcher3.util.MultiPropertyFactory.MULTI_PROPERTY_VALUE;
@@ -115,6 +119,7 @@ import com.android.launcher3.anim.AnimationSuccessListener;
 import com.android.launcher3.anim.AnimatorListeners;
 import com.android.launcher3.dragndrop.DragLayer;
 import com.android.launcher3.icons.FastBitmapDrawable;
+import com.android.launcher3.logging.TransitionFrameTracker;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.shortcuts.DeepShortcutView;
 import com.android.launcher3.statehandlers.DepthController;
@@ -1518,7 +1523,8 @@ public class QuickstepTransitionManager implements OnDeviceProfileChangeListener
                 == PackageManager.PERMISSION_GRANTED;
     }
 
-    private void addCujInstrumentation(Animator anim, int cuj) {
+    private void addCujInstrumentation(Animator anim, int cuj, String transitionName) {
+        TransitionFrameTracker.INSTANCE.get(mLauncher).trackAnimator(anim, transitionName);
         anim.addListener(new AnimationSuccessListener() {
             @Override
             public void onAnimationStart(Animator animation) {
@@ -1630,8 +1636,8 @@ public class QuickstepTransitionManager implements OnDeviceProfileChangeListener
             // invisibility on touch down, and only reset it after the animation to home
             // is initialized.
             if (launcherIsForceInvisibleOrOpening) {
-                addCujInstrumentation(
-                        anim, InteractionJankMonitorWrapper.CUJ_APP_CLOSE_TO_HOME);
+                addCujInstrumentation(anim, InteractionJankMonitorWrapper.CUJ_APP_CLOSE_TO_HOME,
+                        TRANSITION_APP_CLOSE_TO_HOME);
                 // Only register the content animation for cancellation when state changes
                 mLauncher.getStateManager().setCurrentAnimation(anim);
 
@@ -1729,19 +1735,22 @@ public class QuickstepTransitionManager implements OnDeviceProfileChangeListener
             if (launchingFromWidget) {
                 composeWidgetLaunchAnimator(anim, (LauncherAppWidgetHostView) mV, appTargets,
                         wallpaperTargets, nonAppTargets, launcherClosing);
-                addCujInstrumentation(
-                        anim, InteractionJankMonitorWrapper.CUJ_APP_LAUNCH_FROM_WIDGET);
+                addCujInstrumentation(anim,
+                        InteractionJankMonitorWrapper.CUJ_APP_LAUNCH_FROM_WIDGET,
+                        TRANSITION_APP_LAUNCH_FROM_WIDGET);
                 skipFirstFrame = true;
             } else if (launchingFromRecents) {
                 composeRecentsLaunchAnimator(anim, mV, appTargets, wallpaperTargets, nonAppTargets,
                         launcherClosing);
-                addCujInstrumentation(
-                        anim, InteractionJankMonitorWrapper.CUJ_APP_LAUNCH_FROM_RECENTS);
+                addCujInstrumentation(anim,
+                        InteractionJankMonitorWrapper.CUJ_APP_LAUNCH_FROM_RECENTS,
+                        TRANSITION_APP_LAUNCH_FROM_RECENTS);
                 skipFirstFrame = true;
             } else {
                 composeIconLaunchAnimator(anim, mV, appTargets, wallpaperTargets, nonAppTargets,
                         launcherClosing);
-                addCujInstrumentation(anim, InteractionJankMonitorWrapper.CUJ_APP_LAUNCH_FROM_ICON);
+                addCujInstrumentation(anim, InteractionJankMonitorWrapper.CUJ_APP_LAUNCH_FROM_ICON,
+                        TRANSITION_APP_LAUNCH_FROM_ICON);
                 skipFirstFrame = false;
             }
 
@@ -24,6 +24,8 @@ import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_PREDICT
 import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_WIDGETS_PREDICTION;
 import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
 import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_BATCHED_STATS_LOGGING;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_UNIFIED_BULK_ICON_LOADING;
 import static com.android.launcher3.hybridhotseat.HotseatPredictionModel.convertDataModelToAppTargetBundle;
 import static com.android.launcher3.model.PredictionHelper.getAppTargetFromItemInfo;
 import static com.android.launcher3.model.PredictionHelper.wrapAppTargetWithItemLocation;
@@ -59,13 +61,15 @@ import com.android.launcher3.logging.InstanceIdSequence;
 import com.android.launcher3.model.BgDataModel.FixedContainerItems;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.IconRequestInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.shortcuts.ShortcutKey;
-import com.android.launcher3.util.IntSparseArrayMap;
+import com.android.launcher3.util.IntHashMap;
 import com.android.launcher3.util.PersistedItemArray;
 import com.android.quickstep.logging.SettingsChangeLogger;
 import com.android.quickstep.logging.StatsLogCompatManager;
+import com.android.quickstep.logging.StatsLogPipeline;
 import com.android.systemui.shared.system.SysUiStatsLog;
 
 import java.util.ArrayList;
@@ -121,6 +125,7 @@ public class QuickstepModelDelegate extends ModelDelegate {
                 mIDP.numDatabaseHotseatIcons, mHotseatState.containerId);
         FixedContainerItems hotseatItems = new FixedContainerItems(mHotseatState.containerId,
                 mHotseatState.storage.read(mApp.getContext(), hotseatFactory, ums.allUsers::get));
+        hotseatFactory.loadIconsInBulk();
         mDataModel.extraItems.put(mHotseatState.containerId, hotseatItems);
     }
 
@@ -135,6 +140,7 @@ public class QuickstepModelDelegate extends ModelDelegate {
         FixedContainerItems allAppsPredictionItems = new FixedContainerItems(
                 mAllAppsState.containerId, mAllAppsState.storage.read(mApp.getContext(),
                 allAppsFactory, ums.allUsers::get));
+        allAppsFactory.loadIconsInBulk();
         mDataModel.extraItems.put(mAllAppsState.containerId, allAppsPredictionItems);
     }
 
@@ -179,16 +185,23 @@ public class QuickstepModelDelegate extends ModelDelegate {
                         elapsedTime));
             }
         } else {
-            IntSparseArrayMap<ItemInfo> itemsIdMap;
+            IntHashMap<ItemInfo> itemsIdMap;
             synchronized (mDataModel) {
                 itemsIdMap = mDataModel.itemsIdMap.clone();
             }
             InstanceId instanceId = new InstanceIdSequence().newInstanceId();
-            for (ItemInfo info : itemsIdMap) {
-                FolderInfo parent = getContainer(info, itemsIdMap);
-                StatsLogCompatManager.writeSnapshot(info.buildProto(parent), instanceId);
+            if (ENABLE_BATCHED_STATS_LOGGING.get()) {
+                // The snapshot can be replaced by a later one before it is written, so its
+                // additional events are only logged once it is written
+                StatsLogPipeline.INSTANCE.enqueueSnapshot(itemsIdMap, instanceId,
+                        () -> additionalSnapshotEvents(instanceId));
+            } else {
+                for (ItemInfo info : itemsIdMap) {
+                    FolderInfo parent = getContainer(info, itemsIdMap);
+                    StatsLogCompatManager.writeSnapshot(info.buildProto(parent), instanceId);
+                }
+                additionalSnapshotEvents(instanceId);
             }
-            additionalSnapshotEvents(instanceId);
             prefs.edit().putLong(LAST_SNAPSHOT_TIME_MILLIS, now).apply();
         }
 
@@ -216,7 +229,7 @@ public class QuickstepModelDelegate extends ModelDelegate {
                     MODEL_EXECUTOR,
                     (i, eventList) -> {
                         InstanceId instanceId = new InstanceIdSequence().newInstanceId();
-                        IntSparseArrayMap<ItemInfo> itemsIdMap;
+                        IntHashMap<ItemInfo> itemsIdMap;
                         synchronized (mDataModel) {
                             itemsIdMap = mDataModel.itemsIdMap.clone();
                         }
@@ -245,7 +258,7 @@ public class QuickstepModelDelegate extends ModelDelegate {
         }
     }
 
-    private static FolderInfo getContainer(ItemInfo info, IntSparseArrayMap<ItemInfo> itemsIdMap) {
+    private static FolderInfo getContainer(ItemInfo info, IntHashMap<ItemInfo> itemsIdMap) {
         if (info.container > 0) {
             ItemInfo containerInfo = itemsIdMap.get(info.container);
 
@@ -454,6 +467,9 @@ public class QuickstepModelDelegate extends ModelDelegate {
         private final Map<ShortcutKey, ShortcutInfo> mPinnedShortcuts;
         private final int mMaxCount;
         private final int mContainer;
+        private final boolean mLoadIconsInBulk = ENABLE_UNIFIED_BULK_ICON_LOADING.get();
+        private final List<IconRequestInfo<WorkspaceItemInfo>> mIconRequestInfos =
+                new ArrayList<>();
 
         private int mReadCount = 0;
 
@@ -482,8 +498,14 @@ public class QuickstepModelDelegate extends ModelDelegate {
                     }
                     AppInfo info = new AppInfo(lai, user, mUMS.isUserQuiet(user));
                     info.container = mContainer;
-                    mAppState.getIconCache().getTitleAndIcon(info, lai, false);
                     mReadCount++;
+                    if (mLoadIconsInBulk) {
+                        WorkspaceItemInfo wii = info.makeWorkspaceItem(mAppState.getContext());
+                        mIconRequestInfos.add(new IconRequestInfo<>(
+                                wii, lai, /* useLowResIcon= */ false));
+                        return wii;
+                    }
+                    mAppState.getIconCache().getTitleAndIcon(info, lai, false);
                     return info.makeWorkspaceItem(mAppState.getContext());
                 }
                 case ITEM_TYPE_DEEP_SHORTCUT: {
@@ -497,12 +519,28 @@ public class QuickstepModelDelegate extends ModelDelegate {
                     }
                     WorkspaceItemInfo wii = new WorkspaceItemInfo(si, mAppState.getContext());
                     wii.container = mContainer;
-                    mAppState.getIconCache().getShortcutIcon(wii, si);
+                    if (mLoadIconsInBulk) {
+                        mIconRequestInfos.add(
+                                IconRequestInfo.forShortcut(wii, si, /* iconBlob= */ null));
+                    } else {
+                        mAppState.getIconCache().getShortcutIcon(wii, si);
+                    }
                     mReadCount++;
                     return wii;
                 }
             }
             return null;
         }
+
+        /**
+         * Loads the titles and icons of the items created since the last call, when they are
+         * loaded in bulk
+         */
+        public void loadIconsInBulk() {
+            if (!mIconRequestInfos.isEmpty()) {
+                mAppState.getIconCache().getTitlesAndIconsInBulk(mIconRequestInfos);
+                mIconRequestInfos.clear();
+            }
+        }
     }
 }
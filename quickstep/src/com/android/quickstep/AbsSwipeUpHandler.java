@@ -34,6 +34,8 @@ import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCH
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_OVERVIEW_GESTURE;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_QUICKSWITCH_LEFT;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_QUICKSWITCH_RIGHT;
+import static com.android.launcher3.logging.TransitionFrameTracker.NO_TRANSITION;
+import static com.android.launcher3.logging.TransitionFrameTracker.TRANSITION_SWIPE_UP_GESTURE;
 import static com.android.launcher3.uioverrides.QuickstepLauncher.ENABLE_PIP_KEEP_CLEAR_ALGORITHM;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
@@ -104,6 +106,7 @@ import com.android.launcher3.dragndrop.DragView;
 import com.android.launcher3.hinting.AppHintingLayout.AppHintResult;
 import com.android.launcher3.logging.StatsLogManager;
 import com.android.launcher3.logging.StatsLogManager.StatsLogger;
+import com.android.launcher3.logging.TransitionFrameTracker;
 import com.android.launcher3.statemanager.BaseState;
 import com.android.launcher3.statemanager.StatefulActivity;
 import com.android.launcher3.taskbar.TaskbarUIController;
@@ -301,6 +304,7 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
     private boolean mWasLauncherAlreadyVisible;
 
     private boolean mGestureStarted;
+    private int mGestureFrameTrackingId = NO_TRANSITION;
     private boolean mLogDirectionUpOrLeft = true;
     private boolean mIsLikelyToStartNewTask;
 
@@ -944,6 +948,8 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
 
     @UiThread
     public void onGestureStarted(boolean isLikelyToStartNewTask) {
+        mGestureFrameTrackingId = TransitionFrameTracker.INSTANCE.get(mContext)
+                .beginTransition(TRANSITION_SWIPE_UP_GESTURE);
         mActivityInterface.closeOverlay();
         TaskUtils.closeSystemWindowsAsync(CLOSE_SYSTEM_WINDOWS_REASON_RECENTS);
 
@@ -1852,6 +1858,9 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
         TaskStackChangeListeners.getInstance().unregisterTaskStackListener(
                 mActivityRestartListener);
         mTaskSnapshot = null;
+        // The handler isn't invalidated when a new handler continues the quick switch
+        TransitionFrameTracker.INSTANCE.get(mContext).endTransition(mGestureFrameTrackingId);
+        mGestureFrameTrackingId = NO_TRANSITION;
     }
 
     private void invalidateHandler() {
@@ -1861,6 +1870,8 @@ public abstract class AbsSwipeUpHandler<T extends StatefulActivity<S>,
         }
         mInputConsumerProxy.unregisterCallback();
         endRunningWindowAnim(false /* cancel */);
+        TransitionFrameTracker.INSTANCE.get(mContext).endTransition(mGestureFrameTrackingId);
+        mGestureFrameTrackingId = NO_TRANSITION;
 
         if (mGestureEndCallback != null) {
             mGestureEndCallback.run();
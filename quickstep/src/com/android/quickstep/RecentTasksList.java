@@ -16,6 +16,9 @@
 
 package com.android.quickstep;
 
+import static android.app.WindowConfiguration.ACTIVITY_TYPE_HOME;
+import static android.app.WindowConfiguration.ACTIVITY_TYPE_RECENTS;
+
 import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
 import static com.android.quickstep.views.DesktopTaskView.DESKTOP_IS_PROTO2_ENABLED;
 import static com.android.wm.shell.util.GroupedRecentTaskInfo.TYPE_FREEFORM;
@@ -28,6 +31,7 @@ import android.content.ComponentName;
 import android.os.Build;
 import android.os.Process;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.util.SparseBooleanArray;
 
 import androidx.annotation.VisibleForTesting;
@@ -42,6 +46,7 @@ import com.android.wm.shell.util.GroupedRecentTaskInfo;
 import com.android.wm.shell.util.SplitBounds;
 
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.function.Consumer;
@@ -56,6 +61,10 @@ public class RecentTasksList {
 
     private static final TaskLoadResult INVALID_RESULT = new TaskLoadResult(-1, false, 0);
 
+    // Time within which the system notifies the change of the recent tasks after a task change.
+    // Past it, the change is assumed to be notified along with another one.
+    private static final long TASK_CHANGE_NOTIFY_TIMEOUT_MS = 1000;
+
     private final KeyguardManager mKeyguardManager;
     private final LooperExecutor mMainThreadExecutor;
     private final SystemUiProxy mSysUiProxy;
@@ -69,6 +78,11 @@ public class RecentTasksList {
     private TaskLoadResult mResultsBg = INVALID_RESULT;
     private TaskLoadResult mResultsUi = INVALID_RESULT;
 
+    // Number of task changes applied to the loaded tasks instead of loading them again
+    private int mAppliedTaskChangeCount;
+    // Times of the task changes applied to the loaded tasks, which the system did not notify yet
+    private final ArrayDeque<Long> mPendingTaskChangeTimes = new ArrayDeque<>();
+
     private RecentsModel.RunningTasksListener mRunningTasksListener;
     // Tasks are stored in order of least recently launched to most recently launched.
     private ArrayList<ActivityManager.RunningTaskInfo> mRunningTasks;
@@ -182,7 +196,19 @@ public class RecentTasksList {
         return mChangeId == changeId;
     }
 
-    public void onRecentTasksChanged() {
+    /**
+     * Called by the system after every change of the recent tasks. The change of a task applied
+     * to the loaded tasks is notified here as well, in which case the tasks are kept. Otherwise,
+     * there is a gap in the applied changes and the tasks are loaded again.
+     */
+    public synchronized void onRecentTasksChanged() {
+        long now = SystemClock.uptimeMillis();
+        Long changeTime = mPendingTaskChangeTimes.poll();
+        if (changeTime != null && now - changeTime <= TASK_CHANGE_NOTIFY_TIMEOUT_MS) {
+            return;
+        }
+        // Any other change applied to the loaded tasks is reflected by loading them again
+        mPendingTaskChangeTimes.clear();
         invalidateLoadedTasks();
     }
 
@@ -192,6 +218,80 @@ public class RecentTasksList {
         mChangeId++;
     }
 
+    /**
+     * Moves the task to the front of the loaded tasks, so that the tasks don't need to be loaded
+     * again when the system notifies the change. If the change can't be applied, the tasks are
+     * loaded again on that notification instead.
+     */
+    public synchronized void onTaskMovedToFront(ActivityManager.RunningTaskInfo taskInfo) {
+        int activityType = taskInfo.configuration.windowConfiguration.getActivityType();
+        if (activityType == ACTIVITY_TYPE_HOME || activityType == ACTIVITY_TYPE_RECENTS) {
+            // These tasks are not part of the recent tasks, which keep the same order
+            return;
+        }
+        int index = indexOfLoadedTask(taskInfo.taskId);
+        if (index < 0 || index == mResultsUi.size() - 1) {
+            // Either the task is unknown, or it is already the most recent task, which is the
+            // case if the tasks were loaded after the change was notified
+            return;
+        }
+        if (mResultsUi.get(mResultsUi.size() - 1).task1.key.lastActiveTime
+                > taskInfo.lastActiveTime) {
+            // Another task moved to the front since this task did
+            return;
+        }
+        TaskLoadResult tasks = new TaskLoadResult(mChangeId + 1, mResultsUi);
+        tasks.add(tasks.remove(index));
+        applyTaskChange(tasks);
+    }
+
+    /**
+     * Removes the task from the loaded tasks, so that the tasks don't need to be loaded again
+     * when the system notifies the change. If the change can't be applied, the tasks are loaded
+     * again on that notification instead.
+     */
+    public synchronized void onTaskRemoved(int taskId) {
+        int index = indexOfLoadedTask(taskId);
+        if (index < 0 || mResultsUi.get(index).hasMultipleTasks()) {
+            // Either the task is not loaded, which is also the case if the tasks were loaded
+            // after the change was notified, or it is part of a group which needs to be loaded
+            // again
+            return;
+        }
+        TaskLoadResult tasks = new TaskLoadResult(mChangeId + 1, mResultsUi);
+        tasks.remove(index);
+        applyTaskChange(tasks);
+    }
+
+    private boolean canApplyTaskChange() {
+        return !mLoadingTasksInBackground
+                && mResultsUi.isValidForRequest(mChangeId, true /* loadKeysOnly */);
+    }
+
+    /**
+     * Returns the index of the group of the task in the loaded tasks, or -1 if the task is not
+     * loaded or if the loaded tasks can't be changed.
+     */
+    private int indexOfLoadedTask(int taskId) {
+        if (!canApplyTaskChange()) {
+            return -1;
+        }
+        for (int i = 0; i < mResultsUi.size(); i++) {
+            GroupTask task = mResultsUi.get(i);
+            if (task.containsTask(taskId)) {
+                return task instanceof DesktopTask ? -1 : i;
+            }
+        }
+        return -1;
+    }
+
+    private void applyTaskChange(TaskLoadResult tasks) {
+        mResultsUi = tasks;
+        mChangeId = tasks.mRequestId;
+        mAppliedTaskChangeCount++;
+        mPendingTaskChangeTimes.add(SystemClock.uptimeMillis());
+    }
+
      /**
      * Registers a listener for running tasks
      */
@@ -334,6 +434,8 @@ public class RecentTasksList {
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "RecentTasksList:");
         writer.println(prefix + "  mChangeId=" + mChangeId);
+        writer.println(prefix + "  mAppliedTaskChangeCount=" + mAppliedTaskChangeCount);
+        writer.println(prefix + "  mPendingTaskChangeCount=" + mPendingTaskChangeTimes.size());
         writer.println(prefix + "  mResultsUi=[id=" + mResultsUi.mRequestId + ", tasks=");
         for (GroupTask task : mResultsUi) {
             Task task1 = task.task1;
@@ -376,6 +478,12 @@ public class RecentTasksList {
             mKeysOnly = keysOnly;
         }
 
+        TaskLoadResult(int requestId, TaskLoadResult tasks) {
+            super(tasks);
+            mRequestId = requestId;
+            mKeysOnly = tasks.mKeysOnly;
+        }
+
         boolean isValidForRequest(int requestId, boolean loadKeysOnly) {
             return mRequestId == requestId && (!mKeysOnly || loadKeysOnly);
         }
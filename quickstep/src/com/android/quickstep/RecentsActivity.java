@@ -452,6 +452,10 @@ public final class RecentsActivity extends StatefulActivity<RecentsState> {
         super.dump(prefix, fd, writer, args);
         writer.println(prefix + "Misc:");
         dumpMisc(prefix + "\t", writer);
+        RecentsView recentsView = getOverviewPanel();
+        if (recentsView != null) {
+            recentsView.dumpViewPools(prefix + "\t", writer);
+        }
     }
 
     @Override
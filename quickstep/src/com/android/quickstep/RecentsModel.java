@@ -17,6 +17,7 @@ package com.android.quickstep;
 
 import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_RECENT_TASKS;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 import static com.android.quickstep.TaskUtils.checkCurrentOrManagedUserId;
 
@@ -199,17 +200,28 @@ public class RecentsModel implements IconChangeListener, TaskStackChangeListener
         return true;
     }
 
+    @Override
+    public void onTaskMovedToFront(ActivityManager.RunningTaskInfo taskInfo) {
+        if (ENABLE_INCREMENTAL_RECENT_TASKS.get()) {
+            mTaskList.onTaskMovedToFront(taskInfo);
+        }
+    }
+
     @Override
     public void onTaskRemoved(int taskId) {
         Task.TaskKey stubKey = new Task.TaskKey(taskId, 0, new Intent(), null, 0, 0);
         mThumbnailCache.remove(stubKey);
         mIconCache.onTaskRemoved(stubKey);
+        if (ENABLE_INCREMENTAL_RECENT_TASKS.get()) {
+            mTaskList.onTaskRemoved(taskId);
+        }
     }
 
     public void onTrimMemory(int level) {
         if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
             mThumbnailCache.getHighResLoadingState().setVisible(false);
         }
+        mThumbnailCache.onTrimMemory(level);
         if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
             // Clear everything once we reach a low-mem situation
             mThumbnailCache.clear();
@@ -254,6 +266,7 @@ public class RecentsModel implements IconChangeListener, TaskStackChangeListener
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "RecentsModel:");
         mTaskList.dump("  ", writer);
+        mThumbnailCache.dump("  ", writer);
     }
 
     /**
@@ -15,18 +15,28 @@
  */
 package com.android.quickstep;
 
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import android.app.ActivityManager;
 import android.content.Context;
 import android.content.res.Resources;
 
 import com.android.launcher3.R;
+import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.util.Preconditions;
 import com.android.quickstep.util.CancellableTask;
-import com.android.quickstep.util.TaskKeyLruCache;
+import com.android.quickstep.util.ThumbnailLruCache;
 import com.android.systemui.shared.recents.model.Task;
 import com.android.systemui.shared.recents.model.Task.TaskKey;
 import com.android.systemui.shared.recents.model.ThumbnailData;
 import com.android.systemui.shared.system.ActivityManagerWrapper;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
@@ -36,7 +46,7 @@ public class TaskThumbnailCache {
     private final Executor mBgExecutor;
 
     private final int mCacheSize;
-    private final TaskKeyLruCache<ThumbnailData> mCache;
+    private final ThumbnailLruCache mCache;
     private final HighResLoadingState mHighResLoadingState;
     private final boolean mEnableTaskSnapshotPreloading;
 
@@ -97,7 +107,32 @@ public class TaskThumbnailCache {
         Resources res = context.getResources();
         mCacheSize = res.getInteger(R.integer.recentsThumbnailCacheSize);
         mEnableTaskSnapshotPreloading = res.getBoolean(R.bool.config_enableTaskSnapshotPreloading);
-        mCache = new TaskKeyLruCache<>(mCacheSize);
+
+        if (FeatureFlags.ENABLE_THUMBNAIL_BYTE_BUDGET.get()) {
+            // The entry count is only a safety net, the memory budgets are the actual limit
+            int budgetDivisor = context.getSystemService(ActivityManager.class).isLowRamDevice()
+                    ? 2 : 1;
+            mCache = new ThumbnailLruCache(res.getInteger(R.integer.recentsThumbnailCacheMaxSize),
+                    res.getInteger(R.integer.recentsThumbnailCacheHighResBudgetKb) * 1024L
+                            / budgetDivisor,
+                    res.getInteger(R.integer.recentsThumbnailCacheLowResBudgetKb) * 1024L
+                            / budgetDivisor,
+                    this::reloadAtLowResolution);
+        } else {
+            mCache = new ThumbnailLruCache(mCacheSize, Long.MAX_VALUE, Long.MAX_VALUE, key -> { });
+        }
+    }
+
+    /**
+     * Reloads a high-res thumbnail removed from the cache as a low-res thumbnail, unless the task
+     * is cached again by then.
+     */
+    private void reloadAtLowResolution(TaskKey key) {
+        if (!mHighResLoadingState.mForceHighResThumbnails) {
+            MAIN_EXECUTOR.execute(() ->
+                    updateThumbnailInBackground(key, true /* lowResolution */,
+                            true /* onlyIfAbsent */, t -> { }));
+        }
     }
 
     /**
@@ -150,6 +185,12 @@ public class TaskThumbnailCache {
 
     private CancellableTask updateThumbnailInBackground(TaskKey key, boolean lowResolution,
             Consumer<ThumbnailData> callback) {
+        return updateThumbnailInBackground(key, lowResolution, false /* onlyIfAbsent */,
+                callback);
+    }
+
+    private CancellableTask updateThumbnailInBackground(TaskKey key, boolean lowResolution,
+            boolean onlyIfAbsent, Consumer<ThumbnailData> callback) {
         Preconditions.assertUIThread();
 
         ThumbnailData cachedThumbnail = mCache.getAndInvalidateIfModified(key);
@@ -169,7 +210,11 @@ public class TaskThumbnailCache {
 
             @Override
             public void handleResult(ThumbnailData result) {
-                mCache.put(key, result);
+                if (onlyIfAbsent) {
+                    mCache.putIfAbsent(key, result);
+                } else {
+                    mCache.put(key, result);
+                }
                 callback.accept(result);
             }
         };
@@ -184,6 +229,32 @@ public class TaskThumbnailCache {
         mCache.evictAll();
     }
 
+    /**
+     * Releases memory depending on the {@param level} from
+     * {@link android.content.ComponentCallbacks2#onTrimMemory}.
+     */
+    public void onTrimMemory(int level) {
+        if (!FeatureFlags.ENABLE_THUMBNAIL_BYTE_BUDGET.get()) {
+            return;
+        }
+        switch (level) {
+            case TRIM_MEMORY_RUNNING_MODERATE:
+            case TRIM_MEMORY_UI_HIDDEN:
+                // High-res thumbnails are only needed while Overview is visible, they are loaded
+                // again when their task views are next bound
+                mCache.trimMemory(1f);
+                break;
+            case TRIM_MEMORY_RUNNING_LOW:
+            case TRIM_MEMORY_BACKGROUND:
+                mCache.trimMemory(0.5f);
+                break;
+            default:
+                if (level > TRIM_MEMORY_BACKGROUND) {
+                    clear();
+                }
+        }
+    }
+
     /**
      * Removes the cached thumbnail for the given task.
      */
@@ -191,6 +262,10 @@ public class TaskThumbnailCache {
         mCache.remove(key);
     }
 
+    public void dump(String prefix, PrintWriter writer) {
+        mCache.dump(prefix, writer);
+    }
+
     /**
      * @return The cache size.
      */
@@ -20,6 +20,7 @@ import static androidx.core.util.Preconditions.checkNotNull;
 import static androidx.core.util.Preconditions.checkState;
 
 import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_NON_ACTIONABLE;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_BATCHED_STATS_LOGGING;
 import static com.android.launcher3.logger.LauncherAtom.ContainerInfo.ContainerCase.ALL_APPS_CONTAINER;
 import static com.android.launcher3.logger.LauncherAtom.ContainerInfo.ContainerCase.EXTENDED_CONTAINERS;
 import static com.android.launcher3.logger.LauncherAtom.ContainerInfo.ContainerCase.FOLDER;
@@ -68,6 +69,7 @@ import com.android.launcher3.views.ActivityContext;
 import com.android.systemui.shared.system.InteractionJankMonitorWrapper;
 import com.android.systemui.shared.system.SysUiStatsLog;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -131,11 +133,28 @@ public class StatsLogCompatManager extends StatsLogManager {
         return new StatsCompatImpressionLogger();
     }
 
+    @Override
+    public void dump(String prefix, PrintWriter writer) {
+        if (ENABLE_BATCHED_STATS_LOGGING.get()) {
+            StatsLogPipeline.INSTANCE.dump(prefix, writer);
+        }
+    }
+
     /**
      * Synchronously writes an itemInfo to stats log
      */
     @WorkerThread
     public static void writeSnapshot(LauncherAtom.ItemInfo info, InstanceId instanceId) {
+        writeSnapshot(info, instanceId, LauncherAttributes.newBuilder());
+    }
+
+    /**
+     * Synchronously writes an itemInfo to stats log, using the given cleared builder to serialize
+     * its attributes
+     */
+    @WorkerThread
+    static void writeSnapshot(LauncherAtom.ItemInfo info, InstanceId instanceId,
+            LauncherAttributes.Builder attributesBuilder) {
         if (IS_VERBOSE) {
             Log.d(TAG, String.format("\nwriteSnapshot(%d):\n%s", instanceId.getId(), info));
         }
@@ -162,12 +181,16 @@ public class StatsLogCompatManager extends StatsLogManager {
                 info.getWidget().getSpanX(),
                 info.getWidget().getSpanY(),
                 getFeatures(info),
-                getAttributes(info) /* attributes */
+                getAttributes(info, attributesBuilder) /* attributes */
         );
     }
 
     private static byte[] getAttributes(LauncherAtom.ItemInfo itemInfo) {
-        LauncherAttributes.Builder responseBuilder = LauncherAttributes.newBuilder();
+        return getAttributes(itemInfo, LauncherAttributes.newBuilder());
+    }
+
+    private static byte[] getAttributes(LauncherAtom.ItemInfo itemInfo,
+            LauncherAttributes.Builder responseBuilder) {
         itemInfo.getItemAttributesList().stream().map(Attribute::getNumber).forEach(
                 responseBuilder::addItemAttributes);
         return responseBuilder.build().toByteArray();
@@ -331,6 +354,14 @@ public class StatsLogCompatManager extends StatsLogManager {
                         mSliceItem.getSlice().getUri().toString()).build();
             }
 
+            if (ENABLE_BATCHED_STATS_LOGGING.get()) {
+                if (mSlice != null || mItemInfo != null) {
+                    // The logger is not modified once logged, so it is kept as the event record
+                    StatsLogPipeline.INSTANCE.enqueue(new LoggedEvent(event));
+                }
+                return;
+            }
+
             if (mSlice != null) {
                 Executors.MODEL_EXECUTOR.execute(
                         () -> {
@@ -388,8 +419,11 @@ public class StatsLogCompatManager extends StatsLogManager {
         }
 
         private LauncherAtom.ItemInfo applyOverwrites(LauncherAtom.ItemInfo atomInfo) {
-            LauncherAtom.ItemInfo.Builder itemInfoBuilder = atomInfo.toBuilder();
+            return applyOverwrites(atomInfo.toBuilder());
+        }
 
+        private LauncherAtom.ItemInfo applyOverwrites(
+                LauncherAtom.ItemInfo.Builder itemInfoBuilder) {
             mRank.ifPresent(itemInfoBuilder::setRank);
             mContainerInfo.ifPresent(itemInfoBuilder::setContainerInfo);
 
@@ -410,6 +444,12 @@ public class StatsLogCompatManager extends StatsLogManager {
 
         @WorkerThread
         private void write(EventEnum event, LauncherAtom.ItemInfo atomInfo) {
+            write(event, atomInfo, LauncherAttributes.newBuilder());
+        }
+
+        @WorkerThread
+        private void write(EventEnum event, LauncherAtom.ItemInfo atomInfo,
+                LauncherAttributes.Builder attributesBuilder) {
             InstanceId instanceId = mInstanceId;
             int srcState = mSrcState;
             int dstState = mDstState;
@@ -470,9 +510,44 @@ public class StatsLogCompatManager extends StatsLogManager {
                     cardinality /* cardinality */,
                     getFeatures(atomInfo) /* features */,
                     getSearchAttributes(atomInfo) /* searchAttributes */,
-                    getAttributes(atomInfo) /* attributes */
+                    getAttributes(atomInfo, attributesBuilder) /* attributes */
             );
         }
+
+        /**
+         * Event logged through the {@link StatsLogPipeline}, building its protos when written
+         */
+        private class LoggedEvent implements StatsLogPipeline.Event {
+
+            private final EventEnum mEvent;
+
+            LoggedEvent(EventEnum event) {
+                mEvent = event;
+            }
+
+            @Override
+            public boolean needsDataModel() {
+                // Items inside folders need the folder info
+                return mSlice == null && mItemInfo.container >= 0;
+            }
+
+            @Override
+            public void write(@NonNull StatsLogPipeline pipeline,
+                    @Nullable BgDataModel dataModel) {
+                LauncherAtom.ItemInfo.Builder itemInfoBuilder = pipeline.getItemInfoBuilder();
+                if (mSlice != null) {
+                    itemInfoBuilder.setSlice(mSlice);
+                    mContainerInfo.ifPresent(itemInfoBuilder::setContainerInfo);
+                } else if (dataModel != null && mItemInfo.container >= 0) {
+                    FolderInfo folderInfo = dataModel.folders.get(mItemInfo.container);
+                    mItemInfo.buildProto(folderInfo, itemInfoBuilder);
+                } else {
+                    mItemInfo.buildProto(null, itemInfoBuilder);
+                }
+                StatsCompatLogger.this.write(mEvent, applyOverwrites(itemInfoBuilder),
+                        pipeline.getAttributesBuilder());
+            }
+        }
     }
 
     /**
@@ -524,6 +599,14 @@ public class StatsLogCompatManager extends StatsLogManager {
 
         @Override
         public void log(EventEnum event) {
+            if (ENABLE_BATCHED_STATS_LOGGING.get()) {
+                StatsLogPipeline.INSTANCE.enqueue((pipeline, dataModel) -> write(event));
+            } else {
+                write(event);
+            }
+        }
+
+        private void write(EventEnum event) {
             if (IS_VERBOSE) {
                 String name = (event instanceof Enum) ? ((Enum) event).name() :
                         event.getId() + "";
@@ -597,6 +680,14 @@ public class StatsLogCompatManager extends StatsLogManager {
 
         @Override
         public void log(EventEnum event) {
+            if (ENABLE_BATCHED_STATS_LOGGING.get()) {
+                StatsLogPipeline.INSTANCE.enqueue((pipeline, dataModel) -> write(event));
+            } else {
+                write(event);
+            }
+        }
+
+        private void write(EventEnum event) {
             boolean [] mAboveKeyboard = new boolean[mAboveKeyboardList.size()];
             for (int i = 0; i < mAboveKeyboardList.size(); i++) {
                 mAboveKeyboard[i] = mAboveKeyboardList.get(i);
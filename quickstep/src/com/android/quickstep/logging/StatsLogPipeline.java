@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.logging;
+
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.LauncherModel;
+import com.android.launcher3.logger.LauncherAtom;
+import com.android.launcher3.logger.LauncherAtom.LauncherAttributes;
+import com.android.launcher3.logging.InstanceId;
+import com.android.launcher3.model.AllAppsList;
+import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.util.IntHashMap;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Writes the stats log events in batches on a background executor.
+ *
+ * Loggers only capture the event on the caller's thread, and the protos are built and written
+ * when the queued events are drained, in a single task for all the events queued since the
+ * previous drain. The proto builders are reused across the events of all the batches, as they are
+ * only used on the executor. The queue is bounded, and events queued while it is full are dropped
+ * and counted. Workspace snapshots are coalesced, so that only the latest pending snapshot is
+ * written, with the events referring to it.
+ */
+public class StatsLogPipeline {
+
+    public static final StatsLogPipeline INSTANCE = new StatsLogPipeline(MODEL_EXECUTOR);
+
+    @VisibleForTesting
+    static final int MAX_QUEUED_EVENTS = 256;
+
+    private final Executor mExecutor;
+    private final Runnable mDrainRunnable = this::drain;
+
+    private final Object mLock = new Object();
+    // All the following fields are guarded by mLock
+    private final ArrayDeque<Event> mQueue = new ArrayDeque<>();
+    @Nullable
+    private SnapshotEvent mPendingSnapshot;
+    private boolean mDrainScheduled;
+    private int mMaxQueueDepth;
+    private long mBatchCount;
+    private long mWrittenEventCount;
+    private long mDroppedEventCount;
+    private long mCoalescedSnapshotCount;
+
+    // Only used on the executor
+    private final LauncherAtom.ItemInfo.Builder mItemInfoBuilder =
+            LauncherAtom.ItemInfo.newBuilder();
+    private final LauncherAttributes.Builder mAttributesBuilder = LauncherAttributes.newBuilder();
+
+    @VisibleForTesting
+    StatsLogPipeline(Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Queues the event to be written with the next batch, or drops it if the queue is full
+     */
+    public void enqueue(@NonNull Event event) {
+        synchronized (mLock) {
+            if (mQueue.size() >= MAX_QUEUED_EVENTS) {
+                mDroppedEventCount++;
+                return;
+            }
+            mQueue.add(event);
+            mMaxQueueDepth = Math.max(mMaxQueueDepth, mQueue.size());
+            scheduleDrainLocked();
+        }
+    }
+
+    /**
+     * Queues a snapshot of the given workspace items, replacing any snapshot not written yet
+     *
+     * @param onWritten run on the executor once the snapshot is written, to log the events
+     *                  referring to its {@param instanceId}. It is dropped with the snapshot if
+     *                  the snapshot is replaced.
+     */
+    public void enqueueSnapshot(@NonNull IntHashMap<ItemInfo> itemsIdMap,
+            @NonNull InstanceId instanceId, @NonNull Runnable onWritten) {
+        synchronized (mLock) {
+            if (mPendingSnapshot != null) {
+                mCoalescedSnapshotCount++;
+            }
+            mPendingSnapshot = new SnapshotEvent(itemsIdMap, instanceId, onWritten);
+            scheduleDrainLocked();
+        }
+    }
+
+    private void scheduleDrainLocked() {
+        if (!mDrainScheduled) {
+            mDrainScheduled = true;
+            mExecutor.execute(mDrainRunnable);
+        }
+    }
+
+    @WorkerThread
+    private void drain() {
+        List<Event> batch;
+        SnapshotEvent snapshot;
+        synchronized (mLock) {
+            batch = new ArrayList<>(mQueue);
+            mQueue.clear();
+            snapshot = mPendingSnapshot;
+            mPendingSnapshot = null;
+            mBatchCount++;
+        }
+
+        boolean needsDataModel = false;
+        for (Event event : batch) {
+            needsDataModel |= event.needsDataModel();
+        }
+        LauncherAppState app = LauncherAppState.getInstanceNoCreate();
+        if (needsDataModel && app != null) {
+            // Write the whole batch from the model task, to keep the events in order
+            app.getModel().enqueueModelUpdateTask(new WriteBatchTask(batch));
+        } else {
+            writeBatch(batch, null);
+        }
+        if (snapshot != null) {
+            snapshot.write(this, null);
+        }
+
+        synchronized (mLock) {
+            // Only drain again after the batch is dispatched, as the model task may run after
+            // this drain completes
+            mDrainScheduled = false;
+            if (!mQueue.isEmpty() || mPendingSnapshot != null) {
+                scheduleDrainLocked();
+            }
+        }
+    }
+
+    @WorkerThread
+    private void writeBatch(List<Event> batch, @Nullable BgDataModel dataModel) {
+        for (Event event : batch) {
+            event.write(this, dataModel);
+        }
+        synchronized (mLock) {
+            mWrittenEventCount += batch.size();
+        }
+    }
+
+    /**
+     * Returns the reused item proto builder, cleared, to be used on the executor only
+     */
+    @WorkerThread
+    LauncherAtom.ItemInfo.Builder getItemInfoBuilder() {
+        return mItemInfoBuilder.clear();
+    }
+
+    /**
+     * Returns the reused attributes proto builder, cleared, to be used on the executor only
+     */
+    @WorkerThread
+    LauncherAttributes.Builder getAttributesBuilder() {
+        return mAttributesBuilder.clear();
+    }
+
+    @VisibleForTesting
+    int getQueueDepth() {
+        synchronized (mLock) {
+            return mQueue.size();
+        }
+    }
+
+    @VisibleForTesting
+    long getDroppedEventCount() {
+        synchronized (mLock) {
+            return mDroppedEventCount;
+        }
+    }
+
+    @VisibleForTesting
+    long getCoalescedSnapshotCount() {
+        synchronized (mLock) {
+            return mCoalescedSnapshotCount;
+        }
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        synchronized (mLock) {
+            writer.println(prefix + "StatsLogPipeline:"
+                    + " queueDepth=" + mQueue.size()
+                    + " maxQueueDepth=" + mMaxQueueDepth
+                    + " batches=" + mBatchCount
+                    + " writtenEvents=" + mWrittenEventCount
+                    + " droppedEvents=" + mDroppedEventCount
+                    + " coalescedSnapshots=" + mCoalescedSnapshotCount);
+        }
+    }
+
+    /**
+     * An event captured by a logger, written when its batch is drained
+     */
+    public interface Event {
+
+        /**
+         * Returns true if the event needs the loaded data model to be written
+         */
+        default boolean needsDataModel() {
+            return false;
+        }
+
+        /**
+         * Writes the event to the stats log
+         *
+         * @param dataModel the data model if the event needs it and it is loaded, null otherwise
+         */
+        @WorkerThread
+        void write(@NonNull StatsLogPipeline pipeline, @Nullable BgDataModel dataModel);
+    }
+
+    /**
+     * A snapshot of all the workspace items
+     */
+    private static class SnapshotEvent implements Event {
+
+        private final IntHashMap<ItemInfo> mItemsIdMap;
+        private final InstanceId mInstanceId;
+        private final Runnable mOnWritten;
+
+        SnapshotEvent(IntHashMap<ItemInfo> itemsIdMap, InstanceId instanceId,
+                Runnable onWritten) {
+            mItemsIdMap = itemsIdMap;
+            mInstanceId = instanceId;
+            mOnWritten = onWritten;
+        }
+
+        @Override
+        public void write(@NonNull StatsLogPipeline pipeline, @Nullable BgDataModel dataModel) {
+            for (ItemInfo info : mItemsIdMap) {
+                ItemInfo container = info.container > 0 ? mItemsIdMap.get(info.container) : null;
+                FolderInfo parent = container instanceof FolderInfo ? (FolderInfo) container : null;
+                LauncherAtom.ItemInfo.Builder itemInfoBuilder = pipeline.getItemInfoBuilder();
+                info.buildProto(parent, itemInfoBuilder);
+                StatsLogCompatManager.writeSnapshot(itemInfoBuilder.build(), mInstanceId,
+                        pipeline.getAttributesBuilder());
+            }
+            mOnWritten.run();
+        }
+    }
+
+    /**
+     * Writes a batch with access to the data model, from the model thread
+     */
+    private class WriteBatchTask implements LauncherModel.ModelUpdateTask {
+
+        private final List<Event> mBatch;
+        private LauncherModel mModel;
+        private BgDataModel mDataModel;
+
+        WriteBatchTask(List<Event> batch) {
+            mBatch = batch;
+        }
+
+        @Override
+        public void init(@NonNull LauncherAppState app, @NonNull LauncherModel model,
+                @NonNull BgDataModel dataModel, @NonNull AllAppsList allAppsList,
+                @NonNull Executor uiExecutor) {
+            mModel = model;
+            mDataModel = dataModel;
+        }
+
+        @Override
+        public void run() {
+            writeBatch(mBatch, mModel.isModelLoaded() ? mDataModel : null);
+        }
+    }
+}
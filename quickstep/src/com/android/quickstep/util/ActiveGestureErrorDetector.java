@@ -74,8 +74,8 @@ public class ActiveGestureErrorDetector {
         // Use a Set since the order is inherently checked in the loop.
         final Set<GestureEvent> encounteredEvents = new ArraySet<>();
         // Set flags and check order of operations.
-        for (ActiveGestureLog.EventEntry eventEntry : eventLog.eventEntries) {
-            GestureEvent gestureEvent = eventEntry.getGestureEvent();
+        for (int i = 0; i < eventLog.size(); i++) {
+            GestureEvent gestureEvent = eventLog.getGestureEvent(i);
             if (gestureEvent == null) {
                 continue;
             }
@@ -17,6 +17,7 @@ package com.android.quickstep.util;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.config.FeatureFlags;
 
@@ -31,11 +32,30 @@ import java.util.Objects;
 
 /**
  * A log to keep track of the active gesture.
+ *
+ * Events are recorded into a fixed-size arena of parallel primitive arrays, with the event names
+ * interned to ids, so that logging on the touch path doesn't allocate. Entries are only turned
+ * into text, and analysed for errors, when the log is dumped.
  */
 public class ActiveGestureLog {
 
     private static final int MAX_GESTURES_TRACKED = 10;
 
+    // Number of entries kept for all the tracked gestures, the oldest entries being overwritten
+    @VisibleForTesting
+    static final int MAX_ENTRIES = 1024;
+
+    // Number of distinct event names interned, other names are kept as references in their entry
+    @VisibleForTesting
+    static final int MAX_EVENT_NAMES = 256;
+    private static final int EVENT_NAMES_TABLE_SIZE = 2 * MAX_EVENT_NAMES;
+
+    private static final int NO_EVENT_ID = -1;
+    private static final int NO_GESTURE_EVENT = -1;
+
+    private static final ActiveGestureErrorDetector.GestureEvent[] GESTURE_EVENTS =
+            ActiveGestureErrorDetector.GestureEvent.values();
+
     public static final ActiveGestureLog INSTANCE = new ActiveGestureLog();
 
     /**
@@ -52,13 +72,29 @@ public class ActiveGestureLog {
     private static final int TYPE_INPUT_CONSUMER = 5;
     private static final int TYPE_GESTURE_EVENT = 6;
 
-    private final EventLog[] logs;
-    private int nextIndex;
+    // Entries, as a ring buffer of parallel arrays
+    private final int[] mLogIds = new int[MAX_ENTRIES];
+    private final int[] mTypes = new int[MAX_ENTRIES];
+    private final int[] mEventIds = new int[MAX_ENTRIES];
+    private final float[] mExtras = new float[MAX_ENTRIES];
+    private final long[] mTimes = new long[MAX_ENTRIES];
+    private final int[] mDuplicateCounts = new int[MAX_ENTRIES];
+    private final int[] mGestureEvents = new int[MAX_ENTRIES];
+    // Names of the events which couldn't be interned
+    private final String[] mUninternedEvents = new String[MAX_ENTRIES];
+    private final CompoundString[] mCompoundStrings = new CompoundString[MAX_ENTRIES];
+    private int mNextIndex;
+    private int mSize;
+
+    // Interned event names, as an open addressing hash table where the id of a name is its slot
+    private final String[] mEventNames = new String[EVENT_NAMES_TABLE_SIZE];
+    private int mEventNameCount;
+
     private int mCurrentLogId = 100;
 
-    private ActiveGestureLog() {
-        this.logs = new EventLog[MAX_GESTURES_TRACKED];
-        this.nextIndex = 0;
+    @VisibleForTesting
+    ActiveGestureLog() {
+        internEvent("");
     }
 
     /**
@@ -120,46 +156,77 @@ public class ActiveGestureLog {
             int type,
             String event,
             float extras,
-            CompoundString compoundString,
+            @NonNull CompoundString compoundString,
             @Nullable ActiveGestureErrorDetector.GestureEvent gestureEvent) {
-        EventLog lastEventLog = logs[(nextIndex + logs.length - 1) % logs.length];
-        if (lastEventLog == null || mCurrentLogId != lastEventLog.logId) {
-            EventLog eventLog = new EventLog(mCurrentLogId);
-            EventEntry eventEntry = new EventEntry();
-
-            eventEntry.update(type, event, extras, compoundString, gestureEvent);
-            eventLog.eventEntries.add(eventEntry);
-            logs[nextIndex] = eventLog;
-            nextIndex = (nextIndex + 1) % logs.length;
-            return;
+        int eventId = internEvent(event);
+        String uninternedEvent = eventId == NO_EVENT_ID ? event : null;
+        int gestureEventId = gestureEvent == null ? NO_GESTURE_EVENT : gestureEvent.ordinal();
+
+        // Update the last entry if it's a duplicate
+        if (mSize > 0) {
+            int last = (mNextIndex + MAX_ENTRIES - 1) % MAX_ENTRIES;
+            if (mLogIds[last] == mCurrentLogId
+                    && mTypes[last] == type
+                    && mEventIds[last] == eventId
+                    && Objects.equals(mUninternedEvents[last], uninternedEvent)
+                    && Float.compare(mExtras[last], extras) == 0
+                    && mCompoundStrings[last].equals(compoundString)
+                    && mGestureEvents[last] == gestureEventId) {
+                mDuplicateCounts[last]++;
+                return;
+            }
         }
 
-        // Update the last EventLog
-        List<EventEntry> lastEventEntries = lastEventLog.eventEntries;
-        EventEntry lastEntry = lastEventEntries.size() > 0
-                ? lastEventEntries.get(lastEventEntries.size() - 1) : null;
+        int index = mNextIndex;
+        mLogIds[index] = mCurrentLogId;
+        mTypes[index] = type;
+        mEventIds[index] = eventId;
+        mUninternedEvents[index] = uninternedEvent;
+        mExtras[index] = extras;
+        mCompoundStrings[index] = compoundString;
+        mGestureEvents[index] = gestureEventId;
+        mTimes[index] = System.currentTimeMillis();
+        mDuplicateCounts[index] = 0;
+        mNextIndex = (index + 1) % MAX_ENTRIES;
+        mSize = Math.min(mSize + 1, MAX_ENTRIES);
+    }
 
-        // Update the last EventEntry if it's a duplicate
-        if (isEntrySame(lastEntry, type, event, extras, compoundString, gestureEvent)) {
-            lastEntry.duplicateCount++;
-            return;
+    /**
+     * Returns the id of the given event name, interning it if needed, or {@link #NO_EVENT_ID} if
+     * the table of names is full.
+     */
+    private int internEvent(String event) {
+        int mask = EVENT_NAMES_TABLE_SIZE - 1;
+        int slot = event.hashCode() & mask;
+        while (mEventNames[slot] != null) {
+            if (mEventNames[slot].equals(event)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
         }
-        EventEntry eventEntry = new EventEntry();
-
-        eventEntry.update(type, event, extras, compoundString, gestureEvent);
-        lastEventEntries.add(eventEntry);
+        if (mEventNameCount >= MAX_EVENT_NAMES) {
+            return NO_EVENT_ID;
+        }
+        mEventNames[slot] = event;
+        mEventNameCount++;
+        return slot;
     }
 
     public void clear() {
-        Arrays.fill(logs, null);
+        mNextIndex = 0;
+        mSize = 0;
+        Arrays.fill(mUninternedEvents, null);
+        Arrays.fill(mCompoundStrings, null);
     }
 
     public void dump(String prefix, PrintWriter writer) {
+        List<EventLog> eventLogs = getEventLogs();
+
         if (FeatureFlags.ENABLE_GESTURE_ERROR_DETECTION.get()) {
             writer.println(prefix + "ActiveGestureErrorDetector:");
-            for (int i = 0; i < logs.length; i++) {
-                EventLog eventLog = logs[(nextIndex + i) % logs.length];
-                if (eventLog == null) {
+            for (EventLog eventLog : eventLogs) {
+                if (eventLog.mTruncated) {
+                    // The first events of the gesture were overwritten
                     continue;
                 }
                 ActiveGestureErrorDetector.analyseAndDump(prefix + '\t', writer, eventLog);
@@ -169,19 +236,16 @@ public class ActiveGestureLog {
         writer.println(prefix + "ActiveGestureLog history:");
         SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss.SSSZ  ", Locale.US);
         Date date = new Date();
-        for (int i = 0; i < logs.length; i++) {
-            EventLog eventLog = logs[(nextIndex + i) % logs.length];
-            if (eventLog == null) {
-                continue;
-            }
-
+        for (EventLog eventLog : eventLogs) {
             writer.println(prefix + "\tLogs for logId: " + eventLog.logId);
-            for (EventEntry eventEntry : eventLog.eventEntries) {
-                date.setTime(eventEntry.time);
+            for (int i = 0; i < eventLog.size(); i++) {
+                int index = eventLog.getEntryIndex(i);
+                date.setTime(mTimes[index]);
 
                 StringBuilder msg = new StringBuilder(prefix + "\t\t").append(sdf.format(date))
-                        .append(eventEntry.event);
-                switch (eventEntry.type) {
+                        .append(mEventIds[index] == NO_EVENT_ID
+                                ? mUninternedEvents[index] : mEventNames[mEventIds[index]]);
+                switch (mTypes[index]) {
                     case TYPE_BOOL_FALSE:
                         msg.append(": false");
                         break;
@@ -189,26 +253,49 @@ public class ActiveGestureLog {
                         msg.append(": true");
                         break;
                     case TYPE_FLOAT:
-                        msg.append(": ").append(eventEntry.extras);
+                        msg.append(": ").append(mExtras[index]);
                         break;
                     case TYPE_INTEGER:
-                        msg.append(": ").append((int) eventEntry.extras);
+                        msg.append(": ").append((int) mExtras[index]);
                         break;
                     case TYPE_INPUT_CONSUMER:
-                        msg.append(eventEntry.mCompoundString);
+                        msg.append(mCompoundStrings[index]);
                         break;
                     case TYPE_GESTURE_EVENT:
                         continue;
                     default: // fall out
                 }
-                if (eventEntry.duplicateCount > 0) {
-                    msg.append(" & ").append(eventEntry.duplicateCount).append(" similar events");
+                if (mDuplicateCounts[index] > 0) {
+                    msg.append(" & ").append(mDuplicateCounts[index]).append(" similar events");
                 }
                 writer.println(msg);
             }
         }
     }
 
+    /**
+     * Returns the entries of the last tracked gestures, grouped by log ID, from the oldest to the
+     * newest.
+     */
+    private List<EventLog> getEventLogs() {
+        List<EventLog> eventLogs = new ArrayList<>();
+        int start = (mNextIndex + MAX_ENTRIES - mSize) % MAX_ENTRIES;
+        EventLog eventLog = null;
+        for (int i = 0; i < mSize; i++) {
+            int logId = mLogIds[(start + i) % MAX_ENTRIES];
+            if (eventLog == null || eventLog.logId != logId) {
+                // Once the arena has wrapped, the oldest gesture may have lost its first entries
+                eventLog = new EventLog(
+                        logId, start + i, eventLogs.isEmpty() && mSize == MAX_ENTRIES);
+                eventLogs.add(eventLog);
+            }
+            eventLog.mCount++;
+        }
+        return eventLogs.size() > MAX_GESTURES_TRACKED
+                ? eventLogs.subList(eventLogs.size() - MAX_GESTURES_TRACKED, eventLogs.size())
+                : eventLogs;
+    }
+
     /**
      * Increments and returns the current log ID. This should be used every time a new log trace
      * is started.
@@ -222,63 +309,32 @@ public class ActiveGestureLog {
         return mCurrentLogId;
     }
 
-    private boolean isEntrySame(
-            EventEntry entry,
-            int type,
-            String event,
-            float extras,
-            CompoundString compoundString,
-            ActiveGestureErrorDetector.GestureEvent gestureEvent) {
-        return entry != null
-                && entry.type == type
-                && entry.event.equals(event)
-                && Float.compare(entry.extras, extras) == 0
-                && entry.mCompoundString.equals(compoundString)
-                && entry.gestureEvent == gestureEvent;
-    }
-
-    /** A single event entry. */
-    protected static class EventEntry {
-
-        private int type;
-        private String event;
-        private float extras;
-        @NonNull private CompoundString mCompoundString;
-        private ActiveGestureErrorDetector.GestureEvent gestureEvent;
-        private long time;
-        private int duplicateCount;
+    /** The range of entries of the arena associated with a single log ID */
+    protected class EventLog {
 
-        private EventEntry() {}
+        protected final int logId;
+        private final int mStart;
+        private final boolean mTruncated;
+        private int mCount;
 
-        @Nullable
-        protected ActiveGestureErrorDetector.GestureEvent getGestureEvent() {
-            return gestureEvent;
+        private EventLog(int logId, int start, boolean truncated) {
+            this.logId = logId;
+            mStart = start;
+            mTruncated = truncated;
         }
 
-        private void update(
-                int type,
-                String event,
-                float extras,
-                @NonNull CompoundString compoundString,
-                ActiveGestureErrorDetector.GestureEvent gestureEvent) {
-            this.type = type;
-            this.event = event;
-            this.extras = extras;
-            this.mCompoundString = compoundString;
-            this.gestureEvent = gestureEvent;
-            time = System.currentTimeMillis();
-            duplicateCount = 0;
+        protected int size() {
+            return mCount;
         }
-    }
-
-    /** An entire log of entries associated with a single log ID */
-    protected static class EventLog {
 
-        protected final List<EventEntry> eventEntries = new ArrayList<>();
-        protected final int logId;
+        private int getEntryIndex(int i) {
+            return (mStart + i) % MAX_ENTRIES;
+        }
 
-        private EventLog(int logId) {
-            this.logId = logId;
+        @Nullable
+        protected ActiveGestureErrorDetector.GestureEvent getGestureEvent(int i) {
+            int gestureEvent = mGestureEvents[getEntryIndex(i)];
+            return gestureEvent == NO_GESTURE_EVENT ? null : GESTURE_EVENTS[gestureEvent];
         }
     }
 
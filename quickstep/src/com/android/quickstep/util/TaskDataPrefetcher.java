@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+
+import com.android.quickstep.TaskIconCache;
+import com.android.quickstep.TaskThumbnailCache;
+import com.android.systemui.shared.recents.model.Task;
+
+import java.util.List;
+
+/**
+ * Loads the thumbnails and icons of the tasks which are about to become visible while scrolling
+ * through recents, so that they are ready by the time their task views are shown.
+ *
+ * The number of tasks loaded ahead of the visible tasks grows with the scroll velocity, and the
+ * data of the tasks which fall out of that range before becoming visible is released.
+ */
+@UiThread
+public class TaskDataPrefetcher {
+
+    // How far ahead of the visible tasks to load, in time at the current scroll velocity
+    private static final int LOOKAHEAD_MS = 400;
+    private static final int MAX_PREFETCH_COUNT = 8;
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+
+    private final TaskThumbnailCache mThumbnailCache;
+    private final TaskIconCache mIconCache;
+
+    // Prefetched tasks, by task id
+    private final SparseArray<Request> mRequests = new SparseArray<>();
+
+    public TaskDataPrefetcher(TaskThumbnailCache thumbnailCache, TaskIconCache iconCache) {
+        mThumbnailCache = thumbnailCache;
+        mIconCache = iconCache;
+    }
+
+    /**
+     * Updates the prefetched tasks for the current scroll.
+     *
+     * @param tasks the tasks in recents, in page order
+     * @param firstVisible the index of the first task which has its data loaded by its view
+     * @param lastVisible the index of the last task which has its data loaded by its view
+     * @param taskVelocity the scroll velocity in tasks per second, positive when scrolling
+     *                     towards the tasks with a higher index
+     */
+    public void update(List<Task> tasks, int firstVisible, int lastVisible, float taskVelocity) {
+        int count = Math.min(MAX_PREFETCH_COUNT,
+                (int) Math.ceil(Math.abs(taskVelocity) * LOOKAHEAD_MS / 1000));
+        int start;
+        int end;
+        if (taskVelocity > 0) {
+            start = lastVisible + 1;
+            end = Math.min(tasks.size() - 1, lastVisible + count);
+        } else {
+            start = Math.max(0, firstVisible - count);
+            end = firstVisible - 1;
+        }
+
+        for (int i = mRequests.size() - 1; i >= 0; i--) {
+            Request request = mRequests.valueAt(i);
+            int index = tasks.indexOf(request.mTask);
+            if (index >= firstVisible && index <= lastVisible) {
+                // The task view now owns the data of the task
+                mRequests.removeAt(i);
+            } else if (index < start || index > end) {
+                request.cancelAndUnload();
+                mRequests.removeAt(i);
+            }
+        }
+
+        int inFlightCount = getInFlightCount();
+        // Load the tasks closest to the visible tasks first
+        for (int i = 0; i <= end - start && inFlightCount < MAX_CONCURRENT_REQUESTS; i++) {
+            Task task = tasks.get(taskVelocity > 0 ? start + i : end - i);
+            if (task == null || mRequests.get(task.key.id) != null) {
+                continue;
+            }
+            Request request = new Request(task);
+            mRequests.put(task.key.id, request);
+            request.load();
+            if (request.isLoading()) {
+                inFlightCount++;
+            }
+        }
+    }
+
+    /**
+     * Cancels all the pending requests and releases the prefetched data
+     */
+    public void clear() {
+        for (int i = 0; i < mRequests.size(); i++) {
+            mRequests.valueAt(i).cancelAndUnload();
+        }
+        mRequests.clear();
+    }
+
+    private int getInFlightCount() {
+        int count = 0;
+        for (int i = 0; i < mRequests.size(); i++) {
+            if (mRequests.valueAt(i).isLoading()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private class Request {
+
+        final Task mTask;
+        @Nullable CancellableTask mThumbnailRequest;
+        @Nullable CancellableTask mIconRequest;
+        boolean mThumbnailLoaded;
+        boolean mIconLoaded;
+        // Whether the data was loaded by this request, and should be released with it
+        boolean mOwnsThumbnail;
+        boolean mOwnsIcon;
+
+        Request(Task task) {
+            mTask = task;
+        }
+
+        void load() {
+            mOwnsThumbnail = mTask.thumbnail == null;
+            mOwnsIcon = mTask.icon == null;
+            // The callbacks are called synchronously if the data is already loaded
+            mThumbnailRequest = mThumbnailCache.updateThumbnailInBackground(mTask,
+                    t -> mThumbnailLoaded = true);
+            mIconRequest = mIconCache.updateIconInBackground(mTask, t -> mIconLoaded = true);
+        }
+
+        boolean isLoading() {
+            return !mThumbnailLoaded || !mIconLoaded;
+        }
+
+        void cancelAndUnload() {
+            if (mThumbnailRequest != null) {
+                mThumbnailRequest.cancel();
+            }
+            if (mIconRequest != null) {
+                mIconRequest.cancel();
+            }
+            // Same as what the task view does when it is no longer visible
+            if (mOwnsThumbnail) {
+                mTask.thumbnail = null;
+            }
+            if (mOwnsIcon) {
+                mTask.icon = null;
+            }
+        }
+    }
+}
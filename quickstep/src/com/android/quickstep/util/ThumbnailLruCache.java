@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+import com.android.systemui.shared.recents.model.ThumbnailData;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A LRU cache for task thumbnails, bounded by the memory used by the thumbnail bitmaps instead of
+ * the number of entries.
+ *
+ * Low-res and high-res thumbnails have separate budgets. When the high-res budget is exceeded, the
+ * least recently used high-res thumbnails are downgraded: they are removed from the cache and
+ * reported to the downgrade listener, which can reload them at low-res, so that scrolling back to
+ * them does not need to wait for a full reload. Trimming the memory only evicts, as the thumbnails
+ * are reloaded when they are next bound anyway.
+ */
+public class ThumbnailLruCache {
+
+    private static final String TAG = "ThumbnailLruCache";
+
+    // Bytes per pixel assumed when the allocation size of a bitmap is not known
+    private static final int DEFAULT_BYTES_PER_PIXEL = 4;
+
+    private final LinkedHashMap<Integer, Entry> mMap =
+            new LinkedHashMap<>(0, 0.75f, true /* accessOrder */);
+    private final int mMaxSize;
+    private final long mHighResBudget;
+    private final long mLowResBudget;
+    private final Consumer<TaskKey> mDowngradeListener;
+
+    private long mHighResBytes;
+    private long mLowResBytes;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+    private int mDowngradeCount;
+
+    /**
+     * @param maxSize the maximum number of entries
+     * @param highResBudget the maximum number of bytes used by high-res thumbnails
+     * @param lowResBudget the maximum number of bytes used by low-res thumbnails
+     * @param downgradeListener called, outside of the cache lock, with the key of each high-res
+     *                          thumbnail removed to fit the budget
+     */
+    public ThumbnailLruCache(int maxSize, long highResBudget, long lowResBudget,
+            Consumer<TaskKey> downgradeListener) {
+        mMaxSize = maxSize;
+        mHighResBudget = highResBudget;
+        mLowResBudget = lowResBudget;
+        mDowngradeListener = downgradeListener;
+    }
+
+    /**
+     * Removes all entries from the cache
+     */
+    public synchronized void evictAll() {
+        mEvictionCount += mMap.size();
+        mMap.clear();
+        mHighResBytes = 0;
+        mLowResBytes = 0;
+    }
+
+    /**
+     * Removes a particular entry from the cache
+     */
+    public synchronized void remove(TaskKey key) {
+        removeEntry(mMap.get(key.id));
+    }
+
+    /**
+     * Gets the entry if it is still valid
+     */
+    @Nullable
+    public synchronized ThumbnailData getAndInvalidateIfModified(TaskKey key) {
+        Entry entry = mMap.get(key.id);
+        if (entry != null && entry.mKey.windowingMode == key.windowingMode
+                && entry.mKey.lastActiveTime == key.lastActiveTime) {
+            mHitCount++;
+            return entry.mValue;
+        }
+        mMissCount++;
+        removeEntry(entry);
+        return null;
+    }
+
+    /**
+     * Adds an entry to the cache, evicting or downgrading the least recently used entries if the
+     * cache is over budget
+     */
+    public void put(TaskKey key, ThumbnailData value) {
+        put(key, value, true /* replace */);
+    }
+
+    /**
+     * Adds an entry to the cache, unless there is already an entry for the task
+     */
+    public void putIfAbsent(TaskKey key, ThumbnailData value) {
+        put(key, value, false /* replace */);
+    }
+
+    private void put(TaskKey key, ThumbnailData value, boolean replace) {
+        if (key == null || value == null) {
+            Log.e(TAG, "Unexpected null key or value: " + key + ", " + value);
+            return;
+        }
+        List<TaskKey> downgraded;
+        synchronized (this) {
+            Entry previous = mMap.get(key.id);
+            if (previous != null && !replace) {
+                return;
+            }
+            removeEntry(previous);
+            addEntry(new Entry(key, value));
+            downgraded = trimToBudget(mHighResBudget, mLowResBudget, true /* downgrade */);
+        }
+        notifyDowngraded(downgraded);
+    }
+
+    /**
+     * Updates the cache entry if it is already present in the cache
+     */
+    public void updateIfAlreadyInCache(int taskId, ThumbnailData data) {
+        List<TaskKey> downgraded;
+        synchronized (this) {
+            Entry entry = mMap.get(taskId);
+            if (entry == null) {
+                return;
+            }
+            removeEntry(entry);
+            addEntry(new Entry(entry.mKey, data));
+            downgraded = trimToBudget(mHighResBudget, mLowResBudget, true /* downgrade */);
+        }
+        notifyDowngraded(downgraded);
+    }
+
+    /**
+     * Evicts all the high-res thumbnails and trims the low-res thumbnails to a fraction of their
+     * budget, without reporting the evicted thumbnails to the downgrade listener.
+     */
+    public synchronized void trimMemory(float lowResBudgetFraction) {
+        trimToBudget(0, (long) (mLowResBudget * lowResBudgetFraction), false /* downgrade */);
+    }
+
+    /**
+     * Returns the number of entries in the cache
+     */
+    public synchronized int size() {
+        return mMap.size();
+    }
+
+    /**
+     * Returns the number of bytes used by the cached thumbnails
+     */
+    public synchronized long getByteCount() {
+        return mHighResBytes + mLowResBytes;
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "ThumbnailLruCache:");
+        writer.println(prefix + "  size=" + mMap.size() + "/" + mMaxSize
+                + " highResKb=" + mHighResBytes / 1024 + "/" + mHighResBudget / 1024
+                + " lowResKb=" + mLowResBytes / 1024 + "/" + mLowResBudget / 1024);
+        writer.println(prefix + "  hits=" + mHitCount
+                + " misses=" + mMissCount
+                + " evictions=" + mEvictionCount
+                + " downgrades=" + mDowngradeCount);
+    }
+
+    /**
+     * Removes the least recently used entries until the cache fits the given budgets, and returns
+     * the keys of the high-res entries removed to fit the high-res budget if {@param downgrade}
+     * is true.
+     */
+    @Nullable
+    private List<TaskKey> trimToBudget(long highResBudget, long lowResBudget, boolean downgrade) {
+        List<TaskKey> downgraded = null;
+        Iterator<Entry> it = mMap.values().iterator();
+        while (it.hasNext() && (mMap.size() > mMaxSize
+                || mHighResBytes > highResBudget || mLowResBytes > lowResBudget)) {
+            Entry entry = it.next();
+            if (mMap.size() > mMaxSize) {
+                mEvictionCount++;
+            } else if (entry.mHighRes && mHighResBytes > highResBudget && !downgrade) {
+                mEvictionCount++;
+            } else if (entry.mHighRes && mHighResBytes > highResBudget) {
+                if (downgraded == null) {
+                    downgraded = new ArrayList<>();
+                }
+                downgraded.add(entry.mKey);
+                mDowngradeCount++;
+            } else if (!entry.mHighRes && mLowResBytes > lowResBudget) {
+                mEvictionCount++;
+            } else {
+                continue;
+            }
+            it.remove();
+            subtractByteCount(entry);
+        }
+        return downgraded;
+    }
+
+    private void notifyDowngraded(@Nullable List<TaskKey> downgraded) {
+        if (downgraded != null) {
+            downgraded.forEach(mDowngradeListener);
+        }
+    }
+
+    private void addEntry(Entry entry) {
+        mMap.put(entry.mKey.id, entry);
+        if (entry.mHighRes) {
+            mHighResBytes += entry.mByteCount;
+        } else {
+            mLowResBytes += entry.mByteCount;
+        }
+    }
+
+    private void removeEntry(@Nullable Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        mMap.remove(entry.mKey.id);
+        subtractByteCount(entry);
+    }
+
+    private void subtractByteCount(Entry entry) {
+        if (entry.mHighRes) {
+            mHighResBytes -= entry.mByteCount;
+        } else {
+            mLowResBytes -= entry.mByteCount;
+        }
+    }
+
+    /**
+     * Returns the memory used by the thumbnail bitmap
+     */
+    public static int getByteCount(ThumbnailData data) {
+        Bitmap bitmap = data.thumbnail;
+        if (bitmap == null) {
+            return 0;
+        }
+        int byteCount = bitmap.getAllocationByteCount();
+        return byteCount > 0
+                ? byteCount : bitmap.getWidth() * bitmap.getHeight() * DEFAULT_BYTES_PER_PIXEL;
+    }
+
+    private static class Entry {
+
+        final TaskKey mKey;
+        final ThumbnailData mValue;
+        final boolean mHighRes;
+        final int mByteCount;
+
+        Entry(TaskKey key, ThumbnailData value) {
+            mKey = key;
+            mValue = value;
+            mHighRes = !value.reducedResolution;
+            mByteCount = getByteCount(value);
+        }
+    }
+}
@@ -43,6 +43,7 @@ import static com.android.launcher3.anim.Interpolators.LINEAR;
 import static com.android.launcher3.anim.Interpolators.OVERSHOOT_0_75;
 import static com.android.launcher3.anim.Interpolators.clampToProgress;
 import static com.android.launcher3.config.FeatureFlags.ENABLE_GRID_ONLY_OVERVIEW;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_RECENT_TASKS;
 import static com.android.launcher3.config.FeatureFlags.ENABLE_LAUNCH_FROM_STAGED_APP;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_OVERVIEW_ACTIONS_SPLIT;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_TASK_CLEAR_ALL;
@@ -191,6 +192,7 @@ import com.android.quickstep.util.SplitAnimationTimings;
 import com.android.quickstep.util.SplitSelectStateController;
 import com.android.quickstep.util.SurfaceTransaction;
 import com.android.quickstep.util.SurfaceTransactionApplier;
+import com.android.quickstep.util.TaskDataPrefetcher;
 import com.android.quickstep.util.TaskViewSimulator;
 import com.android.quickstep.util.TaskVisualsChangeListener;
 import com.android.quickstep.util.TransformParams;
@@ -206,6 +208,7 @@ import com.android.systemui.shared.system.TaskStackChangeListener;
 import com.android.systemui.shared.system.TaskStackChangeListeners;
 import com.android.wm.shell.pip.IPipAnimationListener;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -488,6 +491,10 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
 
     // Keeps track of the previously known visible tasks for purposes of loading/unloading task data
     private final SparseBooleanArray mHasVisibleTaskData = new SparseBooleanArray();
+    // Loads the data of the tasks ahead of the visible tasks while flinging
+    private final TaskDataPrefetcher mTaskDataPrefetcher;
+    private final ArrayList<Task> mPrefetchTasks = new ArrayList<>();
+    private int mLastPrefetchScroll;
 
     private final InvariantDeviceProfile mIdp;
 
@@ -755,6 +762,8 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
         mFastFlingVelocity = getResources()
                 .getDimensionPixelSize(R.dimen.recents_fast_fling_velocity);
         mModel = RecentsModel.INSTANCE.get(context);
+        mTaskDataPrefetcher = new TaskDataPrefetcher(mModel.getThumbnailCache(),
+                mModel.getIconCache());
         mIdp = InvariantDeviceProfile.INSTANCE.get(context);
 
         mClearAllButton = (ClearAllButton) LayoutInflater.from(context)
@@ -1562,6 +1571,10 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
             return;
         }
 
+        if (ENABLE_INCREMENTAL_RECENT_TASKS.get() && rebindTaskViewsInPlace(taskGroups)) {
+            return;
+        }
+
         int currentTaskId = INVALID_TASK_ID;
         TaskView currentTaskView = getTaskViewAt(mCurrentPage);
         if (currentTaskView != null && currentTaskView.getTask() != null) {
@@ -1636,16 +1649,8 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
                 // first (to prevent problems), then remove the whole thing.
                 taskView.bind(groupTask.task1, mOrientationState);
                 removeView(taskView);
-            } else if (taskView instanceof GroupedTaskView) {
-                boolean firstTaskIsLeftTopTask =
-                        groupTask.mSplitBounds.leftTopTaskId == groupTask.task1.key.id;
-                Task leftTopTask = firstTaskIsLeftTopTask ? groupTask.task1 : groupTask.task2;
-                Task rightBottomTask = firstTaskIsLeftTopTask ? groupTask.task2 : groupTask.task1;
-
-                ((GroupedTaskView) taskView).bind(leftTopTask, rightBottomTask, mOrientationState,
-                        groupTask.mSplitBounds);
             } else {
-                taskView.bind(groupTask.task1, mOrientationState);
+                bindTaskView(taskView, groupTask);
             }
 
             // enables instance filtering if the feature flag for it is on
@@ -1753,6 +1758,79 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
         }
     }
 
+    private void bindTaskView(TaskView taskView, GroupTask groupTask) {
+        if (taskView instanceof GroupedTaskView) {
+            boolean firstTaskIsLeftTopTask =
+                    groupTask.mSplitBounds.leftTopTaskId == groupTask.task1.key.id;
+            Task leftTopTask = firstTaskIsLeftTopTask ? groupTask.task1 : groupTask.task2;
+            Task rightBottomTask = firstTaskIsLeftTopTask ? groupTask.task2 : groupTask.task1;
+
+            ((GroupedTaskView) taskView).bind(leftTopTask, rightBottomTask, mOrientationState,
+                    groupTask.mSplitBounds);
+        } else {
+            taskView.bind(groupTask.task1, mOrientationState);
+        }
+    }
+
+    /**
+     * Binds the tasks to the existing task views if they show the same task groups, moving the
+     * task views of the groups which changed position, such as a task moved to the front. This
+     * keeps the running task view, the focused task view and the current task as they are.
+     *
+     * @return whether the tasks were bound, otherwise the task views need to be added again
+     */
+    private boolean rebindTaskViewsInPlace(ArrayList<GroupTask> taskGroups) {
+        if (mSplitSelectSource != null || mDesktopTaskView != null
+                || getTaskViewCount() != taskGroups.size()) {
+            return false;
+        }
+        // The task views are added from the most recent task group to the least recent one
+        TaskView[] taskViews = new TaskView[taskGroups.size()];
+        for (int i = 0; i < taskGroups.size(); i++) {
+            GroupTask groupTask = taskGroups.get(taskGroups.size() - 1 - i);
+            if (groupTask instanceof DesktopTask) {
+                return false;
+            }
+            TaskView taskView = getTaskViewByTaskId(groupTask.task1.key.id);
+            if (taskView == null
+                    || groupTask.hasMultipleTasks() != taskView.containsMultipleTasks()
+                    || (groupTask.task2 != null
+                            && !taskView.containsTaskId(groupTask.task2.key.id))) {
+                return false;
+            }
+            taskViews[i] = taskView;
+        }
+
+        TaskView currentTaskView = getTaskViewAt(mCurrentPage);
+        unloadVisibleTaskData(TaskView.FLAG_UPDATE_ALL);
+        mFilterState.updateInstanceCountMap(taskGroups);
+        for (int i = 0; i < taskViews.length; i++) {
+            TaskView taskView = taskViews[i];
+            if (indexOfChild(taskView) != i) {
+                // Same as moveRunningTaskToFront, keep the task view and its data while it moves
+                mMovingTaskView = taskView;
+                removeView(taskView);
+                mMovingTaskView = null;
+                taskView.resetPersistentViewTransforms();
+                addView(taskView, i);
+            }
+            bindTaskView(taskView, taskGroups.get(taskGroups.size() - 1 - i));
+            if (FeatureFlags.ENABLE_MULTI_INSTANCE.get()) {
+                taskView.setUpShowAllInstancesListener();
+            }
+        }
+        if (currentTaskView != null && indexOfChild(currentTaskView) != mCurrentPage) {
+            setCurrentPage(indexOfChild(currentTaskView));
+        }
+        resetTaskVisuals();
+        onTaskStackUpdated();
+        updateEnabledOverlays();
+        if (isPageScrollsInitialized()) {
+            onPageScrollsInitialized();
+        }
+        return true;
+    }
+
     private boolean isModal() {
         return mTaskModalness > 0;
     }
@@ -2077,6 +2155,9 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
 
             // After scrolling, update the visible task's data
             loadVisibleTaskData(TaskView.FLAG_UPDATE_ALL);
+            if (FeatureFlags.ENABLE_RECENTS_PREFETCH.get()) {
+                prefetchTaskData(scrolling ? mScroller.getCurrVelocity() : 0);
+            }
         }
 
         // Update ActionsView's visibility when scroll changes.
@@ -2227,10 +2308,50 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
         }
     }
 
+    /**
+     * Loads the data of the tasks that the scroll is about to reach, based on the scroll
+     * {@param velocity} in pixels per second.
+     */
+    private void prefetchTaskData(float velocity) {
+        int scroll = mOrientationHandler.getPrimaryScroll(this);
+        int scrollDelta = scroll - mLastPrefetchScroll;
+        mLastPrefetchScroll = scroll;
+
+        int taskViewCount = getTaskViewCount();
+        if (taskViewCount < 2 || mHasVisibleTaskData.size() == 0) {
+            return;
+        }
+        int firstVisible = -1;
+        int lastVisible = -1;
+        mPrefetchTasks.clear();
+        for (int i = 0; i < taskViewCount; i++) {
+            Task task = requireTaskViewAt(i).getTask();
+            mPrefetchTasks.add(task);
+            if (task != null && mHasVisibleTaskData.get(task.key.id)) {
+                if (firstVisible < 0) {
+                    firstVisible = i;
+                }
+                lastVisible = i;
+            }
+        }
+        if (firstVisible < 0) {
+            return;
+        }
+
+        // Average scroll distance between tasks, negative if the scroll decreases with the index
+        float taskScroll = (float) (getScrollForPage(indexOfChild(requireTaskViewAt(
+                taskViewCount - 1))) - getScrollForPage(indexOfChild(requireTaskViewAt(0))))
+                / (taskViewCount - 1);
+        float taskVelocity = taskScroll == 0 || scrollDelta == 0
+                ? 0 : Math.copySign(velocity / Math.abs(taskScroll), scrollDelta * taskScroll);
+        mTaskDataPrefetcher.update(mPrefetchTasks, firstVisible, lastVisible, taskVelocity);
+    }
+
     /**
      * Unloads any associated data from the currently visible tasks
      */
     private void unloadVisibleTaskData(@TaskView.TaskDataChanges int dataChanges) {
+        mTaskDataPrefetcher.clear();
         for (int i = 0; i < mHasVisibleTaskData.size(); i++) {
             if (mHasVisibleTaskData.valueAt(i)) {
                 TaskView taskView = getTaskViewByTaskId(mHasVisibleTaskData.keyAt(i));
@@ -4115,6 +4236,16 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
         return mOrientationHandler;
     }
 
+    /**
+     * Dumps the usage statistics of the task view pools
+     */
+    public void dumpViewPools(String prefix, PrintWriter writer) {
+        writer.println(prefix + "TaskView pools:");
+        mTaskViewPool.dump(prefix + "\t", writer);
+        mGroupedTaskViewPool.dump(prefix + "\t", writer);
+        mDesktopTaskViewPool.dump(prefix + "\t", writer);
+    }
+
     @Nullable
     public TaskView getNextTaskView() {
         return getTaskViewAt(getRunningTaskIndex() + 1);
@@ -16,10 +16,17 @@
 
 package com.android.quickstep;
 
+import static android.app.WindowConfiguration.ACTIVITY_TYPE_HOME;
+
 import static junit.framework.TestCase.assertNull;
 
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -42,6 +49,7 @@ import org.mockito.MockitoAnnotations;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 @SmallTest
 public class RecentTasksListTest {
@@ -56,6 +64,15 @@ public class RecentTasksListTest {
     public void setup() {
         MockitoAnnotations.initMocks(this);
         LooperExecutor mockMainThreadExecutor = mock(LooperExecutor.class);
+        // Run the main thread callbacks synchronously
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(mockMainThreadExecutor).execute(any(Runnable.class));
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(mockMainThreadExecutor).post(any(Runnable.class));
         KeyguardManager mockKeyguardManager = mock(KeyguardManager.class);
         mRecentTasksList = new RecentTasksList(mockMainThreadExecutor, mockKeyguardManager,
                 mockSystemUiProxy);
@@ -102,4 +119,149 @@ public class RecentTasksListTest {
         assertEquals(taskDescription, taskList.get(0).task1.taskDescription.getLabel());
         assertNull(taskList.get(0).task2.taskDescription.getLabel());
     }
+
+    @Test
+    public void onTaskMovedToFront_reordersLoadedTasksWithoutFetching() throws Exception {
+        mockRecentTasks(1, 2, 3);
+        loadTaskIds();
+        int changeId = mRecentTasksList.getTasks(false /* loadKeysOnly */, null, task -> true);
+
+        mRecentTasksList.onTaskMovedToFront(createRunningTaskInfo(1, 4 /* lastActiveTime */));
+        mRecentTasksList.onRecentTasksChanged();
+
+        assertEquals(List.of(2, 3, 1), loadTaskIds());
+        verify(mockSystemUiProxy, times(1)).getRecentTasks(anyInt(), anyInt());
+        // The change is only notified once to the recents view
+        assertTrue(mRecentTasksList.isTaskListValid(changeId + 1));
+    }
+
+    @Test
+    public void onTaskRemoved_removesLoadedTaskWithoutFetching() throws Exception {
+        mockRecentTasks(1, 2, 3);
+        loadTaskIds();
+
+        mRecentTasksList.onTaskRemoved(2);
+        mRecentTasksList.onRecentTasksChanged();
+
+        assertEquals(List.of(1, 3), loadTaskIds());
+        verify(mockSystemUiProxy, times(1)).getRecentTasks(anyInt(), anyInt());
+    }
+
+    @Test
+    public void onRecentTasksChanged_withoutTaskChange_fetchesTasks() throws Exception {
+        mockRecentTasks(1, 2, 3);
+        loadTaskIds();
+
+        mRecentTasksList.onTaskMovedToFront(createRunningTaskInfo(1, 4 /* lastActiveTime */));
+        mRecentTasksList.onRecentTasksChanged();
+        // A change which was not applied to the loaded tasks
+        mockRecentTasks(1, 2, 3, 4);
+        mRecentTasksList.onRecentTasksChanged();
+
+        assertEquals(List.of(1, 2, 3, 4), loadTaskIds());
+        verify(mockSystemUiProxy, times(2)).getRecentTasks(anyInt(), anyInt());
+    }
+
+    @Test
+    public void onTaskMovedToFront_afterChangeNotified_fetchesTasksOnce() throws Exception {
+        mockRecentTasks(1, 2, 3);
+        loadTaskIds();
+
+        // The system notifies the change before the task moves to the front
+        mockRecentTasks(2, 3, 1);
+        mRecentTasksList.onRecentTasksChanged();
+        loadTaskIds();
+        mRecentTasksList.onTaskMovedToFront(createRunningTaskInfo(1, 4 /* lastActiveTime */));
+
+        assertEquals(List.of(2, 3, 1), loadTaskIds());
+        verify(mockSystemUiProxy, times(2)).getRecentTasks(anyInt(), anyInt());
+    }
+
+    @Test
+    public void onTaskMovedToFront_homeTask_keepsLoadedTasks() throws Exception {
+        mockRecentTasks(1, 2, 3);
+        loadTaskIds();
+
+        ActivityManager.RunningTaskInfo homeTask = createRunningTaskInfo(4, 4 /* lastActiveTime */);
+        homeTask.configuration.windowConfiguration.setActivityType(ACTIVITY_TYPE_HOME);
+        mRecentTasksList.onTaskMovedToFront(homeTask);
+
+        assertEquals(List.of(1, 2, 3), loadTaskIds());
+        verify(mockSystemUiProxy, times(1)).getRecentTasks(anyInt(), anyInt());
+    }
+
+    @Test
+    public void onTaskMovedToFront_unknownTask_fetchesTasks() throws Exception {
+        mockRecentTasks(1, 2, 3);
+        loadTaskIds();
+
+        mRecentTasksList.onTaskMovedToFront(createRunningTaskInfo(4, 4 /* lastActiveTime */));
+        mRecentTasksList.onRecentTasksChanged();
+        loadTaskIds();
+
+        verify(mockSystemUiProxy, times(2)).getRecentTasks(anyInt(), anyInt());
+    }
+
+    @Test
+    public void onTaskMovedToFront_olderThanMostRecentTask_fetchesTasks() throws Exception {
+        mockRecentTasks(1, 2, 3);
+        loadTaskIds();
+
+        // Task 3 became active after task 1 moved to the front, and was loaded first
+        mRecentTasksList.onTaskMovedToFront(createRunningTaskInfo(1, 2 /* lastActiveTime */));
+        mRecentTasksList.onRecentTasksChanged();
+        loadTaskIds();
+
+        verify(mockSystemUiProxy, times(2)).getRecentTasks(anyInt(), anyInt());
+    }
+
+    @Test
+    public void onTaskRemoved_unknownTask_fetchesTasks() throws Exception {
+        mockRecentTasks(1, 2, 3);
+        loadTaskIds();
+
+        mRecentTasksList.onTaskRemoved(4);
+        mRecentTasksList.onRecentTasksChanged();
+        loadTaskIds();
+
+        verify(mockSystemUiProxy, times(2)).getRecentTasks(anyInt(), anyInt());
+    }
+
+    /**
+     * Mocks the recent tasks with the given ids, from the least recent to the most recent, each
+     * task being last active at the time of its id
+     */
+    private void mockRecentTasks(int... taskIds) {
+        ArrayList<GroupedRecentTaskInfo> recentTasks = new ArrayList<>();
+        for (int taskId : taskIds) {
+            ActivityManager.RecentTaskInfo taskInfo = new ActivityManager.RecentTaskInfo();
+            taskInfo.taskId = taskId;
+            taskInfo.lastActiveTime = taskId;
+            recentTasks.add(GroupedRecentTaskInfo.forSingleTask(taskInfo));
+        }
+        // The system returns the most recent task first
+        Collections.reverse(recentTasks);
+        when(mockSystemUiProxy.getRecentTasks(anyInt(), anyInt()))
+                .thenAnswer(invocation -> new ArrayList<>(recentTasks));
+    }
+
+    private List<Integer> loadTaskIds() throws ExecutionException, InterruptedException {
+        List<Integer> taskIds = new ArrayList<>();
+        mRecentTasksList.getTasks(false /* loadKeysOnly */, tasks -> {
+            for (GroupTask task : tasks) {
+                taskIds.add(task.task1.key.id);
+            }
+        }, task -> true);
+        // Wait for the tasks to be loaded in the background, if needed
+        UI_HELPER_EXECUTOR.submit(() -> { }).get();
+        return taskIds;
+    }
+
+    private static ActivityManager.RunningTaskInfo createRunningTaskInfo(int taskId,
+            long lastActiveTime) {
+        ActivityManager.RunningTaskInfo taskInfo = new ActivityManager.RunningTaskInfo();
+        taskInfo.taskId = taskId;
+        taskInfo.lastActiveTime = lastActiveTime;
+        return taskInfo;
+    }
 }
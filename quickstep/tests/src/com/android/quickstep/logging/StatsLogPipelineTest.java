@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.logging.InstanceId;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.util.IntHashMap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link StatsLogPipeline}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class StatsLogPipelineTest {
+
+    private final List<Runnable> mTasks = new ArrayList<>();
+    private final StatsLogPipeline mPipeline = new StatsLogPipeline(mTasks::add);
+
+    @Test
+    public void enqueue_writesEventsInOneBatch() {
+        List<Integer> written = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int id = i;
+            mPipeline.enqueue((pipeline, dataModel) -> written.add(id));
+        }
+
+        assertEquals(1, mTasks.size());
+        assertEquals(3, mPipeline.getQueueDepth());
+        runTasks();
+        assertEquals(List.of(0, 1, 2), written);
+        assertEquals(0, mPipeline.getQueueDepth());
+    }
+
+    @Test
+    public void enqueue_dropsEventsWhenFull() {
+        List<Integer> written = new ArrayList<>();
+        for (int i = 0; i < StatsLogPipeline.MAX_QUEUED_EVENTS + 5; i++) {
+            int id = i;
+            mPipeline.enqueue((pipeline, dataModel) -> written.add(id));
+        }
+        runTasks();
+
+        assertEquals(StatsLogPipeline.MAX_QUEUED_EVENTS, written.size());
+        assertEquals(StatsLogPipeline.MAX_QUEUED_EVENTS - 1, (int) written.get(written.size() - 1));
+        assertEquals(5, mPipeline.getDroppedEventCount());
+    }
+
+    @Test
+    public void enqueue_schedulesNewBatchAfterDrain() {
+        List<Integer> written = new ArrayList<>();
+        mPipeline.enqueue((pipeline, dataModel) -> written.add(0));
+        runTasks();
+        mPipeline.enqueue((pipeline, dataModel) -> written.add(1));
+
+        assertEquals(1, mTasks.size());
+        runTasks();
+        assertEquals(List.of(0, 1), written);
+    }
+
+    @Test
+    public void enqueueSnapshot_coalescesPendingSnapshots() {
+        IntHashMap<ItemInfo> items = new IntHashMap<>();
+        List<Integer> written = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int id = i;
+            mPipeline.enqueueSnapshot(items, InstanceId.fakeInstanceId(i), () -> written.add(id));
+        }
+        runTasks();
+        mPipeline.enqueueSnapshot(items, InstanceId.fakeInstanceId(3), () -> written.add(3));
+        runTasks();
+
+        assertEquals(2, mPipeline.getCoalescedSnapshotCount());
+        // Only the snapshots written run their callback
+        assertEquals(List.of(2, 3), written);
+    }
+
+    @Test
+    public void dump_includesCounters() {
+        mPipeline.enqueue((pipeline, dataModel) -> { });
+        StringWriter writer = new StringWriter();
+        mPipeline.dump("", new PrintWriter(writer));
+
+        assertTrue(writer.toString().contains("queueDepth=1"));
+        assertTrue(writer.toString().contains("droppedEvents=0"));
+    }
+
+    private void runTasks() {
+        while (!mTasks.isEmpty()) {
+            mTasks.remove(0).run();
+        }
+    }
+}
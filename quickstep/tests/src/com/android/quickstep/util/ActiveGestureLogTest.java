@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static com.android.quickstep.util.ActiveGestureErrorDetector.GestureEvent.MOTION_DOWN;
+import static com.android.quickstep.util.ActiveGestureErrorDetector.GestureEvent.MOTION_UP;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.os.Debug;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.config.FeatureFlags;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Tests for {@link ActiveGestureLog}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ActiveGestureLogTest {
+
+    private static final int LOGGED_EVENTS = 1000;
+
+    private ActiveGestureLog mLog;
+
+    @Before
+    public void setup() {
+        mLog = new ActiveGestureLog();
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void addLog_doesNotAllocate() {
+        ActiveGestureLog.CompoundString compoundString =
+                new ActiveGestureLog.CompoundString("setInputConsumer: ").append("consumer");
+        logGestureEvents(compoundString, 0);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < LOGGED_EVENTS; i++) {
+            logGestureEvents(compoundString, i);
+        }
+        Debug.stopAllocCounting();
+
+        assertEquals(0, Debug.getThreadAllocCount());
+    }
+
+    @Test
+    public void dump_collapsesDuplicateEvents() {
+        mLog.addLog("onMotionEvent", MOTION_DOWN);
+        mLog.addLog("updateDisplacement", 1);
+        mLog.addLog("updateDisplacement", 1);
+        mLog.addLog("updateDisplacement", 1);
+        mLog.addLog("onMotionEvent", MOTION_UP);
+
+        String dump = dump();
+        assertTrue(dump.contains("updateDisplacement: 1 & 2 similar events"));
+    }
+
+    @Test
+    public void dump_analysesEachGesture() {
+        assumeTrue(FeatureFlags.ENABLE_GESTURE_ERROR_DETECTION.get());
+        mLog.addLog("onMotionEvent", MOTION_DOWN);
+        mLog.addLog("onMotionEvent", MOTION_UP);
+        int secondLogId = mLog.incrementLogId() + 1;
+        mLog.addLog("onMotionEvent", MOTION_UP);
+
+        String dump = dump();
+        assertTrue(dump.contains("Logs for logId: " + secondLogId));
+        assertTrue(dump.contains("Error messages for gesture ID: " + secondLogId + "\n"
+                + "\t\t- Motion up detected before/without motion down."));
+    }
+
+    @Test
+    public void dump_keepsEventNamesBeyondInternedNames() {
+        for (int i = 0; i < ActiveGestureLog.MAX_EVENT_NAMES + 10; i++) {
+            mLog.addLog("event " + i);
+        }
+
+        String dump = dump();
+        assertTrue(dump.contains("event 0"));
+        assertTrue(dump.contains("event " + (ActiveGestureLog.MAX_EVENT_NAMES + 9)));
+    }
+
+    @Test
+    public void dump_dropsOldestEntriesWhenFull() {
+        mLog.addLog("first event");
+        mLog.incrementLogId();
+        for (int i = 0; i < ActiveGestureLog.MAX_ENTRIES; i++) {
+            mLog.addLog("updateDisplacement", i);
+        }
+
+        String dump = dump();
+        assertFalse(dump.contains("first event"));
+        assertTrue(dump.contains("updateDisplacement: " + (ActiveGestureLog.MAX_ENTRIES - 1)));
+    }
+
+    private void logGestureEvents(ActiveGestureLog.CompoundString compoundString, int value) {
+        mLog.addLog("onMotionEvent", MOTION_DOWN);
+        mLog.addLog(compoundString);
+        mLog.addLog("updateDisplacement", value);
+        mLog.addLog("isLikelyToStartNewTask", value % 2 == 0);
+        mLog.trackEvent(MOTION_UP);
+    }
+
+    private String dump() {
+        StringWriter writer = new StringWriter();
+        mLog.dump("", new PrintWriter(writer));
+        return writer.toString();
+    }
+}
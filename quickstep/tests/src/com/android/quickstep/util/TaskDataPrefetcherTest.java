@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.content.Intent;
+import android.graphics.drawable.ColorDrawable;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.quickstep.TaskIconCache;
+import com.android.quickstep.TaskThumbnailCache;
+import com.android.systemui.shared.recents.model.Task;
+import com.android.systemui.shared.recents.model.ThumbnailData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Tests for {@link TaskDataPrefetcher}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class TaskDataPrefetcherTest {
+
+    private TaskThumbnailCache mThumbnailCache;
+    private TaskIconCache mIconCache;
+    private TaskDataPrefetcher mPrefetcher;
+    private final List<Task> mTasks = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        mThumbnailCache = mock(TaskThumbnailCache.class);
+        mIconCache = mock(TaskIconCache.class);
+        mPrefetcher = new TaskDataPrefetcher(mThumbnailCache, mIconCache);
+        for (int i = 0; i < 30; i++) {
+            mTasks.add(new Task(new Task.TaskKey(i, 0, new Intent(), null, 0, 0)));
+        }
+    }
+
+    @Test
+    public void update_withoutVelocity_loadsNothing() {
+        mPrefetcher.update(mTasks, 10, 12, 0);
+
+        verify(mThumbnailCache, never()).updateThumbnailInBackground(any(), any());
+        verify(mIconCache, never()).updateIconInBackground(any(), any());
+    }
+
+    @Test
+    public void update_loadsTasksAheadInScrollDirection() {
+        // 5 tasks per second, looks ahead 2 tasks
+        mPrefetcher.update(mTasks, 10, 12, -5);
+
+        verify(mThumbnailCache).updateThumbnailInBackground(eq(mTasks.get(9)), any());
+        verify(mThumbnailCache).updateThumbnailInBackground(eq(mTasks.get(8)), any());
+        verify(mThumbnailCache, times(2)).updateThumbnailInBackground(any(), any());
+        verify(mIconCache, times(2)).updateIconInBackground(any(), any());
+    }
+
+    @Test
+    public void update_limitsConcurrentRequests() {
+        mPrefetcher.update(mTasks, 10, 12, 100);
+        verify(mThumbnailCache, times(4)).updateThumbnailInBackground(any(), any());
+
+        // No more requests while the previous ones are pending
+        mPrefetcher.update(mTasks, 10, 12, 100);
+        verify(mThumbnailCache, times(4)).updateThumbnailInBackground(any(), any());
+    }
+
+    @Test
+    public void update_releasesDataOutOfRange() {
+        doAnswer(invocation -> {
+            Task task = invocation.getArgument(0);
+            task.thumbnail = new ThumbnailData();
+            invocation.<Consumer<ThumbnailData>>getArgument(1).accept(task.thumbnail);
+            return null;
+        }).when(mThumbnailCache).updateThumbnailInBackground(any(), any());
+        doAnswer(invocation -> {
+            Task task = invocation.getArgument(0);
+            task.icon = new ColorDrawable();
+            invocation.<Consumer<Task>>getArgument(1).accept(task);
+            return null;
+        }).when(mIconCache).updateIconInBackground(any(), any());
+
+        mPrefetcher.update(mTasks, 10, 12, 5);
+        // Scrolling back, the tasks after the visible ones are no longer needed
+        mPrefetcher.update(mTasks, 10, 12, -5);
+
+        assertNull(mTasks.get(13).thumbnail);
+        assertNull(mTasks.get(13).icon);
+        verify(mThumbnailCache).updateThumbnailInBackground(eq(mTasks.get(9)), any());
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Intent;
+import android.graphics.Bitmap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+import com.android.systemui.shared.recents.model.ThumbnailData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link ThumbnailLruCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ThumbnailLruCacheTest {
+
+    // Size in bytes of a 10x10 ARGB_8888 thumbnail
+    private static final int THUMBNAIL_BYTES = 400;
+
+    private final List<Integer> mDowngraded = new ArrayList<>();
+    private ThumbnailLruCache mCache;
+
+    @Before
+    public void setup() {
+        mCache = new ThumbnailLruCache(10, 2 * THUMBNAIL_BYTES, 3 * THUMBNAIL_BYTES,
+                key -> mDowngraded.add(key.id));
+    }
+
+    @Test
+    public void put_overHighResBudget_downgradesLeastRecentlyUsed() {
+        mCache.put(newKey(1), newThumbnail(false));
+        mCache.put(newKey(2), newThumbnail(false));
+        // Access the first thumbnail so that the second one is the least recently used
+        assertNotNull(mCache.getAndInvalidateIfModified(newKey(1)));
+        mCache.put(newKey(3), newThumbnail(false));
+
+        assertEquals(List.of(2), mDowngraded);
+        assertNull(mCache.getAndInvalidateIfModified(newKey(2)));
+        assertEquals(2 * THUMBNAIL_BYTES, mCache.getByteCount());
+    }
+
+    @Test
+    public void put_overLowResBudget_evictsWithoutDowngrade() {
+        for (int i = 1; i <= 4; i++) {
+            mCache.put(newKey(i), newThumbnail(true));
+        }
+
+        assertTrue(mDowngraded.isEmpty());
+        assertEquals(3, mCache.size());
+        assertNull(mCache.getAndInvalidateIfModified(newKey(1)));
+    }
+
+    @Test
+    public void putIfAbsent_keepsExistingEntry() {
+        ThumbnailData highRes = newThumbnail(false);
+        mCache.put(newKey(1), highRes);
+        mCache.putIfAbsent(newKey(1), newThumbnail(true));
+
+        assertEquals(highRes, mCache.getAndInvalidateIfModified(newKey(1)));
+    }
+
+    @Test
+    public void trimMemory_evictsAllHighResWithoutDowngrade() {
+        mCache.put(newKey(1), newThumbnail(false));
+        mCache.put(newKey(2), newThumbnail(true));
+        mCache.put(newKey(3), newThumbnail(true));
+        mCache.trimMemory(0.5f);
+
+        assertTrue(mDowngraded.isEmpty());
+        assertNull(mCache.getAndInvalidateIfModified(newKey(1)));
+        assertEquals(1, mCache.size());
+        assertNotNull(mCache.getAndInvalidateIfModified(newKey(3)));
+    }
+
+    @Test
+    public void updateIfAlreadyInCache_updatesByteCount() {
+        mCache.put(newKey(1), newThumbnail(true));
+        mCache.updateIfAlreadyInCache(1, newThumbnail(false));
+        mCache.updateIfAlreadyInCache(2, newThumbnail(false));
+
+        assertEquals(1, mCache.size());
+        assertEquals(THUMBNAIL_BYTES, mCache.getByteCount());
+    }
+
+    private static TaskKey newKey(int id) {
+        return new TaskKey(id, 0, new Intent(), null, 0, 0);
+    }
+
+    private static ThumbnailData newThumbnail(boolean reducedResolution) {
+        ThumbnailData data = new ThumbnailData();
+        data.thumbnail = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        data.reducedResolution = reducedResolution;
+        return data;
+    }
+}
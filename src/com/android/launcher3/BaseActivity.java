@@ -380,6 +380,7 @@ public abstract class BaseActivity extends Activity implements ActivityContext {
         writer.println(prefix + "mSystemUiController: " + mSystemUiController);
         writer.println(prefix + "mActivityFlags: " + getActivityStateString(mActivityFlags));
         writer.println(prefix + "mForceInvisible: " + mForceInvisible);
+        mViewCache.dump(prefix, writer);
     }
 
     public static <T extends BaseActivity> T fromContext(Context context) {
@@ -18,6 +18,7 @@ package com.android.launcher3;
 
 import static com.android.launcher3.LauncherPrefs.GRID_NAME;
 import static com.android.launcher3.Utilities.dpiFromPx;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_DEVICE_PROFILE_CACHE;
 import static com.android.launcher3.config.FeatureFlags.ENABLE_TWO_PANEL_HOME;
 import static com.android.launcher3.testing.shared.ResourceUtils.INVALID_RESOURCE_HANDLE;
 import static com.android.launcher3.util.DisplayController.CHANGE_DENSITY;
@@ -37,9 +38,11 @@ import android.graphics.Point;
 import android.graphics.PointF;
 import android.graphics.Rect;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.util.LruCache;
 import android.util.SparseArray;
 import android.util.Xml;
 import android.view.Display;
@@ -73,6 +76,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class InvariantDeviceProfile {
@@ -113,6 +117,11 @@ public class InvariantDeviceProfile {
     private static final String RES_GRID_NUM_COLUMNS = "grid_num_columns";
     private static final String RES_GRID_ICON_SIZE_DP = "grid_icon_size_dp";
 
+    // Parsed device_profiles.xml, by configuration. Rotating or folding the device, and the
+    // previews of the grids, only go through a few configurations.
+    private static final LruCache<List<Object>, DeviceProfilesXml> sDeviceProfilesXmlCache =
+            new LruCache<>(4);
+
     /**
      * Number of icons per row and column in the workspace.
      */
@@ -196,6 +205,11 @@ public class InvariantDeviceProfile {
 
     private final ArrayList<OnIDPChangeListener> mChangeListeners = new ArrayList<>();
 
+    // Profiles of the grids shown in the previews, by grid name and configuration, for the
+    // display info they were created with. See getGridProfile.
+    private final ArrayMap<List<Object>, InvariantDeviceProfile> mGridProfiles = new ArrayMap<>();
+    private Info mGridProfilesInfo;
+
     @VisibleForTesting
     public InvariantDeviceProfile() { }
 
@@ -229,6 +243,56 @@ public class InvariantDeviceProfile {
         }
     }
 
+    /**
+     * Returns the profile of the grid {@param gridName}, as created by
+     * {@link #InvariantDeviceProfile(Context, String)}. The profile is shared by all the callers
+     * until the display or the device profile changes, so it must not be modified.
+     */
+    public static InvariantDeviceProfile getGridProfile(Context context, String gridName) {
+        if (!ENABLE_DEVICE_PROFILE_CACHE.get()) {
+            return new InvariantDeviceProfile(context, gridName);
+        }
+        return INSTANCE.get(context).getCachedGridProfile(context, gridName);
+    }
+
+    private InvariantDeviceProfile getCachedGridProfile(Context context, String gridName) {
+        Info info = DisplayController.INSTANCE.get(context).getInfo();
+        List<Object> key = Arrays.asList(gridName, getConfigurationKey(context));
+        synchronized (mGridProfiles) {
+            if (mGridProfilesInfo != info) {
+                mGridProfiles.clear();
+                mGridProfilesInfo = info;
+            }
+            InvariantDeviceProfile profile = mGridProfiles.get(key);
+            if (profile != null) {
+                return profile;
+            }
+        }
+
+        // Create the profile without holding the lock, so that the profiles of different grids
+        // are created in parallel, and keep the first profile published for the same grid
+        InvariantDeviceProfile profile = new InvariantDeviceProfile(context, gridName);
+        synchronized (mGridProfiles) {
+            if (mGridProfilesInfo != info) {
+                // The display changed while the profile was created, don't cache it
+                return profile;
+            }
+            InvariantDeviceProfile existingProfile = mGridProfiles.get(key);
+            if (existingProfile != null) {
+                return existingProfile;
+            }
+            mGridProfiles.put(key, profile);
+            return profile;
+        }
+    }
+
+    private void clearGridProfiles() {
+        synchronized (mGridProfiles) {
+            mGridProfiles.clear();
+            mGridProfilesInfo = null;
+        }
+    }
+
     /**
      * This constructor should NOT have any monitors by design.
      */
@@ -280,6 +344,8 @@ public class InvariantDeviceProfile {
         String currentDbFile = dbFile;
         String newGridName = initGrid(context, currentGridName);
         String newDbFile = dbFile;
+        // Grids disabled on this device are no longer allowed
+        clearGridProfiles();
         if (!newDbFile.equals(currentDbFile)) {
             Log.d(TAG, "Restored grid is disabled : " + currentGridName
                     + ", migrating to: " + newGridName
@@ -474,6 +540,7 @@ public class InvariantDeviceProfile {
         // Re-init grid
         String gridName = getCurrentGridName(context);
         initGrid(context, gridName);
+        clearGridProfiles();
 
         boolean modelPropsChanged = !Arrays.equals(oldState, toModelState());
         for (OnIDPChangeListener listener : mChangeListeners) {
@@ -483,30 +550,20 @@ public class InvariantDeviceProfile {
 
     private static ArrayList<DisplayOption> getPredefinedDeviceProfiles(Context context,
             String gridName, @DeviceType int deviceType, boolean allowDisabledGrid) {
+        Predicate<GridOption> isGridAllowed =
+                gridOption -> gridOption.isEnabled(deviceType) || allowDisabledGrid;
         ArrayList<DisplayOption> profiles = new ArrayList<>();
-
-        try (XmlResourceParser parser = context.getResources().getXml(R.xml.device_profiles)) {
-            final int depth = parser.getDepth();
-            int type;
-            while (((type = parser.next()) != XmlPullParser.END_TAG ||
-                    parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
-                if ((type == XmlPullParser.START_TAG)
-                        && GridOption.TAG_NAME.equals(parser.getName())) {
-
-                    GridOption gridOption = new GridOption(context, Xml.asAttributeSet(parser));
-                    if (gridOption.isEnabled(deviceType) || allowDisabledGrid) {
-                        final int displayDepth = parser.getDepth();
-                        while (((type = parser.next()) != XmlPullParser.END_TAG
-                                || parser.getDepth() > displayDepth)
-                                && type != XmlPullParser.END_DOCUMENT) {
-                            if ((type == XmlPullParser.START_TAG) && "display-option".equals(
-                                    parser.getName())) {
-                                profiles.add(new DisplayOption(gridOption, context,
-                                        Xml.asAttributeSet(parser)));
-                            }
-                        }
+        try {
+            if (ENABLE_DEVICE_PROFILE_CACHE.get()) {
+                for (DisplayOption option : getDeviceProfilesXml(context).displayOptions) {
+                    if (isGridAllowed.test(option.grid)) {
+                        // The cached options are shared, while the returned options are modified
+                        // along with the grid
+                        profiles.add(new DisplayOption(option));
                     }
                 }
+            } else {
+                profiles.addAll(parseDeviceProfilesXml(context, isGridAllowed).displayOptions);
             }
         } catch (IOException | XmlPullParserException e) {
             throw new RuntimeException(e);
@@ -549,25 +606,78 @@ public class InvariantDeviceProfile {
      * @return all the grid options that can be shown on the device
      */
     public static List<GridOption> parseAllDefinedGridOptions(Context context) {
-        List<GridOption> result = new ArrayList<>();
+        try {
+            if (ENABLE_DEVICE_PROFILE_CACHE.get()) {
+                return new ArrayList<>(getDeviceProfilesXml(context).gridOptions);
+            }
+            return parseDeviceProfilesXml(context, gridOption -> false).gridOptions;
+        } catch (IOException | XmlPullParserException e) {
+            Log.e(TAG, "Error parsing device profile", e);
+            return Collections.emptyList();
+        }
+    }
 
+    /**
+     * Returns the parsed device_profiles.xml for the configuration of {@param context}, parsing it
+     * only if it wasn't parsed for the same configuration before.
+     */
+    private static DeviceProfilesXml getDeviceProfilesXml(Context context)
+            throws IOException, XmlPullParserException {
+        List<Object> key = getConfigurationKey(context);
+        DeviceProfilesXml result = sDeviceProfilesXmlCache.get(key);
+        if (result == null) {
+            result = parseDeviceProfilesXml(context, gridOption -> true);
+            sDeviceProfilesXmlCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Parses device_profiles.xml, including the display options of the grids matching
+     * {@param withDisplayOptions}.
+     */
+    private static DeviceProfilesXml parseDeviceProfilesXml(Context context,
+            Predicate<GridOption> withDisplayOptions) throws IOException, XmlPullParserException {
+        DeviceProfilesXml result = new DeviceProfilesXml();
         try (XmlResourceParser parser = context.getResources().getXml(R.xml.device_profiles)) {
             final int depth = parser.getDepth();
             int type;
-            while (((type = parser.next()) != XmlPullParser.END_TAG
-                    || parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
+            while (((type = parser.next()) != XmlPullParser.END_TAG ||
+                    parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
                 if ((type == XmlPullParser.START_TAG)
                         && GridOption.TAG_NAME.equals(parser.getName())) {
-                    result.add(new GridOption(context, Xml.asAttributeSet(parser)));
+
+                    GridOption gridOption = new GridOption(context, Xml.asAttributeSet(parser));
+                    result.gridOptions.add(gridOption);
+                    if (withDisplayOptions.test(gridOption)) {
+                        final int displayDepth = parser.getDepth();
+                        while (((type = parser.next()) != XmlPullParser.END_TAG
+                                || parser.getDepth() > displayDepth)
+                                && type != XmlPullParser.END_DOCUMENT) {
+                            if ((type == XmlPullParser.START_TAG) && "display-option".equals(
+                                    parser.getName())) {
+                                result.displayOptions.add(new DisplayOption(gridOption, context,
+                                        Xml.asAttributeSet(parser)));
+                            }
+                        }
+                    }
                 }
             }
-        } catch (IOException | XmlPullParserException e) {
-            Log.e(TAG, "Error parsing device profile", e);
-            return Collections.emptyList();
         }
         return result;
     }
 
+    /**
+     * Returns the properties of the configuration of {@param context} which the values of
+     * device_profiles.xml can depend on.
+     */
+    private static List<Object> getConfigurationKey(Context context) {
+        Configuration config = context.getResources().getConfiguration();
+        return Arrays.asList(config.densityDpi, config.fontScale, config.smallestScreenWidthDp,
+                config.screenWidthDp, config.screenHeightDp, config.orientation,
+                config.screenLayout, config.uiMode);
+    }
+
     private int getLauncherIconDensity(int requiredSize) {
         // Densities typically defined by an app.
         int[] densityBuckets = new int[]{
@@ -748,6 +858,14 @@ public class InvariantDeviceProfile {
         return x * aspectRatio + y;
     }
 
+    /**
+     * The grid and display options defined in device_profiles.xml
+     */
+    private static final class DeviceProfilesXml {
+        final List<GridOption> gridOptions = new ArrayList<>();
+        final List<DisplayOption> displayOptions = new ArrayList<>();
+    }
+
     public interface OnIDPChangeListener {
 
         /**
@@ -1172,6 +1290,20 @@ public class InvariantDeviceProfile {
             this(null);
         }
 
+        DisplayOption(DisplayOption p) {
+            grid = p.grid;
+            minWidthDps = p.minWidthDps;
+            minHeightDps = p.minHeightDps;
+            canBeDefault = p.canBeDefault;
+            for (int i = 0; i < COUNT_SIZES; i++) {
+                borderSpaces[i] = new PointF();
+                minCellSize[i] = new PointF();
+                allAppsCellSize[i] = new PointF();
+                allAppsBorderSpaces[i] = new PointF();
+            }
+            add(p);
+        }
+
         DisplayOption(GridOption grid) {
             this.grid = grid;
             minWidthDps = 0;
@@ -158,6 +158,7 @@ import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.logging.InstanceId;
 import com.android.launcher3.logging.InstanceIdSequence;
 import com.android.launcher3.logging.StatsLogManager;
+import com.android.launcher3.logging.TransitionFrameTracker;
 import com.android.launcher3.model.BgDataModel.Callbacks;
 import com.android.launcher3.model.ItemInstallQueue;
 import com.android.launcher3.model.ModelUtils;
@@ -348,6 +349,9 @@ public class Launcher extends StatefulActivity<LauncherState>
 
     @Thunk
     boolean mWorkspaceLoading = true;
+    // Whether the workspace items are bound from a model snapshot, which are replaced once the
+    // model is loaded from the DB
+    private boolean mIsModelSnapshotBound;
 
     // Used to notify when an activity launch has been deferred because launcher is not yet resumed
     // TODO: See if we can remove this later
@@ -774,7 +778,7 @@ public class Launcher extends StatefulActivity<LauncherState>
     public boolean isDraggingEnabled() {
         // We prevent dragging when we are loading the workspace as it is possible to pick up a view
         // that is subsequently removed from the workspace in startBinding().
-        return !isWorkspaceLoading();
+        return !isWorkspaceLoading() && !mIsModelSnapshotBound;
     }
 
     @NonNull
@@ -1856,7 +1860,20 @@ public class Launcher extends StatefulActivity<LauncherState>
     }
 
     public boolean isWorkspaceLocked() {
-        return mWorkspaceLoading || mPendingRequestArgs != null;
+        return mWorkspaceLoading || mIsModelSnapshotBound || mPendingRequestArgs != null;
+    }
+
+    /**
+     * Returns true while the workspace items are bound from a model snapshot, in which case they
+     * should not be changed
+     */
+    public boolean isModelSnapshotBound() {
+        return mIsModelSnapshotBound;
+    }
+
+    @Override
+    public void setModelSnapshotBound(boolean isSnapshotBound) {
+        mIsModelSnapshotBound = isSnapshotBound;
     }
 
     public boolean isWorkspaceLoading() {
@@ -2327,6 +2344,8 @@ public class Launcher extends StatefulActivity<LauncherState>
         AbstractFloatingView.closeOpenViews(this, true, TYPE_ALL & ~TYPE_REBIND_SAFE);
 
         setWorkspaceLoading(true);
+        // The items bound from a model snapshot are replaced by this bind
+        mIsModelSnapshotBound = false;
 
         // Clear the workspace because it's going to be rebound
         mDragController.cancelDrag();
@@ -2454,6 +2473,11 @@ public class Launcher extends StatefulActivity<LauncherState>
                 continue;
             }
 
+            // Keep the items of the pages far from the visible pages as models until needed
+            if (!forceAnimateIcons && mWorkspace.getLazyPages().deferIfFar(item)) {
+                continue;
+            }
+
             final View view;
             switch (item.itemType) {
                 case LauncherSettings.Favorites.ITEM_TYPE_APPLICATION:
@@ -2763,6 +2787,7 @@ public class Launcher extends StatefulActivity<LauncherState>
     public void onInitialBindComplete(IntSet boundPages, RunnableList pendingTasks) {
         mSynchronouslyBoundPages = boundPages;
         mPagesToBindSynchronously = new IntSet();
+        mWorkspace.getLazyPages().onInitialBindComplete(boundPages);
 
         clearPendingBinds();
         ViewOnDrawExecutor executor = new ViewOnDrawExecutor(pendingTasks);
@@ -2814,6 +2839,7 @@ public class Launcher extends StatefulActivity<LauncherState>
         // override the previous page so we don't log the page switch.
         mWorkspace.setCurrentPage(currentPage, currentPage /* overridePrevPage */);
         mPagesToBindSynchronously = new IntSet();
+        mWorkspace.getLazyPages().onFinishBindingItems();
 
         // Cache one page worth of icons
         getViewCache().setCacheSize(R.layout.folder_application,
@@ -3095,6 +3121,7 @@ public class Launcher extends StatefulActivity<LauncherState>
         writer.println(prefix + "Misc:");
         dumpMisc(prefix + "\t", writer);
         writer.println(prefix + "\tmWorkspaceLoading=" + mWorkspaceLoading);
+        writer.println(prefix + "\tmIsModelSnapshotBound=" + mIsModelSnapshotBound);
         writer.println(prefix + "\tmPendingRequestArgs=" + mPendingRequestArgs
                 + " mPendingActivityResult=" + mPendingActivityResult);
         writer.println(prefix + "\tmRotationHelper: " + mRotationHelper);
@@ -3104,6 +3131,8 @@ public class Launcher extends StatefulActivity<LauncherState>
         // Extra logging for general debugging
         mDragLayer.dump(prefix, writer);
         mStateManager.dump(prefix, writer);
+        TransitionFrameTracker.INSTANCE.get(this).dump(prefix, writer);
+        getStatsLogManager().dump(prefix, writer);
         mPopupDataProvider.dump(prefix, writer);
         mDeviceProfile.dump(this, prefix, writer);
 
@@ -30,6 +30,10 @@ public class LauncherFiles {
 
     public static final String WIDGET_PREVIEWS_DB = "widgetpreviews.db";
     public static final String APP_ICONS_DB = "app_icons.db";
+    // Stored in the cache directory, as it can always be rebuilt from APP_ICONS_DB
+    public static final String APP_ICONS_BLOB_STORE = "app_icons.blob";
+    // Stored in the cache directory, as it can always be rebuilt from LAUNCHER_DB
+    public static final String MODEL_SNAPSHOT = "model_snapshot.bin";
 
     public static final List<String> GRID_DB_FILES = Collections.unmodifiableList(Arrays.asList(
             LAUNCHER_DB,
@@ -685,6 +685,8 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
         }
         mModelDelegate.dump(prefix, fd, writer, args);
         mBgDataModel.dump(prefix, fd, writer, args);
+        mApp.getIconCache().dump(prefix, writer);
+        ModelWriter.dumpStats(prefix, writer);
     }
 
     /**
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_LAZY_WORKSPACE_PAGES;
+
+import android.os.SystemClock;
+import android.util.SparseLongArray;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+
+import com.android.launcher3.celllayout.CellPosMapper.CellPos;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.CellAndSpan;
+import com.android.launcher3.util.IntArray;
+import com.android.launcher3.util.IntSet;
+import com.android.launcher3.util.IntSparseArrayMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the items of the workspace pages far from the visible pages as models only, and inflates
+ * their views when the pages get close to the visible pages.
+ *
+ * The pages themselves are always bound, and the cells of the items without a view are marked as
+ * occupied in their {@link CellLayout}, so that finding space on the workspace, including for
+ * drag and drop, doesn't depend on which pages are inflated. The marked cells are kept with each
+ * item, as the model can move the item before it is inflated. The items are kept as the
+ * {@link ItemInfo}s bound by the model, so the updates of the model apply to them when they are
+ * inflated. A drop always happens on a visible page, which is inflated as soon as the drag scrolls
+ * close to it.
+ *
+ * Icons of pages which stay far from the visible pages are released back to models after a
+ * while. Widgets and folders are kept, as their views hold more state than their models.
+ */
+@UiThread
+public class LazyWorkspacePages {
+
+    // Number of pages, or pairs of pages with two panels, inflated on each side of the visible
+    // pages
+    private static final int INFLATED_PAGES_DISTANCE = 1;
+
+    private final Launcher mLauncher;
+    private final Workspace<?> mWorkspace;
+    private final long mReleaseDelayMs;
+
+    private final IntSparseArrayMap<ArrayList<DeferredItem>> mDeferredItems =
+            new IntSparseArrayMap<>();
+    // Time since when the inflated pages are far from the visible pages, by screen id
+    private final SparseLongArray mFarSince = new SparseLongArray();
+    private final Runnable mReleaseRunnable = this::releaseFarPages;
+
+    // Pages bound first while the other pages are bound, as the workspace doesn't have its
+    // current page yet
+    @Nullable
+    private IntSet mBoundFirstPages;
+    private boolean mInflating;
+
+    LazyWorkspacePages(Launcher launcher, Workspace<?> workspace) {
+        mLauncher = launcher;
+        mWorkspace = workspace;
+        mReleaseDelayMs = launcher.getResources().getInteger(
+                R.integer.config_workspacePageReleaseDelayMs);
+    }
+
+    /**
+     * Called when the pages shown first are bound, before the items of the other pages are bound
+     */
+    public void onInitialBindComplete(IntSet boundPages) {
+        mBoundFirstPages = ENABLE_LAZY_WORKSPACE_PAGES.get() ? boundPages : null;
+    }
+
+    /**
+     * Called when all the pages are bound and the workspace has its current page
+     */
+    public void onFinishBindingItems() {
+        mBoundFirstPages = null;
+        onPagesChanged();
+    }
+
+    /**
+     * Returns true if the item is kept as a model instead of being inflated, which is the case
+     * for the items of pages far from the visible pages, while the initial bind is in progress.
+     */
+    public boolean deferIfFar(ItemInfo item) {
+        if (mBoundFirstPages == null || mInflating || item.container != CONTAINER_DESKTOP) {
+            return false;
+        }
+        int screenId = mLauncher.getCellPosMapper().mapModelToPresenter(item).screenId;
+        CellLayout layout = mWorkspace.getScreenWithId(screenId);
+        if (layout == null || isNearVisiblePages(mWorkspace.indexOfChild(layout))) {
+            return false;
+        }
+        defer(screenId, layout, item);
+        return true;
+    }
+
+    private void defer(int screenId, CellLayout layout, ItemInfo item) {
+        ArrayList<DeferredItem> items = mDeferredItems.get(screenId);
+        if (items == null) {
+            items = new ArrayList<>();
+            mDeferredItems.put(screenId, items);
+        }
+        CellPos pos = mLauncher.getCellPosMapper().mapModelToPresenter(item);
+        DeferredItem deferredItem = new DeferredItem(item,
+                new CellAndSpan(pos.cellX, pos.cellY, item.spanX, item.spanY));
+        items.add(deferredItem);
+        layout.markCells(deferredItem.markedCells, true);
+    }
+
+    /**
+     * Returns true if the page has items which aren't inflated
+     */
+    public boolean hasDeferredItems(int screenId) {
+        ArrayList<DeferredItem> items = mDeferredItems.get(screenId);
+        return items != null && !items.isEmpty();
+    }
+
+    /**
+     * Called when the visible pages change, or are about to change, to inflate the pages which
+     * are now close to them and schedule the release of the pages far from them.
+     */
+    public void onPagesChanged() {
+        if (mBoundFirstPages != null) {
+            return;
+        }
+        if (!ENABLE_LAZY_WORKSPACE_PAGES.get()) {
+            inflateAll();
+            return;
+        }
+        IntArray nearScreens = new IntArray();
+        long now = SystemClock.uptimeMillis();
+        for (int i = mWorkspace.getPageCount() - 1; i >= 0; i--) {
+            int screenId = mWorkspace.getScreenIdForPageIndex(i);
+            if (isNearVisiblePages(i)) {
+                nearScreens.add(screenId);
+                mFarSince.delete(screenId);
+            } else if (mFarSince.indexOfKey(screenId) < 0) {
+                mFarSince.put(screenId, now);
+            }
+        }
+        inflate(nearScreens);
+
+        mWorkspace.removeCallbacks(mReleaseRunnable);
+        if (mFarSince.size() > 0) {
+            mWorkspace.postDelayed(mReleaseRunnable, mReleaseDelayMs);
+        }
+    }
+
+    /**
+     * Inflates the items of all the pages
+     */
+    public void inflateAll() {
+        IntArray screenIds = new IntArray();
+        for (int i = 0; i < mDeferredItems.size(); i++) {
+            screenIds.add(mDeferredItems.keyAt(i));
+        }
+        inflate(screenIds);
+    }
+
+    private void inflate(IntArray screenIds) {
+        List<ItemInfo> items = new ArrayList<>();
+        for (int i = 0; i < screenIds.size(); i++) {
+            int screenId = screenIds.get(i);
+            ArrayList<DeferredItem> deferredItems = mDeferredItems.get(screenId);
+            if (deferredItems == null) {
+                continue;
+            }
+            mDeferredItems.remove(screenId);
+            CellLayout layout = mWorkspace.getScreenWithId(screenId);
+            if (layout == null) {
+                continue;
+            }
+            // The cells are marked again, at the current position of the items, when the views
+            // are added
+            for (DeferredItem deferredItem : deferredItems) {
+                layout.markCells(deferredItem.markedCells, false);
+                items.add(deferredItem.item);
+            }
+        }
+        if (items.isEmpty()) {
+            return;
+        }
+        mInflating = true;
+        try {
+            mLauncher.bindItems(items, false);
+        } finally {
+            mInflating = false;
+        }
+    }
+
+    private boolean isNearVisiblePages(int pageIndex) {
+        int currentPage;
+        if (mBoundFirstPages != null && !mBoundFirstPages.isEmpty()) {
+            currentPage = mWorkspace.getPageIndexForScreenId(mBoundFirstPages.getArray().get(0));
+        } else {
+            currentPage = mWorkspace.getNextPage();
+        }
+        int panelCount = mWorkspace.getPanelCount();
+        return Math.abs(pageIndex / panelCount - currentPage / panelCount)
+                <= INFLATED_PAGES_DISTANCE;
+    }
+
+    private void releaseFarPages() {
+        if (mLauncher.isWorkspaceLoading() || mLauncher.getDragController().isDragging()
+                || mWorkspace.isPageInTransition()) {
+            mWorkspace.postDelayed(mReleaseRunnable, mReleaseDelayMs);
+            return;
+        }
+        long releaseTime = SystemClock.uptimeMillis() - mReleaseDelayMs;
+        boolean hasPendingPages = false;
+        for (int i = mFarSince.size() - 1; i >= 0; i--) {
+            if (mFarSince.valueAt(i) > releaseTime) {
+                hasPendingPages = true;
+                continue;
+            }
+            int screenId = mFarSince.keyAt(i);
+            mFarSince.removeAt(i);
+            CellLayout layout = mWorkspace.getScreenWithId(screenId);
+            if (layout != null) {
+                releaseIcons(screenId, layout);
+            }
+        }
+        if (hasPendingPages) {
+            mWorkspace.postDelayed(mReleaseRunnable, mReleaseDelayMs);
+        }
+    }
+
+    private void releaseIcons(int screenId, CellLayout layout) {
+        ShortcutAndWidgetContainer container = layout.getShortcutsAndWidgets();
+        for (int i = container.getChildCount() - 1; i >= 0; i--) {
+            View child = container.getChildAt(i);
+            if (child instanceof BubbleTextView && child.getTag() instanceof WorkspaceItemInfo) {
+                ItemInfo item = (ItemInfo) child.getTag();
+                layout.removeViewInLayout(child);
+                defer(screenId, layout, item);
+            }
+        }
+    }
+
+    /**
+     * Inflates the pages with folders which aren't inflated and contain items matching the
+     * {@param matcher}, so that the items are removed through the folder views, which replace the
+     * folders left with a single item.
+     */
+    public void inflateFoldersWithItems(Predicate<ItemInfo> matcher) {
+        IntArray screenIds = new IntArray();
+        for (int i = 0; i < mDeferredItems.size(); i++) {
+            for (DeferredItem deferredItem : mDeferredItems.valueAt(i)) {
+                if (deferredItem.item instanceof FolderInfo && ((FolderInfo) deferredItem.item)
+                        .contents.stream().anyMatch(matcher)) {
+                    screenIds.add(mDeferredItems.keyAt(i));
+                    break;
+                }
+            }
+        }
+        inflate(screenIds);
+    }
+
+    /**
+     * Removes the items which aren't inflated that match the {@param matcher}. Folders with
+     * matching items should have been inflated first by {@link #inflateFoldersWithItems}.
+     */
+    public void removeItems(Predicate<ItemInfo> matcher) {
+        for (int i = 0; i < mDeferredItems.size(); i++) {
+            CellLayout layout = mWorkspace.getScreenWithId(mDeferredItems.keyAt(i));
+            ArrayList<DeferredItem> items = mDeferredItems.valueAt(i);
+            for (int j = items.size() - 1; j >= 0; j--) {
+                DeferredItem deferredItem = items.get(j);
+                if (matcher.test(deferredItem.item)) {
+                    items.remove(j);
+                    if (layout != null) {
+                        layout.markCells(deferredItem.markedCells, false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops all the items which aren't inflated, when the pages are removed
+     */
+    public void clear() {
+        mDeferredItems.clear();
+        mFarSince.clear();
+        mBoundFirstPages = null;
+        mWorkspace.removeCallbacks(mReleaseRunnable);
+    }
+
+    /**
+     * An item without a view, with the cells marked as occupied for it
+     */
+    private static class DeferredItem {
+        final ItemInfo item;
+        final CellAndSpan markedCells;
+
+        DeferredItem(ItemInfo item, CellAndSpan markedCells) {
+            this.item = item;
+            this.markedCells = markedCells;
+        }
+    }
+}
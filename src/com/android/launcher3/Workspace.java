@@ -284,6 +284,7 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
 
     // Handles workspace state transitions
     private final WorkspaceStateTransitionAnimation mStateTransitionAnimation;
+    private final LazyWorkspacePages mLazyPages;
 
     private final StatsLogManager mStatsLogManager;
 
@@ -309,6 +310,7 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
 
         mLauncher = Launcher.getLauncher(context);
         mStateTransitionAnimation = new WorkspaceStateTransitionAnimation(mLauncher, this);
+        mLazyPages = new LazyWorkspacePages(mLauncher, this);
         mWallpaperManager = WallpaperManager.getInstance(context);
         mAllAppsIconSize = mLauncher.getDeviceProfile().allAppsIconSizePx;
         mWallpaperOffset = new WallpaperOffsetInterpolator(this);
@@ -628,6 +630,7 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
 
         // Remove the pages and clear the screen models
         removeFolderListeners();
+        mLazyPages.clear();
         removeAllViews();
         mScreenOrder.clear();
         mWorkspaceScreens.clear();
@@ -1007,7 +1010,8 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
             CellLayout cl = mWorkspaceScreens.valueAt(i);
             // FIRST_SCREEN_ID can never be removed.
             if ((!FeatureFlags.QSB_ON_FIRST_SCREEN || id > FIRST_SCREEN_ID)
-                    && cl.getShortcutsAndWidgets().getChildCount() == 0) {
+                    && cl.getShortcutsAndWidgets().getChildCount() == 0
+                    && !mLazyPages.hasDeferredItems(id)) {
                 removeScreens.add(id);
             }
         }
@@ -1160,6 +1164,7 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
     protected void onPageBeginTransition() {
         super.onPageBeginTransition();
         updateChildrenLayersEnabled();
+        mLazyPages.onPagesChanged();
     }
 
     protected void onPageEndTransition() {
@@ -1288,6 +1293,7 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
     @Override
     protected void notifyPageSwitchListener(int prevPage) {
         super.notifyPageSwitchListener(prevPage);
+        mLazyPages.onPagesChanged();
         if (prevPage != mCurrentPage) {
             StatsLogManager.EventEnum event = (prevPage < mCurrentPage)
                     ? LAUNCHER_SWIPERIGHT : LAUNCHER_SWIPELEFT;
@@ -1536,6 +1542,10 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
         return mStateTransitionAnimation;
     }
 
+    public LazyWorkspacePages getLazyPages() {
+        return mLazyPages;
+    }
+
     public void updateAccessibilityFlags() {
         // TODO: Update the accessibility flags appropriately when dragging.
         int accessibilityFlag =
@@ -2448,9 +2458,16 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
             mReorderAlarm.cancelAlarm();
             mLastReorderX = reorderX;
             mLastReorderY = reorderY;
-            mDragTargetLayout.performReorder((int) mDragViewVisualCenter[0],
-                    (int) mDragViewVisualCenter[1], minSpanX, minSpanY, item.spanX, item.spanY,
-                    child, mTargetCell, new int[2], CellLayout.MODE_SHOW_REORDER_HINT);
+            if (FeatureFlags.ENABLE_ASYNC_REORDER.get()) {
+                mDragTargetLayout.performReorderHintAsync((int) mDragViewVisualCenter[0],
+                        (int) mDragViewVisualCenter[1], minSpanX, minSpanY, item.spanX,
+                        item.spanY, child);
+            } else {
+                mDragTargetLayout.performReorder((int) mDragViewVisualCenter[0],
+                        (int) mDragViewVisualCenter[1], minSpanX, minSpanY, item.spanX,
+                        item.spanY, child, mTargetCell, new int[2],
+                        CellLayout.MODE_SHOW_REORDER_HINT);
+            }
             // Otherwise, if we aren't adding to or creating a folder and there's no pending
             // reorder, then we schedule a reorder
             ReorderAlarmListener listener = new ReorderAlarmListener(mDragViewVisualCenter,
@@ -3253,6 +3270,7 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
      * shortcuts are not removed.
      */
     public void removeItemsByMatcher(final Predicate<ItemInfo> matcher) {
+        mLazyPages.inflateFoldersWithItems(matcher);
         for (CellLayout layout : getWorkspaceAndHotseatCellLayouts()) {
             ShortcutAndWidgetContainer container = layout.getShortcutsAndWidgets();
             // Iterate in reverse order as we are removing items
@@ -3279,6 +3297,7 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
                 }
             }
         }
+        mLazyPages.removeItems(matcher);
 
         // Strip all the empty screens
         stripEmptyScreens();
@@ -148,6 +148,10 @@ public class LauncherAccessibilityDelegate extends BaseAccessibilityDelegate<Lau
     @Override
     protected boolean performAction(final View host, final ItemInfo item, int action,
             boolean fromKeyboard) {
+        if (mContext.isModelSnapshotBound()) {
+            // The items are replaced once the model is loaded, changes to them would be lost
+            return false;
+        }
         if (action == ACTION_LONG_CLICK) {
             PreDragCondition dragCondition = null;
             // Long press should be consumed for workspace items, and it should invoke the
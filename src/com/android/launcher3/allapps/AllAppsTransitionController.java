@@ -23,6 +23,8 @@ import static com.android.launcher3.LauncherState.NORMAL;
 import static com.android.launcher3.anim.Interpolators.DEACCEL_1_7;
 import static com.android.launcher3.anim.Interpolators.LINEAR;
 import static com.android.launcher3.anim.PropertySetter.NO_ANIM_PROPERTY_SETTER;
+import static com.android.launcher3.logging.TransitionFrameTracker.TRANSITION_ALL_APPS_CLOSE;
+import static com.android.launcher3.logging.TransitionFrameTracker.TRANSITION_ALL_APPS_OPEN;
 import static com.android.launcher3.states.StateAnimationConfig.ANIM_ALL_APPS_FADE;
 import static com.android.launcher3.states.StateAnimationConfig.ANIM_VERTICAL_PROGRESS;
 import static com.android.launcher3.util.SystemUiController.FLAG_DARK_NAV;
@@ -55,6 +57,7 @@ import com.android.launcher3.anim.Interpolators;
 import com.android.launcher3.anim.PendingAnimation;
 import com.android.launcher3.anim.PropertySetter;
 import com.android.launcher3.config.FeatureFlags;
+import com.android.launcher3.logging.TransitionFrameTracker;
 import com.android.launcher3.statemanager.StateManager.StateHandler;
 import com.android.launcher3.states.StateAnimationConfig;
 import com.android.launcher3.touch.AllAppsSwipeController;
@@ -382,6 +385,8 @@ public class AllAppsTransitionController
         Animator anim = createSpringAnimation(mProgress, targetProgress);
         anim.setInterpolator(verticalProgressInterpolator);
         anim.addListener(getProgressAnimatorListener());
+        TransitionFrameTracker.INSTANCE.get(mLauncher).trackAnimator(anim,
+                ALL_APPS.equals(toState) ? TRANSITION_ALL_APPS_OPEN : TRANSITION_ALL_APPS_CLOSE);
         builder.add(anim);
 
         setAlphas(toState, config, builder);
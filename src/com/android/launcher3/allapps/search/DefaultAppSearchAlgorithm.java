@@ -30,12 +30,14 @@ import com.android.launcher3.model.AllAppsList;
 import com.android.launcher3.model.BaseModelUpdateTask;
 import com.android.launcher3.model.BgDataModel;
 import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.AppSearchSession;
 import com.android.launcher3.search.SearchAlgorithm;
 import com.android.launcher3.search.SearchCallback;
 import com.android.launcher3.search.StringMatcherUtility;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The default search implementation.
@@ -48,6 +50,11 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
     private final Handler mResultHandler;
     private final boolean mAddNoResultsMessage;
 
+    // Only accessed on the model thread
+    private final AppSearchSession mSession = new AppSearchSession();
+    // Incremented for every new request, so that superseded requests can stop early
+    private final AtomicInteger mRequestId = new AtomicInteger();
+
     public DefaultAppSearchAlgorithm(Context context) {
         this(context, false);
     }
@@ -61,25 +68,46 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
     @Override
     public void cancel(boolean interruptActiveRequests) {
         if (interruptActiveRequests) {
+            mRequestId.incrementAndGet();
             mResultHandler.removeCallbacksAndMessages(null);
         }
     }
 
     @Override
     public void doSearch(String query, SearchCallback<AdapterItem> callback) {
+        final int requestId = mRequestId.incrementAndGet();
         mAppState.getModel().enqueueModelUpdateTask(new BaseModelUpdateTask() {
             @Override
             public void execute(@NonNull final LauncherAppState app,
                     @NonNull final BgDataModel dataModel, @NonNull final AllAppsList apps) {
-                ArrayList<AdapterItem> result = getTitleMatchResult(apps.data, query);
+                if (isSuperseded(requestId)) {
+                    return;
+                }
+                List<AppInfo> matches = mSession.search(apps.data, apps.titleIndex, query,
+                        MAX_RESULTS_COUNT, () -> isSuperseded(requestId));
+                if (matches == null) {
+                    return;
+                }
+                ArrayList<AdapterItem> result = new ArrayList<>(matches.size());
+                for (AppInfo info : matches) {
+                    result.add(AdapterItem.asApp(info));
+                }
                 if (mAddNoResultsMessage && result.isEmpty()) {
                     result.add(getEmptyMessageAdapterItem(query));
                 }
-                mResultHandler.post(() -> callback.onSearchResult(query, result));
+                mResultHandler.post(() -> {
+                    if (!isSuperseded(requestId)) {
+                        callback.onSearchResult(query, result);
+                    }
+                });
             }
         });
     }
 
+    private boolean isSuperseded(int requestId) {
+        return requestId != mRequestId.get();
+    }
+
     private static AdapterItem getEmptyMessageAdapterItem(String query) {
         AdapterItem item = new AdapterItem(VIEW_TYPE_EMPTY_SEARCH);
         // Add a place holder info to propagate the query
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.celllayout;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.createAndStartNewLooper;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.UiThread;
+
+import com.android.launcher3.CellLayout.ItemConfiguration;
+import com.android.launcher3.util.LooperExecutor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Solves {@link ReorderSolver.Request}s on a background thread, so that searching for a reorder
+ * solution doesn't block the drag on the UI thread.
+ *
+ * Only the latest request is solved: starting a new request cancels the previous one, and the
+ * result of a cancelled request is never delivered.
+ */
+public class AsyncReorderSolver {
+
+    // Time after the start of the search after which no smaller span of the dragged item is
+    // attempted
+    private static final long FRAME_DEADLINE_MS = 16;
+
+    private static final LooperExecutor SOLVER_EXECUTOR = new LooperExecutor(
+            createAndStartNewLooper("ReorderSolver", Process.THREAD_PRIORITY_FOREGROUND));
+
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    /**
+     * Solves the request in the background and calls the callback on the UI thread with the
+     * solution, unless the request is cancelled before.
+     */
+    @UiThread
+    public void solve(ReorderSolver.Request request, Consumer<ItemConfiguration> callback) {
+        int generation = mGeneration.incrementAndGet();
+        SOLVER_EXECUTOR.execute(() -> {
+            // The time spent waiting for the solver thread doesn't count towards the deadline
+            long deadline = SystemClock.uptimeMillis() + FRAME_DEADLINE_MS;
+            ItemConfiguration solution = new ReorderSolver(request).findReorderSolution(
+                    request, deadline, () -> generation != mGeneration.get());
+            if (solution == null) {
+                return;
+            }
+            MAIN_EXECUTOR.execute(() -> {
+                if (generation == mGeneration.get()) {
+                    callback.accept(solution);
+                }
+            });
+        });
+    }
+
+    /**
+     * Cancels the pending request, if any
+     */
+    @UiThread
+    public void cancel() {
+        mGeneration.incrementAndGet();
+    }
+}
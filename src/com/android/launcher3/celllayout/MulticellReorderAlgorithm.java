@@ -71,6 +71,18 @@ public class MulticellReorderAlgorithm extends ReorderAlgorithm {
                 () -> super.dropInPlaceSolution(pixelX, pixelY, spanX, spanY, dragView)));
     }
 
+    @Override
+    ReorderSolver.Request createSolverRequest(int pixelX, int pixelY, int minSpanX, int minSpanY,
+            int spanX, int spanY, int[] direction, View dragView) {
+        return simulateSeam(() -> super.createSolverRequest(pixelX, pixelY, minSpanX, minSpanY,
+                spanX, spanY, direction, dragView));
+    }
+
+    @Override
+    CellLayout.ItemConfiguration onBackgroundSolution(CellLayout.ItemConfiguration solution) {
+        return removeSeamFromSolution(solution);
+    }
+
     void addSeam() {
         MultipageCellLayout mcl = (MultipageCellLayout) mCellLayout;
         mcl.setSeamWasAdded(true);
@@ -116,9 +128,9 @@ public class MulticellReorderAlgorithm extends ReorderAlgorithm {
             for (int y = 0; y < mCellLayout.getCountY(); y++) {
                 int offset = x >= mCellLayout.getCountX() / 2 ? 1 : 0;
                 if (x == mCellLayout.getCountX() / 2) {
-                    grid.cells[x][y] = true;
+                    grid.markCells(x, y, 1, 1, true);
                 } else {
-                    grid.cells[x][y] = gridOccupancy.cells[x - offset][y];
+                    grid.markCells(x, y, 1, 1, gridOccupancy.isOccupied(x - offset, y));
                 }
             }
         }
@@ -15,10 +15,13 @@
  */
 package com.android.launcher3.celllayout;
 
+import android.util.ArraySet;
 import android.view.View;
 
 import com.android.launcher3.CellLayout;
 
+import java.util.function.Consumer;
+
 /**
  * Contains the logic of a reorder.
  *
@@ -190,6 +193,80 @@ public class ReorderAlgorithm {
         CellLayout.ItemConfiguration closestSpaceSolution = closestEmptySpaceReorder(
                 pixelX, pixelY, minSpanX, minSpanY, spanX, spanY);
 
+        return chooseSolution(swapSolution, closestSpaceSolution, dropInPlaceSolution);
+    }
+
+    /**
+     * Same as {@link #calculateReorder}, but the search for a solution pushing the items in the
+     * way runs in the background on the given solver. The callback is called on the UI thread
+     * with the solution, unless the solver is cancelled or used for another request before.
+     */
+    public void calculateReorderAsync(int pixelX, int pixelY, int minSpanX, int minSpanY,
+            int spanX, int spanY, View dragView, AsyncReorderSolver solver,
+            Consumer<CellLayout.ItemConfiguration> callback) {
+        mCellLayout.getDirectionVectorForDrop(pixelX, pixelY, spanX, spanY, dragView,
+                mCellLayout.mDirectionVector);
+
+        CellLayout.ItemConfiguration dropInPlaceSolution = dropInPlaceSolution(pixelX, pixelY,
+                spanX, spanY, dragView);
+        CellLayout.ItemConfiguration closestSpaceSolution = closestEmptySpaceReorder(
+                pixelX, pixelY, minSpanX, minSpanY, spanX, spanY);
+        ReorderSolver.Request request = createSolverRequest(pixelX, pixelY, minSpanX, minSpanY,
+                spanX, spanY, mCellLayout.mDirectionVector, dragView);
+
+        solver.solve(request, swapSolution -> {
+            swapSolution = onBackgroundSolution(swapSolution);
+            CellLayout.ItemConfiguration solution =
+                    chooseSolution(swapSolution, closestSpaceSolution, dropInPlaceSolution);
+            // The other solutions may only be chosen because the swap solution is truncated
+            if (solution != null && swapSolution.isTruncated) {
+                solution.isTruncated = true;
+            }
+            callback.accept(solution);
+        });
+    }
+
+    /**
+     * Returns a snapshot of the layout for solving the reorder with a {@link ReorderSolver}.
+     */
+    ReorderSolver.Request createSolverRequest(int pixelX, int pixelY, int minSpanX,
+            int minSpanY, int spanX, int spanY, int[] direction, View dragView) {
+        CellLayout.ItemConfiguration items = new CellLayout.ItemConfiguration();
+        mCellLayout.copyCurrentStateToSolution(items, false);
+        ArraySet<View> fixedViews = new ArraySet<>();
+        for (View v : items.sortedViews) {
+            if (!((CellLayoutLayoutParams) v.getLayoutParams()).canReorder) {
+                fixedViews.add(v);
+            }
+        }
+
+        // The nearest cells depend on the geometry of the layout, so they are computed here for
+        // all the spans that the solver may attempt.
+        int[][] targetCells = new int[(spanX - minSpanX + 1) * (spanY - minSpanY + 1)][];
+        for (int x = minSpanX; x <= spanX; x++) {
+            for (int y = minSpanY; y <= spanY; y++) {
+                targetCells[ReorderSolver.Request.getTargetCellIndex(minSpanX, minSpanY, spanY,
+                        x, y)] = mCellLayout.findNearestAreaIgnoreOccupied(pixelX, pixelY, x, y,
+                        new int[2]);
+            }
+        }
+        return new ReorderSolver.Request(mCellLayout.getCountX(), mCellLayout.getCountY(),
+                mCellLayout.getOccupied(), items, fixedViews, minSpanX, minSpanY, spanX, spanY,
+                direction, dragView, targetCells);
+    }
+
+    /**
+     * Called on the UI thread with the solution found by the background solver for the request
+     * created by {@link #createSolverRequest}.
+     */
+    CellLayout.ItemConfiguration onBackgroundSolution(CellLayout.ItemConfiguration solution) {
+        return solution;
+    }
+
+    private static CellLayout.ItemConfiguration chooseSolution(
+            CellLayout.ItemConfiguration swapSolution,
+            CellLayout.ItemConfiguration closestSpaceSolution,
+            CellLayout.ItemConfiguration dropInPlaceSolution) {
         // If the reorder solution requires resizing (shrinking) the item being dropped, we instead
         // favor a solution in which the item is not resized, but
         if (swapSolution.isSolution && swapSolution.area() >= closestSpaceSolution.area()) {
@@ -396,6 +396,97 @@ public final class FeatureFlags {
             "ENABLE_KEYBOARD_QUICK_SWITCH", false,
             "Enables keyboard quick switching");
 
+    public static final BooleanFlag ENABLE_ICON_BLOB_STORE = getDebugFlag(270397311,
+            "ENABLE_ICON_BLOB_STORE", false,
+            "Keep decoded app icons in a memory-mapped file to avoid decoding them from the icon "
+                    + "DB during bulk loading");
+
+    public static final BooleanFlag ENABLE_PARALLEL_LOADER = getDebugFlag(270397312,
+            "ENABLE_PARALLEL_LOADER", false,
+            "Query all apps, deep shortcuts and widget providers in parallel with the workspace "
+                    + "load, instead of after each previous loader step is bound");
+
+    public static final BooleanFlag ENABLE_MODEL_SNAPSHOT = getDebugFlag(270397313,
+            "ENABLE_MODEL_SNAPSHOT", false,
+            "Bind the workspace from a snapshot of the last loaded model before loading the DB");
+
+    public static final BooleanFlag ENABLE_BATCHED_MODEL_WRITES = getDebugFlag(270397314,
+            "ENABLE_BATCHED_MODEL_WRITES", false,
+            "Merge item updates queued on the model thread and commit them in a single "
+                    + "transaction");
+
+    public static final BooleanFlag ENABLE_THUMBNAIL_BYTE_BUDGET = getDebugFlag(270397315,
+            "ENABLE_THUMBNAIL_BYTE_BUDGET", false,
+            "Bound the recents thumbnail cache by the memory used by thumbnails instead of their "
+                    + "count, and downgrade high-res thumbnails to low-res under pressure");
+
+    public static final BooleanFlag ENABLE_RECENTS_PREFETCH = getDebugFlag(270397316,
+            "ENABLE_RECENTS_PREFETCH", false,
+            "Load the thumbnails and icons of the tasks ahead of the visible tasks while "
+                    + "flinging through recents");
+
+    public static final BooleanFlag ENABLE_ASYNC_REORDER = getDebugFlag(270397317,
+            "ENABLE_ASYNC_REORDER", false,
+            "Search for the reorder solution of a workspace drag on a background thread");
+
+    public static final BooleanFlag ENABLE_DEVICE_PROFILE_CACHE = getDebugFlag(270397318,
+            "ENABLE_DEVICE_PROFILE_CACHE", false,
+            "Reuse the parsed grid options and the grid profiles of the previews across calls");
+
+    public static final BooleanFlag ENABLE_PREVIEW_MODEL_CACHE = getDebugFlag(270397319,
+            "ENABLE_PREVIEW_MODEL_CACHE", false,
+            "Share the model loaded for the previews of a grid between the grid picker previews");
+
+    public static final BooleanFlag ENABLE_INCREMENTAL_WIDGETS_LIST = getDebugFlag(270397320,
+            "ENABLE_INCREMENTAL_WIDGETS_LIST", false,
+            "Only rebuild the widget picker entries of the changed packages, and diff the widget "
+                    + "list in the background");
+
+    public static final BooleanFlag ENABLE_WIDGET_PREVIEW_CACHE = getDebugFlag(270397321,
+            "ENABLE_WIDGET_PREVIEW_CACHE", false,
+            "Keep the generated widget previews in memory and on disk across widget picker "
+                    + "openings");
+
+    public static final BooleanFlag ENABLE_ADAPTIVE_VIEW_POOLS = getDebugFlag(270397322,
+            "ENABLE_ADAPTIVE_VIEW_POOLS", false,
+            "Size the view caches and pools to the observed demand, and inflate the missing views "
+                    + "ahead of their use");
+
+    public static final BooleanFlag ENABLE_FRAME_BUDGET_BINDING = getDebugFlag(270397323,
+            "ENABLE_FRAME_BUDGET_BINDING", false,
+            "Bind the workspace pages which aren't visible across frames, in chunks sized to the "
+                    + "frame budget");
+
+    public static final BooleanFlag ENABLE_LAZY_WORKSPACE_PAGES = getDebugFlag(270397324,
+            "ENABLE_LAZY_WORKSPACE_PAGES", false,
+            "Inflate the items of the workspace pages only when the pages get close to the "
+                    + "visible pages, and release them when the pages stay far from them");
+
+    public static final BooleanFlag ENABLE_UNIFIED_BULK_ICON_LOADING = getDebugFlag(270397325,
+            "ENABLE_UNIFIED_BULK_ICON_LOADING", false,
+            "Load the icons of deep shortcuts and predictions in bulk with the other icons, and "
+                    + "render the icons missing from the cache in parallel");
+
+    public static final BooleanFlag ENABLE_BINARY_FILE_LOG = getDebugFlag(270397326,
+            "ENABLE_BINARY_FILE_LOG", false,
+            "Write the file logs as binary records batched into memory-mapped files, and only "
+                    + "format them as text when they are dumped");
+
+    public static final BooleanFlag ENABLE_TRANSITION_FRAME_TRACKING = getDebugFlag(270397327,
+            "ENABLE_TRANSITION_FRAME_TRACKING", false,
+            "Record the frame durations of launcher transitions, and attribute the slow frames to "
+                    + "the transitions and to the main thread work done during them");
+
+    public static final BooleanFlag ENABLE_BATCHED_STATS_LOGGING = getDebugFlag(270397328,
+            "ENABLE_BATCHED_STATS_LOGGING", false,
+            "Write the stats log events in batches on a background thread, reusing the proto "
+                    + "builders and coalescing the workspace snapshots");
+
+    public static final BooleanFlag ENABLE_INCREMENTAL_RECENT_TASKS = getDebugFlag(270397329,
+            "ENABLE_INCREMENTAL_RECENT_TASKS", false,
+            "Apply the tasks moved to front and removed to the loaded recent tasks until they are "
+                    + "loaded again, and reuse the task views when the tasks are reordered");
+
     public static class BooleanFlag {
 
         private final boolean mCurrentValue;
@@ -24,6 +24,8 @@ import static com.android.launcher3.compat.AccessibilityManagerCompat.sendCustom
 import static com.android.launcher3.config.FeatureFlags.ALWAYS_USE_HARDWARE_OPTIMIZATION_FOR_FOLDER_ANIMATIONS;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_FOLDER_LABEL_UPDATED;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_ITEM_DROP_COMPLETED;
+import static com.android.launcher3.logging.TransitionFrameTracker.TRANSITION_FOLDER_CLOSE;
+import static com.android.launcher3.logging.TransitionFrameTracker.TRANSITION_FOLDER_OPEN;
 import static com.android.launcher3.util.window.RefreshRateTracker.getSingleFrameMs;
 
 import android.animation.Animator;
@@ -87,6 +89,7 @@ import com.android.launcher3.logger.LauncherAtom.FromState;
 import com.android.launcher3.logger.LauncherAtom.ToState;
 import com.android.launcher3.logging.StatsLogManager;
 import com.android.launcher3.logging.StatsLogManager.StatsLogger;
+import com.android.launcher3.logging.TransitionFrameTracker;
 import com.android.launcher3.model.data.FolderInfo;
 import com.android.launcher3.model.data.FolderInfo.FolderListener;
 import com.android.launcher3.model.data.ItemInfo;
@@ -733,6 +736,8 @@ public class Folder extends AbstractFloatingView implements ClipPathView, DragSo
         }
 
         mPageIndicator.stopAllAnimations();
+        TransitionFrameTracker.INSTANCE.get(getContext())
+                .trackAnimator(anim, TRANSITION_FOLDER_OPEN);
         startAnimation(anim);
         // Because t=0 has the folder match the folder icon, we can skip the
         // first frame and have the same movement one frame earlier.
@@ -814,6 +819,7 @@ public class Folder extends AbstractFloatingView implements ClipPathView, DragSo
                 mIsAnimatingClosed = false;
             }
         });
+        TransitionFrameTracker.INSTANCE.get(getContext()).trackAnimator(a, TRANSITION_FOLDER_CLOSE);
         startAnimation(a);
     }
 
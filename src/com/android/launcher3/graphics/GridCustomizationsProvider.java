@@ -28,6 +28,9 @@ import com.android.launcher3.LauncherPrefs;
 import com.android.launcher3.Utilities;
 import com.android.launcher3.util.Executors;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
 /**
  * Exposes various launcher grid options and allows the caller to change them.
  * APIs:
@@ -71,12 +74,24 @@ public class GridCustomizationsProvider extends ContentProvider {
     private static final int MESSAGE_ID_UPDATE_PREVIEW = 1337;
 
     private final ArrayMap<IBinder, PreviewLifecycleObserver> mActivePreviews = new ArrayMap<>();
+    private final PreviewModelCache mModelCache = new PreviewModelCache();
 
     @Override
     public boolean onCreate() {
         return true;
     }
 
+    /**
+     * $ adb shell dumpsys activity provider com.android.launcher3.grid_control
+     */
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        synchronized (this) {
+            writer.println("GridCustomizationsProvider: activePreviews=" + mActivePreviews.size());
+        }
+        mModelCache.dump("\t", writer);
+    }
+
     @Override
     public Cursor query(Uri uri, String[] projection, String selection,
             String[] selectionArgs, String sortOrder) {
@@ -141,6 +156,7 @@ public class GridCustomizationsProvider extends ContentProvider {
                 }
 
                 idp.setCurrentGrid(getContext(), gridName);
+                mModelCache.clear();
                 getContext().getContentResolver().notifyChange(uri, null);
                 return 1;
             }
@@ -148,6 +164,7 @@ public class GridCustomizationsProvider extends ContentProvider {
             case SET_ICON_THEMED: {
                 LauncherPrefs.get(getContext())
                         .put(THEMED_ICONS, values.getAsBoolean(BOOLEAN_VALUE));
+                mModelCache.clear();
                 getContext().getContentResolver().notifyChange(uri, null);
                 return 1;
             }
@@ -171,16 +188,25 @@ public class GridCustomizationsProvider extends ContentProvider {
     }
 
     @TargetApi(Build.VERSION_CODES.R)
-    private synchronized Bundle getPreview(Bundle request) {
+    private Bundle getPreview(Bundle request) {
         PreviewLifecycleObserver observer = null;
         try {
-            PreviewSurfaceRenderer renderer = new PreviewSurfaceRenderer(getContext(), request);
-
-            // Destroy previous
-            destroyObserver(mActivePreviews.get(renderer.getHostToken()));
-
-            observer = new PreviewLifecycleObserver(renderer);
-            mActivePreviews.put(renderer.getHostToken(), observer);
+            // Created outside of the lock, so that concurrent previews are set up in parallel
+            PreviewSurfaceRenderer renderer =
+                    new PreviewSurfaceRenderer(getContext(), request, mModelCache);
+
+            synchronized (this) {
+                if (mActivePreviews.isEmpty()) {
+                    // Drop any model loaded by a preview destroyed before its load completed
+                    mModelCache.clear();
+                }
+                PreviewLifecycleObserver previous = mActivePreviews.get(renderer.getHostToken());
+                observer = new PreviewLifecycleObserver(renderer);
+                mActivePreviews.put(renderer.getHostToken(), observer);
+                // Destroy previous, after the new preview is active so that the cached models
+                // are kept for it
+                destroyObserver(previous);
+            }
 
             renderer.loadAsync();
             renderer.getHostToken().linkToDeath(observer, 0);
@@ -214,6 +240,10 @@ public class GridCustomizationsProvider extends ContentProvider {
         if (cached == observer) {
             mActivePreviews.remove(observer.renderer.getHostToken());
         }
+        if (mActivePreviews.isEmpty()) {
+            // The workspace can change once the previews are gone
+            mModelCache.clear();
+        }
     }
 
     private class PreviewLifecycleObserver implements Handler.Callback, DeathRecipient {
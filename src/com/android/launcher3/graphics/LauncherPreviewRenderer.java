@@ -206,7 +206,7 @@ public class LauncherPreviewRenderer extends ContextWrapper
                 this::getAppWidgetScale).build();
         if (context instanceof PreviewContext) {
             Context tempContext = ((PreviewContext) context).getBaseContext();
-            mDpOrig = new InvariantDeviceProfile(tempContext, InvariantDeviceProfile
+            mDpOrig = InvariantDeviceProfile.getGridProfile(tempContext, InvariantDeviceProfile
                     .getCurrentGridName(tempContext)).getDeviceProfile(tempContext)
                     .copy(tempContext);
         } else {
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.graphics;
+
+import android.appwidget.AppWidgetProviderInfo;
+import android.util.ArrayMap;
+import android.util.Size;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.util.ComponentKey;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the workspace models loaded for the previews of the grids other than the current grid,
+ * so that all the previews of a grid share a single grid migration and model load.
+ *
+ * The models are only valid as long as the workspace doesn't change, so the cache is cleared as
+ * soon as no preview is shown anymore. This also releases the views of the destroyed previews,
+ * which stay registered as listeners of the cached folders until then.
+ *
+ * The render times of the previews are kept for dumps, separately for the previews rendered from
+ * a cached model and the previews which loaded their model.
+ */
+public class PreviewModelCache {
+
+    private final ArrayMap<List<Object>, PreviewModel> mModels = new ArrayMap<>();
+    private final RenderStats mCachedRenders = new RenderStats();
+    private final RenderStats mLoadedRenders = new RenderStats();
+
+    /**
+     * Returns the model loaded for the previews with the given key, if any
+     */
+    @Nullable
+    public synchronized PreviewModel get(List<Object> key) {
+        return mModels.get(key);
+    }
+
+    /**
+     * Keeps the model loaded for the previews with the given key
+     */
+    public synchronized void put(List<Object> key, PreviewModel model) {
+        mModels.put(key, model);
+    }
+
+    /**
+     * Drops all the loaded models
+     */
+    public synchronized void clear() {
+        mModels.clear();
+    }
+
+    /**
+     * Records the time taken to render a preview, from the start of its load
+     *
+     * @param fromCache whether the preview was rendered from a cached model
+     */
+    public synchronized void onPreviewRendered(boolean fromCache, long renderMs) {
+        (fromCache ? mCachedRenders : mLoadedRenders).add(renderMs);
+    }
+
+    /**
+     * Returns the number of previews rendered from a cached model or which loaded their model
+     */
+    public synchronized int getRenderCount(boolean fromCache) {
+        return (fromCache ? mCachedRenders : mLoadedRenders).count;
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "PreviewModelCache: models=" + mModels.size());
+        mCachedRenders.dump(prefix + "\tcachedRenders: ", writer);
+        mLoadedRenders.dump(prefix + "\tloadedRenders: ", writer);
+    }
+
+    private static class RenderStats {
+        int count;
+        long totalMs;
+        long maxMs;
+
+        void add(long renderMs) {
+            count++;
+            totalMs += renderMs;
+            maxMs = Math.max(maxMs, renderMs);
+        }
+
+        void dump(String prefix, PrintWriter writer) {
+            writer.println(prefix + "count=" + count
+                    + " avgMs=" + (count == 0 ? 0 : totalMs / count)
+                    + " maxMs=" + maxMs);
+        }
+    }
+
+    /**
+     * A workspace model loaded for the previews of a grid. The model is shared by the previews
+     * and must not be modified.
+     */
+    public static class PreviewModel {
+
+        public final BgDataModel dataModel;
+        public final Map<ComponentKey, AppWidgetProviderInfo> widgetProviderInfoMap;
+        @Nullable
+        public final SparseArray<Size> launcherWidgetSpanInfo;
+
+        public PreviewModel(BgDataModel dataModel,
+                Map<ComponentKey, AppWidgetProviderInfo> widgetProviderInfoMap,
+                @Nullable SparseArray<Size> launcherWidgetSpanInfo) {
+            this.dataModel = dataModel;
+            this.widgetProviderInfoMap = widgetProviderInfoMap;
+            this.launcherWidgetSpanInfo = launcherWidgetSpanInfo;
+        }
+    }
+}
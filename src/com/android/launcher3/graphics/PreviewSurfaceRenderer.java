@@ -16,8 +16,10 @@
 
 package com.android.launcher3.graphics;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_PREVIEW_MODEL_CACHE;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
 
 import android.app.WallpaperColors;
 import android.appwidget.AppWidgetProviderInfo;
@@ -26,6 +28,7 @@ import android.database.Cursor;
 import android.hardware.display.DisplayManager;
 import android.os.Bundle;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.Size;
 import android.util.SparseArray;
@@ -40,6 +43,7 @@ import android.view.animation.AccelerateDecelerateInterpolator;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.DeviceProfile;
@@ -49,6 +53,7 @@ import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.Utilities;
 import com.android.launcher3.Workspace;
 import com.android.launcher3.graphics.LauncherPreviewRenderer.PreviewContext;
+import com.android.launcher3.graphics.PreviewModelCache.PreviewModel;
 import com.android.launcher3.model.BgDataModel;
 import com.android.launcher3.model.GridSizeMigrationUtil;
 import com.android.launcher3.model.LoaderTask;
@@ -58,6 +63,8 @@ import com.android.launcher3.util.Themes;
 import com.android.launcher3.widget.LocalColorExtractor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -77,6 +84,8 @@ public class PreviewSurfaceRenderer {
 
     private final Context mContext;
     private final InvariantDeviceProfile mIdp;
+    private final PreviewModelCache mModelCache;
+    private final List<Object> mModelKey;
     private final IBinder mHostToken;
     private final int mWidth;
     private final int mHeight;
@@ -89,9 +98,12 @@ public class PreviewSurfaceRenderer {
     private boolean mDestroyed = false;
     private LauncherPreviewRenderer mRenderer;
     private boolean mHideQsb;
+    private long mLoadStartTime;
 
-    public PreviewSurfaceRenderer(Context context, Bundle bundle) throws Exception {
+    public PreviewSurfaceRenderer(Context context, Bundle bundle, PreviewModelCache modelCache)
+            throws Exception {
         mContext = context;
+        mModelCache = modelCache;
 
         String gridName = bundle.getString("name");
         bundle.remove("name");
@@ -100,7 +112,8 @@ public class PreviewSurfaceRenderer {
         }
         mWallpaperColors = bundle.getParcelable(KEY_COLORS);
         mHideQsb = bundle.getBoolean(GridCustomizationsProvider.KEY_HIDE_BOTTOM_ROW);
-        mIdp = new InvariantDeviceProfile(context, gridName);
+        mIdp = InvariantDeviceProfile.getGridProfile(context, gridName);
+        mModelKey = getModelKey(context, gridName, mIdp);
 
         mHostToken = bundle.getBinder(KEY_HOST_TOKEN);
         mWidth = bundle.getInt(KEY_VIEW_WIDTH);
@@ -114,6 +127,17 @@ public class PreviewSurfaceRenderer {
         mOnDestroyCallbacks.add(mSurfaceControlViewHost::release);
     }
 
+    /**
+     * Returns the key of the model loaded for the previews of the given grid
+     */
+    @VisibleForTesting
+    static List<Object> getModelKey(Context context, String gridName,
+            InvariantDeviceProfile idp) {
+        // The loaded items depend on the icon size and on the number of panels of the grid
+        return Arrays.asList(gridName, idp.iconBitmapSize, idp.fillResIconDpi,
+                idp.getDeviceProfile(context).isTwoPanels);
+    }
+
     public IBinder getHostToken() {
         return mHostToken;
     }
@@ -174,7 +198,15 @@ public class PreviewSurfaceRenderer {
      * Generates the preview in background
      */
     public void loadAsync() {
-        MODEL_EXECUTOR.execute(this::loadModelData);
+        mLoadStartTime = SystemClock.uptimeMillis();
+        PreviewModel cachedModel = ENABLE_PREVIEW_MODEL_CACHE.get()
+                ? mModelCache.get(mModelKey) : null;
+        if (cachedModel != null) {
+            // Doesn't need to wait for the grid migrations of the other previews
+            THREAD_POOL_EXECUTOR.execute(() -> renderCachedModel(cachedModel));
+        } else {
+            MODEL_EXECUTOR.execute(this::loadModelData);
+        }
     }
 
     /**
@@ -189,26 +221,28 @@ public class PreviewSurfaceRenderer {
     }
 
     @WorkerThread
-    private void loadModelData() {
-        final boolean migrated = doGridMigrationIfNecessary();
+    private void renderCachedModel(PreviewModel model) {
+        PreviewContext previewContext = new PreviewContext(createInflationContext(), mIdp);
+        MAIN_EXECUTOR.execute(() -> {
+            renderView(true /* fromCache */, previewContext, model.dataModel,
+                    model.widgetProviderInfoMap, model.launcherWidgetSpanInfo);
+            mOnDestroyCallbacks.add(previewContext::onDestroy);
+        });
+    }
 
-        final Context inflationContext;
-        if (mWallpaperColors != null) {
-            // Create a themed context, without affecting the main application context
-            Context context = mContext.createDisplayContext(mDisplay);
-            if (Utilities.ATLEAST_R) {
-                context = context.createWindowContext(
-                        LayoutParams.TYPE_APPLICATION_OVERLAY, null);
-            }
-            LocalColorExtractor.newInstance(mContext)
-                    .applyColorsOverride(context, mWallpaperColors);
-            inflationContext = new ContextThemeWrapper(context,
-                    Themes.getActivityThemeRes(context, mWallpaperColors.getColorHints()));
-        } else {
-            inflationContext = new ContextThemeWrapper(mContext,
-                    Themes.getActivityThemeRes(mContext));
+    @WorkerThread
+    private void loadModelData() {
+        // Another preview of the same grid might have loaded the model in the meantime
+        PreviewModel cachedModel = ENABLE_PREVIEW_MODEL_CACHE.get()
+                ? mModelCache.get(mModelKey) : null;
+        if (cachedModel != null) {
+            renderCachedModel(cachedModel);
+            return;
         }
 
+        final boolean migrated = doGridMigrationIfNecessary();
+        final Context inflationContext = createInflationContext();
+
         if (migrated) {
             PreviewContext previewContext = new PreviewContext(inflationContext, mIdp);
             new LoaderTask(
@@ -234,9 +268,14 @@ public class PreviewSurfaceRenderer {
 
                     final SparseArray<Size> spanInfo =
                             getLoadedLauncherWidgetInfo(previewContext.getBaseContext());
+                    if (ENABLE_PREVIEW_MODEL_CACHE.get()) {
+                        mModelCache.put(mModelKey,
+                                new PreviewModel(mBgDataModel, mWidgetProvidersMap, spanInfo));
+                    }
 
                     MAIN_EXECUTOR.execute(() -> {
-                        renderView(previewContext, mBgDataModel, mWidgetProvidersMap, spanInfo);
+                        renderView(false /* fromCache */, previewContext, mBgDataModel,
+                                mWidgetProvidersMap, spanInfo);
                         mOnDestroyCallbacks.add(previewContext::onDestroy);
                     });
                 }
@@ -244,8 +283,8 @@ public class PreviewSurfaceRenderer {
         } else {
             LauncherAppState.getInstance(inflationContext).getModel().loadAsync(dataModel -> {
                 if (dataModel != null) {
-                    MAIN_EXECUTOR.execute(() -> renderView(inflationContext, dataModel, null,
-                            null));
+                    MAIN_EXECUTOR.execute(() -> renderView(false /* fromCache */,
+                            inflationContext, dataModel, null, null));
                 } else {
                     Log.e(TAG, "Model loading failed");
                 }
@@ -253,6 +292,27 @@ public class PreviewSurfaceRenderer {
         }
     }
 
+    @WorkerThread
+    private Context createInflationContext() {
+        final Context inflationContext;
+        if (mWallpaperColors != null) {
+            // Create a themed context, without affecting the main application context
+            Context context = mContext.createDisplayContext(mDisplay);
+            if (Utilities.ATLEAST_R) {
+                context = context.createWindowContext(
+                        LayoutParams.TYPE_APPLICATION_OVERLAY, null);
+            }
+            LocalColorExtractor.newInstance(mContext)
+                    .applyColorsOverride(context, mWallpaperColors);
+            inflationContext = new ContextThemeWrapper(context,
+                    Themes.getActivityThemeRes(context, mWallpaperColors.getColorHints()));
+        } else {
+            inflationContext = new ContextThemeWrapper(mContext,
+                    Themes.getActivityThemeRes(mContext));
+        }
+        return inflationContext;
+    }
+
     @WorkerThread
     private boolean doGridMigrationIfNecessary() {
         if (!GridSizeMigrationUtil.needsToMigrate(mContext, mIdp)) {
@@ -262,7 +322,7 @@ public class PreviewSurfaceRenderer {
     }
 
     @UiThread
-    private void renderView(Context inflationContext, BgDataModel dataModel,
+    private void renderView(boolean fromCache, Context inflationContext, BgDataModel dataModel,
             Map<ComponentKey, AppWidgetProviderInfo> widgetProviderInfoMap,
             @Nullable final SparseArray<Size> launcherWidgetSpanInfo) {
         if (mDestroyed) {
@@ -287,5 +347,6 @@ public class PreviewSurfaceRenderer {
                 .setDuration(FADE_IN_ANIMATION_DURATION)
                 .start();
         mSurfaceControlViewHost.setView(view, view.getMeasuredWidth(), view.getMeasuredHeight());
+        mModelCache.onPreviewRendered(fromCache, SystemClock.uptimeMillis() - mLoadStartTime);
     }
 }
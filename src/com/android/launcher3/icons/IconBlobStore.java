@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import android.content.ComponentName;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Append-only store of pre-decoded icon pixels backed by a memory-mapped file.
+ *
+ * The icon DB remains the authority for metadata: every entry is keyed by component, user serial
+ * and the lastUpdated and system state values of its DB row, so any change in the DB simply
+ * results in a miss. As a DB row can be rewritten with the same values, the owner also removes the
+ * entries of a package whenever its rows are removed or replaced, which appends a removal record.
+ * When the file is corrupt or was written with a different version or icon size, it is discarded
+ * and repopulated as icons are loaded from the DB.
+ *
+ * This class is not thread safe, all calls should be guarded by the owning {@link IconCache}.
+ */
+@WorkerThread
+public class IconBlobStore implements Closeable {
+
+    private static final String TAG = "IconBlobStore";
+
+    private static final int MAGIC = 0x49434253; // ICBS
+    private static final int VERSION = 2;
+
+    // magic, version, icon size
+    private static final int HEADER_SIZE = 12;
+    // record length, key length, system state length, user serial, last updated, color, width,
+    // height. A record without pixels removes the entry of its key.
+    private static final int RECORD_FIXED_SIZE = 4 + 4 + 4 + 8 + 8 + 4 + 4 + 4;
+    private static final int MAX_KEY_LENGTH = 1024;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private static final long INITIAL_MAP_SIZE = 4 * 1024 * 1024;
+
+    private final File mFile;
+    private final long mMaxSize;
+    private final HashMap<String, Entry> mIndex = new HashMap<>();
+
+    private int mIconSize;
+    private RandomAccessFile mRaf;
+    private MappedByteBuffer mBuffer;
+    private int mWritePosition;
+    private long mLiveBytes;
+
+    private IconBlobStore(File file, int iconSize, long maxSize) {
+        mFile = file;
+        mIconSize = iconSize;
+        mMaxSize = Math.min(maxSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Opens the store at {@param file}, discarding it if it does not match the icon size or could
+     * not be read. Returns null if the file could not be mapped at all.
+     */
+    @Nullable
+    public static IconBlobStore open(@NonNull File file, int iconSize, long maxSize) {
+        IconBlobStore store = new IconBlobStore(file, iconSize, maxSize);
+        try {
+            store.load();
+            return store;
+        } catch (IOException | IndexOutOfBoundsException e) {
+            Log.e(TAG, "Unable to open icon store", e);
+            store.close();
+            file.delete();
+            return null;
+        }
+    }
+
+    private void load() throws IOException {
+        mRaf = new RandomAccessFile(mFile, "rw");
+        long fileSize = mRaf.length();
+        map(Math.max(fileSize, INITIAL_MAP_SIZE));
+        if (fileSize < HEADER_SIZE
+                || mBuffer.getInt(0) != MAGIC
+                || mBuffer.getInt(4) != VERSION
+                || mBuffer.getInt(8) != mIconSize
+                || !readIndex()
+                // Most of the file is superseded records, start over instead of compacting
+                || mWritePosition > INITIAL_MAP_SIZE && mLiveBytes * 2 < mWritePosition) {
+            reset(mIconSize);
+        }
+    }
+
+    /**
+     * Reads all the records, returning false if the file is corrupt.
+     */
+    private boolean readIndex() {
+        int position = HEADER_SIZE;
+        int limit = mBuffer.capacity();
+        while (position + RECORD_FIXED_SIZE <= limit) {
+            int recordLength = mBuffer.getInt(position);
+            if (recordLength == 0) {
+                // End of the committed records
+                break;
+            }
+            int keyLength = mBuffer.getInt(position + 4);
+            int stateLength = mBuffer.getInt(position + 8);
+            // The record must hold its key, system state and fields, and end within the file,
+            // before any of them is read
+            if (keyLength <= 0 || keyLength > MAX_KEY_LENGTH
+                    || stateLength < 0 || stateLength > MAX_KEY_LENGTH
+                    || recordLength < RECORD_FIXED_SIZE + keyLength + stateLength
+                    || recordLength > limit - position) {
+                return false;
+            }
+            int fieldsPosition = position + 12 + keyLength + stateLength;
+            int width = mBuffer.getInt(fieldsPosition + 20);
+            int height = mBuffer.getInt(fieldsPosition + 24);
+            int pixelsPosition = fieldsPosition + 28;
+            boolean isRemoval = width == 0 && height == 0;
+            if (!isRemoval && (width <= 0 || height <= 0)
+                    || pixelsPosition + (long) width * height * BYTES_PER_PIXEL
+                            != position + recordLength) {
+                return false;
+            }
+
+            String key = getKey(mBuffer.getLong(fieldsPosition),
+                    readString(position + 12, keyLength));
+            Entry old = isRemoval ? mIndex.remove(key) : mIndex.put(key, new Entry(
+                    readString(position + 12 + keyLength, stateLength),
+                    mBuffer.getLong(fieldsPosition + 8),
+                    mBuffer.getInt(fieldsPosition + 16),
+                    width, height, pixelsPosition, recordLength));
+            mLiveBytes += (isRemoval ? 0 : recordLength) - (old == null ? 0 : old.recordLength);
+            position += recordLength;
+        }
+        mWritePosition = position;
+        return true;
+    }
+
+    private String readString(int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(position);
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Discards all the records and starts over for the provided icon size
+     */
+    public void reset(int iconSize) {
+        mIconSize = iconSize;
+        mIndex.clear();
+        mLiveBytes = 0;
+        if (mBuffer == null) {
+            return;
+        }
+        try {
+            mRaf.setLength(0);
+            map(INITIAL_MAP_SIZE);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to reset icon store", e);
+            close();
+            return;
+        }
+        mBuffer.putInt(0, MAGIC);
+        mBuffer.putInt(4, VERSION);
+        mBuffer.putInt(8, mIconSize);
+        mWritePosition = HEADER_SIZE;
+    }
+
+    /**
+     * Returns the icon for the component if it was stored for the same {@param lastUpdated} and
+     * {@param systemState}
+     */
+    @Nullable
+    public BitmapInfo get(@NonNull ComponentName cn, long userSerial, long lastUpdated,
+            @NonNull String systemState) {
+        if (mBuffer == null) {
+            return null;
+        }
+        Entry entry = mIndex.get(getKey(userSerial, cn.flattenToString()));
+        if (entry == null || entry.lastUpdated != lastUpdated
+                || !entry.systemState.equals(systemState)) {
+            return null;
+        }
+        ByteBuffer pixels = mBuffer.duplicate();
+        pixels.position(entry.pixelsPosition);
+        pixels.limit(entry.pixelsPosition + entry.width * entry.height * BYTES_PER_PIXEL);
+        Bitmap icon = Bitmap.createBitmap(entry.width, entry.height, Bitmap.Config.ARGB_8888);
+        icon.copyPixelsFromBuffer(pixels);
+        return BitmapInfo.of(icon, entry.color);
+    }
+
+    /**
+     * Appends the icon for the component, superseding any previous record.
+     */
+    public void put(@NonNull ComponentName cn, long userSerial, long lastUpdated,
+            @NonNull String systemState, @NonNull BitmapInfo info) {
+        if (mBuffer == null || info.icon == null || info.isNullOrLowRes()) {
+            return;
+        }
+        Bitmap icon = info.icon;
+        if (icon.getConfig() != Bitmap.Config.ARGB_8888) {
+            icon = icon.copy(Bitmap.Config.ARGB_8888, false /* isMutable */);
+            if (icon == null) {
+                return;
+            }
+        }
+        String component = cn.flattenToString();
+        byte[] keyBytes = component.getBytes(StandardCharsets.UTF_8);
+        byte[] stateBytes = systemState.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > MAX_KEY_LENGTH || stateBytes.length > MAX_KEY_LENGTH) {
+            return;
+        }
+        int recordLength = RECORD_FIXED_SIZE + keyBytes.length + stateBytes.length
+                + icon.getByteCount();
+        if (!ensureCapacity(mWritePosition + recordLength)) {
+            return;
+        }
+
+        int position = mWritePosition;
+        ByteBuffer out = mBuffer.duplicate();
+        out.position(position + 4);
+        out.putInt(keyBytes.length);
+        out.putInt(stateBytes.length);
+        out.put(keyBytes);
+        out.put(stateBytes);
+        out.putLong(userSerial);
+        out.putLong(lastUpdated);
+        out.putInt(info.color);
+        out.putInt(icon.getWidth());
+        out.putInt(icon.getHeight());
+        int pixelsPosition = out.position();
+        out.limit(pixelsPosition + icon.getByteCount());
+        icon.copyPixelsToBuffer(out);
+        // The length is written last, so that a partially written record is never read back
+        mBuffer.putInt(position, recordLength);
+        mWritePosition += recordLength;
+
+        Entry old = mIndex.put(getKey(userSerial, component), new Entry(systemState,
+                lastUpdated, info.color, icon.getWidth(), icon.getHeight(), pixelsPosition,
+                recordLength));
+        mLiveBytes += recordLength - (old == null ? 0 : old.recordLength);
+    }
+
+    /**
+     * Removes the icons of all the components of the package, so that they are not read back
+     * even if the DB rows are rewritten with the same values.
+     */
+    public void removePackage(@NonNull String packageName, long userSerial) {
+        if (mBuffer == null) {
+            return;
+        }
+        String prefix = getKey(userSerial, packageName + "/");
+        ArrayList<String> components = new ArrayList<>();
+        for (String key : mIndex.keySet()) {
+            if (key.startsWith(prefix)) {
+                components.add(key.substring(key.indexOf('/') + 1));
+            }
+        }
+        for (String component : components) {
+            if (!appendRemoval(component, userSerial)) {
+                // The removal could not be persisted, start over instead of serving stale icons
+                reset(mIconSize);
+                return;
+            }
+        }
+    }
+
+    private boolean appendRemoval(String component, long userSerial) {
+        byte[] keyBytes = component.getBytes(StandardCharsets.UTF_8);
+        int recordLength = RECORD_FIXED_SIZE + keyBytes.length;
+        if (!ensureCapacity(mWritePosition + recordLength)) {
+            return false;
+        }
+        int position = mWritePosition;
+        ByteBuffer out = mBuffer.duplicate();
+        out.position(position + 4);
+        out.putInt(keyBytes.length);
+        out.putInt(0);
+        out.put(keyBytes);
+        out.putLong(userSerial);
+        // last updated, color, width and height
+        out.putLong(0);
+        out.putInt(0);
+        out.putInt(0);
+        out.putInt(0);
+        mBuffer.putInt(position, recordLength);
+        mWritePosition += recordLength;
+
+        Entry old = mIndex.remove(getKey(userSerial, component));
+        mLiveBytes -= old == null ? 0 : old.recordLength;
+        return true;
+    }
+
+    private boolean ensureCapacity(long requiredSize) {
+        if (requiredSize <= mBuffer.capacity()) {
+            return true;
+        }
+        if (requiredSize > mMaxSize) {
+            return false;
+        }
+        try {
+            map(Math.min(mMaxSize, Math.max(requiredSize, 2L * mBuffer.capacity())));
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to grow icon store", e);
+            close();
+            return false;
+        }
+    }
+
+    private void map(long size) throws IOException {
+        mBuffer = mRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    @Override
+    public void close() {
+        mBuffer = null;
+        mIndex.clear();
+        if (mRaf != null) {
+            try {
+                mRaf.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to close icon store", e);
+            }
+            mRaf = null;
+        }
+    }
+
+    private static String getKey(long userSerial, String component) {
+        return userSerial + "/" + component;
+    }
+
+    private static class Entry {
+        final String systemState;
+        final long lastUpdated;
+        final int color;
+        final int width;
+        final int height;
+        final int pixelsPosition;
+        final int recordLength;
+
+        Entry(String systemState, long lastUpdated, int color, int width, int height,
+                int pixelsPosition, int recordLength) {
+            this.systemState = systemState;
+            this.lastUpdated = lastUpdated;
+            this.color = color;
+            this.width = width;
+            this.height = height;
+            this.pixelsPosition = pixelsPosition;
+            this.recordLength = recordLength;
+        }
+    }
+}
@@ -17,11 +17,15 @@
 package com.android.launcher3.icons;
 
 import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_ICON_BLOB_STORE;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_UNIFIED_BULK_ICON_LOADING;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
 import static com.android.launcher3.widget.WidgetSections.NO_CATEGORY;
 
 import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.partitioningBy;
 
 import android.content.ComponentName;
 import android.content.Context;
@@ -38,9 +42,11 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteException;
 import android.graphics.drawable.Drawable;
 import android.os.Process;
+import android.os.SystemClock;
 import android.os.Trace;
 import android.os.UserHandle;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.Log;
 import android.util.SparseArray;
 
@@ -63,18 +69,27 @@ import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.pm.InstallSessionHelper;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.shortcuts.ShortcutKey;
+import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.InstantAppResolver;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.Preconditions;
+import com.android.launcher3.util.ShardedCache;
+import com.android.launcher3.util.Themes;
 import com.android.launcher3.widget.WidgetSections;
 import com.android.launcher3.widget.WidgetSections.WidgetSection;
 
+import java.io.File;
+import java.io.PrintWriter;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -89,6 +104,13 @@ public class IconCache extends BaseIconCache {
 
     private static final String TAG = "Launcher.IconCache";
 
+    private static final int SNAPSHOT_SHARD_COUNT = 16;
+
+    private static final String[] BLOB_STORE_COLUMNS = new String[] {
+            IconDB.COLUMN_COMPONENT, IconDB.COLUMN_LABEL, IconDB.COLUMN_LAST_UPDATED,
+            IconDB.COLUMN_SYSTEM_STATE};
+    private static final long ICON_BLOB_STORE_MAX_SIZE = 64 * 1024 * 1024;
+
     private final Predicate<ItemInfoWithIcon> mIsUsingFallbackOrNonDefaultIconCheck = w ->
             w.bitmap != null && (w.bitmap.isNullOrLowRes() || !isDefaultIcon(w.bitmap, w.user));
 
@@ -104,6 +126,27 @@ public class IconCache extends BaseIconCache {
 
     private final SparseArray<BitmapInfo> mWidgetCategoryBitmapInfos;
 
+    // Immutable copies of the entries in the base cache, which can be read without holding the
+    // cache monitor. Any change to the base cache must invalidate the corresponding snapshots.
+    private final ShardedCache<ComponentKey, CacheEntry> mEntrySnapshots =
+            new ShardedCache<>(SNAPSHOT_SHARD_COUNT);
+    private final ShardedCache<PackageUserKey, CacheEntry> mPackageEntrySnapshots =
+            new ShardedCache<>(SNAPSHOT_SHARD_COUNT);
+
+    // Time spent waiting for the cache monitor when a lookup missed the snapshots
+    private final AtomicLong mMonitorWaitNanos = new AtomicLong();
+    private final AtomicLong mMonitorAcquireCount = new AtomicLong();
+
+    // Icons loaded in bulk, by batches of requests of the same kind and user
+    private final AtomicLong mBulkBatchCount = new AtomicLong();
+    private final AtomicLong mBulkIconCount = new AtomicLong();
+    private final AtomicLong mBulkFallbackCount = new AtomicLong();
+    private final AtomicLong mBulkTimeNanos = new AtomicLong();
+
+    // Lazily opened on the first bulk load, guarded by the cache monitor
+    @Nullable
+    private IconBlobStore mIconBlobStore;
+
     private int mPendingIconRequestCount = 0;
 
     public IconCache(Context context, InvariantDeviceProfile idp) {
@@ -161,6 +204,56 @@ public class IconCache extends BaseIconCache {
         } catch (NameNotFoundException e) {
             Log.d(TAG, "Package not found", e);
         }
+        invalidateSnapshots(packageName, user);
+    }
+
+    @Override
+    public synchronized void removeIconsForPkg(@NonNull String packageName,
+            @NonNull UserHandle user) {
+        super.removeIconsForPkg(packageName, user);
+        removeFromIconBlobStoreLocked(packageName, user);
+        invalidateSnapshots(packageName, user);
+    }
+
+    @Override
+    public synchronized void remove(@NonNull ComponentName componentName,
+            @NonNull UserHandle user) {
+        super.remove(componentName, user);
+        removeFromIconBlobStoreLocked(componentName.getPackageName(), user);
+        invalidateSnapshots(componentName.getPackageName(), user);
+    }
+
+    @Override
+    public synchronized <T> void addIconToDBAndMemCache(@NonNull T object,
+            @NonNull CachingLogic<T> cachingLogic, @NonNull PackageInfo info, long userSerial,
+            boolean replaceExisting) {
+        super.addIconToDBAndMemCache(object, cachingLogic, info, userSerial, replaceExisting);
+        removeFromIconBlobStoreLocked(cachingLogic.getComponent(object).getPackageName(),
+                cachingLogic.getUser(object));
+        invalidateSnapshots(cachingLogic.getComponent(object).getPackageName(),
+                cachingLogic.getUser(object));
+    }
+
+    @Override
+    public void updateIconParams(int iconDpi, int iconPixelSize) {
+        super.updateIconParams(iconDpi, iconPixelSize);
+        // The base cache is cleared on the worker thread, drop the snapshots once that is done
+        mWorkerHandler.post(() -> {
+            mEntrySnapshots.clear();
+            mPackageEntrySnapshots.clear();
+            synchronized (IconCache.this) {
+                if (mIconBlobStore != null) {
+                    mIconBlobStore.reset(iconPixelSize);
+                }
+            }
+        });
+    }
+
+    private void invalidateSnapshots(@NonNull String packageName, @NonNull UserHandle user) {
+        mEntrySnapshots.removeIf(key -> key.user.equals(user)
+                && key.componentName.getPackageName().equals(packageName));
+        mPackageEntrySnapshots.removeIf(key -> user.equals(key.mUser)
+                && packageName.equals(key.mPackageName));
     }
 
     /**
@@ -171,6 +264,12 @@ public class IconCache extends BaseIconCache {
         getUpdateHandler();
 
         mIconDb.close();
+        synchronized (this) {
+            if (mIconBlobStore != null) {
+                mIconBlobStore.close();
+                mIconBlobStore = null;
+            }
+        }
     }
 
     /**
@@ -219,10 +318,9 @@ public class IconCache extends BaseIconCache {
     /**
      * Updates {@param application} only if a valid entry is found.
      */
-    public synchronized void updateTitleAndIcon(AppInfo application) {
-        CacheEntry entry = cacheLocked(application.componentName,
-                application.user, () -> null, mLauncherActivityInfoCachingLogic,
-                false, application.usingLowResIcon());
+    public void updateTitleAndIcon(AppInfo application) {
+        CacheEntry entry = getEntryForComponent(application.componentName,
+                application.user, () -> null, false, application.usingLowResIcon());
         if (entry.bitmap != null && !isDefaultIcon(entry.bitmap, application.user)) {
             applyCacheEntry(entry, application);
         }
@@ -231,7 +329,7 @@ public class IconCache extends BaseIconCache {
     /**
      * Fill in {@param info} with the icon and label for {@param activityInfo}
      */
-    public synchronized void getTitleAndIcon(ItemInfoWithIcon info,
+    public void getTitleAndIcon(ItemInfoWithIcon info,
             LauncherActivityInfo activityInfo, boolean useLowResIcon) {
         // If we already have activity info, no need to use package icon
         getTitleAndIcon(info, () -> activityInfo, false, useLowResIcon);
@@ -296,7 +394,7 @@ public class IconCache extends BaseIconCache {
      * Fill in {@param info} with the icon and label. If the
      * corresponding activity is not found, it reverts to the package icon.
      */
-    public synchronized void getTitleAndIcon(ItemInfoWithIcon info, boolean useLowResIcon) {
+    public void getTitleAndIcon(ItemInfoWithIcon info, boolean useLowResIcon) {
         // null info means not installed, but if we have a component from the intent then
         // we should still look in the cache for restored app icons.
         if (info.getTargetComponent() == null) {
@@ -320,16 +418,59 @@ public class IconCache extends BaseIconCache {
     /**
      * Fill in {@param mWorkspaceItemInfo} with the icon and label for {@param info}
      */
-    public synchronized void getTitleAndIcon(
+    public void getTitleAndIcon(
             @NonNull ItemInfoWithIcon infoInOut,
             @NonNull Supplier<LauncherActivityInfo> activityInfoProvider,
             boolean usePkgIcon, boolean useLowResIcon) {
-        CacheEntry entry = cacheLocked(infoInOut.getTargetComponent(), infoInOut.user,
-                activityInfoProvider, mLauncherActivityInfoCachingLogic, usePkgIcon,
-                useLowResIcon);
+        CacheEntry entry = getEntryForComponent(infoInOut.getTargetComponent(), infoInOut.user,
+                activityInfoProvider, usePkgIcon, useLowResIcon);
         applyCacheEntry(entry, infoInOut);
     }
 
+    /**
+     * Returns an immutable entry for the component, only taking the cache monitor if no usable
+     * snapshot is available.
+     */
+    @NonNull
+    private CacheEntry getEntryForComponent(@Nullable ComponentName cn, @NonNull UserHandle user,
+            @NonNull Supplier<LauncherActivityInfo> activityInfoProvider, boolean usePkgIcon,
+            boolean useLowResIcon) {
+        ComponentKey key = cn == null ? null : new ComponentKey(cn, user);
+        CacheEntry entry = key == null ? null : mEntrySnapshots.get(key);
+        if (entry != null && (useLowResIcon || !entry.bitmap.isNullOrLowRes())) {
+            return entry;
+        }
+
+        long generation = mEntrySnapshots.getGeneration();
+        long waitStart = SystemClock.elapsedRealtimeNanos();
+        synchronized (this) {
+            onMonitorAcquired(waitStart);
+            entry = snapshotOf(cacheLocked(cn, user, activityInfoProvider,
+                    mLauncherActivityInfoCachingLogic, usePkgIcon, useLowResIcon));
+        }
+        if (key != null && !isDefaultIcon(entry.bitmap, user)) {
+            mEntrySnapshots.put(key, entry, generation);
+        }
+        return entry;
+    }
+
+    private void onMonitorAcquired(long waitStartNanos) {
+        mMonitorWaitNanos.addAndGet(SystemClock.elapsedRealtimeNanos() - waitStartNanos);
+        mMonitorAcquireCount.incrementAndGet();
+    }
+
+    /**
+     * Entries in the base cache are updated in place, so snapshots are always copied.
+     */
+    @NonNull
+    private static CacheEntry snapshotOf(@NonNull CacheEntry entry) {
+        CacheEntry copy = new CacheEntry();
+        copy.bitmap = entry.bitmap;
+        copy.title = entry.title;
+        copy.contentDescription = entry.contentDescription;
+        return copy;
+    }
+
     /**
      * Creates an sql cursor for a query of a set of ItemInfoWithIcon icons and titles.
      *
@@ -340,9 +481,16 @@ public class IconCache extends BaseIconCache {
     private <T extends ItemInfoWithIcon> Cursor createBulkQueryCursor(
             List<IconRequestInfo<T>> iconRequestInfos, UserHandle user, boolean useLowResIcons)
             throws SQLiteException {
+        return createBulkQueryCursor(iconRequestInfos, user,
+                useLowResIcons ? IconDB.COLUMNS_LOW_RES : IconDB.COLUMNS_HIGH_RES);
+    }
+
+    private <T extends ItemInfoWithIcon> Cursor createBulkQueryCursor(
+            List<IconRequestInfo<T>> iconRequestInfos, UserHandle user, String[] columns)
+            throws SQLiteException {
         String[] queryParams = Stream.concat(
                 iconRequestInfos.stream()
-                        .map(r -> r.itemInfo.getTargetComponent())
+                        .map(IconRequestInfo::getCacheComponent)
                         .filter(Objects::nonNull)
                         .distinct()
                         .map(ComponentName::flattenToString),
@@ -351,7 +499,7 @@ public class IconCache extends BaseIconCache {
                 ",", Collections.nCopies(queryParams.length - 1, "?"));
 
         return mIconDb.query(
-                useLowResIcons ? IconDB.COLUMNS_LOW_RES : IconDB.COLUMNS_HIGH_RES,
+                columns,
                 IconDB.COLUMN_COMPONENT
                         + " IN ( " + componentNameQuery + " )"
                         + " AND " + IconDB.COLUMN_USER + " = ?",
@@ -361,21 +509,34 @@ public class IconCache extends BaseIconCache {
     /**
      * Load and fill icons requested in iconRequestInfos using a single bulk sql query.
      */
-    public synchronized <T extends ItemInfoWithIcon> void getTitlesAndIconsInBulk(
+    public <T extends ItemInfoWithIcon> void getTitlesAndIconsInBulk(
+            List<IconRequestInfo<T>> iconRequestInfos) {
+        long waitStart = SystemClock.elapsedRealtimeNanos();
+        synchronized (this) {
+            onMonitorAcquired(waitStart);
+            getTitlesAndIconsInBulkLocked(iconRequestInfos);
+        }
+    }
+
+    private <T extends ItemInfoWithIcon> void getTitlesAndIconsInBulkLocked(
             List<IconRequestInfo<T>> iconRequestInfos) {
+        // Deep shortcuts are cached with their own caching logic, so they are loaded separately
+        Map<Boolean, List<IconRequestInfo<T>>> requestsByKind = iconRequestInfos.stream()
+                .filter(iconRequest -> {
+                    if (iconRequest.getCacheComponent() == null) {
+                        Log.i(TAG,
+                                "Skipping Item info with null component name: "
+                                        + iconRequest.itemInfo);
+                        iconRequest.itemInfo.bitmap = getDefaultIcon(
+                                iconRequest.itemInfo.user);
+                        return false;
+                    }
+                    return true;
+                })
+                .collect(partitioningBy(iconRequest -> iconRequest.shortcutInfo != null
+                        && ENABLE_UNIFIED_BULK_ICON_LOADING.get()));
         Map<Pair<UserHandle, Boolean>, List<IconRequestInfo<T>>> iconLoadSubsectionsMap =
-                iconRequestInfos.stream()
-                        .filter(iconRequest -> {
-                            if (iconRequest.itemInfo.getTargetComponent() == null) {
-                                Log.i(TAG,
-                                        "Skipping Item info with null component name: "
-                                                + iconRequest.itemInfo);
-                                iconRequest.itemInfo.bitmap = getDefaultIcon(
-                                        iconRequest.itemInfo.user);
-                                return false;
-                            }
-                            return true;
-                        })
+                requestsByKind.get(false).stream()
                         .collect(groupingBy(iconRequest ->
                                 Pair.create(iconRequest.itemInfo.user, iconRequest.useLowResIcon)));
 
@@ -398,13 +559,273 @@ public class IconCache extends BaseIconCache {
                                     iconRequest.itemInfo.getTargetComponent()));
 
             Trace.beginSection("loadIconSubsectionInBulk");
-            loadIconSubsection(sectionKey, filteredList, duplicateIconRequestsMap);
+            long startTime = SystemClock.elapsedRealtimeNanos();
+            int fallbackCount = loadIconSubsection(
+                    sectionKey, filteredList, duplicateIconRequestsMap);
+            onBulkBatchLoaded(filteredList.size(), fallbackCount, startTime);
             Trace.endSection();
         });
+
+        requestsByKind.get(true).stream()
+                .collect(groupingBy(iconRequest -> iconRequest.itemInfo.user))
+                .forEach((user, shortcutRequests) -> {
+                    Trace.beginSection("loadShortcutSubsectionInBulk");
+                    long startTime = SystemClock.elapsedRealtimeNanos();
+                    int fallbackCount = loadShortcutSubsection(user, shortcutRequests);
+                    onBulkBatchLoaded(shortcutRequests.size(), fallbackCount, startTime);
+                    Trace.endSection();
+                });
         Trace.endSection();
     }
 
-    private <T extends ItemInfoWithIcon> void loadIconSubsection(
+    private void onBulkBatchLoaded(int count, int fallbackCount, long startTimeNanos) {
+        long timeNanos = SystemClock.elapsedRealtimeNanos() - startTimeNanos;
+        mBulkBatchCount.incrementAndGet();
+        mBulkIconCount.addAndGet(count);
+        mBulkFallbackCount.addAndGet(fallbackCount);
+        mBulkTimeNanos.addAndGet(timeNanos);
+    }
+
+    /**
+     * Loads the icons of deep shortcuts of the same user with a single query, rendering the icons
+     * missing from the DB in parallel.
+     *
+     * @return the number of icons which had to be rendered
+     */
+    private <T extends ItemInfoWithIcon> int loadShortcutSubsection(
+            UserHandle user, List<IconRequestInfo<T>> shortcutRequests) {
+        Map<ComponentName, List<IconRequestInfo<T>>> duplicateIconRequestsMap =
+                shortcutRequests.stream().collect(groupingBy(IconRequestInfo::getCacheComponent));
+        Map<ComponentName, BitmapInfo> icons = new ArrayMap<>(duplicateIconRequestsMap.size());
+
+        try (Cursor c = createBulkQueryCursor(
+                shortcutRequests, user, /* useLowResIcons = */ false)) {
+            int componentNameColumnIndex = c.getColumnIndexOrThrow(IconDB.COLUMN_COMPONENT);
+            while (c.moveToNext()) {
+                ComponentName cn = ComponentName.unflattenFromString(
+                        c.getString(componentNameColumnIndex));
+                List<IconRequestInfo<T>> duplicateIconRequests =
+                        duplicateIconRequestsMap.get(cn);
+                if (duplicateIconRequests == null) {
+                    continue;
+                }
+                ShortcutInfo si = duplicateIconRequests.get(0).shortcutInfo;
+                CacheEntry entry = cacheLocked(cn, user, () -> si, mShortcutCachingLogic, c,
+                        /* usePackageIcon= */ false, /* useLowResIcons = */ false);
+                if (entry.bitmap != null && !entry.bitmap.isNullOrLowRes()) {
+                    icons.put(cn, entry.bitmap);
+                }
+            }
+        } catch (SQLiteException e) {
+            Log.d(TAG, "Error reading icon cache", e);
+        }
+
+        Map<ComponentName, FutureTask<BitmapInfo>> renderedIcons = new ArrayMap<>();
+        duplicateIconRequestsMap.forEach((cn, duplicateIconRequests) -> {
+            if (!icons.containsKey(cn)) {
+                renderedIcons.put(cn, renderIcon(
+                        mShortcutCachingLogic, duplicateIconRequests.get(0).shortcutInfo));
+            }
+        });
+        renderedIcons.forEach((cn, task) -> {
+            BitmapInfo renderedIcon = getRenderedIcon(task);
+            if (renderedIcon != null) {
+                // Cache the rendered icon the same way as the icons rendered by getShortcutIcon
+                ShortcutInfo si = duplicateIconRequestsMap.get(cn).get(0).shortcutInfo;
+                icons.put(cn, cacheLocked(cn, user, () -> si,
+                        new RenderedShortcutCachingLogic(renderedIcon),
+                        /* usePackageIcon= */ false, /* useLowResIcons = */ false).bitmap);
+            }
+        });
+
+        duplicateIconRequestsMap.forEach((cn, duplicateIconRequests) -> {
+            BitmapInfo icon = icons.get(cn);
+            if (icon == null || icon.isNullOrLowRes()) {
+                icon = getDefaultIcon(user);
+            }
+            for (IconRequestInfo<T> iconRequest : duplicateIconRequests) {
+                // Same as getShortcutIcon, keep the last saved icon instead of the default
+                if (isDefaultIcon(icon, user) && loadShortcutFallbackIcon(iconRequest)) {
+                    continue;
+                }
+                iconRequest.itemInfo.bitmap =
+                        icon.withBadgeInfo(getShortcutInfoBadge(iconRequest.shortcutInfo));
+            }
+        });
+        return renderedIcons.size();
+    }
+
+    /**
+     * Loads the last saved icon of the shortcut request, as the loader does for the shortcuts
+     * without an icon, and returns true if it was loaded.
+     */
+    private <T extends ItemInfoWithIcon> boolean loadShortcutFallbackIcon(
+            IconRequestInfo<T> iconRequest) {
+        if (iconRequest.itemInfo instanceof WorkspaceItemInfo) {
+            return iconRequest.loadWorkspaceIcon(mContext);
+        }
+        return mIsUsingFallbackOrNonDefaultIconCheck.test(iconRequest.itemInfo);
+    }
+
+    /**
+     * Starts rendering the icon of the object on the thread pool, as rendering doesn't depend on
+     * the state of the cache.
+     */
+    private <O> FutureTask<BitmapInfo> renderIcon(CachingLogic<O> cachingLogic, O object) {
+        FutureTask<BitmapInfo> task =
+                new FutureTask<>(() -> cachingLogic.loadIcon(mContext, object));
+        THREAD_POOL_EXECUTOR.execute(task);
+        return task;
+    }
+
+    @Nullable
+    private static BitmapInfo getRenderedIcon(FutureTask<BitmapInfo> task) {
+        // Render the icon on this thread if the pool hasn't started it yet, as the pool can be
+        // busy with tasks waiting for the cache monitor held by this thread
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException | ExecutionException e) {
+            Log.w(TAG, "Failed to render icon", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of icons or titles which had to be loaded without the cache
+     */
+    private <T extends ItemInfoWithIcon> int loadIconSubsection(
+            Pair<UserHandle, Boolean> sectionKey,
+            List<IconRequestInfo<T>> filteredList,
+            Map<ComponentName, List<IconRequestInfo<T>>> duplicateIconRequestsMap) {
+        IconBlobStore blobStore = sectionKey.second ? null : getIconBlobStoreLocked();
+        if (blobStore == null) {
+            return loadIconSubsectionFromDatabase(
+                    sectionKey, filteredList, duplicateIconRequestsMap);
+        }
+
+        long userSerial = getSerialNumberForUser(sectionKey.first);
+        Map<ComponentName, Pair<Long, String>> rowVersions = new ArrayMap<>();
+        Map<ComponentName, List<IconRequestInfo<T>>> remainingRequestsMap =
+                loadIconSubsectionFromBlobStore(blobStore, sectionKey.first, userSerial,
+                        filteredList, duplicateIconRequestsMap, rowVersions);
+        if (remainingRequestsMap.isEmpty()) {
+            return 0;
+        }
+        int fallbackCount = loadIconSubsectionFromDatabase(sectionKey,
+                filteredList.stream()
+                        .filter(r -> remainingRequestsMap.containsKey(
+                                r.itemInfo.getTargetComponent()))
+                        .collect(Collectors.toList()),
+                remainingRequestsMap);
+
+        // Write back the decoded icons, so that the next load does not decode them again
+        remainingRequestsMap.forEach((cn, requests) -> {
+            Pair<Long, String> rowVersion = rowVersions.get(cn);
+            BitmapInfo icon = requests.get(0).itemInfo.bitmap;
+            if (rowVersion != null && icon != null && !isDefaultIcon(icon, sectionKey.first)) {
+                blobStore.put(cn, userSerial, rowVersion.first, rowVersion.second, icon);
+            }
+        });
+        return fallbackCount;
+    }
+
+    /**
+     * Fills the requests for which the blob store has pixels matching the DB row.
+     *
+     * @param rowVersionsOut filled with the DB lastUpdated and system state values of all the
+     *                       other components
+     * @return the requests which still need to be loaded from the DB
+     */
+    private <T extends ItemInfoWithIcon> Map<ComponentName, List<IconRequestInfo<T>>>
+            loadIconSubsectionFromBlobStore(
+            IconBlobStore blobStore,
+            UserHandle user,
+            long userSerial,
+            List<IconRequestInfo<T>> filteredList,
+            Map<ComponentName, List<IconRequestInfo<T>>> duplicateIconRequestsMap,
+            Map<ComponentName, Pair<Long, String>> rowVersionsOut) {
+        Map<ComponentName, List<IconRequestInfo<T>>> remainingRequestsMap =
+                new ArrayMap<>(duplicateIconRequestsMap.size());
+        remainingRequestsMap.putAll(duplicateIconRequestsMap);
+
+        Trace.beginSection("loadIconSubsectionWithBlobStore");
+        try (Cursor c = createBulkQueryCursor(filteredList, user, BLOB_STORE_COLUMNS)) {
+            int componentNameColumnIndex = c.getColumnIndexOrThrow(IconDB.COLUMN_COMPONENT);
+            int labelColumnIndex = c.getColumnIndexOrThrow(IconDB.COLUMN_LABEL);
+            int lastUpdatedColumnIndex = c.getColumnIndexOrThrow(IconDB.COLUMN_LAST_UPDATED);
+            int systemStateColumnIndex = c.getColumnIndexOrThrow(IconDB.COLUMN_SYSTEM_STATE);
+            while (c.moveToNext()) {
+                ComponentName cn = ComponentName.unflattenFromString(
+                        c.getString(componentNameColumnIndex));
+                List<IconRequestInfo<T>> duplicateIconRequests = remainingRequestsMap.get(cn);
+                if (duplicateIconRequests == null) {
+                    continue;
+                }
+                long lastUpdated = c.getLong(lastUpdatedColumnIndex);
+                String systemState = Objects.toString(c.getString(systemStateColumnIndex), "");
+                BitmapInfo icon = blobStore.get(cn, userSerial, lastUpdated, systemState);
+                if (icon == null) {
+                    rowVersionsOut.put(cn, Pair.create(lastUpdated, systemState));
+                    continue;
+                }
+
+                CacheEntry entry = new CacheEntry();
+                entry.bitmap = icon.withFlags(getUserFlagOpLocked(user));
+                entry.title = c.getString(labelColumnIndex);
+                entry.contentDescription = getUserBadgedLabel(entry.title, user);
+                for (IconRequestInfo<T> iconRequest : duplicateIconRequests) {
+                    applyCacheEntry(entry, iconRequest.itemInfo);
+                }
+                remainingRequestsMap.remove(cn);
+            }
+        } catch (SQLiteException e) {
+            Log.d(TAG, "Error reading icon cache", e);
+        } finally {
+            Trace.endSection();
+        }
+        return remainingRequestsMap;
+    }
+
+    /**
+     * Drops the stored pixels of the package when its DB rows are removed or replaced, as the rows
+     * can be rewritten with the same lastUpdated and system state, eg: for calendar icons.
+     */
+    private void removeFromIconBlobStoreLocked(@NonNull String packageName,
+            @NonNull UserHandle user) {
+        IconBlobStore blobStore = openIconBlobStoreLocked();
+        if (blobStore != null) {
+            blobStore.removePackage(packageName, getSerialNumberForUser(user));
+        }
+    }
+
+    @Nullable
+    private IconBlobStore getIconBlobStoreLocked() {
+        if (Themes.isThemedIconEnabled(mContext)) {
+            // Monochrome icons are not part of the store
+            return null;
+        }
+        return openIconBlobStoreLocked();
+    }
+
+    /**
+     * Returns the store even when it is not used for loading, so that it is kept in sync with the
+     * DB while themed icons are enabled
+     */
+    @Nullable
+    private IconBlobStore openIconBlobStoreLocked() {
+        if (!ENABLE_ICON_BLOB_STORE.get()) {
+            return null;
+        }
+        if (mIconBlobStore == null) {
+            mIconBlobStore = IconBlobStore.open(
+                    new File(mContext.getCacheDir(), LauncherFiles.APP_ICONS_BLOB_STORE),
+                    mIconPixelSize, ICON_BLOB_STORE_MAX_SIZE);
+        }
+        return mIconBlobStore;
+    }
+
+    private <T extends ItemInfoWithIcon> int loadIconSubsectionFromDatabase(
             Pair<UserHandle, Boolean> sectionKey,
             List<IconRequestInfo<T>> filteredList,
             Map<ComponentName, List<IconRequestInfo<T>>> duplicateIconRequestsMap) {
@@ -443,17 +864,30 @@ public class IconCache extends BaseIconCache {
         }
 
         Trace.beginSection("loadIconSubsectionWithFallback");
+        // Start rendering the missing icons together, rather than one after the other below
+        Map<ComponentName, FutureTask<BitmapInfo>> renderedIcons = new ArrayMap<>();
+        if (ENABLE_UNIFIED_BULK_ICON_LOADING.get()) {
+            duplicateIconRequestsMap.forEach((cn, duplicateIconRequests) -> {
+                IconRequestInfo<T> iconRequestInfo = duplicateIconRequests.get(0);
+                if (iconRequestInfo.launcherActivityInfo != null
+                        && needsFallbackIcon(iconRequestInfo.itemInfo)) {
+                    renderedIcons.put(cn, renderIcon(mLauncherActivityInfoCachingLogic,
+                            iconRequestInfo.launcherActivityInfo));
+                }
+            });
+        }
+
         // Fallback title and icon loading
+        int fallbackCount = 0;
         for (ComponentName cn : duplicateIconRequestsMap.keySet()) {
             IconRequestInfo<T> iconRequestInfo = duplicateIconRequestsMap.get(cn).get(0);
             ItemInfoWithIcon itemInfo = iconRequestInfo.itemInfo;
             BitmapInfo icon = itemInfo.bitmap;
             boolean loadFallbackTitle = TextUtils.isEmpty(itemInfo.title);
-            boolean loadFallbackIcon = icon == null
-                    || isDefaultIcon(icon, itemInfo.user)
-                    || icon == BitmapInfo.LOW_RES_INFO;
+            boolean loadFallbackIcon = needsFallbackIcon(itemInfo);
 
             if (loadFallbackTitle || loadFallbackIcon) {
+                fallbackCount++;
                 Log.i(TAG,
                         "Database bulk icon loading failed, using fallback bulk icon loading "
                                 + "for: " + cn);
@@ -468,7 +902,12 @@ public class IconCache extends BaseIconCache {
                 }
                 entry.contentDescription = itemInfo.contentDescription;
 
-                if (loadFallbackIcon) {
+                FutureTask<BitmapInfo> renderedIcon = renderedIcons.get(cn);
+                BitmapInfo renderedBitmap =
+                        renderedIcon == null ? null : getRenderedIcon(renderedIcon);
+                if (renderedBitmap != null) {
+                    entry.bitmap = renderedBitmap;
+                } else if (loadFallbackIcon) {
                     loadFallbackIcon(
                             lai,
                             entry,
@@ -492,20 +931,52 @@ public class IconCache extends BaseIconCache {
             }
         }
         Trace.endSection();
+        return fallbackCount;
+    }
+
+    private boolean needsFallbackIcon(ItemInfoWithIcon itemInfo) {
+        BitmapInfo icon = itemInfo.bitmap;
+        return icon == null
+                || isDefaultIcon(icon, itemInfo.user)
+                || icon == BitmapInfo.LOW_RES_INFO;
     }
 
     /**
      * Fill in {@param infoInOut} with the corresponding icon and label.
      */
-    public synchronized void getTitleAndIconForApp(
+    public void getTitleAndIconForApp(
             @NonNull final PackageItemInfo infoInOut, final boolean useLowResIcon) {
-        CacheEntry entry = getEntryForPackageLocked(
-                infoInOut.packageName, infoInOut.user, useLowResIcon);
-        applyCacheEntry(entry, infoInOut);
+        applyCacheEntry(getEntryForPackage(infoInOut, useLowResIcon), infoInOut);
         if (infoInOut.widgetCategory == NO_CATEGORY) {
             return;
         }
+        synchronized (this) {
+            applyWidgetCategoryLocked(infoInOut);
+        }
+    }
 
+    @NonNull
+    private CacheEntry getEntryForPackage(@NonNull PackageItemInfo info, boolean useLowResIcon) {
+        PackageUserKey key = new PackageUserKey(info.packageName, info.user);
+        CacheEntry entry = mPackageEntrySnapshots.get(key);
+        if (entry != null && (useLowResIcon || !entry.bitmap.isNullOrLowRes())) {
+            return entry;
+        }
+
+        long generation = mPackageEntrySnapshots.getGeneration();
+        long waitStart = SystemClock.elapsedRealtimeNanos();
+        synchronized (this) {
+            onMonitorAcquired(waitStart);
+            entry = snapshotOf(getEntryForPackageLocked(info.packageName, info.user,
+                    useLowResIcon));
+        }
+        if (!isDefaultIcon(entry.bitmap, info.user)) {
+            mPackageEntrySnapshots.put(key, entry, generation);
+        }
+        return entry;
+    }
+
+    private void applyWidgetCategoryLocked(@NonNull final PackageItemInfo infoInOut) {
         WidgetSection widgetSection = WidgetSections.getWidgetSections(mContext)
                 .get(infoInOut.widgetCategory);
         infoInOut.title = mContext.getString(widgetSection.mSectionTitle);
@@ -525,7 +996,6 @@ public class IconCache extends BaseIconCache {
         } catch (Exception e) {
             Log.e(TAG, "Error initializing bitmap for icons with widget category", e);
         }
-
     }
 
     private synchronized BitmapInfo getBadgedIcon(@Nullable final BitmapInfo bitmap,
@@ -555,6 +1025,28 @@ public class IconCache extends BaseIconCache {
     public void updateSessionCache(PackageUserKey key, PackageInstaller.SessionInfo info) {
         cachePackageInstallInfo(key.mPackageName, key.mUser, info.getAppIcon(),
                 info.getAppLabel());
+        invalidateSnapshots(key.mPackageName, key.mUser);
+    }
+
+    /**
+     * Dumps the snapshot, monitor contention and bulk loading stats
+     */
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "IconCache:");
+        mEntrySnapshots.dump(prefix + "  ", writer, "componentSnapshots");
+        mPackageEntrySnapshots.dump(prefix + "  ", writer, "packageSnapshots");
+        long acquireCount = mMonitorAcquireCount.get();
+        long waitNanos = mMonitorWaitNanos.get();
+        writer.println(prefix + "  monitor: acquired=" + acquireCount
+                + " totalWaitMs=" + waitNanos / 1_000_000
+                + " avgWaitUs=" + (acquireCount == 0 ? 0 : waitNanos / acquireCount / 1000));
+        long batchCount = mBulkBatchCount.get();
+        long bulkNanos = mBulkTimeNanos.get();
+        writer.println(prefix + "  bulkLoading: batches=" + batchCount
+                + " icons=" + mBulkIconCount.get()
+                + " rendered=" + mBulkFallbackCount.get()
+                + " totalMs=" + bulkNanos / 1_000_000
+                + " avgBatchMs=" + (batchCount == 0 ? 0 : bulkNanos / batchCount / 1_000_000));
     }
 
     @Override
@@ -563,6 +1055,24 @@ public class IconCache extends BaseIconCache {
         return mIconProvider.getSystemStateForPackage(mSystemState, packageName);
     }
 
+    /**
+     * Caching logic for a shortcut which icon was already rendered on the thread pool
+     */
+    private static class RenderedShortcutCachingLogic extends ShortcutCachingLogic {
+
+        private final BitmapInfo mIcon;
+
+        RenderedShortcutCachingLogic(BitmapInfo icon) {
+            mIcon = icon;
+        }
+
+        @NonNull
+        @Override
+        public BitmapInfo loadIcon(@NonNull Context context, @NonNull ShortcutInfo info) {
+            return mIcon;
+        }
+    }
+
     /**
      * Interface for receiving itemInfo with high-res icon.
      */
@@ -0,0 +1,477 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.logging;
+
+import static com.android.launcher3.logging.FileLog.LOG_DAYS;
+import static com.android.launcher3.logging.FileLog.MSG_CLOSE;
+import static com.android.launcher3.logging.FileLog.MSG_FLUSH;
+import static com.android.launcher3.logging.FileLog.MSG_WRITE;
+
+import android.os.Handler;
+import android.os.Message;
+import android.util.Log;
+import android.util.Pair;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.util.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Writes the logs of {@link FileLog} as compact binary records into preallocated memory-mapped
+ * files, which are only formatted as text when they are dumped.
+ *
+ * Logs are queued by the calling threads and written in a single batch per turn of the logger
+ * looper. A file holds a table of interned strings, used for the tags and the short messages,
+ * followed by two segments used as a ring: when the current segment is full, the other segment
+ * is cleared and becomes the current one, so a file always keeps at least the latest
+ * {@link #SEGMENT_SIZE} bytes of records.
+ *
+ * As with the text files, log files are named after the day of the year modulo
+ * {@link FileLog#LOG_DAYS}, and a file which wasn't written in the last 36 hours is cleared.
+ */
+class BinaryLogWriter implements Handler.Callback {
+
+    private static final String TAG = "BinaryLogWriter";
+
+    static final String FILE_NAME_PREFIX = "binlog-";
+
+    private static final long CLOSE_DELAY = 5000;  // 5 seconds
+
+    private static final int MAGIC = 0x4c4f4731;  // "LOG1"
+    private static final int VERSION = 1;
+
+    // Header: magic, version, current segment, write position of each segment, number of
+    // interned strings and write position of the string table
+    private static final int HEADER_SIZE = 64;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_CURRENT_SEGMENT = 8;
+    private static final int OFFSET_SEGMENT_POSITIONS = 12;
+    private static final int OFFSET_STRING_COUNT = 20;
+    private static final int OFFSET_STRING_TABLE_POSITION = 24;
+
+    private static final int STRING_TABLE_SIZE = 256 << 10;
+    @VisibleForTesting
+    static final int SEGMENT_SIZE = 1 << 20;
+    private static final int FILE_SIZE = HEADER_SIZE + STRING_TABLE_SIZE + 2 * SEGMENT_SIZE;
+
+    // Strings longer than this aren't interned, as they are unlikely to repeat
+    private static final int MAX_INTERNED_LENGTH = 160;
+    // Longer strings, like large stack traces, are truncated
+    private static final int MAX_INLINE_LENGTH = 16 << 10;
+
+    // String references in a record
+    private static final int REF_NULL = -1;
+    private static final int REF_INLINE_BASE = -2;
+
+    static final byte LEVEL_PRINT = 0;
+    static final byte LEVEL_DEBUG = 1;
+    static final byte LEVEL_ERROR = 2;
+
+    private final DateFormat mDateFormat;
+
+    // Records logged since the last batch, guarded by itself
+    private final ArrayList<Record> mPendingRecords = new ArrayList<>();
+
+    private String mCurrentFileName = null;
+    @Nullable
+    private MappedByteBuffer mBuffer;
+    private final HashMap<String, Integer> mInternedStrings = new HashMap<>();
+
+    BinaryLogWriter(DateFormat dateFormat) {
+        mDateFormat = dateFormat;
+    }
+
+    /**
+     * Queues a record to be written in the next batch
+     */
+    void log(Handler handler, byte level, String tag, String msg, @Nullable Throwable t) {
+        Record record = new Record(System.currentTimeMillis(), level, tag, msg, t);
+        synchronized (mPendingRecords) {
+            mPendingRecords.add(record);
+            if (mPendingRecords.size() > 1) {
+                // A batch is already scheduled
+                return;
+            }
+        }
+        handler.sendEmptyMessage(MSG_WRITE);
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        if (FileLog.sLogsDirectory == null) {
+            synchronized (mPendingRecords) {
+                mPendingRecords.clear();
+            }
+            return true;
+        }
+        switch (msg.what) {
+            case MSG_WRITE: {
+                writeBatch();
+                // Auto close file after some time.
+                msg.getTarget().removeMessages(MSG_CLOSE);
+                msg.getTarget().sendEmptyMessageDelayed(MSG_CLOSE, CLOSE_DELAY);
+                return true;
+            }
+            case MSG_CLOSE: {
+                close();
+                return true;
+            }
+            case MSG_FLUSH: {
+                // Pending records are written before the flush, as they were queued first
+                writeBatch();
+                close();
+                Pair<PrintWriter, CountDownLatch> p =
+                        (Pair<PrintWriter, CountDownLatch>) msg.obj;
+                if (p.first != null) {
+                    for (int i = 0; i < LOG_DAYS; i++) {
+                        dumpFile(p.first, new File(FileLog.sLogsDirectory, FILE_NAME_PREFIX + i));
+                    }
+                }
+                p.second.countDown();
+                return true;
+            }
+        }
+        return true;
+    }
+
+    @WorkerThread
+    private void writeBatch() {
+        ArrayList<Record> records;
+        synchronized (mPendingRecords) {
+            if (mPendingRecords.isEmpty()) {
+                return;
+            }
+            // Take the records, so that logging doesn't wait for the batch to be written
+            records = new ArrayList<>(mPendingRecords);
+            mPendingRecords.clear();
+        }
+
+        Calendar cal = Calendar.getInstance();
+        String fileName = FILE_NAME_PREFIX + (cal.get(Calendar.DAY_OF_YEAR) % LOG_DAYS);
+        if (!fileName.equals(mCurrentFileName)) {
+            close();
+        }
+        File logFile = new File(FileLog.sLogsDirectory, fileName);
+        try {
+            if (mBuffer == null) {
+                open(logFile, cal);
+                mCurrentFileName = fileName;
+            }
+            for (int i = 0; i < records.size(); i++) {
+                writeRecord(mBuffer, records.get(i));
+            }
+            // Writes to the mapping don't update the modification time used for the rotation
+            logFile.setLastModified(cal.getTimeInMillis());
+        } catch (Exception e) {
+            Log.e(TAG, "Error writing logs to file", e);
+            // Close the file, will try reopening during next log
+            close();
+        }
+    }
+
+    private void open(File logFile, Calendar cal) throws IOException {
+        boolean keep = false;
+        if (logFile.exists()) {
+            Calendar modifiedTime = Calendar.getInstance();
+            modifiedTime.setTimeInMillis(logFile.lastModified());
+
+            // If the file was modified more that 36 hours ago, purge the file.
+            // We use instead of 24 to account for day-365 followed by day-1
+            modifiedTime.add(Calendar.HOUR, 36);
+            keep = cal.before(modifiedTime);
+        }
+        mBuffer = map(logFile);
+        mInternedStrings.clear();
+        if (!keep || !isValid(mBuffer)) {
+            reset(mBuffer);
+            return;
+        }
+        // Load the string table, so that the new records keep using the same strings
+        int count = mBuffer.getInt(OFFSET_STRING_COUNT);
+        List<String> strings = readStringTable(mBuffer);
+        for (int i = 0; i < count && i < strings.size(); i++) {
+            mInternedStrings.put(strings.get(i), i);
+        }
+    }
+
+    private static MappedByteBuffer map(File logFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+        try {
+            if (file.length() != FILE_SIZE) {
+                file.setLength(FILE_SIZE);
+            }
+            // The mapping stays valid after the file is closed
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        } finally {
+            IOUtils.closeSilently(file);
+        }
+    }
+
+    private static boolean isValid(ByteBuffer buffer) {
+        if (buffer.getInt(OFFSET_MAGIC) != MAGIC || buffer.getInt(OFFSET_VERSION) != VERSION) {
+            return false;
+        }
+        int current = buffer.getInt(OFFSET_CURRENT_SEGMENT);
+        int tablePos = buffer.getInt(OFFSET_STRING_TABLE_POSITION);
+        return (current == 0 || current == 1)
+                && isValidPosition(buffer.getInt(OFFSET_SEGMENT_POSITIONS), SEGMENT_SIZE)
+                && isValidPosition(buffer.getInt(OFFSET_SEGMENT_POSITIONS + 4), SEGMENT_SIZE)
+                && isValidPosition(tablePos, STRING_TABLE_SIZE);
+    }
+
+    private static boolean isValidPosition(int position, int size) {
+        return position >= 0 && position <= size;
+    }
+
+    private static void reset(ByteBuffer buffer) {
+        buffer.putInt(OFFSET_MAGIC, MAGIC);
+        buffer.putInt(OFFSET_VERSION, VERSION);
+        buffer.putInt(OFFSET_CURRENT_SEGMENT, 0);
+        buffer.putInt(OFFSET_SEGMENT_POSITIONS, 0);
+        buffer.putInt(OFFSET_SEGMENT_POSITIONS + 4, 0);
+        buffer.putInt(OFFSET_STRING_COUNT, 0);
+        buffer.putInt(OFFSET_STRING_TABLE_POSITION, 0);
+    }
+
+    private void writeRecord(ByteBuffer buffer, Record record) {
+        int tagRef = intern(buffer, record.tag);
+        int msgRef = intern(buffer, record.msg);
+        byte[] tagBytes = tagRef < 0 ? getInlineBytes(record.tag) : null;
+        byte[] msgBytes = msgRef < 0 ? getInlineBytes(record.msg) : null;
+        // Stack traces are only formatted here, off the logging thread
+        byte[] traceBytes = record.throwable == null ? null
+                : getInlineBytes(Log.getStackTraceString(record.throwable));
+
+        int size = 4 + 8 + 1 + getStringSize(tagBytes) + getStringSize(msgBytes)
+                + (record.throwable == null ? 4 : getStringSize(traceBytes));
+        int current = buffer.getInt(OFFSET_CURRENT_SEGMENT);
+        int position = buffer.getInt(OFFSET_SEGMENT_POSITIONS + 4 * current);
+        if (position + size > SEGMENT_SIZE) {
+            // Switch to the other segment, dropping its records
+            current = 1 - current;
+            position = 0;
+            buffer.putInt(OFFSET_CURRENT_SEGMENT, current);
+        }
+
+        buffer.position(getSegmentOffset(current) + position);
+        buffer.putInt(size);
+        buffer.putLong(record.time);
+        buffer.put(record.level);
+        putString(buffer, tagRef, tagBytes);
+        putString(buffer, msgRef, msgBytes);
+        if (record.throwable == null) {
+            buffer.putInt(REF_NULL);
+        } else {
+            putString(buffer, REF_INLINE_BASE, traceBytes);
+        }
+        // Commit the record after its content
+        buffer.putInt(OFFSET_SEGMENT_POSITIONS + 4 * current, position + size);
+    }
+
+    /**
+     * Returns the id of the string in the string table, adding it if possible, or a negative
+     * value if the string is written inline.
+     */
+    private int intern(ByteBuffer buffer, String s) {
+        Integer id = mInternedStrings.get(s);
+        if (id != null) {
+            return id;
+        }
+        if (s.length() > MAX_INTERNED_LENGTH) {
+            return REF_INLINE_BASE;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int tablePos = buffer.getInt(OFFSET_STRING_TABLE_POSITION);
+        if (tablePos + 2 + bytes.length > STRING_TABLE_SIZE) {
+            // The table is full, new strings are written inline until the file is cleared
+            return REF_INLINE_BASE;
+        }
+        buffer.position(HEADER_SIZE + tablePos);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+
+        int newId = buffer.getInt(OFFSET_STRING_COUNT);
+        buffer.putInt(OFFSET_STRING_TABLE_POSITION, tablePos + 2 + bytes.length);
+        buffer.putInt(OFFSET_STRING_COUNT, newId + 1);
+        mInternedStrings.put(s, newId);
+        return newId;
+    }
+
+    private static byte[] getInlineBytes(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_INLINE_LENGTH) {
+            return bytes;
+        }
+        byte[] truncated = new byte[MAX_INLINE_LENGTH];
+        System.arraycopy(bytes, 0, truncated, 0, MAX_INLINE_LENGTH);
+        return truncated;
+    }
+
+    private static int getStringSize(@Nullable byte[] inlineBytes) {
+        return inlineBytes == null ? 4 : 4 + inlineBytes.length;
+    }
+
+    private static void putString(ByteBuffer buffer, int ref, @Nullable byte[] inlineBytes) {
+        if (inlineBytes == null) {
+            buffer.putInt(ref);
+        } else {
+            buffer.putInt(REF_INLINE_BASE - inlineBytes.length);
+            buffer.put(inlineBytes);
+        }
+    }
+
+    private static int getSegmentOffset(int segment) {
+        return HEADER_SIZE + STRING_TABLE_SIZE + segment * SEGMENT_SIZE;
+    }
+
+    private void close() {
+        if (mBuffer != null) {
+            mBuffer.force();
+            mBuffer = null;
+        }
+        mCurrentFileName = null;
+        mInternedStrings.clear();
+    }
+
+    /**
+     * Formats the records of the log file as text, from the oldest to the newest
+     */
+    @VisibleForTesting
+    void dumpFile(PrintWriter out, File logFile) {
+        if (!logFile.exists()) {
+            return;
+        }
+        ByteBuffer buffer;
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "r")) {
+            if (file.length() != FILE_SIZE) {
+                return;
+            }
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, FILE_SIZE);
+        } catch (IOException e) {
+            return;
+        }
+        if (!isValid(buffer)) {
+            return;
+        }
+        out.println();
+        out.println("--- logfile: " + logFile.getName() + " ---");
+
+        List<String> strings = readStringTable(buffer);
+        int current = buffer.getInt(OFFSET_CURRENT_SEGMENT);
+        dumpSegment(out, buffer, 1 - current, strings);
+        dumpSegment(out, buffer, current, strings);
+    }
+
+    private void dumpSegment(PrintWriter out, ByteBuffer buffer, int segment,
+            List<String> strings) {
+        int offset = getSegmentOffset(segment);
+        int end = offset + buffer.getInt(OFFSET_SEGMENT_POSITIONS + 4 * segment);
+        int position = offset;
+        try {
+            while (position < end) {
+                buffer.position(position);
+                int size = buffer.getInt();
+                if (size <= 0 || position + size > end) {
+                    break;
+                }
+                long time = buffer.getLong();
+                buffer.get();  // level, not part of the text format
+                String tag = getString(buffer, strings);
+                String msg = getString(buffer, strings);
+                String trace = getString(buffer, strings);
+
+                String line = String.format("%s %s %s",
+                        mDateFormat.format(new Date(time)), tag, msg);
+                if (trace != null) {
+                    line += "\n" + trace;
+                }
+                out.println(line);
+                position += size;
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            Log.e(TAG, "Corrupted log record at " + position, e);
+        }
+    }
+
+    @Nullable
+    private static String getString(ByteBuffer buffer, List<String> strings) {
+        int ref = buffer.getInt();
+        if (ref == REF_NULL) {
+            return null;
+        }
+        if (ref >= 0) {
+            return ref < strings.size() ? strings.get(ref) : "";
+        }
+        byte[] bytes = new byte[REF_INLINE_BASE - ref];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readStringTable(ByteBuffer buffer) {
+        int count = buffer.getInt(OFFSET_STRING_COUNT);
+        int end = HEADER_SIZE + buffer.getInt(OFFSET_STRING_TABLE_POSITION);
+        List<String> strings = new ArrayList<>(count);
+        buffer.position(HEADER_SIZE);
+        while (strings.size() < count && buffer.position() + 2 <= end) {
+            int length = buffer.getShort() & 0xffff;
+            if (buffer.position() + length > end) {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    private static class Record {
+
+        final long time;
+        final byte level;
+        final String tag;
+        final String msg;
+        @Nullable
+        final Throwable throwable;
+
+        Record(long time, byte level, String tag, String msg, @Nullable Throwable throwable) {
+            this.time = time;
+            this.level = level;
+            this.tag = String.valueOf(tag);
+            this.msg = String.valueOf(msg);
+            this.throwable = throwable;
+        }
+    }
+}
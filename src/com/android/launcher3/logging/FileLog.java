@@ -1,5 +1,9 @@
 package com.android.launcher3.logging;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_BINARY_FILE_LOG;
+import static com.android.launcher3.logging.BinaryLogWriter.LEVEL_DEBUG;
+import static com.android.launcher3.logging.BinaryLogWriter.LEVEL_ERROR;
+import static com.android.launcher3.logging.BinaryLogWriter.LEVEL_PRINT;
 import static com.android.launcher3.util.Executors.createAndStartNewLooper;
 
 import android.os.Handler;
@@ -39,8 +43,14 @@ public final class FileLog {
 
     private static final long MAX_LOG_FILE_SIZE = 8 << 20;  // 4 mb
 
+    static final int MSG_WRITE = 1;
+    static final int MSG_CLOSE = 2;
+    static final int MSG_FLUSH = 3;
+
     private static Handler sHandler = null;
-    private static File sLogsDirectory = null;
+    // Writer of the binary logs, if they are used instead of the text logs
+    private static BinaryLogWriter sBinaryWriter = null;
+    static File sLogsDirectory = null;
 
     public static final int LOG_DAYS = 4;
 
@@ -51,6 +61,7 @@ public final class FileLog {
                 if (sHandler != null && !logsDir.equals(sLogsDirectory)) {
                     ((HandlerThread) sHandler.getLooper().getThread()).quit();
                     sHandler = null;
+                    sBinaryWriter = null;
                 }
             }
         }
@@ -59,22 +70,22 @@ public final class FileLog {
 
     public static void d(String tag, String msg, Exception e) {
         Log.d(tag, msg, e);
-        print(tag, msg, e);
+        print(LEVEL_DEBUG, tag, msg, e);
     }
 
     public static void d(String tag, String msg) {
         Log.d(tag, msg);
-        print(tag, msg);
+        print(LEVEL_DEBUG, tag, msg, null);
     }
 
     public static void e(String tag, String msg, Exception e) {
         Log.e(tag, msg, e);
-        print(tag, msg, e);
+        print(LEVEL_ERROR, tag, msg, e);
     }
 
     public static void e(String tag, String msg) {
         Log.e(tag, msg);
-        print(tag, msg);
+        print(LEVEL_ERROR, tag, msg, null);
     }
 
     public static void print(String tag, String msg) {
@@ -82,22 +93,39 @@ public final class FileLog {
     }
 
     public static void print(String tag, String msg, Exception e) {
+        print(LEVEL_PRINT, tag, msg, e);
+    }
+
+    private static void print(byte level, String tag, String msg, Exception e) {
         if (!ENABLED) {
             return;
         }
+        Handler handler = getHandler();
+        BinaryLogWriter binaryWriter = sBinaryWriter;
+        if (binaryWriter != null) {
+            // Formatted when the logs are dumped
+            binaryWriter.log(handler, level, tag, msg, e);
+            return;
+        }
         String out = String.format("%s %s %s", DATE_FORMAT.format(new Date()), tag, msg);
         if (e != null) {
             out += "\n" + Log.getStackTraceString(e);
         }
-        Message.obtain(getHandler(), LogWriterCallback.MSG_WRITE, out).sendToTarget();
+        Message.obtain(handler, MSG_WRITE, out).sendToTarget();
     }
 
     @VisibleForTesting
     static Handler getHandler() {
         synchronized (DATE_FORMAT) {
             if (sHandler == null) {
-                sHandler = new Handler(createAndStartNewLooper("file-logger"),
-                        new LogWriterCallback());
+                Handler.Callback callback;
+                if (ENABLE_BINARY_FILE_LOG.get()) {
+                    sBinaryWriter = new BinaryLogWriter(DATE_FORMAT);
+                    callback = sBinaryWriter;
+                } else {
+                    callback = new LogWriterCallback();
+                }
+                sHandler = new Handler(createAndStartNewLooper("file-logger"), callback);
             }
         }
         return sHandler;
@@ -112,7 +140,7 @@ public final class FileLog {
             return false;
         }
         CountDownLatch latch = new CountDownLatch(1);
-        Message.obtain(getHandler(), LogWriterCallback.MSG_FLUSH,
+        Message.obtain(getHandler(), MSG_FLUSH,
                 Pair.create(out, latch)).sendToTarget();
 
         latch.await(2, TimeUnit.SECONDS);
@@ -128,10 +156,6 @@ public final class FileLog {
 
         private static final long CLOSE_DELAY = 5000;  // 5 seconds
 
-        private static final int MSG_WRITE = 1;
-        private static final int MSG_CLOSE = 2;
-        private static final int MSG_FLUSH = 3;
-
         private String mCurrentFileName = null;
         private PrintWriter mCurrentWriter = null;
 
@@ -237,9 +261,11 @@ public final class FileLog {
         try {
             flushAll(null);
         } catch (InterruptedException e) { }
+        String prefix = sBinaryWriter != null
+                ? BinaryLogWriter.FILE_NAME_PREFIX : FILE_NAME_PREFIX;
         File[] files = new File[LOG_DAYS];
         for (int i = 0; i < LOG_DAYS; i++) {
-            files[i] = new File(sLogsDirectory, FILE_NAME_PREFIX + i);
+            files[i] = new File(sLogsDirectory, prefix + i);
         }
         return files;
     }
@@ -36,6 +36,7 @@ import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.ResourceBasedOverride;
 import com.android.launcher3.views.ActivityContext;
 
+import java.io.PrintWriter;
 import java.util.List;
 
 /**
@@ -997,6 +998,11 @@ public class StatsLogManager implements ResourceBasedOverride {
         return this;
     }
 
+    /**
+     * Dumps the state of the logging, if any
+     */
+    public void dump(String prefix, PrintWriter writer) { }
+
     /**
      * Creates a new instance of {@link StatsLogManager} based on provided context.
      */
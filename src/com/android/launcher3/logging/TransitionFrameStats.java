@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.logging;
+
+import android.os.Bundle;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histogram of the frame durations recorded while a type of transition runs, along with the
+ * work items blamed for its slow frames.
+ *
+ * The memory used is bounded: frame durations are counted in fixed buckets, and only the
+ * {@link #MAX_WORK_ITEMS} work items blamed the most are kept, using the space-saving algorithm
+ * which guarantees that any work item blamed for more than 1/{@link #MAX_WORK_ITEMS} of the slow
+ * frames is kept.
+ */
+public class TransitionFrameStats {
+
+    // Upper bounds of the frame duration buckets, the last bucket has no upper bound
+    @VisibleForTesting
+    static final int[] BUCKET_BOUNDS_MS = {8, 12, 17, 25, 34, 50, 67, 100, 150, 250, 500};
+
+    @VisibleForTesting
+    static final int MAX_WORK_ITEMS = 8;
+
+    // Keys of the stats returned to tests
+    public static final String KEY_TRANSITIONS = "transitions";
+    public static final String KEY_FRAMES = "frames";
+    public static final String KEY_SLOW_FRAMES = "slow_frames";
+    public static final String KEY_MAX_FRAME_MS = "max_frame_ms";
+    public static final String KEY_BUCKET_BOUNDS_MS = "bucket_bounds_ms";
+    public static final String KEY_BUCKET_COUNTS = "bucket_counts";
+
+    public final String name;
+
+    private final int[] mBucketCounts = new int[BUCKET_BOUNDS_MS.length + 1];
+    private int mTransitionCount;
+    private int mFrameCount;
+    private int mSlowFrameCount;
+    private long mTotalFrameNanos;
+    private long mMaxFrameNanos;
+
+    // Work items blamed for slow frames, with the number of slow frames blamed on them and their
+    // total duration
+    private final String[] mWorkItems = new String[MAX_WORK_ITEMS];
+    private final int[] mWorkItemCounts = new int[MAX_WORK_ITEMS];
+    private final long[] mWorkItemNanos = new long[MAX_WORK_ITEMS];
+    private int mWorkItemCount;
+
+    public TransitionFrameStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Called when a transition of this type starts
+     */
+    public void onTransitionStarted() {
+        mTransitionCount++;
+    }
+
+    /**
+     * Records a frame drawn while a transition of this type was running
+     *
+     * @param slow whether the frame took long enough to be noticed as jank
+     * @param workItem the longest work item run on the main thread during a slow frame, if known
+     * @param workItemNanos the duration of that work item
+     */
+    public void onFrame(long frameNanos, boolean slow, @Nullable String workItem,
+            long workItemNanos) {
+        mFrameCount++;
+        mTotalFrameNanos += frameNanos;
+        mMaxFrameNanos = Math.max(mMaxFrameNanos, frameNanos);
+        mBucketCounts[getBucket(frameNanos)]++;
+        if (slow) {
+            mSlowFrameCount++;
+            if (workItem != null) {
+                blame(workItem, workItemNanos);
+            }
+        }
+    }
+
+    private static int getBucket(long frameNanos) {
+        long frameMs = TimeUnit.NANOSECONDS.toMillis(frameNanos);
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            if (frameMs <= BUCKET_BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_MS.length;
+    }
+
+    private void blame(String workItem, long workItemNanos) {
+        int index = -1;
+        for (int i = 0; i < mWorkItemCount; i++) {
+            if (mWorkItems[i].equals(workItem)) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            if (mWorkItemCount < MAX_WORK_ITEMS) {
+                index = mWorkItemCount++;
+            } else {
+                // Replace the least blamed work item, which keeps its count as an upper bound
+                // of the count of the new one
+                index = 0;
+                for (int i = 1; i < mWorkItemCount; i++) {
+                    if (mWorkItemCounts[i] < mWorkItemCounts[index]) {
+                        index = i;
+                    }
+                }
+                mWorkItemNanos[index] = 0;
+            }
+            mWorkItems[index] = workItem;
+        }
+        mWorkItemCounts[index]++;
+        mWorkItemNanos[index] += workItemNanos;
+    }
+
+    @VisibleForTesting
+    int getFrameCount() {
+        return mFrameCount;
+    }
+
+    @VisibleForTesting
+    int getSlowFrameCount() {
+        return mSlowFrameCount;
+    }
+
+    @VisibleForTesting
+    int[] getBucketCounts() {
+        return mBucketCounts.clone();
+    }
+
+    /**
+     * Returns the number of slow frames blamed on the given work item, or 0 if it isn't kept
+     */
+    @VisibleForTesting
+    int getBlamedFrameCount(String workItem) {
+        for (int i = 0; i < mWorkItemCount; i++) {
+            if (mWorkItems[i].equals(workItem)) {
+                return mWorkItemCounts[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the stats as a bundle, for tests
+     */
+    public Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putInt(KEY_TRANSITIONS, mTransitionCount);
+        bundle.putInt(KEY_FRAMES, mFrameCount);
+        bundle.putInt(KEY_SLOW_FRAMES, mSlowFrameCount);
+        bundle.putLong(KEY_MAX_FRAME_MS, TimeUnit.NANOSECONDS.toMillis(mMaxFrameNanos));
+        bundle.putIntArray(KEY_BUCKET_BOUNDS_MS, BUCKET_BOUNDS_MS.clone());
+        bundle.putIntArray(KEY_BUCKET_COUNTS, mBucketCounts.clone());
+        return bundle;
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + name + ": transitions=" + mTransitionCount
+                + " frames=" + mFrameCount
+                + " slowFrames=" + mSlowFrameCount
+                + " avgFrameMs=" + (mFrameCount == 0 ? 0
+                        : TimeUnit.NANOSECONDS.toMillis(mTotalFrameNanos / mFrameCount))
+                + " maxFrameMs=" + TimeUnit.NANOSECONDS.toMillis(mMaxFrameNanos));
+
+        StringBuilder buckets = new StringBuilder(prefix).append("\tframeMs:");
+        for (int i = 0; i < mBucketCounts.length; i++) {
+            if (i < BUCKET_BOUNDS_MS.length) {
+                buckets.append(" <=").append(BUCKET_BOUNDS_MS[i]);
+            } else {
+                buckets.append(" >").append(BUCKET_BOUNDS_MS[i - 1]);
+            }
+            buckets.append('=').append(mBucketCounts[i]);
+        }
+        writer.println(buckets);
+
+        if (mWorkItemCount == 0) {
+            return;
+        }
+        writer.println(prefix + "\tslow frames by longest work item:");
+        Integer[] order = new Integer[mWorkItemCount];
+        for (int i = 0; i < mWorkItemCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(mWorkItemCounts[b], mWorkItemCounts[a]));
+        for (int i : order) {
+            writer.println(prefix + "\t\t" + mWorkItemCounts[i] + " frames, "
+                    + TimeUnit.NANOSECONDS.toMillis(mWorkItemNanos[i]) + "ms: " + mWorkItems[i]);
+        }
+    }
+}
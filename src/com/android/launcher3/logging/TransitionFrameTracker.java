@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.logging;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_TRANSITION_FRAME_TRACKING;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.ArrayMap;
+import android.util.SparseArray;
+import android.view.Choreographer;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.util.MainThreadInitializedObject;
+import com.android.launcher3.util.TraceHelper;
+import com.android.launcher3.util.window.RefreshRateTracker;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the duration of the frames drawn while launcher transitions run, and attributes the
+ * slow frames to the running transitions and to the longest work item run on the main thread
+ * during each of them.
+ *
+ * Frame durations are measured as the interval between consecutive {@link Choreographer} frames
+ * on the main thread, which is where launcher transitions are driven from. The work items are the
+ * sections traced on the main thread through {@link TraceHelper}, which are only timed while a
+ * transition runs, so slow frames caused by untraced work aren't attributed. The results are kept
+ * in a bounded {@link TransitionFrameStats} per type of transition, which is dumped with the
+ * activity and returned to tests.
+ */
+@UiThread
+public class TransitionFrameTracker implements Choreographer.FrameCallback,
+        TraceHelper.MainThreadSectionListener {
+
+    public static final MainThreadInitializedObject<TransitionFrameTracker> INSTANCE =
+            new MainThreadInitializedObject<>(TransitionFrameTracker::new);
+
+    public static final String TRANSITION_STATE_PREFIX = "State:";
+    public static final String TRANSITION_APP_LAUNCH_FROM_ICON = "AppLaunchFromIcon";
+    public static final String TRANSITION_APP_LAUNCH_FROM_WIDGET = "AppLaunchFromWidget";
+    public static final String TRANSITION_APP_LAUNCH_FROM_RECENTS = "AppLaunchFromRecents";
+    public static final String TRANSITION_APP_CLOSE_TO_HOME = "AppCloseToHome";
+    public static final String TRANSITION_SWIPE_UP_GESTURE = "SwipeUpGesture";
+    public static final String TRANSITION_ALL_APPS_OPEN = "AllAppsOpen";
+    public static final String TRANSITION_ALL_APPS_CLOSE = "AllAppsClose";
+    public static final String TRANSITION_FOLDER_OPEN = "FolderOpen";
+    public static final String TRANSITION_FOLDER_CLOSE = "FolderClose";
+
+    public static final int NO_TRANSITION = -1;
+
+    // Frames taking longer than this number of frame intervals are counted as slow
+    private static final float SLOW_FRAME_RATIO = 1.5f;
+
+    // Maximum number of types of transitions tracked, others being counted together
+    private static final int MAX_TRANSITION_TYPES = 32;
+    private static final String TRANSITION_OTHER = "Other";
+
+    private final Context mContext;
+    private final ArrayMap<String, TransitionFrameStats> mStats = new ArrayMap<>();
+    private final SparseArray<TransitionFrameStats> mRunningTransitions = new SparseArray<>();
+    private int mNextTransitionId;
+
+    private long mFrameIntervalNanos;
+    private long mLastFrameTimeNanos;
+
+    // Longest section traced on the main thread since the last frame
+    @Nullable
+    private String mLongestSection;
+    private long mLongestSectionNanos;
+
+    // Trace helper timing the sections for this tracker
+    @Nullable
+    private TraceHelper mTraceHelper;
+
+    private TransitionFrameTracker(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Starts recording the frames of a transition of the given type, until
+     * {@link #endTransition} is called with the returned id.
+     */
+    public int beginTransition(String name) {
+        if (!ENABLE_TRANSITION_FRAME_TRACKING.get()) {
+            return NO_TRANSITION;
+        }
+        TransitionFrameStats stats = mStats.get(name);
+        if (stats == null) {
+            if (mStats.size() >= MAX_TRANSITION_TYPES) {
+                name = TRANSITION_OTHER;
+                stats = mStats.get(name);
+            }
+            if (stats == null) {
+                stats = new TransitionFrameStats(name);
+                mStats.put(name, stats);
+            }
+        }
+        stats.onTransitionStarted();
+
+        int id = mNextTransitionId++;
+        mRunningTransitions.put(id, stats);
+        if (mRunningTransitions.size() == 1) {
+            startFrameTracking();
+        }
+        return id;
+    }
+
+    /**
+     * Stops recording the frames of the transition with the given id
+     */
+    public void endTransition(int id) {
+        int index = mRunningTransitions.indexOfKey(id);
+        if (index < 0) {
+            return;
+        }
+        mRunningTransitions.removeAt(index);
+        if (mRunningTransitions.size() == 0) {
+            stopFrameTracking();
+        }
+    }
+
+    /**
+     * Records the frames of a transition of the given type while the animator runs
+     */
+    public void trackAnimator(Animator animator, String name) {
+        if (!ENABLE_TRANSITION_FRAME_TRACKING.get()) {
+            return;
+        }
+        animator.addListener(new AnimatorListenerAdapter() {
+            private int mTransitionId = NO_TRANSITION;
+
+            @Override
+            public void onAnimationStart(Animator animation) {
+                endTransition(mTransitionId);
+                mTransitionId = beginTransition(name);
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                endTransition(mTransitionId);
+                mTransitionId = NO_TRANSITION;
+            }
+        });
+    }
+
+    private void startFrameTracking() {
+        mFrameIntervalNanos =
+                TimeUnit.MILLISECONDS.toNanos(RefreshRateTracker.getSingleFrameMs(mContext));
+        mLastFrameTimeNanos = 0;
+        resetLongestSection();
+        mTraceHelper = TraceHelper.INSTANCE;
+        mTraceHelper.setMainThreadSectionListener(this);
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void stopFrameTracking() {
+        Choreographer.getInstance().removeFrameCallback(this);
+        if (mTraceHelper != null) {
+            mTraceHelper.setMainThreadSectionListener(null);
+            mTraceHelper = null;
+        }
+        resetLongestSection();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (mRunningTransitions.size() == 0) {
+            return;
+        }
+        if (mLastFrameTimeNanos > 0) {
+            onFrame(frameTimeNanos - mLastFrameTimeNanos);
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        resetLongestSection();
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void onFrame(long frameNanos) {
+        boolean slow = frameNanos > mFrameIntervalNanos * SLOW_FRAME_RATIO;
+        String workItem = slow ? mLongestSection : null;
+        for (int i = 0; i < mRunningTransitions.size(); i++) {
+            TransitionFrameStats stats = mRunningTransitions.valueAt(i);
+            if (mRunningTransitions.indexOfValue(stats) < i) {
+                // Transitions of the same type running together only count the frame once
+                continue;
+            }
+            stats.onFrame(frameNanos, slow, workItem, mLongestSectionNanos);
+        }
+    }
+
+    private void resetLongestSection() {
+        mLongestSection = null;
+        mLongestSectionNanos = 0;
+    }
+
+    @Override
+    public void onSectionEnded(String sectionName, long durationNanos) {
+        if (durationNanos > mLongestSectionNanos) {
+            mLongestSection = sectionName;
+            mLongestSectionNanos = durationNanos;
+        }
+    }
+
+    @VisibleForTesting
+    @Nullable
+    TransitionFrameStats getStats(String name) {
+        return mStats.get(name);
+    }
+
+    /**
+     * Returns the stats of each type of transition, for tests
+     */
+    public Bundle getStatsBundle() {
+        Bundle bundle = new Bundle();
+        for (int i = 0; i < mStats.size(); i++) {
+            bundle.putBundle(mStats.keyAt(i), mStats.valueAt(i).toBundle());
+        }
+        return bundle;
+    }
+
+    /**
+     * Drops the stats recorded so far, the running transitions being recorded from now on
+     */
+    public void clear() {
+        mStats.clear();
+        for (int i = 0; i < mRunningTransitions.size(); i++) {
+            TransitionFrameStats stats = mRunningTransitions.valueAt(i);
+            TransitionFrameStats newStats = mStats.get(stats.name);
+            if (newStats == null) {
+                newStats = new TransitionFrameStats(stats.name);
+                mStats.put(stats.name, newStats);
+            }
+            mRunningTransitions.setValueAt(i, newStats);
+        }
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        if (!ENABLE_TRANSITION_FRAME_TRACKING.get()) {
+            return;
+        }
+        writer.println(prefix + "TransitionFrameTracker: frameIntervalMs="
+                + TimeUnit.NANOSECONDS.toMillis(mFrameIntervalNanos)
+                + " runningTransitions=" + mRunningTransitions.size()
+                + " workItems=traceHelperSections");
+        for (int i = 0; i < mStats.size(); i++) {
+            mStats.valueAt(i).dump(prefix + "\t", writer);
+        }
+    }
+}
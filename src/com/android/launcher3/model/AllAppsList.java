@@ -38,6 +38,7 @@ import com.android.launcher3.model.BgDataModel.Callbacks;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.pm.PackageInstallInfo;
+import com.android.launcher3.search.AppTitleIndex;
 import com.android.launcher3.util.FlagOp;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.SafeCloseable;
@@ -64,6 +65,9 @@ public class AllAppsList {
     /** The list off all apps. */
     public final ArrayList<AppInfo> data = new ArrayList<>(DEFAULT_APPLICATIONS_NUMBER);
 
+    /** Index over the titles of {@link #data}, kept in sync with every change to the list. */
+    public final AppTitleIndex titleIndex = new AppTitleIndex();
+
     @NonNull
     private IconCache mIconCache;
 
@@ -152,6 +156,7 @@ public class AllAppsList {
         }
 
         data.add(info);
+        titleIndex.update(info);
         mDataChanged = true;
     }
 
@@ -178,6 +183,7 @@ public class AllAppsList {
         }
 
         data.add(promiseAppInfo);
+        titleIndex.update(promiseAppInfo);
         mDataChanged = true;
 
         return promiseAppInfo;
@@ -185,7 +191,7 @@ public class AllAppsList {
 
     public void updateSectionName(AppInfo appInfo) {
         appInfo.sectionName = mIndex.computeSectionName(appInfo.title);
-
+        titleIndex.update(appInfo);
     }
 
     /** Updates the given PackageInstallInfo's associated AppInfo's installation info. */
@@ -218,6 +224,7 @@ public class AllAppsList {
     private void removeApp(int index) {
         AppInfo removed = data.remove(index);
         if (removed != null) {
+            titleIndex.remove(removed);
             mDataChanged = true;
             mRemoveListener.accept(removed);
         }
@@ -225,6 +232,7 @@ public class AllAppsList {
 
     public void clear() {
         data.clear();
+        titleIndex.clear();
         mDataChanged = false;
         // Reset the index as locales might have changed
         mIndex = new AlphabeticIndexCompat(LocaleList.getDefault());
@@ -277,6 +285,7 @@ public class AllAppsList {
             if (info.user.equals(user) && packages.contains(info.componentName.getPackageName())) {
                 mIconCache.updateTitleAndIcon(info);
                 info.sectionName = mIndex.computeSectionName(info.title);
+                titleIndex.update(info);
                 mDataChanged = true;
             }
         }
@@ -314,6 +323,7 @@ public class AllAppsList {
 
                     mIconCache.getTitleAndIcon(applicationInfo, info, false /* useLowResIcon */);
                     applicationInfo.sectionName = mIndex.computeSectionName(applicationInfo.title);
+                    titleIndex.update(applicationInfo);
                     applicationInfo.setProgressLevel(
                             PackageManagerHelper.getLoadingProgress(info),
                             PackageInstallInfo.STATUS_INSTALLED_DOWNLOADING);
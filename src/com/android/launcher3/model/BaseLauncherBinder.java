@@ -16,11 +16,13 @@
 
 package com.android.launcher3.model;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_FRAME_BUDGET_BINDING;
 import static com.android.launcher3.model.ItemInstallQueue.FLAG_LOADER_RUNNING;
 import static com.android.launcher3.model.ModelUtils.filterCurrentWorkspaceItems;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 
 import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.android.launcher3.InvariantDeviceProfile;
@@ -133,6 +135,30 @@ public abstract class BaseLauncherBinder {
         }
     }
 
+    /**
+     * Binds the parts of the workspace which are not loaded from the DB, when the items loaded
+     * from the DB are already bound.
+     */
+    public void bindExtraItems() {
+        ArrayList<FixedContainerItems> extraItems = new ArrayList<>();
+        StringCache stringCache;
+        synchronized (mBgDataModel) {
+            mBgDataModel.extraItems.forEach(extraItems::add);
+            stringCache = mBgDataModel.stringCache.clone();
+        }
+        extraItems.forEach(item ->
+                executeCallbacksTask(c -> c.bindExtraContainerItems(item), mUiExecutor));
+        executeCallbacksTask(c -> c.bindStringCache(stringCache), mUiExecutor);
+    }
+
+    /**
+     * Tells the callbacks whether the bound workspace items come from a model snapshot, see
+     * {@link Callbacks#setModelSnapshotBound}.
+     */
+    public void bindModelSnapshotState(boolean isSnapshotBound) {
+        executeCallbacksTask(c -> c.setModelSnapshotBound(isSnapshotBound), mUiExecutor);
+    }
+
     /**
      * BindDeepShortcuts is abstract because it is a no-op for the go launcher.
      */
@@ -201,6 +227,11 @@ public abstract class BaseLauncherBinder {
         });
     }
 
+    private static void logBindTime(String pages, long bindStartTime) {
+        Log.d(TAG, "Workspace " + pages + " bound in "
+                + (SystemClock.uptimeMillis() - bindStartTime) + "ms");
+    }
+
     /**
      * Only used in LoaderTask.
      */
@@ -227,6 +258,8 @@ public abstract class BaseLauncherBinder {
         private final IntArray mOrderedScreenIds;
         private final ArrayList<FixedContainerItems> mExtraItems;
 
+        private long mBindStartTime;
+
         UnifiedWorkspaceBinder(Callbacks callbacks,
                 Executor uiExecutor,
                 LauncherAppState app,
@@ -248,6 +281,7 @@ public abstract class BaseLauncherBinder {
         }
 
         private void bind() {
+            mBindStartTime = SystemClock.uptimeMillis();
             final IntSet currentScreenIds =
                     mCallbacks.getPagesToBindSynchronously(mOrderedScreenIds);
             Objects.requireNonNull(currentScreenIds, "Null screen ids provided by " + mCallbacks);
@@ -277,6 +311,10 @@ public abstract class BaseLauncherBinder {
             final InvariantDeviceProfile idp = mApp.getInvariantDeviceProfile();
             sortWorkspaceItemsSpatially(idp, currentWorkspaceItems);
             sortWorkspaceItemsSpatially(idp, otherWorkspaceItems);
+            if (ENABLE_FRAME_BUDGET_BINDING.get()) {
+                FrameBudgetBinder.sortWidgetsByArea(currentAppWidgets);
+                FrameBudgetBinder.sortWidgetsByArea(otherAppWidgets);
+            }
 
             // Tell the workspace that we're about to start binding items
             if (TestProtocol.sDebugTracing) {
@@ -298,23 +336,45 @@ public abstract class BaseLauncherBinder {
 
             RunnableList pendingTasks = new RunnableList();
             Executor pendingExecutor = pendingTasks::add;
-            bindWorkspaceItems(otherWorkspaceItems, pendingExecutor);
-            bindAppWidgets(otherAppWidgets, pendingExecutor);
+            Executor finishExecutor = pendingExecutor;
+            if (ENABLE_FRAME_BUDGET_BINDING.get()) {
+                // Bind the other pages across frames once the current pages are drawn, and
+                // finish binding after their last item
+                RunnableList finishTasks = new RunnableList();
+                finishExecutor = finishTasks::add;
+                FrameBudgetBinder otherPagesBinder = new FrameBudgetBinder(mApp.getContext(),
+                        BaseLauncherBinder.this.mUiExecutor, otherWorkspaceItems,
+                        otherAppWidgets,
+                        items -> executeCallbacksTask(
+                                c -> c.bindItems(items, false), Runnable::run),
+                        () -> mMyBindingId != mBgDataModel.lastBindId,
+                        finishTasks::executeAllAndDestroy);
+                pendingExecutor.execute(otherPagesBinder::start);
+            } else {
+                bindWorkspaceItems(otherWorkspaceItems, pendingExecutor);
+                bindAppWidgets(otherAppWidgets, pendingExecutor);
+            }
             if (TestProtocol.sDebugTracing) {
                 Log.d(TestProtocol.FLAKY_BINDING, "scheduling: finishBindingItems");
             }
-            executeCallbacksTask(c -> c.finishBindingItems(currentScreenIds), pendingExecutor);
-            pendingExecutor.execute(
+            executeCallbacksTask(c -> c.finishBindingItems(currentScreenIds), finishExecutor);
+            finishExecutor.execute(
                     () -> {
                         MODEL_EXECUTOR.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
                         ItemInstallQueue.INSTANCE.get(mApp.getContext())
                                 .resumeModelPush(FLAG_LOADER_RUNNING);
                     });
+            if (ENABLE_FRAME_BUDGET_BINDING.get()) {
+                finishExecutor.execute(() -> logBindTime("all pages", mBindStartTime));
+            }
 
             executeCallbacksTask(
                     c -> {
                         MODEL_EXECUTOR.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
                         c.onInitialBindComplete(currentScreenIds, pendingTasks);
+                        if (ENABLE_FRAME_BUDGET_BINDING.get()) {
+                            logBindTime("first page", mBindStartTime);
+                        }
                     }, mUiExecutor);
 
             mCallbacks.bindStringCache(mBgDataModel.stringCache.clone());
@@ -358,6 +418,7 @@ public abstract class BaseLauncherBinder {
         private final IntArray mOrderedScreenIds;
         private final IntSet mCurrentScreenIds = new IntSet();
         private final Set<Integer> mBoundItemIds = new HashSet<>();
+        private final long mBindStartTime = SystemClock.uptimeMillis();
 
         protected DisjointWorkspaceBinder(IntArray orderedScreenIds) {
             mOrderedScreenIds = orderedScreenIds;
@@ -392,6 +453,9 @@ public abstract class BaseLauncherBinder {
             appWidgets.forEach(it -> mBoundItemIds.add(it.id));
 
             sortWorkspaceItemsSpatially(mApp.getInvariantDeviceProfile(), workspaceItems);
+            if (ENABLE_FRAME_BUDGET_BINDING.get()) {
+                FrameBudgetBinder.sortWidgetsByArea(appWidgets);
+            }
 
             // Tell the workspace that we're about to start binding items
             executeCallbacksTask(c -> {
@@ -408,6 +472,9 @@ public abstract class BaseLauncherBinder {
             executeCallbacksTask(c -> {
                 MODEL_EXECUTOR.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
                 c.onInitialBindComplete(mCurrentScreenIds, new RunnableList());
+                if (ENABLE_FRAME_BUDGET_BINDING.get()) {
+                    logBindTime("first page", mBindStartTime);
+                }
             }, mUiExecutor);
         }
 
@@ -426,15 +493,33 @@ public abstract class BaseLauncherBinder {
 
             sortWorkspaceItemsSpatially(mApp.getInvariantDeviceProfile(), workspaceItems);
 
-            bindWorkspaceItems(workspaceItems);
-            bindAppWidgets(appWidgets);
+            Executor finishExecutor = mUiExecutor;
+            if (ENABLE_FRAME_BUDGET_BINDING.get()) {
+                // Bind the other pages across frames, and finish binding after their last item
+                FrameBudgetBinder.sortWidgetsByArea(appWidgets);
+                RunnableList finishTasks = new RunnableList();
+                finishExecutor = finishTasks::add;
+                FrameBudgetBinder otherPagesBinder = new FrameBudgetBinder(mApp.getContext(),
+                        mUiExecutor, workspaceItems, appWidgets,
+                        items -> executeCallbacksTask(
+                                c -> c.bindItems(items, false), Runnable::run),
+                        () -> mMyBindingId != mBgDataModel.lastBindId,
+                        finishTasks::executeAllAndDestroy);
+                mUiExecutor.execute(otherPagesBinder::start);
+            } else {
+                bindWorkspaceItems(workspaceItems);
+                bindAppWidgets(appWidgets);
+            }
 
-            executeCallbacksTask(c -> c.finishBindingItems(mCurrentScreenIds), mUiExecutor);
-            mUiExecutor.execute(() -> {
+            executeCallbacksTask(c -> c.finishBindingItems(mCurrentScreenIds), finishExecutor);
+            finishExecutor.execute(() -> {
                 MODEL_EXECUTOR.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
                 ItemInstallQueue.INSTANCE.get(mApp.getContext())
                         .resumeModelPush(FLAG_LOADER_RUNNING);
             });
+            if (ENABLE_FRAME_BUDGET_BINDING.get()) {
+                finishExecutor.execute(() -> logBindTime("all pages", mBindStartTime));
+            }
 
             for (Callbacks cb : mCallbacksList) {
                 cb.bindStringCache(mBgDataModel.stringCache.clone());
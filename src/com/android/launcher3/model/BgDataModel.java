@@ -49,6 +49,7 @@ import com.android.launcher3.shortcuts.ShortcutRequest;
 import com.android.launcher3.shortcuts.ShortcutRequest.QueryResult;
 import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.IntArray;
+import com.android.launcher3.util.IntHashMap;
 import com.android.launcher3.util.IntSet;
 import com.android.launcher3.util.IntSparseArrayMap;
 import com.android.launcher3.util.RunnableList;
@@ -81,7 +82,7 @@ public class BgDataModel {
      * Map of all the ItemInfos (shortcuts, folders, and widgets) created by
      * LauncherModel to their ids
      */
-    public final IntSparseArrayMap<ItemInfo> itemsIdMap = new IntSparseArrayMap<>();
+    public final IntHashMap<ItemInfo> itemsIdMap = new IntHashMap<>();
 
     /**
      * List of all the folders and shortcuts directly on the home screen (no widgets
@@ -97,7 +98,7 @@ public class BgDataModel {
     /**
      * Map of id to FolderInfos of all the folders created by LauncherModel
      */
-    public final IntSparseArrayMap<FolderInfo> folders = new IntSparseArrayMap<>();
+    public final IntHashMap<FolderInfo> folders = new IntHashMap<>();
 
     /**
      * Extra container based items
@@ -141,7 +142,8 @@ public class BgDataModel {
      */
     public synchronized IntArray collectWorkspaceScreens() {
         IntSet screenSet = new IntSet();
-        for (ItemInfo item: itemsIdMap) {
+        for (int i = itemsIdMap.size() - 1; i >= 0; i--) {
+            ItemInfo item = itemsIdMap.valueAt(i);
             if (item.container == LauncherSettings.Favorites.CONTAINER_DESKTOP) {
                 screenSet.add(item.screenId);
             }
@@ -410,7 +412,8 @@ public class BgDataModel {
      * Note the call is not synchronized over the model, that should be handled by the called.
      */
     public void forAllWorkspaceItemInfos(UserHandle userHandle, Consumer<WorkspaceItemInfo> op) {
-        for (ItemInfo info : itemsIdMap) {
+        for (int i = itemsIdMap.size() - 1; i >= 0; i--) {
+            ItemInfo info = itemsIdMap.valueAt(i);
             if (info instanceof WorkspaceItemInfo && userHandle.equals(info.user)) {
                 op.accept((WorkspaceItemInfo) info);
             }
@@ -464,6 +467,14 @@ public class BgDataModel {
         default void bindItems(List<ItemInfo> shortcuts, boolean forceAnimateIcons) { }
         default void bindScreens(IntArray orderedScreenIds) { }
         default void finishBindingItems(IntSet pagesBoundFirst) { }
+
+        /**
+         * Called after the workspace is bound from a model snapshot, and with false once the
+         * snapshot items are confirmed by the DB load. A new bind also replaces the snapshot
+         * items. The snapshot items should not be changed in between, as the changes would be
+         * lost when they are replaced.
+         */
+        default void setModelSnapshotBound(boolean isSnapshotBound) { }
         default void preAddApps() { }
         default void bindAppsAdded(IntArray newScreens,
                 ArrayList<ItemInfo> addNotAnimated, ArrayList<ItemInfo> addAnimated) { }
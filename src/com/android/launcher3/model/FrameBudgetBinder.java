@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.content.Context;
+import android.view.Choreographer;
+
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.LauncherAppWidgetInfo;
+import com.android.launcher3.util.LooperExecutor;
+import com.android.launcher3.util.window.RefreshRateTracker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Binds workspace items on the main thread across frames, sizing every chunk of items so that
+ * binding it and drawing it in the next frame fit the time left until the next frame, so that the
+ * main thread keeps drawing frames while the pages which are not visible are bound.
+ *
+ * Icons and widgets are bound as separate streams, icons first as they are much cheaper to bind.
+ * The cost of binding an item of each stream is measured as its chunks are bound, and used to
+ * size the next chunks. The cost of drawing the bound items is measured as the traversal of the
+ * next frame, relative to the time spent binding them.
+ */
+public class FrameBudgetBinder implements Choreographer.FrameCallback {
+
+    // Part of the frame interval which a chunk can always use, even when it starts late in the
+    // frame, so that the binding doesn't go down to one item per frame under load
+    private static final float MIN_CHUNK_RATIO = 0.25f;
+
+    // Initial estimate of the time to draw the bound items relative to the time to bind them, and
+    // its upper bound as the traversal also draws the rest of the workspace
+    private static final float INITIAL_DRAW_COST_RATIO = 1f;
+    private static final float MAX_DRAW_COST_RATIO = 4f;
+
+    // Initial estimates of the cost of binding an item, before any item is bound
+    private static final long ICON_COST_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final long WIDGET_COST_NANOS = TimeUnit.MILLISECONDS.toNanos(4);
+
+    private final LooperExecutor mUiExecutor;
+    private final ItemStream mIcons;
+    private final ItemStream mWidgets;
+    private final Consumer<List<ItemInfo>> mBindItems;
+    private final BooleanSupplier mIsCancelled;
+    private final Runnable mOnComplete;
+    private final long mFrameIntervalNanos;
+
+    private long mFrameTimeNanos;
+    // Time at which the frame callback ran, before the traversal of the frame
+    private long mFrameCallbackNanos;
+    // Time spent binding the last chunk, which the traversal of the frame draws
+    private long mLastChunkNanos;
+    private float mDrawCostRatio = INITIAL_DRAW_COST_RATIO;
+
+    /**
+     * @param bindItems binds the given items on the main thread
+     * @param isCancelled returns true if the remaining items should no longer be bound
+     * @param onComplete called after the last item is bound, unless the binding is cancelled
+     */
+    public FrameBudgetBinder(Context context, LooperExecutor uiExecutor, List<ItemInfo> icons,
+            List<LauncherAppWidgetInfo> widgets, Consumer<List<ItemInfo>> bindItems,
+            BooleanSupplier isCancelled, Runnable onComplete) {
+        mUiExecutor = uiExecutor;
+        mIcons = new ItemStream(new ArrayList<>(icons), ICON_COST_NANOS);
+        mWidgets = new ItemStream(new ArrayList<>(widgets), WIDGET_COST_NANOS);
+        mBindItems = bindItems;
+        mIsCancelled = isCancelled;
+        mOnComplete = onComplete;
+        mFrameIntervalNanos =
+                TimeUnit.MILLISECONDS.toNanos(RefreshRateTracker.getSingleFrameMs(context));
+    }
+
+    /**
+     * Starts binding the items after the next frame
+     */
+    @UiThread
+    public void start() {
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameTimeNanos = frameTimeNanos;
+        mFrameCallbackNanos = System.nanoTime();
+        // Bind after the traversal of this frame
+        mUiExecutor.getHandler().post(this::bindChunk);
+    }
+
+    private void bindChunk() {
+        if (mIsCancelled.getAsBoolean()) {
+            return;
+        }
+        long time = System.nanoTime();
+        if (mLastChunkNanos > 0) {
+            mDrawCostRatio = getDrawCostRatio(
+                    mDrawCostRatio, time - mFrameCallbackNanos, mLastChunkNanos);
+        }
+        long chunkStart = time;
+        long deadline = time + getBindBudgetNanos(
+                mFrameTimeNanos, mFrameIntervalNanos, time, mDrawCostRatio);
+        boolean boundAny = false;
+        while (mIcons.hasNext() || mWidgets.hasNext()) {
+            ItemStream stream = mIcons.hasNext() ? mIcons : mWidgets;
+            int count = stream.getChunkSize(deadline - time);
+            if (count == 0) {
+                if (boundAny) {
+                    break;
+                }
+                // Always make progress, even if the frame is already over
+                count = 1;
+            }
+            mBindItems.accept(stream.next(count));
+            long endTime = System.nanoTime();
+            stream.onChunkBound(count, endTime - time);
+            time = endTime;
+            boundAny = true;
+
+            if (mIsCancelled.getAsBoolean()) {
+                return;
+            }
+        }
+
+        mLastChunkNanos = time - chunkStart;
+        if (mIcons.hasNext() || mWidgets.hasNext()) {
+            Choreographer.getInstance().postFrameCallback(this);
+        } else {
+            mOnComplete.run();
+        }
+    }
+
+    /**
+     * Returns the time which binding a chunk started at {@param nowNanos} can use, so that
+     * binding it and drawing it, at {@param drawCostRatio} times the time to bind it, fit the time
+     * left until the frame after the frame of {@param frameTimeNanos}, with a minimum chunk.
+     */
+    @VisibleForTesting
+    static long getBindBudgetNanos(long frameTimeNanos, long frameIntervalNanos, long nowNanos,
+            float drawCostRatio) {
+        long timeLeft = Math.max(frameTimeNanos + frameIntervalNanos - nowNanos,
+                (long) (frameIntervalNanos * MIN_CHUNK_RATIO));
+        return (long) (timeLeft / (1 + drawCostRatio));
+    }
+
+    /**
+     * Returns the estimate of the time to draw the bound items relative to the time to bind them,
+     * updated with the traversal of a frame which drew items bound in {@param chunkNanos}
+     */
+    @VisibleForTesting
+    static float getDrawCostRatio(float drawCostRatio, long traversalNanos, long chunkNanos) {
+        float ratio = Math.min((float) traversalNanos / chunkNanos, MAX_DRAW_COST_RATIO);
+        // Moving average, so that a single slow frame doesn't shrink all the next chunks
+        return (drawCostRatio + ratio) / 2;
+    }
+
+    /**
+     * Sorts the widgets by screen, and the widgets of a screen from the largest to the smallest,
+     * so that the widgets covering most of a page are bound first.
+     */
+    public static void sortWidgetsByArea(List<LauncherAppWidgetInfo> widgets) {
+        widgets.sort(Comparator.<LauncherAppWidgetInfo>comparingInt(w -> w.screenId)
+                .thenComparing(Comparator.comparingInt(w -> -w.spanX * w.spanY)));
+    }
+
+    /**
+     * Items of the same kind bound in chunks
+     */
+    @VisibleForTesting
+    static class ItemStream {
+
+        private final List<? extends ItemInfo> mItems;
+        private int mNextIndex;
+        private long mItemCostNanos;
+
+        ItemStream(List<? extends ItemInfo> items, long initialItemCostNanos) {
+            mItems = items;
+            mItemCostNanos = initialItemCostNanos;
+        }
+
+        boolean hasNext() {
+            return mNextIndex < mItems.size();
+        }
+
+        /**
+         * Returns the number of items which can be bound in the given time
+         */
+        int getChunkSize(long timeNanos) {
+            return (int) Math.max(0,
+                    Math.min(timeNanos / mItemCostNanos, mItems.size() - mNextIndex));
+        }
+
+        List<ItemInfo> next(int count) {
+            List<ItemInfo> items = new ArrayList<>(mItems.subList(mNextIndex, mNextIndex + count));
+            mNextIndex += count;
+            return items;
+        }
+
+        void onChunkBound(int count, long timeNanos) {
+            // Moving average, so that a single slow item doesn't shrink all the next chunks
+            mItemCostNanos = Math.max((mItemCostNanos + timeNanos / count) / 2, 1);
+        }
+
+        long getItemCostNanos() {
+            return mItemCostNanos;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import android.content.Intent;
 import android.content.pm.LauncherActivityInfo;
 import android.content.pm.LauncherApps;
 import android.content.pm.PackageManager;
+import android.content.pm.ShortcutInfo;
 import android.database.Cursor;
 import android.database.CursorWrapper;
 import android.net.Uri;
@@ -213,6 +214,14 @@ public class LoaderCursor extends CursorWrapper {
                 wai, mActivityInfo, packageName, resourceName, iconBlob, useLowResIcon);
     }
 
+    /**
+     * Creates a request for the icon of the pinned deep shortcut of the current item
+     */
+    public IconRequestInfo<WorkspaceItemInfo> createShortcutIconRequestInfo(
+            WorkspaceItemInfo wai, ShortcutInfo pinnedShortcut) {
+        return IconRequestInfo.forShortcut(wai, pinnedShortcut, getBlob(mIconIndex));
+    }
+
     /**
      * Returns the title or empty string
      */
@@ -503,18 +512,18 @@ public class LoaderCursor extends CursorWrapper {
             }
 
             if (hotseatOccupancy != null) {
-                if (hotseatOccupancy.cells[(int) item.screenId][0]) {
+                if (hotseatOccupancy.isOccupied(item.screenId, 0)) {
                     Log.e(TAG, "Error loading shortcut into hotseat " + item
                             + " into position (" + item.screenId + ":" + item.cellX + ","
                             + item.cellY + ") already occupied");
                     return false;
                 } else {
-                    hotseatOccupancy.cells[item.screenId][0] = true;
+                    hotseatOccupancy.markCells(item.screenId, 0, 1, 1, true);
                     return true;
                 }
             } else {
                 final GridOccupancy occupancy = new GridOccupancy(mIDP.numDatabaseHotseatIcons, 1);
-                occupancy.cells[item.screenId][0] = true;
+                occupancy.markCells(item.screenId, 0, 1, 1, true);
                 mOccupied.put(Favorites.CONTAINER_HOTSEAT, occupancy);
                 return true;
             }
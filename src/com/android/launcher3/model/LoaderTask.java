@@ -19,11 +19,28 @@ package com.android.launcher3.model;
 import static com.android.launcher3.model.BgDataModel.Callbacks.FLAG_HAS_SHORTCUT_PERMISSION;
 import static com.android.launcher3.model.BgDataModel.Callbacks.FLAG_QUIET_MODE_CHANGE_PERMISSION;
 import static com.android.launcher3.model.BgDataModel.Callbacks.FLAG_QUIET_MODE_ENABLED;
+import static com.android.launcher3.model.LoaderTimings.PHASE_BIND_ALL_APPS;
+import static com.android.launcher3.model.LoaderTimings.PHASE_BIND_DEEP_SHORTCUTS;
+import static com.android.launcher3.model.LoaderTimings.PHASE_BIND_SNAPSHOT;
+import static com.android.launcher3.model.LoaderTimings.PHASE_BIND_WIDGETS;
+import static com.android.launcher3.model.LoaderTimings.PHASE_BIND_WORKSPACE;
+import static com.android.launcher3.model.LoaderTimings.PHASE_LOAD_ALL_APPS;
+import static com.android.launcher3.model.LoaderTimings.PHASE_LOAD_ALL_APPS_ICONS;
+import static com.android.launcher3.model.LoaderTimings.PHASE_LOAD_DEEP_SHORTCUTS;
+import static com.android.launcher3.model.LoaderTimings.PHASE_LOAD_FOLDER_NAMES;
+import static com.android.launcher3.model.LoaderTimings.PHASE_LOAD_WIDGETS;
+import static com.android.launcher3.model.LoaderTimings.PHASE_LOAD_WORKSPACE;
+import static com.android.launcher3.model.LoaderTimings.PHASE_QUERY_ACTIVITIES;
+import static com.android.launcher3.model.LoaderTimings.PHASE_QUERY_DEEP_SHORTCUTS;
+import static com.android.launcher3.model.LoaderTimings.PHASE_QUERY_WIDGET_PROVIDERS;
+import static com.android.launcher3.model.LoaderTimings.PHASE_SANITIZE_DATA;
+import static com.android.launcher3.model.LoaderTimings.PHASE_UPDATE_ICON_CACHE;
 import static com.android.launcher3.model.ModelUtils.filterCurrentWorkspaceItems;
 import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_LOCKED_USER;
 import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_SAFEMODE;
 import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_DISABLED_SUSPENDED;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
 import static com.android.launcher3.util.PackageManagerHelper.hasShortcutsPermission;
 import static com.android.launcher3.util.PackageManagerHelper.isSystemApp;
 
@@ -43,6 +60,7 @@ import android.content.pm.ShortcutInfo;
 import android.graphics.Point;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.os.Trace;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -57,6 +75,7 @@ import androidx.annotation.Nullable;
 import com.android.launcher3.DeviceProfile;
 import com.android.launcher3.InvariantDeviceProfile;
 import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.LauncherFiles;
 import com.android.launcher3.LauncherModel;
 import com.android.launcher3.LauncherSettings.Favorites;
 import com.android.launcher3.LauncherSettings.Settings;
@@ -98,7 +117,9 @@ import com.android.launcher3.util.TraceHelper;
 import com.android.launcher3.widget.LauncherAppWidgetProviderInfo;
 import com.android.launcher3.widget.WidgetManagerHelper;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -106,6 +127,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Runnable for the thread that loads the contents of the launcher:
@@ -119,6 +144,9 @@ public class LoaderTask implements Runnable {
 
     private static final boolean DEBUG = true;
 
+    // Maximum time to wait for a prefetch before querying the data on the loader thread
+    private static final long PREFETCH_TIMEOUT_MS = 5000;
+
     protected final LauncherAppState mApp;
     private final AllAppsList mBgAllAppsList;
     protected final BgDataModel mBgDataModel;
@@ -145,6 +173,16 @@ public class LoaderTask implements Runnable {
     private boolean mItemsDeleted = false;
     private String mDbName;
 
+    private final LoaderTimings mTimings = new LoaderTimings();
+
+    // Inputs of the later phases, queried on a worker pool while the workspace is loading
+    @Nullable
+    private Future<Map<UserHandle, List<LauncherActivityInfo>>> mActivityListFuture;
+    @Nullable
+    private Future<Map<UserHandle, List<ShortcutInfo>>> mDeepShortcutsFuture;
+    @Nullable
+    private Future<List<AppWidgetProviderInfo>> mWidgetProvidersFuture;
+
     public LoaderTask(LauncherAppState app, AllAppsList bgAllAppsList, BgDataModel dataModel,
             ModelDelegate modelDelegate, LauncherBinder launcherBinder) {
         mApp = app;
@@ -190,6 +228,7 @@ public class LoaderTask implements Runnable {
         mFirstScreenBroadcast.sendBroadcasts(mApp.getContext(), firstScreenItems);
     }
 
+    @SuppressWarnings("try")
     public void run() {
         synchronized (this) {
             // Skip fast if we are already stopped.
@@ -202,9 +241,33 @@ public class LoaderTask implements Runnable {
         TimingLogger timingLogger = new TimingLogger(TAG, "run");
         LoaderMemoryLogger memoryLogger = new LoaderMemoryLogger();
         try (LauncherModel.LoaderTransaction transaction = mApp.getModel().beginLoader(this)) {
+            startPrefetchingPhaseInputs();
+
+            List<ItemInfo> snapshotItems = null;
+            ModelSnapshot boundSnapshot = null;
+            // The snapshot is only bound on the first load, when the model is still empty. On a
+            // reload, the items of the previous load are still in the model and bound.
+            if (FeatureFlags.ENABLE_MODEL_SNAPSHOT.get() && isModelEmpty()) {
+                try (LoaderTimings.Phase p = mTimings.begin(PHASE_BIND_SNAPSHOT)) {
+                    String key = createSnapshotKey();
+                    boundSnapshot = key == null
+                            ? null : ModelSnapshot.read(getModelSnapshotFile(), key);
+                    snapshotItems = boundSnapshot == null
+                            ? null : boundSnapshot.createItems(mUserCache, mIconCache);
+                    if (snapshotItems != null) {
+                        ModelSnapshot.addItems(mApp.getContext(), mBgDataModel, snapshotItems);
+                        mLauncherBinder.bindWorkspace(true /* incrementBindId */);
+                        // The items are replaced or bound again once the DB is loaded, so they
+                        // can't be changed until then
+                        mLauncherBinder.bindModelSnapshotState(true /* isSnapshotBound */);
+                    }
+                }
+                logASplit(timingLogger, "bindSnapshot");
+            }
+
             List<ShortcutInfo> allShortcuts = new ArrayList<>();
             Trace.beginSection("LoadWorkspace");
-            try {
+            try (LoaderTimings.Phase p = mTimings.begin(PHASE_LOAD_WORKSPACE)) {
                 loadWorkspace(allShortcuts, memoryLogger);
             } finally {
                 Trace.endSection();
@@ -217,13 +280,31 @@ public class LoaderTask implements Runnable {
             // (e.g. both grid preview and minimal device mode uses a different db)
             if (mApp.getInvariantDeviceProfile().dbFile.equals(mDbName)) {
                 verifyNotStopped();
-                sanitizeFolders(mItemsDeleted);
-                sanitizeWidgetsShortcutsAndPackages();
+                try (LoaderTimings.Phase p = mTimings.begin(PHASE_SANITIZE_DATA)) {
+                    sanitizeFolders(mItemsDeleted);
+                    sanitizeWidgetsShortcutsAndPackages();
+                }
                 logASplit(timingLogger, "sanitizeData");
             }
 
             verifyNotStopped();
-            mLauncherBinder.bindWorkspace(true /* incrementBindId */);
+            try (LoaderTimings.Phase p = mTimings.begin(PHASE_BIND_WORKSPACE)) {
+                ModelSnapshot loadedSnapshot = FeatureFlags.ENABLE_MODEL_SNAPSHOT.get()
+                        ? ModelSnapshot.capture(mBgDataModel, mUserCache) : null;
+                if (snapshotItems != null && loadedSnapshot != null
+                        && boundSnapshot.contentEquals(loadedSnapshot)) {
+                    // The bound snapshot is still accurate, keep its items instead of binding
+                    // the same workspace again.
+                    ModelSnapshot.replaceItems(mBgDataModel, snapshotItems);
+                    mLauncherBinder.bindExtraItems();
+                    mLauncherBinder.bindModelSnapshotState(false /* isSnapshotBound */);
+                } else {
+                    mLauncherBinder.bindWorkspace(true /* incrementBindId */);
+                }
+                if (FeatureFlags.ENABLE_MODEL_SNAPSHOT.get()) {
+                    updateModelSnapshot(loadedSnapshot);
+                }
+            }
             logASplit(timingLogger, "bindWorkspace");
 
             mModelDelegate.workspaceLoadComplete();
@@ -239,7 +320,7 @@ public class LoaderTask implements Runnable {
             // second step
             Trace.beginSection("LoadAllApps");
             List<LauncherActivityInfo> allActivityList;
-            try {
+            try (LoaderTimings.Phase p = mTimings.begin(PHASE_LOAD_ALL_APPS)) {
                allActivityList = loadAllApps();
             } finally {
                 Trace.endSection();
@@ -247,15 +328,19 @@ public class LoaderTask implements Runnable {
             logASplit(timingLogger, "loadAllApps");
 
             verifyNotStopped();
-            mLauncherBinder.bindAllApps();
+            try (LoaderTimings.Phase p = mTimings.begin(PHASE_BIND_ALL_APPS)) {
+                mLauncherBinder.bindAllApps();
+            }
             logASplit(timingLogger, "bindAllApps");
 
             verifyNotStopped();
             IconCacheUpdateHandler updateHandler = mIconCache.getUpdateHandler();
-            setIgnorePackages(updateHandler);
-            updateHandler.updateIcons(allActivityList,
-                    LauncherActivityCachingLogic.newInstance(mApp.getContext()),
-                    mApp.getModel()::onPackageIconsUpdated);
+            try (LoaderTimings.Phase p = mTimings.begin(PHASE_UPDATE_ICON_CACHE)) {
+                setIgnorePackages(updateHandler);
+                updateHandler.updateIcons(allActivityList,
+                        LauncherActivityCachingLogic.newInstance(mApp.getContext()),
+                        mApp.getModel()::onPackageIconsUpdated);
+            }
             logASplit(timingLogger, "update icon cache");
 
             verifyNotStopped();
@@ -269,11 +354,16 @@ public class LoaderTask implements Runnable {
             verifyNotStopped();
 
             // third step
-            List<ShortcutInfo> allDeepShortcuts = loadDeepShortcuts();
+            List<ShortcutInfo> allDeepShortcuts;
+            try (LoaderTimings.Phase p = mTimings.begin(PHASE_LOAD_DEEP_SHORTCUTS)) {
+                allDeepShortcuts = loadDeepShortcuts();
+            }
             logASplit(timingLogger, "loadDeepShortcuts");
 
             verifyNotStopped();
-            mLauncherBinder.bindDeepShortcuts();
+            try (LoaderTimings.Phase p = mTimings.begin(PHASE_BIND_DEEP_SHORTCUTS)) {
+                mLauncherBinder.bindDeepShortcuts();
+            }
             logASplit(timingLogger, "bindDeepShortcuts");
 
             verifyNotStopped();
@@ -287,12 +377,17 @@ public class LoaderTask implements Runnable {
             verifyNotStopped();
 
             // fourth step
-            List<ComponentWithLabelAndIcon> allWidgetsList =
-                    mBgDataModel.widgetsModel.update(mApp, null);
+            List<ComponentWithLabelAndIcon> allWidgetsList;
+            try (LoaderTimings.Phase p = mTimings.begin(PHASE_LOAD_WIDGETS)) {
+                allWidgetsList = mBgDataModel.widgetsModel.update(mApp, null,
+                        getPrefetched(mWidgetProvidersFuture));
+            }
             logASplit(timingLogger, "load widgets");
 
             verifyNotStopped();
-            mLauncherBinder.bindWidgets();
+            try (LoaderTimings.Phase p = mTimings.begin(PHASE_BIND_WIDGETS)) {
+                mLauncherBinder.bindWidgets();
+            }
             logASplit(timingLogger, "bindWidgets");
             verifyNotStopped();
 
@@ -302,7 +397,9 @@ public class LoaderTask implements Runnable {
             logASplit(timingLogger, "save widgets in icon cache");
 
             // fifth step
-            loadFolderNames();
+            try (LoaderTimings.Phase p = mTimings.begin(PHASE_LOAD_FOLDER_NAMES)) {
+                loadFolderNames();
+            }
 
             verifyNotStopped();
             updateHandler.finish();
@@ -318,7 +415,11 @@ public class LoaderTask implements Runnable {
             memoryLogger.printLogs();
             throw e;
         } finally {
+            cancelPrefetching();
             timingLogger.dumpToLog();
+            if (DEBUG) {
+                mTimings.dumpToLog();
+            }
         }
         TraceHelper.INSTANCE.endSection(traceToken);
     }
@@ -328,6 +429,134 @@ public class LoaderTask implements Runnable {
         this.notify();
     }
 
+    private boolean isModelEmpty() {
+        synchronized (mBgDataModel) {
+            return mBgDataModel.itemsIdMap.size() == 0;
+        }
+    }
+
+    /**
+     * Returns the timings of all the phases of this loader which have completed so far
+     */
+    public LoaderTimings getTimings() {
+        return mTimings;
+    }
+
+    /**
+     * Starts querying the inputs of the later loader phases, which do not depend on the workspace,
+     * so that each phase can run as soon as the previous one is bound.
+     */
+    @SuppressWarnings("try")
+    private void startPrefetchingPhaseInputs() {
+        if (!FeatureFlags.ENABLE_PARALLEL_LOADER.get()) {
+            return;
+        }
+        Context context = mApp.getContext();
+        List<UserHandle> profiles = new ArrayList<>(mUserCache.getUserProfiles());
+
+        mActivityListFuture = THREAD_POOL_EXECUTOR.submit(() -> {
+            try (LoaderTimings.Phase p = mTimings.begin(PHASE_QUERY_ACTIVITIES)) {
+                Map<UserHandle, List<LauncherActivityInfo>> activities = new ArrayMap<>();
+                for (UserHandle user : profiles) {
+                    activities.put(user, mLauncherApps.getActivityList(null, user));
+                }
+                return activities;
+            }
+        });
+
+        if (hasShortcutsPermission(context)) {
+            mDeepShortcutsFuture = THREAD_POOL_EXECUTOR.submit(() -> {
+                try (LoaderTimings.Phase p = mTimings.begin(PHASE_QUERY_DEEP_SHORTCUTS)) {
+                    Map<UserHandle, List<ShortcutInfo>> shortcuts = new ArrayMap<>();
+                    for (UserHandle user : profiles) {
+                        if (mUserManager.isUserUnlocked(user)) {
+                            shortcuts.put(user, new ShortcutRequest(context, user)
+                                    .query(ShortcutRequest.ALL));
+                        }
+                    }
+                    return shortcuts;
+                }
+            });
+        }
+
+        mWidgetProvidersFuture = THREAD_POOL_EXECUTOR.submit(() -> {
+            try (LoaderTimings.Phase p = mTimings.begin(PHASE_QUERY_WIDGET_PROVIDERS)) {
+                return new WidgetManagerHelper(context).getAllProviders(null);
+            }
+        });
+    }
+
+    /**
+     * Returns the result of a prefetch, or null if it was not started, failed or did not complete
+     * in time, in which case the caller should query the data itself. The wait is checked against
+     * the loader being stopped every second.
+     */
+    @Nullable
+    private <T> T getPrefetched(@Nullable Future<T> future) {
+        if (future == null) {
+            return null;
+        }
+        long deadline = SystemClock.uptimeMillis() + PREFETCH_TIMEOUT_MS;
+        while (true) {
+            verifyNotStopped();
+            long remainingMs = deadline - SystemClock.uptimeMillis();
+            if (remainingMs <= 0) {
+                Log.w(TAG, "Prefetching loader data timed out");
+                future.cancel(false /* mayInterruptIfRunning */);
+                return null;
+            }
+            try {
+                return future.get(Math.min(remainingMs, 1000), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Check if the loader was stopped, and wait again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException | CancellationException e) {
+                Log.w(TAG, "Prefetching loader data failed", e);
+                return null;
+            }
+        }
+    }
+
+    private void cancelPrefetching() {
+        for (Future<?> future : Arrays.asList(
+                mActivityListFuture, mDeepShortcutsFuture, mWidgetProvidersFuture)) {
+            if (future != null) {
+                future.cancel(false /* mayInterruptIfRunning */);
+            }
+        }
+        mActivityListFuture = null;
+        mDeepShortcutsFuture = null;
+        mWidgetProvidersFuture = null;
+    }
+
+    private File getModelSnapshotFile() {
+        return new File(mApp.getContext().getCacheDir(), LauncherFiles.MODEL_SNAPSHOT);
+    }
+
+    @Nullable
+    private String createSnapshotKey() {
+        return ModelSnapshot.createKey(
+                mApp.getContext(), mApp.getInvariantDeviceProfile(), mUserCache);
+    }
+
+    /**
+     * Stores the snapshot of the model loaded from the main DB, which also reflects any change
+     * done to the DB during the load.
+     */
+    private void updateModelSnapshot(@Nullable ModelSnapshot loadedSnapshot) {
+        File file = getModelSnapshotFile();
+        String key = loadedSnapshot == null
+                || !mApp.getInvariantDeviceProfile().dbFile.equals(mDbName)
+                ? null : createSnapshotKey();
+        if (key == null) {
+            file.delete();
+            return;
+        }
+        loadedSnapshot.write(file, key);
+    }
+
     private void loadWorkspace(
             List<ShortcutInfo> allDeepShortcuts, LoaderMemoryLogger memoryLogger) {
         loadWorkspace(allDeepShortcuts, Favorites.CONTENT_URI,
@@ -610,9 +839,17 @@ public class LoaderTask implements Runnable {
                                 return;
                             }
                             info = new WorkspaceItemInfo(pinnedShortcut, mApp.getContext());
-                            // If the pinned deep shortcut is no longer published,
-                            // use the last saved icon instead of the default.
-                            mIconCache.getShortcutIcon(info, pinnedShortcut, c::loadIcon);
+                            if (FeatureFlags.ENABLE_BULK_WORKSPACE_ICON_LOADING.get()
+                                    && FeatureFlags.ENABLE_UNIFIED_BULK_ICON_LOADING.get()) {
+                                // Loaded with the other icons, and if the pinned deep shortcut
+                                // is no longer published, the last saved icon is used.
+                                iconRequestInfos.add(
+                                        c.createShortcutIconRequestInfo(info, pinnedShortcut));
+                            } else {
+                                // If the pinned deep shortcut is no longer published,
+                                // use the last saved icon instead of the default.
+                                mIconCache.getShortcutIcon(info, pinnedShortcut, c::loadIcon);
+                            }
 
                             if (pmHelper.isAppSuspended(
                                     pinnedShortcut.getPackage(), info.user)) {
@@ -936,16 +1173,22 @@ public class LoaderTask implements Runnable {
         }
     }
 
+    @SuppressWarnings("try")
     private List<LauncherActivityInfo> loadAllApps() {
         final List<UserHandle> profiles = mUserCache.getUserProfiles();
         List<LauncherActivityInfo> allActivityList = new ArrayList<>();
         // Clear the list of apps
         mBgAllAppsList.clear();
 
+        Map<UserHandle, List<LauncherActivityInfo>> prefetchedApps =
+                getPrefetched(mActivityListFuture);
         List<IconRequestInfo<AppInfo>> iconRequestInfos = new ArrayList<>();
         for (UserHandle user : profiles) {
             // Query for the set of apps
-            final List<LauncherActivityInfo> apps = mLauncherApps.getActivityList(null, user);
+            final List<LauncherActivityInfo> apps =
+                    prefetchedApps != null && prefetchedApps.containsKey(user)
+                            ? prefetchedApps.get(user)
+                            : mLauncherApps.getActivityList(null, user);
             // Fail if we don't have any apps
             // TODO: Fix this. Only fail for the current user.
             if (apps == null || apps.isEmpty()) {
@@ -986,7 +1229,7 @@ public class LoaderTask implements Runnable {
 
         if (FeatureFlags.ENABLE_BULK_ALL_APPS_ICON_LOADING.get()) {
             Trace.beginSection("LoadAllAppsIconsInBulk");
-            try {
+            try (LoaderTimings.Phase p = mTimings.begin(PHASE_LOAD_ALL_APPS_ICONS)) {
                 mIconCache.getTitlesAndIconsInBulk(iconRequestInfos);
                 iconRequestInfos.forEach(iconRequestInfo ->
                         mBgAllAppsList.updateSectionName(iconRequestInfo.itemInfo));
@@ -1012,10 +1255,15 @@ public class LoaderTask implements Runnable {
         mBgDataModel.deepShortcutMap.clear();
 
         if (mBgAllAppsList.hasShortcutHostPermission()) {
+            Map<UserHandle, List<ShortcutInfo>> prefetchedShortcuts =
+                    getPrefetched(mDeepShortcutsFuture);
             for (UserHandle user : mUserCache.getUserProfiles()) {
                 if (mUserManager.isUserUnlocked(user)) {
-                    List<ShortcutInfo> shortcuts = new ShortcutRequest(mApp.getContext(), user)
-                            .query(ShortcutRequest.ALL);
+                    List<ShortcutInfo> shortcuts =
+                            prefetchedShortcuts != null && prefetchedShortcuts.containsKey(user)
+                                    ? prefetchedShortcuts.get(user)
+                                    : new ShortcutRequest(mApp.getContext(), user)
+                                            .query(ShortcutRequest.ALL);
                     allShortcuts.addAll(shortcuts);
                     mBgDataModel.updateDeepShortcutCounts(null, user, shortcuts);
                 }
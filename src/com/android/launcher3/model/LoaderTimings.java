@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the wall and CPU time of each phase of {@link LoaderTask#run}. Phases can run on any
+ * thread, CPU time is measured on the thread which ran the phase.
+ */
+public class LoaderTimings {
+
+    private static final String TAG = "LoaderTimings";
+
+    public static final String PHASE_BIND_SNAPSHOT = "bindSnapshot";
+    public static final String PHASE_LOAD_WORKSPACE = "loadWorkspace";
+    public static final String PHASE_SANITIZE_DATA = "sanitizeData";
+    public static final String PHASE_BIND_WORKSPACE = "bindWorkspace";
+    public static final String PHASE_QUERY_ACTIVITIES = "queryActivities";
+    public static final String PHASE_LOAD_ALL_APPS = "loadAllApps";
+    public static final String PHASE_LOAD_ALL_APPS_ICONS = "loadAllAppsIcons";
+    public static final String PHASE_BIND_ALL_APPS = "bindAllApps";
+    public static final String PHASE_UPDATE_ICON_CACHE = "updateIconCache";
+    public static final String PHASE_QUERY_DEEP_SHORTCUTS = "queryDeepShortcuts";
+    public static final String PHASE_LOAD_DEEP_SHORTCUTS = "loadDeepShortcuts";
+    public static final String PHASE_BIND_DEEP_SHORTCUTS = "bindDeepShortcuts";
+    public static final String PHASE_QUERY_WIDGET_PROVIDERS = "queryWidgetProviders";
+    public static final String PHASE_LOAD_WIDGETS = "loadWidgets";
+    public static final String PHASE_BIND_WIDGETS = "bindWidgets";
+    public static final String PHASE_LOAD_FOLDER_NAMES = "loadFolderNames";
+
+    private final long mStartTime = SystemClock.elapsedRealtime();
+    private final ArrayList<PhaseTiming> mPhases = new ArrayList<>();
+
+    /**
+     * Starts timing a phase on the current thread, which should be ended by closing the returned
+     * object on the same thread.
+     */
+    @NonNull
+    public Phase begin(@NonNull String name) {
+        return new Phase(name);
+    }
+
+    /**
+     * Returns all the completed phases, in order of completion
+     */
+    @NonNull
+    public synchronized List<PhaseTiming> getPhases() {
+        return new ArrayList<>(mPhases);
+    }
+
+    /**
+     * Returns the timing of the phase with the provided name or null if it has not completed
+     */
+    @Nullable
+    public synchronized PhaseTiming getPhase(@NonNull String name) {
+        for (PhaseTiming phase : mPhases) {
+            if (phase.name.equals(name)) {
+                return phase;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void addPhase(PhaseTiming phase) {
+        mPhases.add(phase);
+    }
+
+    public void dumpToLog() {
+        for (PhaseTiming phase : getPhases()) {
+            Log.d(TAG, phase.toString());
+        }
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "Loader timings:");
+        for (PhaseTiming phase : getPhases()) {
+            writer.println(prefix + "  " + phase);
+        }
+    }
+
+    /**
+     * A running phase
+     */
+    public class Phase implements AutoCloseable {
+
+        private final String mName;
+        private final String mThreadName;
+        private final long mWallStart;
+        private final long mCpuStart;
+        private boolean mEnded;
+
+        private Phase(String name) {
+            mName = name;
+            mThreadName = Thread.currentThread().getName();
+            mWallStart = SystemClock.elapsedRealtime();
+            mCpuStart = SystemClock.currentThreadTimeMillis();
+        }
+
+        @Override
+        public void close() {
+            if (mEnded) {
+                return;
+            }
+            mEnded = true;
+            addPhase(new PhaseTiming(mName, mThreadName, mWallStart - mStartTime,
+                    SystemClock.elapsedRealtime() - mWallStart,
+                    SystemClock.currentThreadTimeMillis() - mCpuStart));
+        }
+    }
+
+    /**
+     * Timing of a completed phase
+     */
+    public static class PhaseTiming {
+
+        @NonNull
+        public final String name;
+        @NonNull
+        public final String threadName;
+        /** Start time relative to the start of the loader */
+        public final long startOffsetMs;
+        public final long wallTimeMs;
+        public final long cpuTimeMs;
+
+        public PhaseTiming(@NonNull String name, @NonNull String threadName, long startOffsetMs,
+                long wallTimeMs, long cpuTimeMs) {
+            this.name = name;
+            this.threadName = threadName;
+            this.startOffsetMs = startOffsetMs;
+            this.wallTimeMs = wallTimeMs;
+            this.cpuTimeMs = cpuTimeMs;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": start=" + startOffsetMs + "ms wall=" + wallTimeMs + "ms cpu="
+                    + cpuTimeMs + "ms thread=" + threadName;
+        }
+    }
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPWIDGET;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_FOLDER;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.os.UserHandle;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.LauncherProvider;
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.folder.Folder;
+import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.IconRequestInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.LauncherAppWidgetInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.IntHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary snapshot of the items loaded from the launcher DB, used by {@link LoaderTask}
+ * to bind the last known workspace before the DB and the installed packages have been read.
+ *
+ * Icons are not stored, they are loaded in bulk from the {@link IconCache} when the items are
+ * created. The snapshot is only valid for the key it was written with, which covers the DB schema
+ * and content, the grid, the locale and the user profiles. Models containing items which can not
+ * be fully restored from the stored fields, like deep shortcuts or items being restored, are not
+ * captured.
+ */
+@WorkerThread
+public class ModelSnapshot {
+
+    private static final String TAG = "ModelSnapshot";
+
+    private static final int MAGIC = 0x4C4D534E; // LMSN
+    private static final int VERSION = 1;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private static final String[] DIGEST_COLUMNS = new String[] {
+            Favorites._ID, Favorites.ITEM_TYPE, Favorites.CONTAINER, Favorites.SCREEN,
+            Favorites.CELLX, Favorites.CELLY, Favorites.SPANX, Favorites.SPANY, Favorites.RANK,
+            Favorites.OPTIONS, Favorites.RESTORED, Favorites.PROFILE_ID, Favorites.TITLE,
+            Favorites.INTENT, Favorites.ICON_PACKAGE, Favorites.ICON_RESOURCE,
+            Favorites.APPWIDGET_ID, Favorites.APPWIDGET_PROVIDER, Favorites.APPWIDGET_SOURCE,
+            Favorites.MODIFIED};
+
+    // Records in model order, with folders first so that they exist before their contents
+    private final ArrayList<byte[]> mRecords;
+    private final IntHashMap<byte[]> mRecordsById = new IntHashMap<>();
+
+    private ModelSnapshot(ArrayList<byte[]> records) {
+        mRecords = records;
+    }
+
+    /**
+     * Returns the key under which the snapshot of the current DB state should be stored, or null
+     * if the DB could not be read
+     */
+    @Nullable
+    public static String createKey(@NonNull Context context, @NonNull InvariantDeviceProfile idp,
+            @NonNull UserCache userCache) {
+        StringBuilder key = new StringBuilder()
+                .append(LauncherProvider.SCHEMA_VERSION)
+                .append('|').append(idp.dbFile)
+                .append('|').append(idp.numRows).append('x').append(idp.numColumns)
+                .append('|').append(idp.numDatabaseHotseatIcons)
+                .append('|').append(idp.numFolderRows).append('x').append(idp.numFolderColumns)
+                .append('|').append(context.getResources().getConfiguration().getLocales()
+                        .toLanguageTags());
+        if (!appendDbDigest(context, key)) {
+            return null;
+        }
+        long[] serials = userCache.getUserProfiles().stream()
+                .mapToLong(userCache::getSerialNumberForUser).sorted().toArray();
+        key.append('|').append(Arrays.toString(serials));
+        return key.toString();
+    }
+
+    /**
+     * Appends a digest of the DB rows, so that any write to the DB changes the key, including the
+     * writes done outside of the model. Only the columns of the rows are read, without resolving
+     * the packages, widgets and icons, which is much cheaper than loading the workspace.
+     */
+    private static boolean appendDbDigest(Context context, StringBuilder key) {
+        CRC32 digest = new CRC32();
+        int count = 0;
+        try (Cursor c = context.getContentResolver().query(Favorites.CONTENT_URI,
+                DIGEST_COLUMNS, null, null, Favorites._ID)) {
+            if (c == null) {
+                return false;
+            }
+            while (c.moveToNext()) {
+                for (int i = 0; i < DIGEST_COLUMNS.length; i++) {
+                    String value = c.getString(i);
+                    // Separate null from empty values and each value from the next one
+                    digest.update(value == null ? 0 : 1);
+                    if (value != null) {
+                        digest.update(value.getBytes(StandardCharsets.UTF_8));
+                    }
+                    digest.update(0);
+                }
+                count++;
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Unable to read the DB for the model snapshot key", e);
+            return false;
+        }
+        key.append('|').append(count).append(':').append(digest.getValue());
+        return true;
+    }
+
+    /**
+     * Captures the items of the model loaded from the DB, or returns null if any of them can not
+     * be restored from a snapshot.
+     */
+    @Nullable
+    public static ModelSnapshot capture(@NonNull BgDataModel model, @NonNull UserCache userCache) {
+        ArrayList<byte[]> folderRecords = new ArrayList<>();
+        ArrayList<byte[]> itemRecords = new ArrayList<>();
+        synchronized (model) {
+            for (int i = 0; i < model.itemsIdMap.size(); i++) {
+                ItemInfo item = model.itemsIdMap.valueAt(i);
+                byte[] record = createRecord(item, userCache);
+                if (record == null) {
+                    return null;
+                }
+                (item.itemType == ITEM_TYPE_FOLDER ? folderRecords : itemRecords).add(record);
+            }
+        }
+        folderRecords.addAll(itemRecords);
+        ModelSnapshot snapshot = new ModelSnapshot(folderRecords);
+        return snapshot.indexRecords() ? snapshot : null;
+    }
+
+    /**
+     * Reads the snapshot stored in {@param file}, or returns null if it does not exist or was
+     * stored for a different key.
+     */
+    @Nullable
+    public static ModelSnapshot read(@NonNull File file, @NonNull String key) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF())) {
+                return null;
+            }
+            int count = in.readInt();
+            ArrayList<byte[]> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_RECORD_SIZE) {
+                    throw new IOException("Invalid record length " + length);
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                records.add(record);
+            }
+            ModelSnapshot snapshot = new ModelSnapshot(records);
+            return snapshot.indexRecords() ? snapshot : null;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Unable to read model snapshot", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot to {@param file}, replacing it atomically
+     */
+    public void write(@NonNull File file, @NonNull String key) {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(key);
+            out.writeInt(mRecords.size());
+            for (byte[] record : mRecords) {
+                out.writeInt(record.length);
+                out.write(record);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write model snapshot", e);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Returns true if both snapshots contain the same items with the same properties
+     */
+    public boolean contentEquals(@NonNull ModelSnapshot other) {
+        if (mRecordsById.size() != other.mRecordsById.size()) {
+            return false;
+        }
+        for (int i = 0; i < mRecordsById.size(); i++) {
+            if (!Arrays.equals(mRecordsById.valueAt(i),
+                    other.mRecordsById.get(mRecordsById.keyAt(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the items of the snapshot, with their icons loaded in bulk from the icon cache, or
+     * returns null if the snapshot can not be restored anymore.
+     */
+    @Nullable
+    public List<ItemInfo> createItems(@NonNull UserCache userCache, @NonNull IconCache iconCache) {
+        ArrayList<ItemInfo> items = new ArrayList<>(mRecords.size());
+        List<IconRequestInfo<WorkspaceItemInfo>> iconRequests = new ArrayList<>();
+        try {
+            for (byte[] record : mRecords) {
+                ItemInfo item = readRecord(record, userCache);
+                if (item == null) {
+                    return null;
+                }
+                items.add(item);
+                if (item instanceof WorkspaceItemInfo) {
+                    iconRequests.add(new IconRequestInfo<>((WorkspaceItemInfo) item,
+                            null /* launcherActivityInfo */, false /* useLowResIcon */));
+                }
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            Log.e(TAG, "Unable to restore model snapshot", e);
+            return null;
+        }
+
+        // Keep the titles of the last load, only the icons are missing from the snapshot
+        int count = iconRequests.size();
+        CharSequence[] titles = new CharSequence[count];
+        CharSequence[] contentDescriptions = new CharSequence[count];
+        for (int i = 0; i < count; i++) {
+            titles[i] = iconRequests.get(i).itemInfo.title;
+            contentDescriptions[i] = iconRequests.get(i).itemInfo.contentDescription;
+        }
+        iconCache.getTitlesAndIconsInBulk(iconRequests);
+        for (int i = 0; i < count; i++) {
+            iconRequests.get(i).itemInfo.title = titles[i];
+            iconRequests.get(i).itemInfo.contentDescription = contentDescriptions[i];
+        }
+        return items;
+    }
+
+    /**
+     * Adds the items created by {@link #createItems} to an empty model
+     */
+    public static void addItems(@NonNull Context context, @NonNull BgDataModel model,
+            @NonNull List<ItemInfo> items) {
+        synchronized (model) {
+            for (ItemInfo item : items) {
+                model.addItem(context, item, false /* newItem */);
+            }
+            for (int i = 0; i < model.folders.size(); i++) {
+                Collections.sort(model.folders.valueAt(i).contents, Folder.ITEM_POS_COMPARATOR);
+            }
+        }
+    }
+
+    /**
+     * Replaces the items loaded from the DB in {@param model} by the items created by
+     * {@link #createItems}, which should have the same content. This keeps the items already
+     * bound to the UI as the source of truth, without binding them again. Items which are not
+     * loaded from the DB, like {@link BgDataModel#extraItems}, are kept.
+     */
+    public static void replaceItems(@NonNull BgDataModel model, @NonNull List<ItemInfo> items) {
+        synchronized (model) {
+            model.workspaceItems.clear();
+            model.appWidgets.clear();
+            model.folders.clear();
+            model.itemsIdMap.clear();
+            for (ItemInfo item : items) {
+                model.itemsIdMap.put(item.id, item);
+                if (item instanceof FolderInfo) {
+                    model.folders.put(item.id, (FolderInfo) item);
+                    model.workspaceItems.add(item);
+                } else if (item instanceof LauncherAppWidgetInfo) {
+                    model.appWidgets.add((LauncherAppWidgetInfo) item);
+                } else if (item.container == CONTAINER_DESKTOP
+                        || item.container == CONTAINER_HOTSEAT) {
+                    model.workspaceItems.add(item);
+                }
+                // Folder contents are still referenced by their bound folder
+            }
+        }
+    }
+
+    private boolean indexRecords() {
+        for (byte[] record : mRecords) {
+            if (record.length < 8) {
+                return false;
+            }
+            // The id is always the second field of the record
+            int id = ((record[4] & 0xFF) << 24) | ((record[5] & 0xFF) << 16)
+                    | ((record[6] & 0xFF) << 8) | (record[7] & 0xFF);
+            if (mRecordsById.containsKey(id)) {
+                return false;
+            }
+            mRecordsById.put(id, record);
+        }
+        return true;
+    }
+
+    @Nullable
+    private static byte[] createRecord(ItemInfo item, UserCache userCache) {
+        if (item.user == null) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(item.itemType);
+            out.writeInt(item.id);
+            out.writeInt(item.container);
+            out.writeInt(item.screenId);
+            out.writeInt(item.cellX);
+            out.writeInt(item.cellY);
+            out.writeInt(item.spanX);
+            out.writeInt(item.spanY);
+            out.writeInt(item.minSpanX);
+            out.writeInt(item.minSpanY);
+            out.writeInt(item.rank);
+            out.writeLong(userCache.getSerialNumberForUser(item.user));
+            writeNullableString(out, item.title);
+            writeNullableString(out, item.contentDescription);
+
+            if (item.itemType == ITEM_TYPE_APPLICATION && item instanceof WorkspaceItemInfo) {
+                WorkspaceItemInfo info = (WorkspaceItemInfo) item;
+                if (info.status != WorkspaceItemInfo.DEFAULT || info.iconResource != null
+                        || info.disabledMessage != null) {
+                    return null;
+                }
+                out.writeUTF(info.intent.toUri(0));
+                out.writeInt(info.options);
+                out.writeInt(info.runtimeStatusFlags);
+            } else if (item.itemType == ITEM_TYPE_FOLDER && item instanceof FolderInfo) {
+                out.writeInt(((FolderInfo) item).options);
+            } else if (item.itemType == ITEM_TYPE_APPWIDGET
+                    && item instanceof LauncherAppWidgetInfo) {
+                LauncherAppWidgetInfo info = (LauncherAppWidgetInfo) item;
+                if (info.isCustomWidget() || info.providerName == null
+                        || info.restoreStatus != LauncherAppWidgetInfo.RESTORE_COMPLETED
+                        || info.bindOptions != null || info.pendingItemInfo != null) {
+                    return null;
+                }
+                out.writeInt(info.appWidgetId);
+                out.writeUTF(info.providerName.flattenToString());
+                out.writeInt(info.options);
+                out.writeInt(info.sourceContainer);
+            } else {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    @Nullable
+    private static ItemInfo readRecord(byte[] record, UserCache userCache)
+            throws IOException, URISyntaxException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        int itemType = in.readInt();
+        int id = in.readInt();
+        int container = in.readInt();
+        int screenId = in.readInt();
+        int cellX = in.readInt();
+        int cellY = in.readInt();
+        int spanX = in.readInt();
+        int spanY = in.readInt();
+        int minSpanX = in.readInt();
+        int minSpanY = in.readInt();
+        int rank = in.readInt();
+        UserHandle user = userCache.getUserForSerialNumber(in.readLong());
+        String title = readNullableString(in);
+        String contentDescription = readNullableString(in);
+        if (user == null) {
+            return null;
+        }
+
+        ItemInfo item;
+        switch (itemType) {
+            case ITEM_TYPE_APPLICATION: {
+                WorkspaceItemInfo info = new WorkspaceItemInfo();
+                info.itemType = ITEM_TYPE_APPLICATION;
+                info.intent = Intent.parseUri(in.readUTF(), 0);
+                info.options = in.readInt();
+                // Keep the state of the last load, which the icon cache does not know about
+                info.runtimeStatusFlags = in.readInt();
+                item = info;
+                break;
+            }
+            case ITEM_TYPE_FOLDER: {
+                FolderInfo info = new FolderInfo();
+                info.options = in.readInt();
+                item = info;
+                break;
+            }
+            case ITEM_TYPE_APPWIDGET: {
+                int appWidgetId = in.readInt();
+                ComponentName provider = ComponentName.unflattenFromString(in.readUTF());
+                if (provider == null) {
+                    return null;
+                }
+                LauncherAppWidgetInfo info = new LauncherAppWidgetInfo(appWidgetId, provider);
+                info.options = in.readInt();
+                info.sourceContainer = in.readInt();
+                item = info;
+                break;
+            }
+            default:
+                return null;
+        }
+        item.id = id;
+        item.container = container;
+        item.screenId = screenId;
+        item.cellX = cellX;
+        item.cellY = cellY;
+        item.spanX = spanX;
+        item.spanY = spanY;
+        item.minSpanX = minSpanX;
+        item.minSpanY = minSpanY;
+        item.rank = rank;
+        item.user = user;
+        item.title = title;
+        item.contentDescription = contentDescription;
+
+        if (container != CONTAINER_DESKTOP && container != CONTAINER_HOTSEAT
+                && itemType != ITEM_TYPE_APPLICATION) {
+            // Only apps can be restored inside folders
+            return null;
+        }
+        return item;
+    }
+
+    private static void writeNullableString(DataOutputStream out, @Nullable CharSequence value)
+            throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value.toString());
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -23,6 +23,7 @@ import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.net.Uri;
+import android.os.Looper;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -48,17 +49,20 @@ import com.android.launcher3.model.data.LauncherAppWidgetInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.util.ContentWriter;
 import com.android.launcher3.util.Executors;
+import com.android.launcher3.util.IntArray;
+import com.android.launcher3.util.IntHashMap;
 import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.LooperExecutor;
 import com.android.launcher3.widget.LauncherWidgetHolder;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
-import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -69,6 +73,15 @@ public class ModelWriter {
 
     private static final String TAG = "ModelWriter";
 
+    // Columns written by an item update, each scope includes the columns of the previous ones
+    private static final int SCOPE_POSITION = 0;
+    private static final int SCOPE_POSITION_AND_SPAN = 1;
+    private static final int SCOPE_ALL = 2;
+
+    private static final AtomicInteger sUpdatesIssued = new AtomicInteger();
+    private static final AtomicInteger sUpdatesCoalesced = new AtomicInteger();
+    private static final AtomicInteger sBatchesCommitted = new AtomicInteger();
+
     private final Context mContext;
     private final LauncherModel mModel;
     private final BgDataModel mBgDataModel;
@@ -85,6 +98,11 @@ public class ModelWriter {
     private boolean mPreparingToUndo;
     private final CellPosMapper mCellPosMapper;
 
+    // Batch of updates queued on the model thread which can still accept new updates
+    private final Object mBatchLock = new Object();
+    @Nullable
+    private UpdateBatch mOpenBatch;
+
     public ModelWriter(Context context, LauncherModel model, BgDataModel dataModel,
             boolean hasVerticalHotseat, boolean verifyChanges, CellPosMapper cellPosMapper,
             @Nullable Callbacks owner) {
@@ -174,14 +192,7 @@ public class ModelWriter {
             int container, int screenId, int cellX, int cellY) {
         updateItemInfoProps(item, container, screenId, cellX, cellY);
         notifyItemModified(item);
-
-        enqueueDeleteRunnable(new UpdateItemRunnable(item, () ->
-                new ContentWriter(mContext)
-                        .put(Favorites.CONTAINER, item.container)
-                        .put(Favorites.CELLX, item.cellX)
-                        .put(Favorites.CELLY, item.cellY)
-                        .put(Favorites.RANK, item.rank)
-                        .put(Favorites.SCREEN, item.screenId)));
+        enqueueUpdate(item, SCOPE_POSITION, true /* undoable */);
     }
 
     /**
@@ -218,16 +229,7 @@ public class ModelWriter {
         item.spanX = spanX;
         item.spanY = spanY;
         notifyItemModified(item);
-
-        MODEL_EXECUTOR.execute(new UpdateItemRunnable(item, () ->
-                new ContentWriter(mContext)
-                        .put(Favorites.CONTAINER, item.container)
-                        .put(Favorites.CELLX, item.cellX)
-                        .put(Favorites.CELLY, item.cellY)
-                        .put(Favorites.RANK, item.rank)
-                        .put(Favorites.SPANX, item.spanX)
-                        .put(Favorites.SPANY, item.spanY)
-                        .put(Favorites.SCREEN, item.screenId)));
+        enqueueUpdate(item, SCOPE_POSITION_AND_SPAN, false /* undoable */);
     }
 
     /**
@@ -235,17 +237,82 @@ public class ModelWriter {
      */
     public void updateItemInDatabase(ItemInfo item) {
         notifyItemModified(item);
-        MODEL_EXECUTOR.execute(new UpdateItemRunnable(item, () -> {
-            ContentWriter writer = new ContentWriter(mContext);
-            item.onAddToDatabase(writer);
-            return writer;
-        }));
+        enqueueUpdate(item, SCOPE_ALL, false /* undoable */);
     }
 
     private void notifyItemModified(ItemInfo item) {
         notifyOtherCallbacks(c -> c.bindItemsModified(Collections.singletonList(item)));
     }
 
+    private ContentWriter newUpdateWriter(ItemInfo item, int scope) {
+        ContentWriter writer = new ContentWriter(mContext);
+        if (scope == SCOPE_ALL) {
+            item.onAddToDatabase(writer);
+            return writer;
+        }
+        writer.put(Favorites.CONTAINER, item.container)
+                .put(Favorites.CELLX, item.cellX)
+                .put(Favorites.CELLY, item.cellY)
+                .put(Favorites.RANK, item.rank)
+                .put(Favorites.SCREEN, item.screenId);
+        if (scope == SCOPE_POSITION_AND_SPAN) {
+            writer.put(Favorites.SPANX, item.spanX)
+                    .put(Favorites.SPANY, item.spanY);
+        }
+        return writer;
+    }
+
+    /**
+     * Queues an update of {@param item} on the model thread. When batching is enabled, the update
+     * is merged with the other updates issued before the model thread gets to them, and all of
+     * them are committed in a single transaction.
+     */
+    private void enqueueUpdate(ItemInfo item, int scope, boolean undoable) {
+        sUpdatesIssued.incrementAndGet();
+        // Updates from model tasks are written inline, as the task may rely on them being applied
+        if (!FeatureFlags.ENABLE_BATCHED_MODEL_WRITES.get()
+                || MODEL_EXECUTOR.getLooper() == Looper.myLooper()) {
+            Runnable update = new UpdateItemRunnable(item, scope);
+            if (undoable) {
+                enqueueDeleteRunnable(update);
+            } else {
+                MODEL_EXECUTOR.execute(update);
+            }
+            return;
+        }
+
+        if (undoable && mPreparingToUndo) {
+            // Only merge with the updates following the last pending delete, to keep the order
+            int last = mDeleteRunnables.size() - 1;
+            if (last >= 0 && mDeleteRunnables.get(last) instanceof UpdateBatch) {
+                ((UpdateBatch) mDeleteRunnables.get(last)).add(item, scope);
+            } else {
+                UpdateBatch batch = new UpdateBatch();
+                batch.add(item, scope);
+                mDeleteRunnables.add(batch);
+            }
+            return;
+        }
+
+        synchronized (mBatchLock) {
+            if (mOpenBatch == null) {
+                mOpenBatch = new UpdateBatch();
+                MODEL_EXECUTOR.execute(mOpenBatch);
+            }
+            mOpenBatch.add(item, scope);
+        }
+    }
+
+    /**
+     * Prevents the queued batch from accepting more updates, so that any following update is
+     * committed after the operations queued from now on.
+     */
+    private void closeBatch() {
+        synchronized (mBatchLock) {
+            mOpenBatch = null;
+        }
+    }
+
     /**
      * Add an item to the database in a specified container. Sets the container, screen, cellX and
      * cellY fields of the item. Also assigns an ID to the item.
@@ -259,7 +326,8 @@ public class ModelWriter {
         notifyOtherCallbacks(c -> c.bindItems(Collections.singletonList(item), false));
 
         ModelVerifier verifier = new ModelVerifier();
-        final StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+        final StackTraceElement[] stackTrace = captureStackTrace();
+        closeBatch();
         MODEL_EXECUTOR.execute(() -> {
             // Write the item on background thread, as some properties might have been updated in
             // the background.
@@ -379,12 +447,14 @@ public class ModelWriter {
         if (mPreparingToUndo) {
             mDeleteRunnables.add(r);
         } else {
+            closeBatch();
             MODEL_EXECUTOR.execute(r);
         }
     }
 
     public void commitDelete() {
         mPreparingToUndo = false;
+        closeBatch();
         for (Runnable runnable : mDeleteRunnables) {
             MODEL_EXECUTOR.execute(runnable);
         }
@@ -416,26 +486,97 @@ public class ModelWriter {
         });
     }
 
+    /**
+     * Dumps the counters of item updates, shared by all the writers
+     */
+    public static void dumpStats(String prefix, PrintWriter writer) {
+        int issued = sUpdatesIssued.get();
+        int coalesced = sUpdatesCoalesced.get();
+        writer.println(prefix + "ModelWriter: updatesIssued=" + issued
+                + " updatesCoalesced=" + coalesced
+                + " rowsWritten=" + (issued - coalesced)
+                + " batchesCommitted=" + sBatchesCommitted.get());
+    }
+
+    /**
+     * Returns the stack trace of the caller to report inconsistent updates, only on debug builds
+     * as capturing it for every update is expensive.
+     */
+    @Nullable
+    private static StackTraceElement[] captureStackTrace() {
+        return Utilities.IS_DEBUG_DEVICE || FeatureFlags.IS_STUDIO_BUILD
+                ? new Throwable().getStackTrace() : null;
+    }
+
     private class UpdateItemRunnable extends UpdateItemBaseRunnable {
         private final ItemInfo mItem;
-        private final Supplier<ContentWriter> mWriter;
+        private final int mScope;
         private final int mItemId;
 
-        UpdateItemRunnable(ItemInfo item, Supplier<ContentWriter> writer) {
+        UpdateItemRunnable(ItemInfo item, int scope) {
             mItem = item;
-            mWriter = writer;
+            mScope = scope;
             mItemId = item.id;
         }
 
         @Override
         public void run() {
             Uri uri = Favorites.getContentUri(mItemId);
-            mContext.getContentResolver().update(uri, mWriter.get().getValues(mContext),
-                    null, null);
+            mContext.getContentResolver().update(uri,
+                    newUpdateWriter(mItem, mScope).getValues(mContext), null, null);
             updateItemArrays(mItem, mItemId);
         }
     }
 
+    /**
+     * Updates of several items, where repeated updates of an item are merged into one
+     */
+    private class UpdateBatch extends UpdateItemBaseRunnable {
+        private final IntHashMap<ItemInfo> mItems = new IntHashMap<>();
+        private final IntArray mScopes = new IntArray();
+
+        void add(ItemInfo item, int scope) {
+            int index = mItems.indexOfKey(item.id);
+            if (index < 0) {
+                mItems.put(item.id, item);
+                mScopes.add(scope);
+                return;
+            }
+            // The columns are read when the batch is committed, so only the last item instance
+            // and the widest scope need to be kept
+            sUpdatesCoalesced.incrementAndGet();
+            mItems.setValueAt(index, item);
+            mScopes.set(index, Math.max(mScopes.get(index), scope));
+        }
+
+        @Override
+        public void run() {
+            synchronized (mBatchLock) {
+                if (mOpenBatch == this) {
+                    mOpenBatch = null;
+                }
+            }
+
+            int count = mItems.size();
+            ArrayList<ContentProviderOperation> ops = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ContentValues values = newUpdateWriter(mItems.valueAt(i), mScopes.get(i))
+                        .getValues(mContext);
+                ops.add(ContentProviderOperation.newUpdate(
+                        Favorites.getContentUri(mItems.keyAt(i))).withValues(values).build());
+            }
+            try {
+                mContext.getContentResolver().applyBatch(LauncherProvider.AUTHORITY, ops);
+                sBatchesCommitted.incrementAndGet();
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to commit " + count + " item updates", e);
+            }
+            for (int i = 0; i < count; i++) {
+                updateItemArrays(mItems.valueAt(i), mItems.keyAt(i));
+            }
+        }
+    }
+
     private class UpdateItemsRunnable extends UpdateItemBaseRunnable {
         private final ArrayList<ContentValues> mValues;
         private final ArrayList<ItemInfo> mItems;
@@ -467,11 +608,12 @@ public class ModelWriter {
     }
 
     private abstract class UpdateItemBaseRunnable implements Runnable {
+        @Nullable
         private final StackTraceElement[] mStackTrace;
         private final ModelVerifier mVerifier = new ModelVerifier();
 
         UpdateItemBaseRunnable() {
-            mStackTrace = new Throwable().getStackTrace();
+            mStackTrace = captureStackTrace();
         }
 
         protected void updateItemArrays(ItemInfo item, int itemId) {
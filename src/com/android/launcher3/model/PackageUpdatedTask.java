@@ -52,6 +52,7 @@ import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.widget.WidgetPreviewCache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -365,6 +366,12 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                     .removeFromInstallQueue(removedPackages, mUser);
         }
 
+        if (FeatureFlags.ENABLE_WIDGET_PREVIEW_CACHE.get()
+                && (mOp == OP_UPDATE || mOp == OP_REMOVE)) {
+            // The widget previews of an updated package might have changed
+            WidgetPreviewCache.INSTANCE.get(context).removePackages(packageSet, mUser);
+        }
+
         if (mOp == OP_ADD) {
             // Load widgets for the new package. Changes due to app updates are handled through
             // AppWidgetHost events, this is just to initialize the long-press options.
@@ -207,20 +207,20 @@ public class FolderInfo extends ItemInfo {
         return String.format("%s; labelState=%s", super.dumpProperties(), getLabelState());
     }
 
-    @NonNull
     @Override
-    public LauncherAtom.ItemInfo buildProto(@Nullable FolderInfo fInfo) {
+    public void buildProto(@Nullable FolderInfo fInfo,
+            @NonNull LauncherAtom.ItemInfo.Builder itemBuilder) {
         FolderIcon.Builder folderIcon = FolderIcon.newBuilder()
                 .setCardinality(contents.size());
         if (LabelState.SUGGESTED.equals(getLabelState())) {
             folderIcon.setLabelInfo(title.toString());
         }
-        return getDefaultItemInfoBuilder()
+        addDefaultItemInfo(itemBuilder);
+        itemBuilder
                 .setFolderIcon(folderIcon)
                 .setRank(rank)
                 .addItemAttributes(getLabelState().mLogAttribute)
-                .setContainerInfo(getContainerInfo())
-                .build();
+                .setContainerInfo(getContainerInfo());
     }
 
     @Override
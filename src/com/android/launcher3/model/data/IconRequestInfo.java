@@ -17,9 +17,11 @@ package com.android.launcher3.model.data;
 
 import static android.graphics.BitmapFactory.decodeByteArray;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.LauncherActivityInfo;
+import android.content.pm.ShortcutInfo;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -29,6 +31,7 @@ import androidx.annotation.Nullable;
 import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.icons.BitmapInfo;
 import com.android.launcher3.icons.LauncherIcons;
+import com.android.launcher3.shortcuts.ShortcutKey;
 
 /**
  * Class representing one request for an icon to be queried in a sql database.
@@ -42,6 +45,7 @@ public class IconRequestInfo<T extends ItemInfoWithIcon> {
 
     @NonNull public final T itemInfo;
     @Nullable public final LauncherActivityInfo launcherActivityInfo;
+    @Nullable public final ShortcutInfo shortcutInfo;
     @Nullable public final String packageName;
     @Nullable public final String resourceName;
     @Nullable public final byte[] iconBlob;
@@ -67,14 +71,50 @@ public class IconRequestInfo<T extends ItemInfoWithIcon> {
             @Nullable String resourceName,
             @Nullable byte[] iconBlob,
             boolean useLowResIcon) {
+        this(itemInfo, launcherActivityInfo, /* shortcutInfo= */ null, packageName, resourceName,
+                iconBlob, useLowResIcon);
+    }
+
+    private IconRequestInfo(
+            @NonNull T itemInfo,
+            @Nullable LauncherActivityInfo launcherActivityInfo,
+            @Nullable ShortcutInfo shortcutInfo,
+            @Nullable String packageName,
+            @Nullable String resourceName,
+            @Nullable byte[] iconBlob,
+            boolean useLowResIcon) {
         this.itemInfo = itemInfo;
         this.launcherActivityInfo = launcherActivityInfo;
+        this.shortcutInfo = shortcutInfo;
         this.packageName = packageName;
         this.resourceName = resourceName;
         this.iconBlob = iconBlob;
         this.useLowResIcon = useLowResIcon;
     }
 
+    /**
+     * Creates a request for the icon of a deep shortcut. Only the icon of the item info is loaded,
+     * its title comes from the {@param shortcutInfo}.
+     *
+     * @param iconBlob the last saved icon of the shortcut, if any
+     */
+    public static <T extends ItemInfoWithIcon> IconRequestInfo<T> forShortcut(
+            @NonNull T itemInfo, @NonNull ShortcutInfo shortcutInfo, @Nullable byte[] iconBlob) {
+        return new IconRequestInfo<>(itemInfo, /* launcherActivityInfo= */ null, shortcutInfo,
+                /* packageName= */ null, /* resourceName= */ null, iconBlob,
+                /* useLowResIcon= */ false);
+    }
+
+    /**
+     * Returns the component this request's icon is cached with
+     */
+    @Nullable
+    public ComponentName getCacheComponent() {
+        return shortcutInfo != null
+                ? ShortcutKey.fromInfo(shortcutInfo).componentName
+                : itemInfo.getTargetComponent();
+    }
+
     /**
      * Loads this request's item info's title. This method should only be used on IconRequestInfos
      * for WorkspaceItemInfos.
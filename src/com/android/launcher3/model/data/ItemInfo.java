@@ -336,7 +336,18 @@ public class ItemInfo {
      */
     @NonNull
     public LauncherAtom.ItemInfo buildProto(@Nullable final FolderInfo fInfo) {
-        LauncherAtom.ItemInfo.Builder itemBuilder = getDefaultItemInfoBuilder();
+        LauncherAtom.ItemInfo.Builder itemBuilder = LauncherAtom.ItemInfo.newBuilder();
+        buildProto(fInfo, itemBuilder);
+        return itemBuilder.build();
+    }
+
+    /**
+     * Fills the given cleared {@link LauncherAtom.ItemInfo.Builder} with the same fields as
+     * {@link #buildProto(FolderInfo)}, so that callers logging many items can reuse the builder.
+     */
+    public void buildProto(@Nullable final FolderInfo fInfo,
+            @NonNull LauncherAtom.ItemInfo.Builder itemBuilder) {
+        addDefaultItemInfo(itemBuilder);
         Optional<ComponentName> nullableComponent = Optional.ofNullable(getTargetComponent());
         switch (itemType) {
             case ITEM_TYPE_APPLICATION:
@@ -412,18 +423,14 @@ public class ItemInfo {
                 itemBuilder.setContainerInfo(containerInfo);
             }
         }
-        return itemBuilder.build();
     }
 
-    @NonNull
-    protected LauncherAtom.ItemInfo.Builder getDefaultItemInfoBuilder() {
-        LauncherAtom.ItemInfo.Builder itemBuilder = LauncherAtom.ItemInfo.newBuilder();
+    protected void addDefaultItemInfo(@NonNull LauncherAtom.ItemInfo.Builder itemBuilder) {
         itemBuilder.setIsWork(!Process.myUserHandle().equals(user));
         SettingsCache settingsCache = SettingsCache.INSTANCE.getNoCreate();
         boolean isKidsMode = settingsCache != null && settingsCache.getValue(NAV_BAR_KIDS_MODE, 0);
         itemBuilder.setIsKidsMode(isKidsMode);
         itemBuilder.setRank(rank);
-        return itemBuilder;
     }
 
     /**
@@ -284,13 +284,12 @@ public class LauncherAppWidgetInfo extends ItemInfo {
         }
     }
 
-    @NonNull
     @Override
-    public LauncherAtom.ItemInfo buildProto(@Nullable FolderInfo folderInfo) {
-        LauncherAtom.ItemInfo info = super.buildProto(folderInfo);
-        return info.toBuilder()
-                .setWidget(info.getWidget().toBuilder().setWidgetFeatures(widgetFeatures))
-                .addItemAttributes(getAttribute(sourceContainer))
-                .build();
+    public void buildProto(@Nullable FolderInfo folderInfo,
+            @NonNull LauncherAtom.ItemInfo.Builder itemBuilder) {
+        super.buildProto(folderInfo, itemBuilder);
+        itemBuilder
+                .setWidget(itemBuilder.getWidget().toBuilder().setWidgetFeatures(widgetFeatures))
+                .addItemAttributes(getAttribute(sourceContainer));
     }
 }
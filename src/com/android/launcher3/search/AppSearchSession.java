@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Keeps the apps which can still match the last query, so that a query extending it only needs
+ * to check those apps instead of all of them.
+ *
+ * The candidate list is kept in app order and is made of the apps which matched the last query,
+ * followed by the apps which were not checked because enough results were found. Any app
+ * matching an extension of a query made of letters and digits also matches the query itself, so
+ * both parts remain valid candidates while the user keeps typing. On any other edit, or when the
+ * indexed apps change, the candidates are rebuilt from the {@link AppTitleIndex} or from all the
+ * apps.
+ *
+ * This class is not thread safe, it is expected to be used on the model thread.
+ */
+public class AppSearchSession {
+
+    private final StringMatcher mMatcher = StringMatcher.getInstance();
+
+    private final ArrayList<AppInfo> mCandidates = new ArrayList<>();
+
+    @Nullable
+    private String mLastQuery;
+    private int mLastGeneration;
+
+    /**
+     * Returns up to {@param maxResults} apps matching the query, in app order, or null if the
+     * search was cancelled through {@param cancelled} before completing.
+     *
+     * @param apps all the apps, in the same order as they were added to {@param index}
+     */
+    @Nullable
+    public List<AppInfo> search(@NonNull List<AppInfo> apps, @NonNull AppTitleIndex index,
+            @NonNull String query, int maxResults, @NonNull BooleanSupplier cancelled) {
+        String queryLower = query.toLowerCase();
+        if (!canRefine(queryLower, index.getGeneration())) {
+            List<AppInfo> candidates = index.getCandidates(queryLower);
+            mCandidates.clear();
+            mCandidates.addAll(candidates == null ? apps : candidates);
+        }
+        // Invalidate the session until the candidates are consistent again
+        mLastQuery = null;
+
+        ArrayList<AppInfo> result = new ArrayList<>();
+        int write = 0;
+        int read = 0;
+        int total = mCandidates.size();
+        while (read < total && result.size() < maxResults) {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+            AppInfo info = mCandidates.get(read++);
+            if (StringMatcherUtility.matches(queryLower, info.title.toString(), mMatcher)) {
+                mCandidates.set(write++, info);
+                result.add(info);
+            }
+        }
+        // Drop the apps which were checked and did not match, keeping the unchecked ones
+        mCandidates.subList(write, read).clear();
+
+        mLastQuery = queryLower;
+        mLastGeneration = index.getGeneration();
+        return result;
+    }
+
+    /**
+     * Discards the candidates of the last query
+     */
+    public void reset() {
+        mLastQuery = null;
+        mCandidates.clear();
+    }
+
+    private boolean canRefine(String queryLower, int generation) {
+        if (mLastQuery == null || generation != mLastGeneration
+                || !queryLower.startsWith(mLastQuery)) {
+            return false;
+        }
+        // Chars ignored by the collator let a longer query match a title where its prefix does
+        // not, as titles are compared over the length of the query.
+        for (int i = 0; i < queryLower.length(); i++) {
+            if (!Character.isLetterOrDigit(queryLower.charAt(i))) {
+                return false;
+            }
+        }
+        // Queries with Han chars match any substring instead of word prefixes, which is only a
+        // narrowing if the last query was using the same matching.
+        return StringMatcherUtility.requestSimpleFuzzySearch(queryLower)
+                == StringMatcherUtility.requestSimpleFuzzySearch(mLastQuery);
+    }
+
+    public int getCandidateCount() {
+        return mCandidates.size();
+    }
+}
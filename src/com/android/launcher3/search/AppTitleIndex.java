@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * Incrementally maintained index over app titles, used to narrow down the apps which need to be
+ * checked by {@link StringMatcherUtility#matches} for a query.
+ *
+ * Every title is indexed by the prefixes (up to {@link #GRAM_LENGTH} chars) starting at each of
+ * its break points, as defined by {@link StringMatcher#isBreak}, and by all its trigrams. For
+ * printable ASCII titles and queries made of ASCII letters and digits, locale collation reduces
+ * to case insensitive comparison, so the postings contain every possible match. Titles with any
+ * other character can match in ways the postings cannot express, and are always returned as
+ * candidates. Other queries, which may contain chars ignored by the collator, are not answered.
+ *
+ * Candidates are returned in the order the apps were added, which is the order of
+ * {@link com.android.launcher3.model.AllAppsList#data}. This class is not thread safe.
+ */
+public class AppTitleIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final char PREFIX_MARKER = '^';
+
+    private final StringMatcher mMatcher = StringMatcher.getInstance();
+
+    private final IdentityHashMap<AppInfo, Entry> mEntries = new IdentityHashMap<>();
+    private final HashMap<String, TreeSet<Entry>> mPostings = new HashMap<>();
+    private final TreeSet<Entry> mUnindexedEntries = new TreeSet<>();
+
+    private long mNextSequence = 0;
+    private int mGeneration = 0;
+
+    /**
+     * Adds the app to the index, or re-indexes it if its title changed.
+     */
+    public void update(@NonNull AppInfo info) {
+        String title = info.title == null ? "" : info.title.toString();
+        Entry entry = mEntries.get(info);
+        if (entry != null) {
+            if (entry.indexedTitle.equals(title)) {
+                return;
+            }
+            removePostings(entry);
+            // Keep the original sequence, so that the app keeps its position
+            entry = new Entry(entry.sequence, info, title);
+        } else {
+            entry = new Entry(mNextSequence++, info, title);
+        }
+        mEntries.put(info, entry);
+        mGeneration++;
+
+        if (!isIndexableTitle(title)) {
+            mUnindexedEntries.add(entry);
+            return;
+        }
+        entry.keys = getKeys(title);
+        for (String key : entry.keys) {
+            mPostings.computeIfAbsent(key, k -> new TreeSet<>()).add(entry);
+        }
+    }
+
+    /**
+     * Removes the app from the index
+     */
+    public void remove(@NonNull AppInfo info) {
+        Entry entry = mEntries.remove(info);
+        if (entry != null) {
+            removePostings(entry);
+            mGeneration++;
+        }
+    }
+
+    public void clear() {
+        mEntries.clear();
+        mPostings.clear();
+        mUnindexedEntries.clear();
+        mNextSequence = 0;
+        mGeneration++;
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Returns a counter which changes whenever an app is added, removed or renamed
+     */
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Returns the apps which can match the lowercase {@param query}, in insertion order, or null
+     * if the query can not be answered by the index and all apps need to be checked.
+     */
+    @Nullable
+    public List<AppInfo> getCandidates(@NonNull String query) {
+        if (query.isEmpty() || !isIndexableQuery(query)) {
+            return null;
+        }
+        query = query.toLowerCase(Locale.ROOT);
+
+        // A match always starts at a break point of the title
+        TreeSet<Entry> smallest = mPostings.get(
+                PREFIX_MARKER + query.substring(0, Math.min(query.length(), GRAM_LENGTH)));
+        List<TreeSet<Entry>> others = new ArrayList<>();
+        for (int i = 1; smallest != null && i + GRAM_LENGTH <= query.length(); i++) {
+            TreeSet<Entry> postings = mPostings.get(query.substring(i, i + GRAM_LENGTH));
+            if (postings == null) {
+                smallest = null;
+            } else if (postings.size() < smallest.size()) {
+                others.add(smallest);
+                smallest = postings;
+            } else {
+                others.add(postings);
+            }
+        }
+
+        Iterator<Entry> indexed = smallest == null
+                ? Collections.emptyIterator() : smallest.iterator();
+        Iterator<Entry> unindexed = mUnindexedEntries.iterator();
+        List<AppInfo> result = new ArrayList<>();
+        Entry nextIndexed = nextMatching(indexed, others);
+        Entry nextUnindexed = unindexed.hasNext() ? unindexed.next() : null;
+        while (nextIndexed != null || nextUnindexed != null) {
+            if (nextUnindexed == null
+                    || (nextIndexed != null && nextIndexed.sequence < nextUnindexed.sequence)) {
+                result.add(nextIndexed.info);
+                nextIndexed = nextMatching(indexed, others);
+            } else {
+                result.add(nextUnindexed.info);
+                nextUnindexed = unindexed.hasNext() ? unindexed.next() : null;
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    private static Entry nextMatching(Iterator<Entry> iterator, List<TreeSet<Entry>> others) {
+        outer:
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            for (TreeSet<Entry> postings : others) {
+                if (!postings.contains(entry)) {
+                    continue outer;
+                }
+            }
+            return entry;
+        }
+        return null;
+    }
+
+    private void removePostings(Entry entry) {
+        mUnindexedEntries.remove(entry);
+        if (entry.keys == null) {
+            return;
+        }
+        for (String key : entry.keys) {
+            TreeSet<Entry> postings = mPostings.get(key);
+            if (postings != null) {
+                postings.remove(entry);
+                if (postings.isEmpty()) {
+                    mPostings.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the break point prefixes and trigrams of an indexable title, following the same
+     * break point rules as {@link StringMatcherUtility#matches}.
+     */
+    private String[] getKeys(String title) {
+        String lower = title.toLowerCase(Locale.ROOT);
+        int length = title.length();
+        ArrayList<String> keys = new ArrayList<>();
+
+        int lastType;
+        int thisType = Character.UNASSIGNED;
+        int nextType = length > 0 ? Character.getType(title.charAt(0)) : Character.UNASSIGNED;
+        for (int i = 0; i < length; i++) {
+            lastType = thisType;
+            thisType = nextType;
+            nextType = i < (length - 1)
+                    ? Character.getType(title.charAt(i + 1)) : Character.UNASSIGNED;
+            if (mMatcher.isBreak(thisType, lastType, nextType)) {
+                for (int end = i + 1; end <= Math.min(length, i + GRAM_LENGTH); end++) {
+                    keys.add(PREFIX_MARKER + lower.substring(i, end));
+                }
+            }
+            if (i + GRAM_LENGTH <= length) {
+                keys.add(lower.substring(i, i + GRAM_LENGTH));
+            }
+        }
+        return keys.stream().distinct().toArray(String[]::new);
+    }
+
+    /**
+     * Returns true if the title only contains printable ASCII chars. Punctuation which the
+     * collator ignores can only prevent a title from matching, never add matches.
+     */
+    private static boolean isIndexableTitle(String title) {
+        for (int i = 0; i < title.length(); i++) {
+            char c = title.charAt(i);
+            if (c < 0x20 || c > 0x7E) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the query only contains ASCII letters and digits, none of which are ignored
+     * by the collator.
+     */
+    private static boolean isIndexableQuery(String query) {
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Entry implements Comparable<Entry> {
+
+        final long sequence;
+        final AppInfo info;
+        final String indexedTitle;
+        @Nullable
+        String[] keys;
+
+        Entry(long sequence, AppInfo info, String indexedTitle) {
+            this.sequence = sequence;
+            this.info = info;
+            this.indexedTitle = indexedTitle;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package com.android.launcher3.statemanager;
 import static android.animation.ValueAnimator.areAnimatorsEnabled;
 
 import static com.android.launcher3.anim.AnimatorPlaybackController.callListenerCommandRecursively;
+import static com.android.launcher3.logging.TransitionFrameTracker.TRANSITION_STATE_PREFIX;
 import static com.android.launcher3.states.StateAnimationConfig.SKIP_ALL_ANIMATIONS;
 
 import android.animation.Animator;
@@ -33,6 +34,7 @@ import androidx.annotation.FloatRange;
 import com.android.launcher3.anim.AnimationSuccessListener;
 import com.android.launcher3.anim.AnimatorPlaybackController;
 import com.android.launcher3.anim.PendingAnimation;
+import com.android.launcher3.logging.TransitionFrameTracker;
 import com.android.launcher3.states.StateAnimationConfig;
 import com.android.launcher3.states.StateAnimationConfig.AnimationFlags;
 
@@ -349,7 +351,10 @@ public class StateManager<STATE_TYPE extends BaseState<STATE_TYPE>> {
             }
         }
         builder.addListener(createStateAnimationListener(state));
-        mConfig.setAnimation(builder.buildAnim(), state);
+        AnimatorSet animation = builder.buildAnim();
+        TransitionFrameTracker.INSTANCE.get(mActivity)
+                .trackAnimator(animation, TRANSITION_STATE_PREFIX + state);
+        mConfig.setAnimation(animation, state);
         return builder;
     }
 
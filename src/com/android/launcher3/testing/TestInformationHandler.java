@@ -41,6 +41,7 @@ import com.android.launcher3.LauncherState;
 import com.android.launcher3.R;
 import com.android.launcher3.Workspace;
 import com.android.launcher3.dragndrop.DragLayer;
+import com.android.launcher3.logging.TransitionFrameTracker;
 import com.android.launcher3.testing.shared.HotseatCellCenterRequest;
 import com.android.launcher3.testing.shared.TestProtocol;
 import com.android.launcher3.testing.shared.WorkspaceCellCenterRequest;
@@ -244,6 +245,21 @@ public class TestInformationHandler implements ResourceBasedOverride {
                                 + l.getAppsView().getActiveRecyclerView().getPaddingBottom());
             }
 
+            case TestProtocol.REQUEST_TRANSITION_FRAME_STATS: {
+                return getFromExecutorSync(MAIN_EXECUTOR, () -> {
+                    response.putBundle(TestProtocol.TEST_INFO_RESPONSE_FIELD,
+                            TransitionFrameTracker.INSTANCE.get(mContext).getStatsBundle());
+                    return response;
+                });
+            }
+
+            case TestProtocol.REQUEST_CLEAR_TRANSITION_FRAME_STATS: {
+                return getFromExecutorSync(MAIN_EXECUTOR, () -> {
+                    TransitionFrameTracker.INSTANCE.get(mContext).clear();
+                    return response;
+                });
+            }
+
             default:
                 return null;
         }
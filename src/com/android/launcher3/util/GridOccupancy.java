@@ -2,22 +2,42 @@ package com.android.launcher3.util;
 
 import android.graphics.Rect;
 
+import androidx.annotation.Nullable;
+
 import com.android.launcher3.model.data.ItemInfo;
 
+import java.util.Arrays;
+
 /**
  * Utility object to manage the occupancy in a grid.
+ *
+ * Each row is stored as a bitset, with bit x of the row set if the cell (x, y) is occupied, so
+ * that a span of a row can be checked or marked with a single mask. Rows wider than 64 cells are
+ * packed over several longs.
  */
 public class GridOccupancy extends AbsGridOccupancy {
 
+    private static final int WORD_SIZE = Long.SIZE;
+
     private final int mCountX;
     private final int mCountY;
 
-    public final boolean[][] cells;
+    private final int mWordsPerRow;
+    private final long[] mWords;
 
     public GridOccupancy(int countX, int countY) {
         mCountX = countX;
         mCountY = countY;
-        cells = new boolean[countX][countY];
+        mWordsPerRow = (countX + WORD_SIZE - 1) / WORD_SIZE;
+        mWords = new long[mWordsPerRow * countY];
+    }
+
+    public int getCountX() {
+        return mCountX;
+    }
+
+    public int getCountY() {
+        return mCountY;
     }
 
     /**
@@ -30,26 +50,64 @@ public class GridOccupancy extends AbsGridOccupancy {
      * @return true if a vacant cell was found
      */
     public boolean findVacantCell(int[] vacantOut, int spanX, int spanY) {
-        return super.findVacantCell(vacantOut, cells, mCountX, mCountY, spanX, spanY);
+        return super.findVacantCell(vacantOut, mCountX, mCountY, spanX, spanY);
     }
 
     public void copyTo(GridOccupancy dest) {
+        if (dest.mWordsPerRow == mWordsPerRow) {
+            System.arraycopy(mWords, 0, dest.mWords, 0,
+                    Math.min(mWords.length, dest.mWords.length));
+            return;
+        }
         for (int i = 0; i < mCountX; i++) {
             for (int j = 0; j < mCountY; j++) {
-                dest.cells[i][j] = cells[i][j];
+                dest.markCells(i, j, 1, 1, isOccupied(i, j));
             }
         }
     }
 
+    /**
+     * Returns whether the cell at {@param x}, {@param y} is occupied. The position must be within
+     * the grid.
+     */
+    public boolean isOccupied(int x, int y) {
+        return (mWords[y * mWordsPerRow + x / WORD_SIZE] & (1L << x)) != 0;
+    }
+
+    @Override
     public boolean isRegionVacant(int x, int y, int spanX, int spanY) {
         int x2 = x + spanX - 1;
         int y2 = y + spanY - 1;
         if (x < 0 || y < 0 || x2 >= mCountX || y2 >= mCountY) {
             return false;
         }
-        for (int i = x; i <= x2; i++) {
-            for (int j = y; j <= y2; j++) {
-                if (cells[i][j]) {
+        for (int j = y; j <= y2; j++) {
+            for (int i = x; i <= x2; i += WORD_SIZE) {
+                if (getBits(j, i, Math.min(WORD_SIZE, x2 - i + 1)) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the occupied cells of {@param block} can be placed with their top left
+     * corner at {@param x}, {@param y} without overlapping any occupied cell of this grid. If
+     * block is null, the whole region of the given span must be vacant.
+     */
+    public boolean isRegionVacant(int x, int y, int spanX, int spanY,
+            @Nullable GridOccupancy block) {
+        if (block == null) {
+            return isRegionVacant(x, y, spanX, spanY);
+        }
+        if (x < 0 || y < 0 || x + spanX > mCountX || y + spanY > mCountY) {
+            return false;
+        }
+        for (int j = 0; j < spanY; j++) {
+            for (int i = 0; i < spanX; i += WORD_SIZE) {
+                int width = Math.min(WORD_SIZE, spanX - i);
+                if ((getBits(y + j, x + i, width) & block.getBits(j, i, width)) != 0) {
                     return false;
                 }
             }
@@ -59,9 +117,11 @@ public class GridOccupancy extends AbsGridOccupancy {
 
     public void markCells(int cellX, int cellY, int spanX, int spanY, boolean value) {
         if (cellX < 0 || cellY < 0) return;
-        for (int x = cellX; x < cellX + spanX && x < mCountX; x++) {
-            for (int y = cellY; y < cellY + spanY && y < mCountY; y++) {
-                cells[x][y] = value;
+        int x2 = Math.min(cellX + spanX, mCountX);
+        int y2 = Math.min(cellY + spanY, mCountY);
+        for (int y = cellY; y < y2; y++) {
+            for (int x = cellX; x < x2; x += WORD_SIZE) {
+                setBits(y, x, Math.min(WORD_SIZE, x2 - x), value);
             }
         }
     }
@@ -79,7 +139,43 @@ public class GridOccupancy extends AbsGridOccupancy {
     }
 
     public void clear() {
-        markCells(0, 0, mCountX, mCountY, false);
+        Arrays.fill(mWords, 0);
+    }
+
+    /**
+     * Returns the bits of the {@param width} cells of row {@param y} starting at {@param x}, with
+     * the cell x in the lowest bit. The width must be at most {@link #WORD_SIZE}.
+     */
+    private long getBits(int y, int x, int width) {
+        int index = y * mWordsPerRow + x / WORD_SIZE;
+        int offset = x % WORD_SIZE;
+        long bits = mWords[index] >>> offset;
+        if (offset != 0 && offset + width > WORD_SIZE) {
+            bits |= mWords[index + 1] << (WORD_SIZE - offset);
+        }
+        return width == WORD_SIZE ? bits : bits & ((1L << width) - 1);
+    }
+
+    /**
+     * Sets the bits of the {@param width} cells of row {@param y} starting at {@param x}. The
+     * width must be at most {@link #WORD_SIZE}.
+     */
+    private void setBits(int y, int x, int width, boolean value) {
+        int index = y * mWordsPerRow + x / WORD_SIZE;
+        int offset = x % WORD_SIZE;
+        long mask = width == WORD_SIZE ? -1L : (1L << width) - 1;
+        setMask(index, mask << offset, value);
+        if (offset != 0 && offset + width > WORD_SIZE) {
+            setMask(index + 1, mask >>> (WORD_SIZE - offset), value);
+        }
+    }
+
+    private void setMask(int index, long mask, boolean value) {
+        if (value) {
+            mWords[index] |= mask;
+        } else {
+            mWords[index] &= ~mask;
+        }
     }
 
     @Override
@@ -87,7 +183,7 @@ public class GridOccupancy extends AbsGridOccupancy {
         StringBuilder s = new StringBuilder("Grid: \n");
         for (int y = 0; y < mCountY; y++) {
             for (int x = 0; x < mCountX; x++) {
-                s.append(cells[x][y] ? 1 : 0).append(" ");
+                s.append(isOccupied(x, y) ? 1 : 0).append(" ");
             }
             s.append("\n");
         }
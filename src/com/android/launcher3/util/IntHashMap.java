@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Map of int primitives to objects, with the same API as {@link IntSparseArrayMap} but constant
+ * time insertion, lookup and removal.
+ *
+ * Entries are stored densely in insertion order, so that they can be accessed by index, and are
+ * looked up through an open-addressing table with linear probing. Removing an entry moves the
+ * last entry in its place, so the order of indices is not stable across removals and, unlike
+ * {@link IntSparseArrayMap}, is not sorted by key.
+ */
+public class IntHashMap<E> implements Cloneable, Iterable<E> {
+
+    private static final int MIN_CAPACITY = 8;
+    private static final int[] EMPTY_INT = new int[0];
+    private static final Object[] EMPTY_OBJECT = new Object[0];
+
+    private int[] mKeys;
+    private Object[] mValues;
+    private int mSize;
+
+    // Index of the entry + 1 for each slot, or 0 for empty slots
+    private int[] mTable;
+    private int mShift;
+
+    public IntHashMap() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty map which can hold {@param initialCapacity} entries without growing
+     */
+    public IntHashMap(int initialCapacity) {
+        if (initialCapacity == 0) {
+            mKeys = EMPTY_INT;
+            mValues = EMPTY_OBJECT;
+            mTable = EMPTY_INT;
+        } else {
+            allocate(Math.max(initialCapacity, MIN_CAPACITY));
+        }
+    }
+
+    /**
+     * Returns the value mapped to {@param key} or null if there is no such mapping
+     */
+    public E get(int key) {
+        return get(key, null);
+    }
+
+    /**
+     * Returns the value mapped to {@param key} or {@param valueIfKeyNotFound} if there is no such
+     * mapping
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int key, E valueIfKeyNotFound) {
+        int index = indexOfKey(key);
+        return index >= 0 ? (E) mValues[index] : valueIfKeyNotFound;
+    }
+
+    /**
+     * Adds a mapping from {@param key} to {@param value}, replacing any previous mapping
+     */
+    public void put(int key, E value) {
+        int slot = findSlot(key);
+        if (mTable.length != 0 && mTable[slot] != 0) {
+            mValues[mTable[slot] - 1] = value;
+            return;
+        }
+        if (mSize == mKeys.length) {
+            allocate(Math.max(mSize * 2, MIN_CAPACITY));
+            slot = findSlot(key);
+        }
+        mKeys[mSize] = key;
+        mValues[mSize] = value;
+        mSize++;
+        mTable[slot] = mSize;
+    }
+
+    /**
+     * Removes the mapping for {@param key}, if any
+     */
+    public void remove(int key) {
+        if (mSize == 0) {
+            return;
+        }
+        int slot = findSlot(key);
+        if (mTable[slot] != 0) {
+            removeSlot(slot);
+        }
+    }
+
+    /**
+     * Alias for {@link #remove(int)}
+     */
+    public void delete(int key) {
+        remove(key);
+    }
+
+    /**
+     * Removes the mapping at {@param index}
+     */
+    public void removeAt(int index) {
+        removeSlot(findSlotOfIndex(index));
+    }
+
+    public boolean containsKey(int key) {
+        return indexOfKey(key) >= 0;
+    }
+
+    /**
+     * Returns the index of the entry for {@param key} or a negative number if there is none
+     */
+    public int indexOfKey(int key) {
+        if (mSize == 0) {
+            return -1;
+        }
+        return mTable[findSlot(key)] - 1;
+    }
+
+    /**
+     * Returns the index of the first entry mapped to {@param value}, compared by reference, or
+     * -1 if there is none
+     */
+    public int indexOfValue(E value) {
+        for (int i = 0; i < mSize; i++) {
+            if (mValues[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int keyAt(int index) {
+        checkIndex(index);
+        return mKeys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E valueAt(int index) {
+        checkIndex(index);
+        return (E) mValues[index];
+    }
+
+    public void setValueAt(int index, E value) {
+        checkIndex(index);
+        mValues[index] = value;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(mValues, 0, mSize, null);
+        Arrays.fill(mTable, 0);
+        mSize = 0;
+    }
+
+    /**
+     * Returns all the keys, in index order
+     */
+    public IntArray keys() {
+        return IntArray.wrap(Arrays.copyOf(mKeys, mSize));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public IntHashMap<E> clone() {
+        try {
+            IntHashMap<E> clone = (IntHashMap<E>) super.clone();
+            clone.mKeys = mKeys.clone();
+            clone.mValues = mValues.clone();
+            clone.mTable = mTable.clone();
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new ValueIterator();
+    }
+
+    @Override
+    public String toString() {
+        if (mSize == 0) {
+            return "{}";
+        }
+        StringBuilder buffer = new StringBuilder(mSize * 28).append('{');
+        for (int i = 0; i < mSize; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(mKeys[i]).append('=').append(mValues[i] == this ? "(this Map)"
+                    : mValues[i]);
+        }
+        return buffer.append('}').toString();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+    }
+
+    /**
+     * Returns the slot containing {@param key} or the empty slot where it should be inserted
+     */
+    private int findSlot(int key) {
+        if (mTable.length == 0) {
+            return 0;
+        }
+        int mask = mTable.length - 1;
+        int slot = hash(key);
+        while (mTable[slot] != 0 && mKeys[mTable[slot] - 1] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int findSlotOfIndex(int index) {
+        checkIndex(index);
+        int mask = mTable.length - 1;
+        int slot = hash(mKeys[index]);
+        while (mTable[slot] != index + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void removeSlot(int slot) {
+        int index = mTable[slot] - 1;
+        int mask = mTable.length - 1;
+
+        // Shift back the following entries of the probe sequence, so that no tombstones are needed
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (mTable[next] != 0) {
+            int ideal = hash(mKeys[mTable[next] - 1]);
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                mTable[hole] = mTable[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        mTable[hole] = 0;
+
+        // Move the last entry in place of the removed one
+        int last = mSize - 1;
+        if (index != last) {
+            mTable[findSlotOfIndex(last)] = index + 1;
+            mKeys[index] = mKeys[last];
+            mValues[index] = mValues[last];
+        }
+        mValues[last] = null;
+        mSize--;
+    }
+
+    private void allocate(int capacity) {
+        mKeys = Arrays.copyOf(mKeys == null ? EMPTY_INT : mKeys, capacity);
+        mValues = Arrays.copyOf(mValues == null ? EMPTY_OBJECT : mValues, capacity);
+
+        // Keep the table at most half full
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        mTable = new int[tableSize];
+        mShift = Integer.numberOfLeadingZeros(tableSize) + 1;
+        int mask = tableSize - 1;
+        for (int i = 0; i < mSize; i++) {
+            int slot = hash(mKeys[i]);
+            while (mTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            mTable[slot] = i + 1;
+        }
+    }
+
+    private int hash(int key) {
+        // Fibonacci hashing, spreads sequential ids over the whole table
+        return (key * 0x9E3779B9) >>> mShift;
+    }
+
+    @Thunk class ValueIterator implements Iterator<E> {
+
+        private int mNextIndex = 0;
+
+        @Override
+        public boolean hasNext() {
+            return mNextIndex < mSize;
+        }
+
+        @Override
+        public E next() {
+            if (mNextIndex >= mSize) {
+                throw new NoSuchElementException();
+            }
+            return valueAt(mNextIndex++);
+        }
+    }
+}
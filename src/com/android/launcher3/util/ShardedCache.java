@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * A hash map partitioned into independently locked shards, so that readers of different keys
+ * never wait on each other and readers of the same shard only wait on writers.
+ *
+ * Every invalidation bumps a generation counter. Callers computing a value outside of this cache
+ * should read {@link #getGeneration()} before computing it and insert it using
+ * {@link #put(Object, Object, long)}, which drops values computed before an invalidation.
+ */
+public class ShardedCache<K, V> {
+
+    private final Shard<K, V>[] mShards;
+    private final int mShardMask;
+
+    private final AtomicLong mGeneration = new AtomicLong();
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mContendedCount = new AtomicLong();
+
+    /**
+     * @param shardCount number of shards, rounded up to the next power of two
+     */
+    public ShardedCache(int shardCount) {
+        int count = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+        mShards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            mShards[i] = new Shard<>();
+        }
+        mShardMask = count - 1;
+    }
+
+    /**
+     * Returns the value for the key or null if it is not present.
+     */
+    @Nullable
+    public V get(@NonNull K key) {
+        Shard<K, V> shard = shardFor(key);
+        Lock lock = shard.mLock.readLock();
+        acquire(lock);
+        V value;
+        try {
+            value = shard.mMap.get(key);
+        } finally {
+            lock.unlock();
+        }
+        (value == null ? mMissCount : mHitCount).incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Returns the current invalidation generation
+     */
+    public long getGeneration() {
+        return mGeneration.get();
+    }
+
+    /**
+     * Adds the value to the cache unless the cache was invalidated after {@param generation}.
+     * @return true if the value was added
+     */
+    public boolean put(@NonNull K key, @NonNull V value, long generation) {
+        Shard<K, V> shard = shardFor(key);
+        Lock lock = shard.mLock.writeLock();
+        acquire(lock);
+        try {
+            // Checked under the shard lock, so that a concurrent invalidation either rejects this
+            // value or removes it right after it is added.
+            if (mGeneration.get() != generation) {
+                return false;
+            }
+            shard.mMap.put(key, value);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all the entries whose keys match the {@param keyMatcher}
+     */
+    public void removeIf(@NonNull Predicate<K> keyMatcher) {
+        mGeneration.incrementAndGet();
+        for (Shard<K, V> shard : mShards) {
+            Lock lock = shard.mLock.writeLock();
+            acquire(lock);
+            try {
+                shard.mMap.keySet().removeIf(keyMatcher);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries from the cache
+     */
+    public void clear() {
+        removeIf(k -> true);
+    }
+
+    /**
+     * Returns the number of entries across all shards
+     */
+    public int size() {
+        int size = 0;
+        for (Shard<K, V> shard : mShards) {
+            Lock lock = shard.mLock.readLock();
+            acquire(lock);
+            try {
+                size += shard.mMap.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of lock acquisitions which had to wait for another thread
+     */
+    public long getContendedCount() {
+        return mContendedCount.get();
+    }
+
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    public void dump(String prefix, PrintWriter writer, String label) {
+        writer.println(prefix + label + ": shards=" + mShards.length
+                + " size=" + size()
+                + " hits=" + mHitCount.get()
+                + " misses=" + mMissCount.get()
+                + " contended=" + mContendedCount.get()
+                + " generation=" + mGeneration.get());
+    }
+
+    private Shard<K, V> shardFor(K key) {
+        int h = key.hashCode();
+        // Spread the higher bits, same as HashMap, as keys often differ only in the upper bits
+        return mShards[(h ^ (h >>> 16)) & mShardMask];
+    }
+
+    private void acquire(Lock lock) {
+        if (!lock.tryLock()) {
+            mContendedCount.incrementAndGet();
+            lock.lock();
+        }
+    }
+
+    private static class Shard<K, V> {
+        final ReentrantReadWriteLock mLock = new ReentrantReadWriteLock();
+        final HashMap<K, V> mMap = new HashMap<>();
+    }
+}
@@ -15,10 +15,14 @@
  */
 package com.android.launcher3.util;
 
+import android.os.Looper;
+import android.os.SystemClock;
 import android.os.Trace;
 
 import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
 
+import java.util.ArrayList;
 import java.util.function.Supplier;
 
 /**
@@ -46,6 +50,25 @@ public class TraceHelper {
      */
     public static TraceHelper INSTANCE = new TraceHelper();
 
+    /**
+     * Listener of the durations of the sections traced on the main thread
+     */
+    public interface MainThreadSectionListener {
+
+        /**
+         * Called on the main thread when a section begun while the listener was set ends
+         */
+        void onSectionEnded(String sectionName, long durationNanos);
+    }
+
+    // Sections begun on the main thread while a listener is set, with the depth of the main
+    // thread sections they were begun at, so that sections begun before the listener was set are
+    // not matched with them
+    private final ArrayList<TimedSection> mTimedSections = new ArrayList<>();
+    private int mMainThreadDepth;
+    @Nullable
+    private MainThreadSectionListener mMainThreadSectionListener;
+
     /**
      * @return a token to pass into {@link #endSection(Object)}.
      */
@@ -55,6 +78,13 @@ public class TraceHelper {
 
     public Object beginSection(String sectionName, int flags) {
         Trace.beginSection(sectionName);
+        if (Looper.getMainLooper().isCurrentThread()) {
+            if (mMainThreadSectionListener != null) {
+                mTimedSections.add(new TimedSection(
+                        sectionName, mMainThreadDepth, SystemClock.elapsedRealtimeNanos()));
+            }
+            mMainThreadDepth++;
+        }
         return null;
     }
 
@@ -63,6 +93,29 @@ public class TraceHelper {
      */
     public void endSection(Object token) {
         Trace.endSection();
+        if (Looper.getMainLooper().isCurrentThread() && mMainThreadDepth > 0) {
+            mMainThreadDepth--;
+            int last = mTimedSections.size() - 1;
+            if (last >= 0 && mTimedSections.get(last).depth == mMainThreadDepth) {
+                TimedSection section = mTimedSections.remove(last);
+                if (mMainThreadSectionListener != null) {
+                    mMainThreadSectionListener.onSectionEnded(section.name,
+                            SystemClock.elapsedRealtimeNanos() - section.startNanos);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the listener of the durations of the sections traced on the main thread, which are
+     * only timed while a listener is set.
+     */
+    @MainThread
+    public void setMainThreadSectionListener(@Nullable MainThreadSectionListener listener) {
+        mMainThreadSectionListener = listener;
+        if (listener == null) {
+            mTimedSections.clear();
+        }
     }
 
     /**
@@ -86,4 +139,16 @@ public class TraceHelper {
             INSTANCE.endSection(traceToken);
         }
     }
+
+    private static class TimedSection {
+        final String name;
+        final int depth;
+        final long startNanos;
+
+        TimedSection(String name, int depth, long startNanos) {
+            this.name = name;
+            this.depth = depth;
+            this.startNanos = startNanos;
+        }
+    }
 }
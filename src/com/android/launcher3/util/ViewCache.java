@@ -15,7 +15,11 @@
  */
 package com.android.launcher3.util;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_ADAPTIVE_VIEW_POOLS;
+
 import android.content.Context;
+import android.content.res.Resources;
+import android.os.Looper;
 import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -23,15 +27,37 @@ import android.view.ViewGroup;
 
 import com.android.launcher3.R;
 
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
 /**
- * Utility class to cache views at an activity level
+ * Utility class to cache views at an activity level.
+ *
+ * With {@link com.android.launcher3.config.FeatureFlags#ENABLE_ADAPTIVE_VIEW_POOLS}, the number
+ * of views kept for a layout follows the observed demand instead of the size set by
+ * {@link #setCacheSize}, and missing views are inflated ahead of their use when the main thread
+ * is idle.
  */
 public class ViewCache {
 
+    // Maximum number of views kept across all the layouts when the sizes follow the demand
+    private static final int MAX_CACHED_VIEWS = 64;
+
     protected final SparseArray<CacheEntry> mCache = new SparseArray();
 
     public void setCacheSize(int layoutId, int size) {
-        mCache.put(layoutId, new CacheEntry(size));
+        CacheEntry oldEntry = mCache.get(layoutId);
+        CacheEntry entry = new CacheEntry(size);
+        mCache.put(layoutId, entry);
+        if (ENABLE_ADAPTIVE_VIEW_POOLS.get() && oldEntry != null) {
+            // Keep the demand learned so far, and the views of the cache are inflated again
+            entry.mStats = new ViewPoolStats(
+                    Math.max(size, oldEntry.mStats.getTargetSize()), MAX_CACHED_VIEWS);
+            entry.mInflationContext = oldEntry.mInflationContext;
+            entry.mInflationParent = oldEntry.mInflationParent;
+            schedulePreInflation(layoutId, entry);
+        }
     }
 
     public <T extends View> T getView(int layoutId, Context context, ViewGroup parent) {
@@ -42,13 +68,17 @@ public class ViewCache {
         }
 
         T result;
-        if (entry.mCurrentSize > 0) {
-            entry.mCurrentSize --;
-            result = (T) entry.mViews[entry.mCurrentSize];
-            entry.mViews[entry.mCurrentSize] = null;
+        if (!entry.mViews.isEmpty()) {
+            result = (T) entry.mViews.remove(entry.mViews.size() - 1);
+            entry.mStats.onHit();
         } else {
+            long startTime = System.nanoTime();
             result = (T) LayoutInflater.from(context).inflate(layoutId, parent, false);
             result.setTag(R.id.cache_entry_tag_id, entry);
+            entry.mStats.onMiss(System.nanoTime() - startTime,
+                    MAX_CACHED_VIEWS - getOtherTargetSizes(entry));
+            entry.mInflationContext = context;
+            entry.mInflationParent = parent == null ? null : new WeakReference<>(parent);
         }
         return result;
     }
@@ -61,23 +91,89 @@ public class ViewCache {
             // view setup.
             return;
         }
-        if (entry != null && entry.mCurrentSize < entry.mMaxSize) {
-            entry.mViews[entry.mCurrentSize] = view;
-            entry.mCurrentSize++;
+        if (entry != null) {
+            entry.mStats.onReturned();
+            if (entry.mViews.size() < entry.mStats.getTargetSize()) {
+                entry.mViews.add(view);
+            }
+            schedulePreInflation(layoutId, entry);
+        }
+    }
+
+    private int getOtherTargetSizes(CacheEntry entry) {
+        int size = 0;
+        for (int i = mCache.size() - 1; i >= 0; i--) {
+            if (mCache.valueAt(i) != entry) {
+                size += mCache.valueAt(i).mStats.getTargetSize();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Inflates the missing views of the entry when the main thread is idle, one view at a time.
+     * The views are inflated like the last view inflated on demand, as the layouts of the cache
+     * are not known to support being inflated in the background.
+     */
+    private void schedulePreInflation(int layoutId, CacheEntry entry) {
+        if (!ENABLE_ADAPTIVE_VIEW_POOLS.get() || entry.mPreInflationScheduled
+                || entry.mInflationContext == null || !entry.needsViews()) {
+            return;
+        }
+        entry.mPreInflationScheduled = true;
+        Looper.myQueue().addIdleHandler(() -> {
+            ViewGroup parent = entry.mInflationParent == null
+                    ? null : entry.mInflationParent.get();
+            if (mCache.get(layoutId) != entry || !entry.needsViews()
+                    || (entry.mInflationParent != null && parent == null)) {
+                entry.mPreInflationScheduled = false;
+                return false;
+            }
+            long startTime = System.nanoTime();
+            View view = LayoutInflater.from(entry.mInflationContext)
+                    .inflate(layoutId, parent, false);
+            view.setTag(R.id.cache_entry_tag_id, entry);
+            entry.mViews.add(view);
+            entry.mStats.onPreInflated(System.nanoTime() - startTime);
+
+            entry.mPreInflationScheduled = entry.needsViews();
+            return entry.mPreInflationScheduled;
+        });
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "ViewCache:");
+        for (int i = 0; i < mCache.size(); i++) {
+            CacheEntry entry = mCache.valueAt(i);
+            String name;
+            try {
+                name = entry.mInflationContext == null ? Integer.toHexString(mCache.keyAt(i))
+                        : entry.mInflationContext.getResources().getResourceEntryName(
+                                mCache.keyAt(i));
+            } catch (Resources.NotFoundException e) {
+                name = Integer.toHexString(mCache.keyAt(i));
+            }
+            entry.mStats.dump(prefix + "\t", writer, name, entry.mViews.size());
         }
     }
 
     private static class CacheEntry {
 
-        final int mMaxSize;
-        final View[] mViews;
+        final ArrayList<View> mViews = new ArrayList<>();
+
+        ViewPoolStats mStats;
 
-        int mCurrentSize;
+        Context mInflationContext;
+        WeakReference<ViewGroup> mInflationParent;
+        boolean mPreInflationScheduled;
 
         public CacheEntry(int maxSize) {
-            mMaxSize = maxSize;
-            mViews = new View[maxSize];
-            mCurrentSize = 0;
+            mStats = new ViewPoolStats(maxSize,
+                    ENABLE_ADAPTIVE_VIEW_POOLS.get() ? MAX_CACHED_VIEWS : maxSize);
+        }
+
+        boolean needsViews() {
+            return mViews.size() + mStats.getInUse() < mStats.getTargetSize();
         }
     }
 }
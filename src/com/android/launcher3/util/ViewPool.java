@@ -15,8 +15,11 @@
  */
 package com.android.launcher3.util;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_ADAPTIVE_VIEW_POOLS;
+
 import android.content.Context;
 import android.os.Handler;
+import android.util.SparseIntArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -27,17 +30,27 @@ import androidx.annotation.UiThread;
 
 import com.android.launcher3.util.ViewPool.Reusable;
 
+import java.io.PrintWriter;
+
 /**
  * Utility class to maintain a pool of reusable views.
  * During initialization, views are inflated on the background thread.
+ *
+ * With {@link com.android.launcher3.config.FeatureFlags#ENABLE_ADAPTIVE_VIEW_POOLS}, the pool
+ * keeps as many views as the peak demand observed for its layout, up to its max size, and a new
+ * pool of the same layout is initialized with that many views.
  */
 public class ViewPool<T extends View & Reusable> {
 
+    // Target sizes of the pools by layout, kept across the pools of the same layout
+    private static final SparseIntArray sTargetSizes = new SparseIntArray();
+
     private final Object[] mPool;
 
     private final LayoutInflater mInflater;
     private final ViewGroup mParent;
     private final int mLayoutId;
+    private final ViewPoolStats mStats;
 
     private int mCurrentSize = 0;
 
@@ -48,6 +61,12 @@ public class ViewPool<T extends View & Reusable> {
         mInflater = LayoutInflater.from(context);
         mPool = new Object[maxSize];
 
+        if (ENABLE_ADAPTIVE_VIEW_POOLS.get()) {
+            initialSize = Math.max(initialSize,
+                    Math.min(sTargetSizes.get(layoutId, 0), maxSize));
+        }
+        mStats = new ViewPoolStats(initialSize, maxSize);
+
         if (initialSize > 0) {
             initPool(initialSize);
         }
@@ -66,8 +85,13 @@ public class ViewPool<T extends View & Reusable> {
         // "new Handler()" in constructor easily.
         new Thread(() -> {
             for (int i = 0; i < initialSize; i++) {
+                long startTime = System.nanoTime();
                 T view = inflateNewView(inflater);
-                handler.post(() -> addToPool(view));
+                long inflateTime = System.nanoTime() - startTime;
+                handler.post(() -> {
+                    mStats.onPreInflated(inflateTime);
+                    addToPool(view);
+                });
             }
         }, "ViewPool-init").start();
     }
@@ -76,13 +100,15 @@ public class ViewPool<T extends View & Reusable> {
     public void recycle(T view) {
         Preconditions.assertUIThread();
         view.onRecycle();
+        mStats.onReturned();
+        updateTargetSize();
         addToPool(view);
     }
 
     @UiThread
     private void addToPool(T view) {
         Preconditions.assertUIThread();
-        if (mCurrentSize >= mPool.length) {
+        if (mCurrentSize >= getMaxPoolSize()) {
             // pool is full
             return;
         }
@@ -96,9 +122,42 @@ public class ViewPool<T extends View & Reusable> {
         Preconditions.assertUIThread();
         if (mCurrentSize > 0) {
             mCurrentSize--;
+            mStats.onHit();
             return (T) mPool[mCurrentSize];
         }
-        return inflateNewView(mInflater);
+        long startTime = System.nanoTime();
+        T view = inflateNewView(mInflater);
+        mStats.onMiss(System.nanoTime() - startTime, mPool.length);
+        updateTargetSize();
+        return view;
+    }
+
+    @UiThread
+    private void updateTargetSize() {
+        if (!ENABLE_ADAPTIVE_VIEW_POOLS.get()) {
+            return;
+        }
+        sTargetSizes.put(mLayoutId, mStats.getTargetSize());
+        // Drop the views above the target size when it shrinks
+        while (mCurrentSize > getMaxPoolSize()) {
+            mCurrentSize--;
+            mPool[mCurrentSize] = null;
+        }
+    }
+
+    private int getMaxPoolSize() {
+        return ENABLE_ADAPTIVE_VIEW_POOLS.get()
+                ? Math.min(mStats.getTargetSize(), mPool.length) : mPool.length;
+    }
+
+    /**
+     * Dumps the usage statistics of the pool
+     */
+    @UiThread
+    public void dump(String prefix, PrintWriter writer) {
+        mStats.dump(prefix, writer,
+                mInflater.getContext().getResources().getResourceEntryName(mLayoutId),
+                mCurrentSize);
     }
 
     @AnyThread
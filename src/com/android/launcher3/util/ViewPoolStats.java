@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_ADAPTIVE_VIEW_POOLS;
+
+import java.io.PrintWriter;
+
+/**
+ * Usage statistics of the views of a layout kept by {@link ViewCache} or {@link ViewPool}, used
+ * to size the pool to the observed demand.
+ *
+ * The demand is the number of views of the layout in use at the same time. The target size of
+ * the pool grows to the demand as soon as a view has to be inflated, and shrinks halfway towards
+ * the peak demand every time all the views in use have been returned.
+ */
+class ViewPoolStats {
+
+    private final int mMaxSize;
+    private int mTargetSize;
+
+    private int mInUse;
+    // Peak demand since all the views were last returned
+    private int mPeakInUse;
+    private int mMaxInUse;
+
+    private int mHits;
+    private int mMisses;
+    private long mInflateTimeNanos;
+    private int mPreInflated;
+    private long mPreInflateTimeNanos;
+
+    ViewPoolStats(int targetSize, int maxSize) {
+        mMaxSize = maxSize;
+        mTargetSize = Math.min(targetSize, maxSize);
+    }
+
+    /**
+     * Called when a view is taken from the pool
+     */
+    void onHit() {
+        mHits++;
+        onTaken();
+    }
+
+    /**
+     * Called when a view had to be inflated as the pool was empty
+     *
+     * @param maxTargetSize the size the pool can grow to
+     */
+    void onMiss(long inflateTimeNanos, int maxTargetSize) {
+        mMisses++;
+        mInflateTimeNanos += inflateTimeNanos;
+        onTaken();
+        if (ENABLE_ADAPTIVE_VIEW_POOLS.get()) {
+            mTargetSize = Math.max(mTargetSize,
+                    Math.min(mInUse, Math.min(maxTargetSize, mMaxSize)));
+        }
+    }
+
+    private void onTaken() {
+        mInUse++;
+        mPeakInUse = Math.max(mPeakInUse, mInUse);
+        mMaxInUse = Math.max(mMaxInUse, mInUse);
+    }
+
+    /**
+     * Called when a view is returned to the pool, whether it is kept or not
+     */
+    void onReturned() {
+        if (mInUse == 0) {
+            return;
+        }
+        mInUse--;
+        if (mInUse == 0) {
+            if (ENABLE_ADAPTIVE_VIEW_POOLS.get() && mPeakInUse < mTargetSize) {
+                mTargetSize = (mTargetSize + mPeakInUse) / 2;
+            }
+            mPeakInUse = 0;
+        }
+    }
+
+    /**
+     * Called when a view is inflated ahead of its use
+     */
+    void onPreInflated(long inflateTimeNanos) {
+        mPreInflated++;
+        mPreInflateTimeNanos += inflateTimeNanos;
+    }
+
+    /**
+     * Returns the number of views taken from the pool and not returned yet
+     */
+    int getInUse() {
+        return mInUse;
+    }
+
+    /**
+     * Returns the number of views the pool should keep
+     */
+    int getTargetSize() {
+        return mTargetSize;
+    }
+
+    void dump(String prefix, PrintWriter writer, String name, int size) {
+        int requests = mHits + mMisses;
+        writer.println(prefix + name
+                + ": size=" + size
+                + " targetSize=" + mTargetSize
+                + " maxSize=" + mMaxSize
+                + " inUse=" + mInUse
+                + " maxInUse=" + mMaxInUse
+                + " hits=" + mHits
+                + " misses=" + mMisses
+                + " hitRate=" + (requests == 0 ? "n/a" : (mHits * 100 / requests) + "%")
+                + " avgInflateMs=" + (mMisses == 0 ? "n/a"
+                        : String.format("%.2f", mInflateTimeNanos / 1e6 / mMisses))
+                + " preInflated=" + mPreInflated
+                + " avgPreInflateMs=" + (mPreInflated == 0 ? "n/a"
+                        : String.format("%.2f", mPreInflateTimeNanos / 1e6 / mPreInflated)));
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.android.launcher3.widget;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_WIDGET_PREVIEW_CACHE;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 
 import android.content.Context;
@@ -93,8 +94,22 @@ public class DatabaseWidgetPreviewLoader {
      */
     private Bitmap generatePreview(WidgetItem item, int previewWidth, int previewHeight) {
         if (item.widgetInfo != null) {
-            return generateWidgetPreview(item.widgetInfo, previewWidth, null);
+            if (!ENABLE_WIDGET_PREVIEW_CACHE.get()) {
+                return generateWidgetPreview(item.widgetInfo, previewWidth, null);
+            }
+            WidgetPreviewCache cache = WidgetPreviewCache.INSTANCE.get(mContext);
+            WidgetPreviewCache.Key key = cache.getKey(mContext, item.widgetInfo, previewWidth,
+                    ActivityContext.lookupContext(mContext).getDeviceProfile());
+            Bitmap preview = key == null ? null : cache.get(key);
+            if (preview == null) {
+                preview = generateWidgetPreview(item.widgetInfo, previewWidth, null);
+                if (key != null) {
+                    cache.put(key, preview);
+                }
+            }
+            return preview;
         } else {
+            // Shortcut previews are only an icon in a box, which is cheap to generate
             return generateShortcutPreview(item.activityInfo, previewWidth, previewHeight);
         }
     }
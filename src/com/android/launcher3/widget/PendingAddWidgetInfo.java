@@ -69,12 +69,10 @@ public class PendingAddWidgetInfo extends PendingAddItemInfo {
         return WidgetSizes.getWidgetSizeOptions(context, componentName, spanX, spanY);
     }
 
-    @NonNull
     @Override
-    public LauncherAtom.ItemInfo buildProto(@Nullable FolderInfo folderInfo) {
-        LauncherAtom.ItemInfo info = super.buildProto(folderInfo);
-        return info.toBuilder()
-                .addItemAttributes(LauncherAppWidgetInfo.getAttribute(sourceContainer))
-                .build();
+    public void buildProto(@Nullable FolderInfo folderInfo,
+            @NonNull LauncherAtom.ItemInfo.Builder itemBuilder) {
+        super.buildProto(folderInfo, itemBuilder);
+        itemBuilder.addItemAttributes(LauncherAppWidgetInfo.getAttribute(sourceContainer));
     }
 }
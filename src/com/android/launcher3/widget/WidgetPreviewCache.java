@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.UserHandle;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.DeviceProfile;
+import com.android.launcher3.R;
+import com.android.launcher3.Utilities;
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.MainThreadInitializedObject;
+import com.android.launcher3.widget.util.WidgetSizes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the generated widget previews, so that the previews aren't generated again every time
+ * the widget picker is opened.
+ *
+ * The previews are kept in memory, up to a budget in bytes, and on disk. A preview is keyed by
+ * its provider, its size, the version of the provider package and the configuration it was
+ * generated with, so a cached preview never needs to be checked for staleness. The disk entries
+ * are grouped by package so that they can be dropped when the package is updated or removed.
+ */
+public class WidgetPreviewCache {
+
+    public static final MainThreadInitializedObject<WidgetPreviewCache> INSTANCE =
+            new MainThreadInitializedObject<>(WidgetPreviewCache::new);
+
+    private static final String TAG = "WidgetPreviewCache";
+
+    private static final String CACHE_DIR = "widget_previews";
+    private static final String FILE_EXTENSION = ".png";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private final Context mContext;
+    private final File mCacheDir;
+    private final long mDiskBudgetBytes;
+    private final LruCache<String, Bitmap> mMemoryCache;
+    // Keys of the previews being loaded by a prefetch
+    private final Set<String> mPendingKeys = ConcurrentHashMap.newKeySet();
+
+    // Size of the previews on the disk, or -1 if it needs to be computed again. Guarded by this.
+    private long mDiskSizeBytes = -1;
+
+    private WidgetPreviewCache(Context context) {
+        this(context, new File(context.getCacheDir(), CACHE_DIR),
+                context.getResources().getInteger(R.integer.config_widgetPreviewMemoryCacheKb),
+                context.getResources().getInteger(R.integer.config_widgetPreviewDiskCacheKb));
+    }
+
+    @VisibleForTesting
+    WidgetPreviewCache(Context context, File cacheDir, int memoryBudgetKb, int diskBudgetKb) {
+        mContext = context;
+        mCacheDir = cacheDir;
+        mDiskBudgetBytes = diskBudgetKb * 1024L;
+        mMemoryCache = new LruCache<String, Bitmap>(memoryBudgetKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return Math.max(value.getAllocationByteCount() / 1024, 1);
+            }
+        };
+    }
+
+    /**
+     * Returns the key of the preview of the provider generated with the given width, or null if
+     * the preview of the provider can't be cached.
+     *
+     * @param context the context the preview is generated with
+     */
+    @Nullable
+    public Key getKey(Context context, LauncherAppWidgetProviderInfo info, int previewWidth,
+            DeviceProfile dp) {
+        if (info.provider == null || info.providerInfo == null
+                || info.providerInfo.applicationInfo == null) {
+            // Custom widgets aren't backed by a package
+            return null;
+        }
+        ApplicationInfo appInfo = info.providerInfo.applicationInfo;
+        if (appInfo.sourceDir == null) {
+            return null;
+        }
+        long userSerial = UserCache.INSTANCE.get(mContext)
+                .getSerialNumberForUser(info.getProfile());
+
+        // The package version is derived from its apk, which changes on every update
+        String id = info.provider.getClassName()
+                + "/" + previewWidth
+                + "/" + dp.cellWidthPx + "x" + dp.cellHeightPx + "x" + dp.iconSizePx
+                + "/" + appInfo.sourceDir + "@" + new File(appInfo.sourceDir).lastModified()
+                + "/" + getThemeKey(context);
+        return new Key(info.provider.getPackageName() + "_" + userSerial,
+                UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8)).toString());
+    }
+
+    private static String getThemeKey(Context context) {
+        Configuration config = context.getResources().getConfiguration();
+        String key = config.densityDpi
+                + "," + (config.uiMode & Configuration.UI_MODE_NIGHT_MASK)
+                + "," + config.getLocales().toLanguageTags();
+        if (Utilities.ATLEAST_S) {
+            key += "," + context.getColor(android.R.color.system_accent1_500);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the preview with the given key if it is in memory
+     */
+    @VisibleForTesting
+    @Nullable
+    Bitmap getFromMemory(@NonNull Key key) {
+        return mMemoryCache.get(key.toString());
+    }
+
+    /**
+     * Returns the preview with the given key, loading it from the disk if it isn't in memory
+     */
+    @WorkerThread
+    @Nullable
+    public Bitmap get(@NonNull Key key) {
+        Bitmap preview = getFromMemory(key);
+        if (preview != null) {
+            return preview;
+        }
+        File file = getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.HARDWARE;
+        preview = BitmapFactory.decodeFile(file.getPath(), options);
+        if (preview == null) {
+            Log.w(TAG, "Failed to decode cached preview " + file);
+            file.delete();
+            return null;
+        }
+        // Keep the recently used files when trimming the disk cache
+        file.setLastModified(System.currentTimeMillis());
+        mMemoryCache.put(key.toString(), preview);
+        return preview;
+    }
+
+    /**
+     * Loads the cached previews of the given widgets from the disk in the background, so that
+     * they are in memory when the widgets are shown. Previews which aren't cached aren't
+     * generated, and previews already in memory or being loaded are skipped.
+     */
+    public void prefetch(Context context, DeviceProfile dp, List<WidgetItem> items) {
+        THREAD_POOL_EXECUTOR.execute(() -> {
+            for (WidgetItem item : items) {
+                if (item.widgetInfo == null) {
+                    continue;
+                }
+                Key key = getKey(context, item.widgetInfo,
+                        WidgetSizes.getWidgetItemSizePx(context, dp, item).getWidth(), dp);
+                if (key == null || getFromMemory(key) != null
+                        || !mPendingKeys.add(key.toString())) {
+                    continue;
+                }
+                try {
+                    get(key);
+                } finally {
+                    mPendingKeys.remove(key.toString());
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds the preview with the given key to the cache, and writes it to the disk in the
+     * background.
+     */
+    public void put(@NonNull Key key, @NonNull Bitmap preview) {
+        mMemoryCache.put(key.toString(), preview);
+        THREAD_POOL_EXECUTOR.execute(() -> writeToDisk(key, preview));
+    }
+
+    @VisibleForTesting
+    @WorkerThread
+    void writeToDisk(Key key, Bitmap preview) {
+        File file = getFile(key);
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Failed to create the preview cache directory " + dir);
+            return;
+        }
+        Bitmap bitmap = preview.getConfig() == Bitmap.Config.HARDWARE
+                ? preview.copy(Bitmap.Config.ARGB_8888, false)
+                : preview;
+        if (bitmap == null) {
+            return;
+        }
+        // Write to a temporary file first, so that a concurrent read never sees a partial file
+        File tempFile = new File(dir, key.mFileName + "_" + Thread.currentThread().getId()
+                + TEMP_FILE_EXTENSION);
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write preview " + file, e);
+            tempFile.delete();
+            return;
+        }
+        long replacedBytes = file.length();
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            return;
+        }
+        onFileWritten(file.length() - replacedBytes);
+    }
+
+    /**
+     * Adds the written bytes to the size of the disk cache, and trims it if it exceeds its budget
+     */
+    @WorkerThread
+    private synchronized void onFileWritten(long addedBytes) {
+        if (mDiskSizeBytes < 0) {
+            // The size includes the written file
+            trimDisk();
+            return;
+        }
+        mDiskSizeBytes += addedBytes;
+        if (mDiskSizeBytes > mDiskBudgetBytes) {
+            trimDisk();
+        }
+    }
+
+    /**
+     * Computes the size of the disk cache, and deletes the oldest previews if it exceeds its
+     * budget. The cache is trimmed to 3/4 of its budget, so that it isn't listed again after
+     * every write once it is full.
+     */
+    @WorkerThread
+    private synchronized void trimDisk() {
+        mDiskSizeBytes = 0;
+        File[] dirs = mCacheDir.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        List<File> files = new ArrayList<>();
+        long size = 0;
+        for (File dir : dirs) {
+            File[] dirFiles = dir.listFiles((d, name) -> name.endsWith(FILE_EXTENSION));
+            if (dirFiles != null) {
+                for (File file : dirFiles) {
+                    files.add(file);
+                    size += file.length();
+                }
+            }
+        }
+        if (size > mDiskBudgetBytes) {
+            long targetSize = mDiskBudgetBytes * 3 / 4;
+            files.sort(Comparator.comparingLong(File::lastModified));
+            for (File file : files) {
+                if (size <= targetSize) {
+                    break;
+                }
+                size -= file.length();
+                file.delete();
+            }
+        }
+        mDiskSizeBytes = size;
+    }
+
+    private synchronized void invalidateDiskSize() {
+        mDiskSizeBytes = -1;
+    }
+
+    /**
+     * Removes the previews of the given packages, which are no longer valid when the packages
+     * are updated or removed.
+     */
+    @WorkerThread
+    public void removePackages(Set<String> packageNames, UserHandle user) {
+        long userSerial = UserCache.INSTANCE.get(mContext).getSerialNumberForUser(user);
+        Set<String> memoryKeys = mMemoryCache.snapshot().keySet();
+        for (String packageName : packageNames) {
+            String dirName = packageName + "_" + userSerial;
+            memoryKeys.stream().filter(key -> key.startsWith(dirName + "/"))
+                    .forEach(mMemoryCache::remove);
+
+            File dir = new File(mCacheDir, dirName);
+            File[] files = dir.listFiles();
+            if (files != null) {
+                Arrays.stream(files).forEach(File::delete);
+            }
+            dir.delete();
+        }
+        invalidateDiskSize();
+    }
+
+    /**
+     * Removes all the previews
+     */
+    @WorkerThread
+    public void clear() {
+        mMemoryCache.evictAll();
+        invalidateDiskSize();
+        File[] dirs = mCacheDir.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        for (File dir : dirs) {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                Arrays.stream(files).forEach(File::delete);
+            }
+            dir.delete();
+        }
+    }
+
+    private File getFile(Key key) {
+        return new File(new File(mCacheDir, key.mDirName), key.mFileName + FILE_EXTENSION);
+    }
+
+    /**
+     * The key of a cached preview
+     */
+    public static final class Key {
+
+        private final String mDirName;
+        private final String mFileName;
+
+        @VisibleForTesting
+        Key(String dirName, String fileName) {
+            mDirName = dirName;
+            mFileName = fileName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && toString().equals(o.toString());
+        }
+
+        @Override
+        public int hashCode() {
+            return toString().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return mDirName + "/" + mFileName;
+        }
+    }
+}
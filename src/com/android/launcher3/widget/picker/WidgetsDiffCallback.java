@@ -16,6 +16,8 @@
 
 package com.android.launcher3.widget.picker;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_WIDGETS_LIST;
+
 import androidx.recyclerview.widget.DiffUtil.Callback;
 
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
@@ -58,6 +60,13 @@ public class WidgetsDiffCallback extends Callback {
 
     @Override
     public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        if (ENABLE_INCREMENTAL_WIDGETS_LIST.get()) {
+            // The model creates new entries for the packages which changed, including their icon.
+            // The rows at the boundaries of the list are also drawn differently.
+            return mOldEntries.get(oldItemPosition) == mNewEntries.get(newItemPosition)
+                    && WidgetsListAdapter.getListPosition(oldItemPosition, mOldEntries.size())
+                    == WidgetsListAdapter.getListPosition(newItemPosition, mNewEntries.size());
+        }
         // Always update all entries since the icon may have changed
         return false;
     }
@@ -15,10 +15,14 @@
  */
 package com.android.launcher3.widget.picker;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_WIDGETS_LIST;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_WIDGET_PREVIEW_CACHE;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_WIDGETSTRAY_APP_EXPANDED;
 import static com.android.launcher3.recyclerview.ViewHolderBinder.POSITION_DEFAULT;
 import static com.android.launcher3.recyclerview.ViewHolderBinder.POSITION_FIRST;
 import static com.android.launcher3.recyclerview.ViewHolderBinder.POSITION_LAST;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
 import static com.android.launcher3.widget.BaseWidgetSheet.DEFAULT_MAX_HORIZONTAL_SPANS;
 
 import android.content.Context;
@@ -47,6 +51,7 @@ import com.android.launcher3.recyclerview.ViewHolderBinder;
 import com.android.launcher3.util.LabelComparator;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.views.ActivityContext;
+import com.android.launcher3.widget.WidgetPreviewCache;
 import com.android.launcher3.widget.model.WidgetListSpaceEntry;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 import com.android.launcher3.widget.model.WidgetsListContentEntry;
@@ -103,6 +108,8 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
     @Nullable private RecyclerView mRecyclerView;
     @Nullable private PackageUserKey mPendingClickHeader;
     @Px private int mMaxHorizontalSpan;
+    // Incremented whenever the visible entries are updated, to drop the outdated background diffs
+    private int mVisibleEntriesGeneration;
 
     public WidgetsListAdapter(Context context, LayoutInflater layoutInflater,
             IntSupplier emptySpaceHeightProvider, OnClickListener iconClickListener,
@@ -167,23 +174,55 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
 
     /** Updates the widget list based on {@code tempEntries}. */
     public void setWidgets(List<WidgetsListBaseEntry> tempEntries) {
+        setWidgets(tempEntries, ENABLE_INCREMENTAL_WIDGETS_LIST.get());
+    }
+
+    private void setWidgets(List<WidgetsListBaseEntry> tempEntries, boolean allowAsyncDiff) {
         mAllEntries.clear();
         mAllEntries.add(new WidgetListSpaceEntry());
         tempEntries.stream().sorted(mRowComparator).forEach(mAllEntries::add);
         if (shouldClearVisibleEntries()) {
             mVisibleEntries.clear();
         }
-        updateVisibleEntries();
+        if (allowAsyncDiff && !mVisibleEntries.isEmpty() && mPendingClickHeader == null) {
+            updateVisibleEntriesAsync();
+        } else {
+            updateVisibleEntries();
+        }
     }
 
     /** Updates the widget list based on {@code searchResults}. */
     public void setWidgetsOnSearch(List<WidgetsListBaseEntry> searchResults) {
         // Forget the expanded package every time widget list is refreshed in search mode.
         mWidgetsContentVisiblePackageUserKey = null;
-        setWidgets(searchResults);
+        setWidgets(searchResults, /* allowAsyncDiff= */ false);
+    }
+
+    /**
+     * Same as {@link #updateVisibleEntries()}, but computes the diff with the current entries in
+     * the background. The current entries stay shown until then, unless they are updated again
+     * in the meantime.
+     */
+    private void updateVisibleEntriesAsync() {
+        List<WidgetsListBaseEntry> oldVisibleEntries = new ArrayList<>(mVisibleEntries);
+        List<WidgetsListBaseEntry> newVisibleEntries = getNewVisibleEntries();
+        int generation = ++mVisibleEntriesGeneration;
+        UI_HELPER_EXECUTOR.execute(() -> {
+            DiffResult diffResult = DiffUtil.calculateDiff(
+                    new WidgetsDiffCallback(oldVisibleEntries, newVisibleEntries), false);
+            MAIN_EXECUTOR.execute(() -> {
+                if (generation != mVisibleEntriesGeneration) {
+                    return;
+                }
+                mVisibleEntries.clear();
+                mVisibleEntries.addAll(newVisibleEntries);
+                diffResult.dispatchUpdatesTo(this);
+            });
+        });
     }
 
     private void updateVisibleEntries() {
+        mVisibleEntriesGeneration++;
         // Get the current top of the header with the matching key before adjusting the visible
         // entries.
         OptionalInt previousPositionForPackageUserKey =
@@ -191,7 +230,26 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
         OptionalInt topForPackageUserKey =
                 getOffsetForPosition(previousPositionForPackageUserKey);
 
-        List<WidgetsListBaseEntry> newVisibleEntries = mAllEntries.stream()
+        List<WidgetsListBaseEntry> newVisibleEntries = getNewVisibleEntries();
+
+        DiffResult diffResult = DiffUtil.calculateDiff(
+                new WidgetsDiffCallback(mVisibleEntries, newVisibleEntries), false);
+        mVisibleEntries.clear();
+        mVisibleEntries.addAll(newVisibleEntries);
+        diffResult.dispatchUpdatesTo(this);
+
+        if (mPendingClickHeader != null) {
+            // Get the position for the clicked header after adjusting the visible entries. The
+            // position may have changed if another header had previously been expanded.
+            OptionalInt positionForPackageUserKey =
+                    getPositionForPackageUserKey(mPendingClickHeader);
+            scrollToPositionAndMaintainOffset(positionForPackageUserKey, topForPackageUserKey);
+            mPendingClickHeader = null;
+        }
+    }
+
+    private List<WidgetsListBaseEntry> getNewVisibleEntries() {
+        return mAllEntries.stream()
                 .filter(entry -> (((mFilter == null || mFilter.test(entry))
                         && mHeaderAndSelectedContentFilter.test(entry))
                         || entry instanceof WidgetListSpaceEntry)
@@ -211,21 +269,6 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
                     return entry;
                 })
                 .collect(Collectors.toList());
-
-        DiffResult diffResult = DiffUtil.calculateDiff(
-                new WidgetsDiffCallback(mVisibleEntries, newVisibleEntries), false);
-        mVisibleEntries.clear();
-        mVisibleEntries.addAll(newVisibleEntries);
-        diffResult.dispatchUpdatesTo(this);
-
-        if (mPendingClickHeader != null) {
-            // Get the position for the clicked header after adjusting the visible entries. The
-            // position may have changed if another header had previously been expanded.
-            OptionalInt positionForPackageUserKey =
-                    getPositionForPackageUserKey(mPendingClickHeader);
-            scrollToPositionAndMaintainOffset(positionForPackageUserKey, topForPackageUserKey);
-            mPendingClickHeader = null;
-        }
     }
 
     /** Returns whether {@code entry} matches {@code key}. */
@@ -260,13 +303,26 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
     @Override
     public void onBindViewHolder(ViewHolder holder, int pos, List<Object> payloads) {
         ViewHolderBinder viewHolderBinder = mViewHolderBinders.get(getItemViewType(pos));
+        int listPos = getListPosition(pos, getItemCount());
+        WidgetsListBaseEntry entry = mVisibleEntries.get(pos);
+        if (ENABLE_WIDGET_PREVIEW_CACHE.get() && entry instanceof WidgetsListHeaderEntry) {
+            // The widgets of the header are shown next, load their cached previews in advance
+            WidgetPreviewCache.INSTANCE.get(mContext).prefetch(mContext,
+                    ActivityContext.lookupContext(mContext).getDeviceProfile(), entry.mWidgets);
+        }
+        viewHolderBinder.bindViewHolder(holder, entry, listPos, payloads);
+    }
 
+    /**
+     * Returns the {@link ViewHolderBinder} position flags of the entry at the given position
+     */
+    static int getListPosition(int pos, int itemCount) {
         // The first entry has an empty space, count from second entries.
         int listPos = (pos > 1) ? POSITION_DEFAULT : POSITION_FIRST;
-        if (pos == (getItemCount() - 1)) {
+        if (pos == (itemCount - 1)) {
             listPos |= POSITION_LAST;
         }
-        viewHolderBinder.bindViewHolder(holder, mVisibleEntries.get(pos), listPos, payloads);
+        return listPos;
     }
 
     /**
@@ -3,6 +3,7 @@ package com.android.launcher3.model;
 
 import static android.appwidget.AppWidgetProviderInfo.WIDGET_FEATURE_HIDE_FROM_PICKER;
 
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_WIDGETS_LIST;
 import static com.android.launcher3.pm.ShortcutConfigActivityInfo.queryList;
 import static com.android.launcher3.widget.WidgetSections.NO_CATEGORY;
 
@@ -69,6 +70,10 @@ public class WidgetsModel {
     /* Map of widgets and shortcuts that are tracked per package. */
     private final Map<PackageItemInfo, List<WidgetItem>> mWidgetsList = new HashMap<>();
 
+    /* Entries of the widget picker per package, reused until the package changes. */
+    private final Map<PackageItemInfo, List<WidgetsListBaseEntry>> mPickerEntries =
+            new HashMap<>();
+
     /**
      * Returns a list of {@link WidgetsListBaseEntry}. All {@link WidgetItem} in a single row
      * are sorted (based on label and user), but the overall list of
@@ -78,15 +83,30 @@ public class WidgetsModel {
      */
     public synchronized ArrayList<WidgetsListBaseEntry> getWidgetsListForPicker(Context context) {
         ArrayList<WidgetsListBaseEntry> result = new ArrayList<>();
-        AlphabeticIndexCompat indexer = new AlphabeticIndexCompat(context);
+        AlphabeticIndexCompat indexer = null;
 
+        boolean reuseEntries = ENABLE_INCREMENTAL_WIDGETS_LIST.get();
+        if (!reuseEntries) {
+            mPickerEntries.clear();
+        }
         for (Map.Entry<PackageItemInfo, List<WidgetItem>> entry : mWidgetsList.entrySet()) {
             PackageItemInfo pkgItem = entry.getKey();
-            List<WidgetItem> widgetItems = entry.getValue();
-            String sectionName = (pkgItem.title == null) ? "" :
-                    indexer.computeSectionName(pkgItem.title);
-            result.add(WidgetsListHeaderEntry.create(pkgItem, sectionName, widgetItems));
-            result.add(new WidgetsListContentEntry(pkgItem, sectionName, widgetItems));
+            List<WidgetsListBaseEntry> entries = mPickerEntries.get(pkgItem);
+            if (entries == null) {
+                if (indexer == null) {
+                    indexer = new AlphabeticIndexCompat(context);
+                }
+                List<WidgetItem> widgetItems = entry.getValue();
+                String sectionName = (pkgItem.title == null) ? "" :
+                        indexer.computeSectionName(pkgItem.title);
+                entries = Arrays.asList(
+                        WidgetsListHeaderEntry.create(pkgItem, sectionName, widgetItems),
+                        new WidgetsListContentEntry(pkgItem, sectionName, widgetItems));
+                if (reuseEntries) {
+                    mPickerEntries.put(pkgItem, entries);
+                }
+            }
+            result.addAll(entries);
         }
         return result;
     }
@@ -113,6 +133,16 @@ public class WidgetsModel {
      */
     public List<ComponentWithLabelAndIcon> update(
             LauncherAppState app, @Nullable PackageUserKey packageUser) {
+        return update(app, packageUser, null);
+    }
+
+    /**
+     * Same as {@link #update(LauncherAppState, PackageUserKey)}, but uses {@param providers} if
+     * they were already queried for the same package/user.
+     */
+    public List<ComponentWithLabelAndIcon> update(LauncherAppState app,
+            @Nullable PackageUserKey packageUser,
+            @Nullable List<AppWidgetProviderInfo> providers) {
         Preconditions.assertWorkerThread();
 
         Context context = app.getContext();
@@ -123,8 +153,10 @@ public class WidgetsModel {
             PackageManager pm = app.getContext().getPackageManager();
 
             // Widgets
-            WidgetManagerHelper widgetManager = new WidgetManagerHelper(context);
-            for (AppWidgetProviderInfo widgetInfo : widgetManager.getAllProviders(packageUser)) {
+            if (providers == null) {
+                providers = new WidgetManagerHelper(context).getAllProviders(packageUser);
+            }
+            for (AppWidgetProviderInfo widgetInfo : providers) {
                 LauncherAppWidgetProviderInfo launcherWidgetInfo =
                         LauncherAppWidgetProviderInfo.fromProviderInfo(context, widgetInfo);
 
@@ -167,6 +199,7 @@ public class WidgetsModel {
         if (packageUser == null) {
             // Clear the list if this is an update on all widgets and shortcuts.
             mWidgetsList.clear();
+            mPickerEntries.clear();
         } else {
             // Otherwise, only clear the widgets and shortcuts for the changed package.
             mWidgetsList.remove(packageItemInfoCache.getOrCreate(packageUser));
@@ -183,13 +216,15 @@ public class WidgetsModel {
         IconCache iconCache = app.getIconCache();
         for (PackageItemInfo p : packageItemInfoCache.values()) {
             iconCache.getTitleAndIconForApp(p, true /* userLowResIcon */);
+            mPickerEntries.remove(p);
         }
     }
 
-    public void onPackageIconsUpdated(Set<String> packageNames, UserHandle user,
+    public synchronized void onPackageIconsUpdated(Set<String> packageNames, UserHandle user,
             LauncherAppState app) {
         for (Entry<PackageItemInfo, List<WidgetItem>> entry : mWidgetsList.entrySet()) {
             if (packageNames.contains(entry.getKey().packageName)) {
+                mPickerEntries.remove(entry.getKey());
                 List<WidgetItem> items = entry.getValue();
                 int count = items.size();
                 for (int i = 0; i < count; i++) {
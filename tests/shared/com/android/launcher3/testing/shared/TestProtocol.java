@@ -141,6 +141,9 @@ public final class TestProtocol {
     public static final String REQUEST_ENABLE_ROTATION = "enable_rotation";
     public static final String REQUEST_ENABLE_SUGGESTION = "enable-suggestion";
     public static final String REQUEST_MODEL_QUEUE_CLEARED = "model-queue-cleared";
+    public static final String REQUEST_TRANSITION_FRAME_STATS = "transition-frame-stats";
+    public static final String REQUEST_CLEAR_TRANSITION_FRAME_STATS =
+            "clear-transition-frame-stats";
 
     public static boolean sDebugTracing = false;
     public static final String REQUEST_ENABLE_DEBUG_TRACING = "enable-debug-tracing";
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_DEVICE_PROFILE_CACHE;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.InvariantDeviceProfile.GridOption;
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.TestUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for the cached grid options and grid profiles of {@link InvariantDeviceProfile}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class InvariantDeviceProfileCacheTest {
+
+    private Context mContext;
+    private SafeCloseable mFlag;
+
+    @Before
+    public void setup() {
+        mContext = getApplicationContext();
+        mFlag = TestUtil.overrideFlag(ENABLE_DEVICE_PROFILE_CACHE, true);
+    }
+
+    @After
+    public void tearDown() {
+        mFlag.close();
+    }
+
+    @Test
+    public void parseAllDefinedGridOptions_matchesParsedGridOptions() {
+        List<String> cached = getGridNames(
+                InvariantDeviceProfile.parseAllDefinedGridOptions(mContext));
+        List<String> parsed;
+        try (SafeCloseable flag = TestUtil.overrideFlag(ENABLE_DEVICE_PROFILE_CACHE, false)) {
+            parsed = getGridNames(InvariantDeviceProfile.parseAllDefinedGridOptions(mContext));
+        }
+        assertEquals(parsed, cached);
+    }
+
+    @Test
+    public void getGridProfile_matchesNewProfile() {
+        for (GridOption gridOption : getEnabledGridOptions()) {
+            InvariantDeviceProfile cached =
+                    InvariantDeviceProfile.getGridProfile(mContext, gridOption.name);
+            InvariantDeviceProfile created =
+                    new InvariantDeviceProfile(mContext, gridOption.name);
+
+            assertEquals(created.numRows, cached.numRows);
+            assertEquals(created.numColumns, cached.numColumns);
+            assertEquals(created.dbFile, cached.dbFile);
+            assertEquals(created.iconBitmapSize, cached.iconBitmapSize);
+            assertArrayEquals(created.iconSize, cached.iconSize, 0);
+            assertArrayEquals(created.iconTextSize, cached.iconTextSize, 0);
+        }
+    }
+
+    @Test
+    public void getGridProfile_sameGrid_returnsSameProfile() {
+        String gridName = getEnabledGridOptions().get(0).name;
+        assertSame(InvariantDeviceProfile.getGridProfile(mContext, gridName),
+                InvariantDeviceProfile.getGridProfile(mContext, gridName));
+    }
+
+    @Test
+    public void getGridProfile_unknownGrid_throws() {
+        assertThrows(IllegalArgumentException.class,
+                () -> InvariantDeviceProfile.getGridProfile(mContext, "unknown_grid"));
+    }
+
+    private List<GridOption> getEnabledGridOptions() {
+        return InvariantDeviceProfile.INSTANCE.get(mContext).parseAllGridOptions(mContext);
+    }
+
+    private static List<String> getGridNames(List<GridOption> gridOptions) {
+        return gridOptions.stream().map(gridOption -> gridOption.name)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.config.FeatureFlags.ENABLE_LAZY_WORKSPACE_PAGES;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.res.Resources;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.celllayout.CellPosMapper;
+import com.android.launcher3.dragndrop.DragController;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.CellAndSpan;
+import com.android.launcher3.util.IntSet;
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.TestUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+/**
+ * Tests for {@link LazyWorkspacePages}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LazyWorkspacePagesTest {
+
+    private static final int PAGE_COUNT = 4;
+
+    private final Launcher mLauncher = mock(Launcher.class);
+    private final Workspace<?> mWorkspace = mock(Workspace.class);
+    private final CellLayout[] mLayouts = new CellLayout[PAGE_COUNT];
+
+    private SafeCloseable mFlagOverride;
+    private LazyWorkspacePages mLazyPages;
+
+    @Before
+    public void setUp() {
+        mFlagOverride = TestUtil.overrideFlag(ENABLE_LAZY_WORKSPACE_PAGES, true);
+
+        Resources resources = mock(Resources.class);
+        // Release the far pages as soon as the release runs
+        when(resources.getInteger(anyInt())).thenReturn(0);
+        when(mLauncher.getResources()).thenReturn(resources);
+        when(mLauncher.getCellPosMapper()).thenReturn(CellPosMapper.DEFAULT);
+        when(mLauncher.getDragController()).thenReturn(mock(DragController.class));
+
+        when(mWorkspace.getPageCount()).thenReturn(PAGE_COUNT);
+        when(mWorkspace.getPanelCount()).thenReturn(1);
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            mLayouts[i] = mock(CellLayout.class);
+            when(mWorkspace.getScreenWithId(i)).thenReturn(mLayouts[i]);
+            when(mWorkspace.indexOfChild(mLayouts[i])).thenReturn(i);
+            when(mWorkspace.getScreenIdForPageIndex(i)).thenReturn(i);
+            when(mWorkspace.getPageIndexForScreenId(i)).thenReturn(i);
+        }
+        mLazyPages = new LazyWorkspacePages(mLauncher, mWorkspace);
+        mLazyPages.onInitialBindComplete(IntSet.wrap(0));
+    }
+
+    @After
+    public void tearDown() {
+        mFlagOverride.close();
+    }
+
+    @Test
+    public void deferIfFar_defersOnlyItemsOfFarPages() {
+        WorkspaceItemInfo near = createItem(1);
+        WorkspaceItemInfo far = createItem(3);
+
+        assertFalse(mLazyPages.deferIfFar(near));
+        assertTrue(mLazyPages.deferIfFar(far));
+        assertFalse(mLazyPages.hasDeferredItems(1));
+        assertTrue(mLazyPages.hasDeferredItems(3));
+        verify(mLayouts[3]).markCells(any(CellAndSpan.class), eq(true));
+    }
+
+    @Test
+    public void deferIfFar_doesNotDeferAfterBind() {
+        mLazyPages.onFinishBindingItems();
+
+        assertFalse(mLazyPages.deferIfFar(createItem(3)));
+    }
+
+    @Test
+    public void onPagesChanged_inflatesPagesCloseToTheVisiblePages() {
+        WorkspaceItemInfo item = createItem(3);
+        mLazyPages.deferIfFar(item);
+        mLazyPages.onFinishBindingItems();
+        verify(mLauncher, never()).bindItems(any(), anyBoolean());
+
+        when(mWorkspace.getNextPage()).thenReturn(3);
+        mLazyPages.onPagesChanged();
+
+        verify(mLayouts[3]).markCells(getMarkedCells(mLayouts[3]).get(0), false);
+        verify(mLauncher).bindItems(List.of(item), false);
+        assertFalse(mLazyPages.hasDeferredItems(3));
+    }
+
+    @Test
+    public void onPagesChanged_unmarksCellsMarkedBeforeItemMoved() {
+        WorkspaceItemInfo item = createItem(3);
+        item.cellX = 1;
+        item.cellY = 2;
+        mLazyPages.deferIfFar(item);
+        mLazyPages.onFinishBindingItems();
+        // The model moves the item before its page is inflated
+        item.cellX = 3;
+
+        when(mWorkspace.getNextPage()).thenReturn(3);
+        mLazyPages.onPagesChanged();
+
+        CellAndSpan marked = getMarkedCells(mLayouts[3]).get(0);
+        assertEquals(1, marked.cellX);
+        assertEquals(2, marked.cellY);
+        verify(mLayouts[3]).markCells(marked, false);
+    }
+
+    @Test
+    public void inflateAll_inflatesAllThePages() {
+        WorkspaceItemInfo item2 = createItem(2);
+        WorkspaceItemInfo item3 = createItem(3);
+        mLazyPages.deferIfFar(item2);
+        mLazyPages.deferIfFar(item3);
+
+        mLazyPages.inflateAll();
+
+        ArgumentCaptor<List<ItemInfo>> items = ArgumentCaptor.forClass(List.class);
+        verify(mLauncher).bindItems(items.capture(), eq(false));
+        assertTrue(items.getValue().containsAll(List.of(item2, item3)));
+        assertFalse(mLazyPages.hasDeferredItems(2));
+        assertFalse(mLazyPages.hasDeferredItems(3));
+    }
+
+    @Test
+    public void releaseFarPages_releasesIconsOfFarPages() {
+        WorkspaceItemInfo item = createItem(3);
+        BubbleTextView icon = mock(BubbleTextView.class);
+        when(icon.getTag()).thenReturn(item);
+        ShortcutAndWidgetContainer container = mock(ShortcutAndWidgetContainer.class);
+        when(container.getChildCount()).thenReturn(1);
+        when(container.getChildAt(0)).thenReturn(icon);
+        when(mLayouts[3].getShortcutsAndWidgets()).thenReturn(container);
+
+        mLazyPages.onFinishBindingItems();
+        ArgumentCaptor<Runnable> release = ArgumentCaptor.forClass(Runnable.class);
+        verify(mWorkspace).postDelayed(release.capture(), anyLong());
+        release.getValue().run();
+
+        verify(mLayouts[3]).removeViewInLayout(icon);
+        verify(mLayouts[3]).markCells(any(CellAndSpan.class), eq(true));
+        assertTrue(mLazyPages.hasDeferredItems(3));
+    }
+
+    @Test
+    public void removeItems_removesMatchingDeferredItems() {
+        WorkspaceItemInfo removed = createItem(3);
+        WorkspaceItemInfo kept = createItem(3);
+        mLazyPages.deferIfFar(removed);
+        mLazyPages.deferIfFar(kept);
+
+        mLazyPages.removeItems(item -> item == removed);
+
+        List<CellAndSpan> marked = getMarkedCells(mLayouts[3]);
+        verify(mLayouts[3]).markCells(marked.get(0), false);
+        verify(mLayouts[3], never()).markCells(marked.get(1), false);
+        assertTrue(mLazyPages.hasDeferredItems(3));
+    }
+
+    @Test
+    public void inflateFoldersWithItems_inflatesPagesWithMatchingFolders() {
+        WorkspaceItemInfo removed = new WorkspaceItemInfo();
+        FolderInfo folder = new FolderInfo();
+        folder.container = CONTAINER_DESKTOP;
+        folder.screenId = 3;
+        folder.contents.add(removed);
+        mLazyPages.deferIfFar(folder);
+        mLazyPages.deferIfFar(createItem(2));
+
+        mLazyPages.inflateFoldersWithItems(item -> item == removed);
+
+        verify(mLauncher).bindItems(List.of(folder), false);
+        assertFalse(mLazyPages.hasDeferredItems(3));
+        assertTrue(mLazyPages.hasDeferredItems(2));
+    }
+
+    private static List<CellAndSpan> getMarkedCells(CellLayout layout) {
+        ArgumentCaptor<CellAndSpan> cells = ArgumentCaptor.forClass(CellAndSpan.class);
+        verify(layout, atLeastOnce()).markCells(cells.capture(), eq(true));
+        return cells.getAllValues();
+    }
+
+    private static WorkspaceItemInfo createItem(int screenId) {
+        WorkspaceItemInfo item = new WorkspaceItemInfo();
+        item.container = CONTAINER_DESKTOP;
+        item.screenId = screenId;
+        return item;
+    }
+}
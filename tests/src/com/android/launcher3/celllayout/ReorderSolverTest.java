@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.celllayout;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Point;
+import android.os.SystemClock;
+import android.util.ArraySet;
+import android.util.Log;
+import android.view.View;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.CellLayout.ItemConfiguration;
+import com.android.launcher3.celllayout.testcases.FullReorderCase;
+import com.android.launcher3.celllayout.testcases.MoveOutReorderCase;
+import com.android.launcher3.celllayout.testcases.PushReorderCase;
+import com.android.launcher3.celllayout.testcases.ReorderTestCase;
+import com.android.launcher3.celllayout.testcases.SimpleReorderCase;
+import com.android.launcher3.util.CellAndSpan;
+import com.android.launcher3.util.GridOccupancy;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link ReorderSolver}, solving the reorders of the {@link CellLayoutBoard} test
+ * cases without a workspace.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ReorderSolverTest {
+
+    private static final String TAG = "ReorderSolverTest";
+
+    private static final int BENCHMARK_ROUNDS = 1000;
+
+    @Test
+    @SmallTest
+    public void findReorderSolution_solvesTestCases() {
+        forEachTestCase((name, gridSize, testCase) -> {
+            Board board = new Board(gridSize, testCase);
+            ItemConfiguration solution = board.solve(Long.MAX_VALUE);
+            assertTrue(name, solution.isSolution);
+            assertEquals(name, board.mTarget.x, solution.cellX);
+            assertEquals(name, board.mTarget.y, solution.cellY);
+            assertValidSolution(name, board, solution);
+        });
+    }
+
+    @Test
+    @SmallTest
+    public void findReorderSolution_cancelled_returnsNull() {
+        Point gridSize = new Point(5, 5);
+        Board board = new Board(gridSize, FullReorderCase.TEST_BY_GRID_SIZE.get(gridSize));
+        assertNull(new ReorderSolver(board.mRequest).findReorderSolution(board.mRequest,
+                Long.MAX_VALUE, () -> true));
+    }
+
+    @Test
+    @SmallTest
+    public void findReorderSolution_doesNotModifyRequest() {
+        Point gridSize = new Point(5, 5);
+        Board board = new Board(gridSize, FullReorderCase.TEST_BY_GRID_SIZE.get(gridSize));
+        ItemConfiguration first = board.solve(Long.MAX_VALUE);
+        ItemConfiguration second = board.solve(Long.MAX_VALUE);
+
+        for (View v : first.sortedViews) {
+            CellAndSpan c1 = first.map.get(v);
+            CellAndSpan c2 = second.map.get(v);
+            assertEquals(c1.cellX, c2.cellX);
+            assertEquals(c1.cellY, c2.cellY);
+        }
+    }
+
+    @Test
+    @SmallTest
+    public void findReorderSolution_pastDeadline_returnsTruncatedSolution() {
+        // A fixed widget covers the whole grid, so that the dragged widget is shrunk
+        ItemConfiguration items = new ItemConfiguration();
+        View fixed = new View(getApplicationContext());
+        items.add(fixed, new CellAndSpan(0, 0, 3, 3));
+        View main = new View(getApplicationContext());
+        items.add(main, new CellAndSpan(0, 0, 2, 2));
+        GridOccupancy occupied = new GridOccupancy(3, 3);
+        occupied.markCells(0, 0, 3, 3, true);
+        int[][] targetCells = new int[4][];
+        Arrays.fill(targetCells, new int[] {0, 0});
+        ReorderSolver.Request request = new ReorderSolver.Request(3, 3, occupied, items,
+                new ArraySet<>(List.of(fixed)), 1, 1, 2, 2, new int[] {1, 0}, main, targetCells);
+
+        ItemConfiguration truncated = new ReorderSolver(request).findReorderSolution(request,
+                0 /* deadline */, () -> false);
+        assertFalse(truncated.isSolution);
+        assertTrue(truncated.isTruncated);
+
+        ItemConfiguration complete = new ReorderSolver(request).findReorderSolution(request,
+                Long.MAX_VALUE, () -> false);
+        assertFalse(complete.isSolution);
+        assertFalse(complete.isTruncated);
+    }
+
+    @Test
+    @LargeTest
+    public void benchmark_findReorderSolution() {
+        forEachTestCase((name, gridSize, testCase) -> {
+            Board board = new Board(gridSize, testCase);
+            long[] times = new long[BENCHMARK_ROUNDS];
+            for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                board.solve(Long.MAX_VALUE);
+                times[i] = SystemClock.elapsedRealtimeNanos() - start;
+            }
+            Arrays.sort(times);
+            Log.d(TAG, name + ": median=" + times[BENCHMARK_ROUNDS / 2] / 1000 + "us"
+                    + " p90=" + times[BENCHMARK_ROUNDS * 9 / 10] / 1000 + "us"
+                    + " max=" + times[BENCHMARK_ROUNDS - 1] / 1000 + "us");
+        });
+    }
+
+    private static void assertValidSolution(String name, Board board,
+            ItemConfiguration solution) {
+        GridOccupancy occupied = new GridOccupancy(board.mCountX, board.mCountY);
+        occupied.markCells(solution, true);
+        for (View v : solution.sortedViews) {
+            if (v == board.mMain) {
+                continue;
+            }
+            CellAndSpan c = solution.map.get(v);
+            assertTrue(name + ": overlapping items",
+                    occupied.isRegionVacant(c.cellX, c.cellY, c.spanX, c.spanY));
+            occupied.markCells(c, true);
+            if (board.mFixedViews.contains(v)) {
+                CellAndSpan start = board.mItems.map.get(v);
+                assertFalse(name + ": fixed item moved",
+                        start.cellX != c.cellX || start.cellY != c.cellY);
+            }
+        }
+    }
+
+    private static void forEachTestCase(TestCaseConsumer consumer) {
+        runTestCases(SimpleReorderCase.TEST_BY_GRID_SIZE, "SimpleReorderCase", consumer);
+        runTestCases(PushReorderCase.TEST_BY_GRID_SIZE, "PushReorderCase", consumer);
+        runTestCases(FullReorderCase.TEST_BY_GRID_SIZE, "FullReorderCase", consumer);
+        runTestCases(MoveOutReorderCase.TEST_BY_GRID_SIZE, "MoveOutReorderCase", consumer);
+    }
+
+    private static void runTestCases(Map<Point, ReorderTestCase> testCases, String name,
+            TestCaseConsumer consumer) {
+        testCases.forEach((gridSize, testCase) -> consumer.accept(
+                name + " " + gridSize.x + "x" + gridSize.y, gridSize, testCase));
+    }
+
+    private interface TestCaseConsumer {
+        void accept(String name, Point gridSize, ReorderTestCase testCase);
+    }
+
+    /**
+     * The first screen of a test case, with the main widget dragged to its position in the first
+     * expected board.
+     */
+    private static class Board {
+
+        final int mCountX;
+        final int mCountY;
+        final ItemConfiguration mItems = new ItemConfiguration();
+        final ArraySet<View> mFixedViews = new ArraySet<>();
+        final View mMain;
+        final Point mTarget;
+        final ReorderSolver.Request mRequest;
+
+        Board(Point gridSize, ReorderTestCase testCase) {
+            CellLayoutBoard start = testCase.mStart.get(0);
+            CellLayoutBoard.WidgetRect end = testCase.mEnd.get(0).get(0).getMain();
+            CellLayoutBoard.WidgetRect main = start.getMain();
+            mTarget = new Point(end.getCellX(), end.getCellY());
+
+            mCountX = gridSize.x;
+            mCountY = gridSize.y;
+            GridOccupancy occupied = new GridOccupancy(mCountX, mCountY);
+            View mainView = null;
+            for (CellLayoutBoard.WidgetRect widget : start.getWidgets()) {
+                View v = new View(getApplicationContext());
+                mItems.add(v, new CellAndSpan(widget.getCellX(), widget.getCellY(),
+                        widget.getSpanX(), widget.getSpanY()));
+                if (widget == main) {
+                    // The dragged item doesn't occupy its cells during the drag
+                    mainView = v;
+                    continue;
+                }
+                occupied.markCells(mItems.map.get(v), true);
+                if (widget.shouldIgnore()) {
+                    mFixedViews.add(v);
+                }
+            }
+            for (CellLayoutBoard.IconPoint icon : start.getIcons()) {
+                View v = new View(getApplicationContext());
+                mItems.add(v, new CellAndSpan(icon.coord.x, icon.coord.y, 1, 1));
+                occupied.markCells(icon.coord.x, icon.coord.y, 1, 1, true);
+            }
+            mMain = mainView;
+
+            int[] direction = new int[2];
+            ReorderSolver.computeDirectionVector(mTarget.x - main.getCellX(),
+                    mTarget.y - main.getCellY(), direction);
+            if (direction[0] == 0 && direction[1] == 0) {
+                direction[0] = 1;
+            }
+            int spanX = main.getSpanX();
+            int spanY = main.getSpanY();
+            int[][] targetCells = new int[spanX * spanY][];
+            for (int x = 1; x <= spanX; x++) {
+                for (int y = 1; y <= spanY; y++) {
+                    targetCells[ReorderSolver.Request.getTargetCellIndex(1, 1, spanY, x, y)] =
+                            new int[] {mTarget.x, mTarget.y};
+                }
+            }
+            mRequest = new ReorderSolver.Request(mCountX, mCountY, occupied, mItems, mFixedViews, 1,
+                    1, spanX, spanY, direction, mMain, targetCells);
+        }
+
+        ItemConfiguration solve(long deadline) {
+            return new ReorderSolver(mRequest).findReorderSolution(mRequest, deadline,
+                    () -> false);
+        }
+    }
+}
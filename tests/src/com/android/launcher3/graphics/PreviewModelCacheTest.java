@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.graphics;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.graphics.PreviewModelCache.PreviewModel;
+import com.android.launcher3.model.BgDataModel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tests for {@link PreviewModelCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PreviewModelCacheTest {
+
+    private final Context mContext = getInstrumentation().getTargetContext();
+    private final PreviewModelCache mCache = new PreviewModelCache();
+    private final PreviewModel mModel =
+            new PreviewModel(new BgDataModel(), new HashMap<>(), null /* spanInfo */);
+
+    @Test
+    public void get_previewOfSameGrid_returnsCachedModel() {
+        String gridName = InvariantDeviceProfile.getCurrentGridName(mContext);
+        mCache.put(getModelKey(gridName), mModel);
+
+        // Every preview creates its own grid profile, which must map to the same model
+        assertSame(mModel, mCache.get(getModelKey(gridName)));
+    }
+
+    @Test
+    public void get_previewOfOtherGrid_returnsNull() {
+        mCache.put(getModelKey(InvariantDeviceProfile.getCurrentGridName(mContext)), mModel);
+        List<Object> otherKey = getModelKey(InvariantDeviceProfile.getCurrentGridName(mContext));
+        otherKey.set(0, "other_grid");
+
+        assertNull(mCache.get(otherKey));
+    }
+
+    @Test
+    public void clear_invalidatesCachedModels() {
+        List<Object> key = getModelKey(InvariantDeviceProfile.getCurrentGridName(mContext));
+        mCache.put(key, mModel);
+        mCache.clear();
+
+        assertNull(mCache.get(key));
+        PreviewModel newModel =
+                new PreviewModel(new BgDataModel(), new HashMap<>(), null /* spanInfo */);
+        mCache.put(key, newModel);
+        assertSame(newModel, mCache.get(key));
+    }
+
+    @Test
+    public void onPreviewRendered_countsCachedAndLoadedRenders() {
+        mCache.onPreviewRendered(false /* fromCache */, 300);
+        mCache.onPreviewRendered(true /* fromCache */, 40);
+        mCache.onPreviewRendered(true /* fromCache */, 60);
+
+        assertEquals(2, mCache.getRenderCount(true /* fromCache */));
+        assertEquals(1, mCache.getRenderCount(false /* fromCache */));
+        StringWriter dump = new StringWriter();
+        mCache.dump("", new PrintWriter(dump));
+        assertTrue(dump.toString().contains("cachedRenders: count=2 avgMs=50 maxMs=60"));
+        assertTrue(dump.toString().contains("loadedRenders: count=1 avgMs=300 maxMs=300"));
+    }
+
+    private List<Object> getModelKey(String gridName) {
+        return PreviewSurfaceRenderer.getModelKey(mContext, gridName,
+                InvariantDeviceProfile.getGridProfile(mContext, gridName));
+    }
+}
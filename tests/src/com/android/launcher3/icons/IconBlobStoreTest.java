@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.content.ComponentName;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+/**
+ * Tests for {@link IconBlobStore}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IconBlobStoreTest {
+
+    private static final int ICON_SIZE = 8;
+    private static final long MAX_SIZE = 16 * 1024 * 1024;
+    private static final String SYSTEM_STATE = "en-US 1";
+    // Position of the first record, after the header
+    private static final int FIRST_RECORD = 12;
+
+    private final ComponentName mComponent = new ComponentName("com.example", "com.example.Main");
+
+    private File mFile;
+
+    @Before
+    public void setup() {
+        mFile = new File(getInstrumentation().getTargetContext().getCacheDir(), "icon_blob_test");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void open_readsStoredIcons() {
+        putIcon();
+
+        IconBlobStore store = IconBlobStore.open(mFile, ICON_SIZE, MAX_SIZE);
+        assertNotNull(store);
+        BitmapInfo info = store.get(mComponent, 0, 1, SYSTEM_STATE);
+        assertNotNull(info);
+        assertEquals(Color.RED, info.color);
+        assertEquals(ICON_SIZE, info.icon.getWidth());
+        store.close();
+    }
+
+    @Test
+    public void get_differentSystemState_returnsNull() {
+        putIcon();
+
+        IconBlobStore store = IconBlobStore.open(mFile, ICON_SIZE, MAX_SIZE);
+        assertNotNull(store);
+        assertNull(store.get(mComponent, 0, 1, "fr-FR 1"));
+        store.close();
+    }
+
+    @Test
+    public void removePackage_removalIsKeptAfterReopen() {
+        putIcon();
+        IconBlobStore store = IconBlobStore.open(mFile, ICON_SIZE, MAX_SIZE);
+        assertNotNull(store);
+        ComponentName other = new ComponentName("com.other", "com.other.Main");
+        store.put(other, 0, 1, SYSTEM_STATE, createIcon());
+
+        store.removePackage(mComponent.getPackageName(), 0);
+        assertNull(store.get(mComponent, 0, 1, SYSTEM_STATE));
+        store.close();
+
+        // The DB row can be rewritten with the same values, the removed pixels are not read back
+        store = IconBlobStore.open(mFile, ICON_SIZE, MAX_SIZE);
+        assertNotNull(store);
+        assertNull(store.get(mComponent, 0, 1, SYSTEM_STATE));
+        assertNotNull(store.get(other, 0, 1, SYSTEM_STATE));
+        store.close();
+    }
+
+    @Test
+    public void open_recordShorterThanItsKey_discardsFile() throws Exception {
+        putIcon();
+        writeInt(FIRST_RECORD, 36);
+
+        IconBlobStore store = IconBlobStore.open(mFile, ICON_SIZE, MAX_SIZE);
+        assertNotNull(store);
+        assertNull(store.get(mComponent, 0, 1, SYSTEM_STATE));
+        store.close();
+    }
+
+    @Test
+    public void open_recordPastEndOfFile_discardsFile() throws Exception {
+        putIcon();
+        writeInt(FIRST_RECORD, Integer.MAX_VALUE);
+
+        IconBlobStore store = IconBlobStore.open(mFile, ICON_SIZE, MAX_SIZE);
+        assertNotNull(store);
+        assertNull(store.get(mComponent, 0, 1, SYSTEM_STATE));
+        store.close();
+    }
+
+    private void putIcon() {
+        IconBlobStore store = IconBlobStore.open(mFile, ICON_SIZE, MAX_SIZE);
+        assertNotNull(store);
+        store.put(mComponent, 0, 1, SYSTEM_STATE, createIcon());
+        store.close();
+    }
+
+    private static BitmapInfo createIcon() {
+        Bitmap icon = Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888);
+        icon.eraseColor(Color.BLUE);
+        return BitmapInfo.of(icon, Color.RED);
+    }
+
+    private void writeInt(int position, int value) throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(mFile, "rw")) {
+            raf.seek(position);
+            raf.writeInt(value);
+        }
+    }
+}
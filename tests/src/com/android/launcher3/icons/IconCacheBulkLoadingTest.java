@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_UNIFIED_BULK_ICON_LOADING;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.content.pm.ShortcutInfo;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Process;
+import android.text.TextUtils;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.IconRequestInfo;
+import com.android.launcher3.model.data.ItemInfoWithIcon;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.TestUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * Tests for the bulk loading of {@link IconCache}, with icons missing from the cache
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IconCacheBulkLoadingTest {
+
+    private static final String DB_NAME = "test_bulk_loading_icons.db";
+
+    private Context mContext;
+    private SafeCloseable mFlagOverride;
+    private IconCache mIconCache;
+
+    @Before
+    public void setUp() {
+        mContext = getInstrumentation().getTargetContext();
+        mFlagOverride = TestUtil.overrideFlag(ENABLE_UNIFIED_BULK_ICON_LOADING, true);
+        mContext.deleteDatabase(DB_NAME);
+        mIconCache = new IconCache(mContext, LauncherAppState.getIDP(mContext), DB_NAME,
+                new IconProvider(mContext));
+    }
+
+    @After
+    public void tearDown() {
+        mIconCache.close();
+        mContext.deleteDatabase(DB_NAME);
+        mFlagOverride.close();
+    }
+
+    @Test
+    public void getTitlesAndIconsInBulk_rendersMissingAppIcons() throws Exception {
+        List<LauncherActivityInfo> activities = mContext.getSystemService(LauncherApps.class)
+                .getActivityList(null, Process.myUserHandle());
+        assertFalse(activities.isEmpty());
+        LauncherActivityInfo lai = activities.get(0);
+        AppInfo info = new AppInfo(lai.getComponentName(), "", lai.getUser(),
+                AppInfo.makeLaunchIntent(lai));
+
+        loadInBulk(List.of(new IconRequestInfo<>(info, lai, /* useLowResIcon= */ false)));
+
+        assertNotNull(info.bitmap);
+        assertFalse(mIconCache.isDefaultIcon(info.bitmap, info.user));
+        assertFalse(TextUtils.isEmpty(info.title));
+    }
+
+    @Test
+    public void getTitlesAndIconsInBulk_rendersMissingShortcutIcons() throws Exception {
+        ShortcutInfo si = new ShortcutInfo.Builder(mContext, "shortcut_id")
+                .setShortLabel("label")
+                .setActivity(new ComponentName(mContext, "Main"))
+                .setIntent(new Intent(Intent.ACTION_VIEW))
+                .build();
+        WorkspaceItemInfo first = new WorkspaceItemInfo(si, mContext);
+        WorkspaceItemInfo duplicate = new WorkspaceItemInfo(si, mContext);
+
+        loadInBulk(List.of(IconRequestInfo.forShortcut(first, si, /* iconBlob= */ null),
+                IconRequestInfo.forShortcut(duplicate, si, /* iconBlob= */ null)));
+
+        assertNotNull(first.bitmap);
+        assertSame(first.bitmap.icon, duplicate.bitmap.icon);
+    }
+
+    @Test
+    public void getTitlesAndIconsInBulk_unpublishedShortcut_keepsSavedIcon() throws Exception {
+        // The shortcut isn't published, so its icon can't be loaded and the saved icon is kept
+        ShortcutInfo si = new ShortcutInfo.Builder(mContext, "unpublished_shortcut_id")
+                .setShortLabel("label")
+                .setActivity(new ComponentName(mContext, "Main"))
+                .setIntent(new Intent(Intent.ACTION_VIEW))
+                .build();
+        WorkspaceItemInfo info = new WorkspaceItemInfo(si, mContext);
+        Bitmap savedIcon = Bitmap.createBitmap(32, 32, Bitmap.Config.ARGB_8888);
+        savedIcon.eraseColor(Color.RED);
+        ByteArrayOutputStream iconBlob = new ByteArrayOutputStream();
+        savedIcon.compress(Bitmap.CompressFormat.PNG, 100, iconBlob);
+
+        loadInBulk(List.of(IconRequestInfo.forShortcut(info, si, iconBlob.toByteArray())));
+
+        assertNotNull(info.bitmap);
+        assertFalse(info.bitmap.isNullOrLowRes());
+        assertFalse(mIconCache.isDefaultIcon(info.bitmap, info.user));
+    }
+
+    private <T extends ItemInfoWithIcon> void loadInBulk(List<IconRequestInfo<T>> requests)
+            throws Exception {
+        MODEL_EXECUTOR.submit(() -> mIconCache.getTitlesAndIconsInBulk(requests)).get();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.logging;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.launcher3.logging.BinaryLogWriter.LEVEL_DEBUG;
+import static com.android.launcher3.logging.BinaryLogWriter.LEVEL_ERROR;
+import static com.android.launcher3.logging.BinaryLogWriter.LEVEL_PRINT;
+import static com.android.launcher3.util.Executors.createAndStartNewLooper;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Handler;
+import android.os.Message;
+import android.util.Pair;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.DateFormat;
+import java.util.Calendar;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link BinaryLogWriter}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class BinaryLogWriterTest {
+
+    private File mTempDir;
+    private Handler mHandler;
+    private BinaryLogWriter mWriter;
+
+    @Before
+    public void setUp() {
+        int count = 0;
+        do {
+            mTempDir = new File(getApplicationContext().getCacheDir(),
+                    "binary-log-test-" + (count++));
+        } while (!mTempDir.mkdir());
+
+        FileLog.setDir(mTempDir);
+        mWriter = new BinaryLogWriter(
+                DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT));
+        mHandler = new Handler(createAndStartNewLooper("binary-log-test"), mWriter);
+    }
+
+    @After
+    public void tearDown() {
+        mHandler.getLooper().quitSafely();
+        for (int i = 0; i < FileLog.LOG_DAYS; i++) {
+            new File(mTempDir, BinaryLogWriter.FILE_NAME_PREFIX + i).delete();
+        }
+        mTempDir.delete();
+    }
+
+    @Test
+    public void testRecordsFormattedOnDump() throws Exception {
+        mWriter.log(mHandler, LEVEL_PRINT, "Testing", "hoolalala", null);
+        mWriter.log(mHandler, LEVEL_ERROR, "Testing", "abracadabra", new Exception("cat! cat!"));
+        mWriter.log(mHandler, LEVEL_DEBUG, "Testing", "hoolalala", null);
+
+        String dump = flushAndDump();
+        assertTrue(dump.contains("Testing hoolalala"));
+        assertTrue(dump.contains("Testing abracadabra"));
+        assertTrue(dump.contains("cat! cat!"));
+        // Interned messages are still printed for every record
+        assertTrue(dump.lastIndexOf("hoolalala") > dump.indexOf("abracadabra"));
+    }
+
+    @Test
+    public void testRecordsKeptAcrossFlushes() throws Exception {
+        mWriter.log(mHandler, LEVEL_PRINT, "Testing", "hoolalala", null);
+        assertTrue(flushAndDump().contains("hoolalala"));
+
+        mWriter.log(mHandler, LEVEL_PRINT, "Testing", "abracadabra", null);
+        String dump = flushAndDump();
+        assertTrue(dump.contains("hoolalala"));
+        assertTrue(dump.contains("abracadabra"));
+    }
+
+    @Test
+    public void testOldFileCleared() throws Exception {
+        mWriter.log(mHandler, LEVEL_PRINT, "Testing", "hoolalala", null);
+        assertTrue(flushAndDump().contains("hoolalala"));
+
+        Calendar threeDaysAgo = Calendar.getInstance();
+        threeDaysAgo.add(Calendar.HOUR, -72);
+        for (int i = 0; i < FileLog.LOG_DAYS; i++) {
+            new File(mTempDir, BinaryLogWriter.FILE_NAME_PREFIX + i)
+                    .setLastModified(threeDaysAgo.getTimeInMillis());
+        }
+
+        mWriter.log(mHandler, LEVEL_PRINT, "Testing", "abracadabra", null);
+        String dump = flushAndDump();
+        assertTrue(dump.contains("abracadabra"));
+        assertFalse(dump.contains("hoolalala"));
+    }
+
+    @Test
+    public void testLatestRecordsKeptWhenFull() throws Exception {
+        StringBuilder longMessage = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            longMessage.append('x');
+        }
+        mWriter.log(mHandler, LEVEL_PRINT, "Testing", "hoolalala", null);
+        // Fill both segments, so that the first records are dropped
+        int count = 2 * BinaryLogWriter.SEGMENT_SIZE / longMessage.length() + 1;
+        for (int i = 0; i < count; i++) {
+            mWriter.log(mHandler, LEVEL_PRINT, "Testing", longMessage + " " + i, null);
+        }
+        mWriter.log(mHandler, LEVEL_PRINT, "Testing", "abracadabra", null);
+
+        String dump = flushAndDump();
+        assertFalse(dump.contains("hoolalala"));
+        assertTrue(dump.contains(longMessage + " " + (count - 1)));
+        assertTrue(dump.contains("abracadabra"));
+    }
+
+    private String flushAndDump() throws InterruptedException {
+        StringWriter writer = new StringWriter();
+        CountDownLatch latch = new CountDownLatch(1);
+        Message.obtain(mHandler, FileLog.MSG_FLUSH,
+                Pair.create(new PrintWriter(writer), latch)).sendToTarget();
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return writer.toString();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.logging;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Bundle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link TransitionFrameStats}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class TransitionFrameStatsTest {
+
+    private final TransitionFrameStats mStats = new TransitionFrameStats("Test");
+
+    @Test
+    public void onFrame_countsFramesInBuckets() {
+        mStats.onFrame(ms(8), false, null, 0);
+        mStats.onFrame(ms(16), false, null, 0);
+        mStats.onFrame(ms(40), true, null, 0);
+        mStats.onFrame(ms(900), true, null, 0);
+
+        int[] expected = new int[TransitionFrameStats.BUCKET_BOUNDS_MS.length + 1];
+        expected[0] = 1;
+        expected[2] = 1;
+        expected[5] = 1;
+        expected[expected.length - 1] = 1;
+        assertArrayEquals(expected, mStats.getBucketCounts());
+        assertEquals(4, mStats.getFrameCount());
+        assertEquals(2, mStats.getSlowFrameCount());
+    }
+
+    @Test
+    public void onFrame_blamesSlowFramesOnly() {
+        mStats.onFrame(ms(16), false, "Handler (a) b", ms(10));
+        mStats.onFrame(ms(50), true, "Handler (a) b", ms(40));
+        mStats.onFrame(ms(50), true, "Handler (a) b", ms(40));
+
+        assertEquals(2, mStats.getBlamedFrameCount("Handler (a) b"));
+    }
+
+    @Test
+    public void onFrame_keepsMostBlamedWorkItems() {
+        for (int i = 0; i < 3; i++) {
+            mStats.onFrame(ms(50), true, "frequent", ms(40));
+        }
+        for (int i = 0; i < 5 * TransitionFrameStats.MAX_WORK_ITEMS; i++) {
+            mStats.onFrame(ms(50), true, "rare " + i, ms(40));
+        }
+        for (int i = 0; i < 5 * TransitionFrameStats.MAX_WORK_ITEMS; i++) {
+            mStats.onFrame(ms(50), true, "frequent", ms(40));
+        }
+
+        // The count of a kept work item is an upper bound of its real count
+        assertTrue(mStats.getBlamedFrameCount("frequent")
+                >= 3 + 5 * TransitionFrameStats.MAX_WORK_ITEMS);
+    }
+
+    @Test
+    public void toBundle_returnsCounts() {
+        mStats.onTransitionStarted();
+        mStats.onFrame(ms(16), false, null, 0);
+        mStats.onFrame(ms(70), true, null, 0);
+
+        Bundle bundle = mStats.toBundle();
+        assertEquals(1, bundle.getInt(TransitionFrameStats.KEY_TRANSITIONS));
+        assertEquals(2, bundle.getInt(TransitionFrameStats.KEY_FRAMES));
+        assertEquals(1, bundle.getInt(TransitionFrameStats.KEY_SLOW_FRAMES));
+        assertEquals(70, bundle.getLong(TransitionFrameStats.KEY_MAX_FRAME_MS));
+    }
+
+    private static long ms(long ms) {
+        return TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+}
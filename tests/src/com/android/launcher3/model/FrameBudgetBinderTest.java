@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.FrameBudgetBinder.ItemStream;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.LauncherAppWidgetInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link FrameBudgetBinder}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class FrameBudgetBinderTest {
+
+    @Test
+    public void itemStream_chunkSizeFitsTime() {
+        ItemStream stream = new ItemStream(createItems(10), 100);
+        assertEquals(0, stream.getChunkSize(50));
+        assertEquals(3, stream.getChunkSize(350));
+        assertEquals(10, stream.getChunkSize(10_000));
+        assertEquals(0, stream.getChunkSize(-100));
+    }
+
+    @Test
+    public void itemStream_nextReturnsItemsInOrder() {
+        List<ItemInfo> items = createItems(5);
+        ItemStream stream = new ItemStream(items, 100);
+
+        assertEquals(items.subList(0, 3), stream.next(3));
+        assertTrue(stream.hasNext());
+        assertEquals(2, stream.getChunkSize(10_000));
+        assertEquals(items.subList(3, 5), stream.next(2));
+        assertFalse(stream.hasNext());
+    }
+
+    @Test
+    public void itemStream_itemCostFollowsMeasuredCost() {
+        ItemStream stream = new ItemStream(createItems(10), 100);
+        stream.onChunkBound(2, 1000);
+        assertEquals(300, stream.getItemCostNanos());
+        stream.onChunkBound(4, 1200);
+        assertEquals(300, stream.getItemCostNanos());
+    }
+
+    @Test
+    public void getBindBudgetNanos_leavesTimeToDrawBeforeNextFrame() {
+        // 10ms left until the next frame, drawing costing as much as binding
+        assertEquals(5_000_000, FrameBudgetBinder.getBindBudgetNanos(
+                0, 16_000_000, 6_000_000, 1f));
+    }
+
+    @Test
+    public void getBindBudgetNanos_keepsMinimumChunkWhenFrameIsOver() {
+        long budget = FrameBudgetBinder.getBindBudgetNanos(0, 16_000_000, 40_000_000, 1f);
+        assertEquals(2_000_000, budget);
+    }
+
+    @Test
+    public void getDrawCostRatio_followsMeasuredTraversal() {
+        assertEquals(2f, FrameBudgetBinder.getDrawCostRatio(1f, 3_000, 1_000), 0.001f);
+        // Traversals much longer than the chunk are mostly drawing the rest of the workspace
+        assertEquals(2.5f, FrameBudgetBinder.getDrawCostRatio(1f, 100_000, 1_000), 0.001f);
+    }
+
+    @Test
+    public void sortWidgetsByArea_sortsByScreenThenLargestFirst() {
+        List<LauncherAppWidgetInfo> widgets = new ArrayList<>();
+        widgets.add(createWidget(2, 1, 1));
+        widgets.add(createWidget(1, 2, 2));
+        widgets.add(createWidget(1, 4, 2));
+        widgets.add(createWidget(0, 1, 1));
+
+        FrameBudgetBinder.sortWidgetsByArea(widgets);
+
+        assertEquals(0, widgets.get(0).screenId);
+        assertEquals(1, widgets.get(1).screenId);
+        assertEquals(4, widgets.get(1).spanX);
+        assertEquals(1, widgets.get(2).screenId);
+        assertEquals(2, widgets.get(2).spanX);
+        assertEquals(2, widgets.get(3).screenId);
+    }
+
+    private static List<ItemInfo> createItems(int count) {
+        List<ItemInfo> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ItemInfo item = new ItemInfo();
+            item.id = i;
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static LauncherAppWidgetInfo createWidget(int screenId, int spanX, int spanY) {
+        LauncherAppWidgetInfo widget = new LauncherAppWidgetInfo();
+        widget.screenId = screenId;
+        widget.spanX = spanX;
+        widget.spanY = spanY;
+        return widget;
+    }
+}
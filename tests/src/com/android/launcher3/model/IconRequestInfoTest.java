@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ShortcutInfo;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.IconRequestInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.shortcuts.ShortcutKey;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link IconRequestInfo}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IconRequestInfoTest {
+
+    @Test
+    public void appRequest_cachedWithTargetComponent() {
+        ComponentName cn = new ComponentName("com.example", "com.example.Main");
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.intent = new Intent(Intent.ACTION_MAIN).setComponent(cn);
+
+        IconRequestInfo<WorkspaceItemInfo> request =
+                new IconRequestInfo<>(info, null, /* useLowResIcon= */ false);
+
+        assertEquals(cn, request.getCacheComponent());
+        assertNull(request.shortcutInfo);
+    }
+
+    @Test
+    public void shortcutRequest_cachedWithShortcutKey() {
+        Context context = getInstrumentation().getTargetContext();
+        ShortcutInfo si = new ShortcutInfo.Builder(context, "shortcut_id")
+                .setShortLabel("label")
+                .setActivity(new ComponentName(context, "Main"))
+                .setIntent(new Intent(Intent.ACTION_VIEW))
+                .build();
+        WorkspaceItemInfo info = new WorkspaceItemInfo(si, context);
+
+        IconRequestInfo<WorkspaceItemInfo> request =
+                IconRequestInfo.forShortcut(info, si, /* iconBlob= */ null);
+
+        assertEquals(ShortcutKey.fromInfo(si).componentName, request.getCacheComponent());
+        assertEquals(si, request.shortcutInfo);
+        assertFalse(request.useLowResIcon);
+    }
+}
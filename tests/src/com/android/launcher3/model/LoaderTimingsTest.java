@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.model.LoaderTimings.PHASE_BIND_WORKSPACE;
+import static com.android.launcher3.model.LoaderTimings.PHASE_LOAD_WORKSPACE;
+import static com.android.launcher3.model.LoaderTimings.PHASE_QUERY_ACTIVITIES;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.LoaderTimings.PhaseTiming;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+/**
+ * Tests for {@link LoaderTimings}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LoaderTimingsTest {
+
+    private final LoaderTimings mTimings = new LoaderTimings();
+
+    @Test
+    public void begin_recordsPhaseWhenClosed() throws Exception {
+        LoaderTimings.Phase phase = mTimings.begin(PHASE_LOAD_WORKSPACE);
+        Thread.sleep(20);
+        assertNull(mTimings.getPhase(PHASE_LOAD_WORKSPACE));
+
+        phase.close();
+
+        PhaseTiming timing = mTimings.getPhase(PHASE_LOAD_WORKSPACE);
+        assertNotNull(timing);
+        assertEquals(Thread.currentThread().getName(), timing.threadName);
+        assertTrue(timing.wallTimeMs >= 20);
+        assertTrue(timing.cpuTimeMs >= 0);
+        assertTrue(timing.startOffsetMs >= 0);
+    }
+
+    @Test
+    public void close_twice_recordsPhaseOnce() {
+        LoaderTimings.Phase phase = mTimings.begin(PHASE_LOAD_WORKSPACE);
+
+        phase.close();
+        phase.close();
+
+        assertEquals(1, mTimings.getPhases().size());
+    }
+
+    @Test
+    public void begin_onOtherThread_recordsThatThread() throws Exception {
+        String threadName = MODEL_EXECUTOR.submit(() -> {
+            mTimings.begin(PHASE_QUERY_ACTIVITIES).close();
+            return Thread.currentThread().getName();
+        }).get();
+
+        assertEquals(threadName, mTimings.getPhase(PHASE_QUERY_ACTIVITIES).threadName);
+    }
+
+    @Test
+    public void getPhases_returnsPhasesInOrderOfCompletion() throws Exception {
+        LoaderTimings.Phase load = mTimings.begin(PHASE_LOAD_WORKSPACE);
+        LoaderTimings.Phase bind = mTimings.begin(PHASE_BIND_WORKSPACE);
+        Thread.sleep(10);
+        bind.close();
+        load.close();
+
+        List<PhaseTiming> phases = mTimings.getPhases();
+        assertEquals(2, phases.size());
+        assertEquals(PHASE_BIND_WORKSPACE, phases.get(0).name);
+        assertEquals(PHASE_LOAD_WORKSPACE, phases.get(1).name);
+        assertTrue(phases.get(0).startOffsetMs >= phases.get(1).startOffsetMs);
+        assertTrue(phases.get(1).wallTimeMs >= phases.get(0).wallTimeMs);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT;
+import static com.android.launcher3.util.LauncherModelHelper.APP_ICON;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.LauncherAppWidgetInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Tests for {@link ModelSnapshot}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ModelSnapshotTest {
+
+    private static final String KEY = "key";
+
+    private LauncherModelHelper mModelHelper;
+    private Context mContext;
+    private UserCache mUserCache;
+    private File mFile;
+
+    @Before
+    public void setup() {
+        mModelHelper = new LauncherModelHelper();
+        mContext = mModelHelper.sandboxContext;
+        mUserCache = UserCache.INSTANCE.get(mContext);
+        mFile = new File(mContext.getCacheDir(), "model_snapshot_test.bin");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void writeAndRead_preservesContent() {
+        ModelSnapshot snapshot = ModelSnapshot.capture(createModel(), mUserCache);
+        assertNotNull(snapshot);
+        snapshot.write(mFile, KEY);
+
+        ModelSnapshot read = ModelSnapshot.read(mFile, KEY);
+        assertNotNull(read);
+        assertTrue(read.contentEquals(snapshot));
+    }
+
+    @Test
+    public void read_withDifferentKey_returnsNull() {
+        ModelSnapshot.capture(createModel(), mUserCache).write(mFile, KEY);
+        assertNull(ModelSnapshot.read(mFile, "other"));
+    }
+
+    @Test
+    public void createKey_changesWhenDbIsWritten() {
+        InvariantDeviceProfile idp = InvariantDeviceProfile.INSTANCE.get(mContext);
+        int id = mModelHelper.addItem(APP_ICON, 0, CONTAINER_DESKTOP, 0, 0);
+        String key = ModelSnapshot.createKey(mContext, idp, mUserCache);
+        assertNotNull(key);
+        assertEquals(key, ModelSnapshot.createKey(mContext, idp, mUserCache));
+
+        ContentValues values = new ContentValues();
+        values.put(Favorites.CELLX, 1);
+        mContext.getContentResolver().update(Favorites.getContentUri(id), values, null, null);
+
+        assertNotEquals(key, ModelSnapshot.createKey(mContext, idp, mUserCache));
+    }
+
+    @Test
+    public void contentEquals_detectsMovedItem() {
+        BgDataModel model = createModel();
+        ModelSnapshot before = ModelSnapshot.capture(model, mUserCache);
+        model.itemsIdMap.get(2).cellX = 3;
+
+        assertFalse(before.contentEquals(ModelSnapshot.capture(model, mUserCache)));
+    }
+
+    @Test
+    public void capture_withDeepShortcut_returnsNull() {
+        BgDataModel model = createModel();
+        WorkspaceItemInfo shortcut = newApp(10, CONTAINER_DESKTOP);
+        shortcut.itemType = ITEM_TYPE_DEEP_SHORTCUT;
+        model.addItem(mContext, shortcut, false);
+
+        assertNull(ModelSnapshot.capture(model, mUserCache));
+    }
+
+    @Test
+    public void createItems_restoresModel() {
+        ModelSnapshot snapshot = ModelSnapshot.capture(createModel(), mUserCache);
+        List<ItemInfo> items = snapshot.createItems(mUserCache,
+                LauncherAppState.getInstance(mContext).getIconCache());
+        assertNotNull(items);
+
+        BgDataModel restored = new BgDataModel();
+        ModelSnapshot.addItems(mContext, restored, items);
+
+        assertEquals(5, restored.itemsIdMap.size());
+        assertEquals(1, restored.folders.get(1).contents.size());
+        assertEquals(1, restored.appWidgets.size());
+        assertTrue(snapshot.contentEquals(ModelSnapshot.capture(restored, mUserCache)));
+    }
+
+    private BgDataModel createModel() {
+        BgDataModel model = new BgDataModel();
+        FolderInfo folder = new FolderInfo();
+        folder.id = 1;
+        folder.container = CONTAINER_DESKTOP;
+        folder.title = "Folder";
+        model.addItem(mContext, folder, false);
+
+        model.addItem(mContext, newApp(2, CONTAINER_DESKTOP), false);
+        model.addItem(mContext, newApp(3, CONTAINER_HOTSEAT), false);
+        model.addItem(mContext, newApp(4, folder.id), false);
+
+        LauncherAppWidgetInfo widget = new LauncherAppWidgetInfo(
+                5, new ComponentName(TEST_PACKAGE, "WidgetProvider"));
+        widget.id = 5;
+        widget.container = CONTAINER_DESKTOP;
+        widget.spanX = 2;
+        widget.spanY = 2;
+        model.addItem(mContext, widget, false);
+        return model;
+    }
+
+    private static WorkspaceItemInfo newApp(int id, int container) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.id = id;
+        info.itemType = ITEM_TYPE_APPLICATION;
+        info.container = container;
+        info.title = "App " + id;
+        info.intent = new Intent(Intent.ACTION_MAIN)
+                .setComponent(new ComponentName(TEST_PACKAGE, TEST_ACTIVITY));
+        info.user = Process.myUserHandle();
+        return info;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_WIDGETS_LIST;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.model.data.PackageItemInfo;
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.TestUtil;
+import com.android.launcher3.widget.model.WidgetsListBaseEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for the picker entries of {@link WidgetsModel}, with the widgets of the test package
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WidgetsModelTest {
+
+    private final Context mContext = getInstrumentation().getTargetContext();
+    private final WidgetsModel mModel = new WidgetsModel();
+
+    private SafeCloseable mFlagOverride;
+    private LauncherAppState mApp;
+
+    @Before
+    public void setUp() throws Exception {
+        mFlagOverride = TestUtil.overrideFlag(ENABLE_INCREMENTAL_WIDGETS_LIST, true);
+        mApp = LauncherAppState.getInstance(mContext);
+        MODEL_EXECUTOR.submit(() -> mModel.update(mApp, null /* packageUser */)).get();
+    }
+
+    @After
+    public void tearDown() {
+        mFlagOverride.close();
+    }
+
+    @Test
+    public void getWidgetsListForPicker_unchangedPackages_reusesEntries() {
+        List<WidgetsListBaseEntry> first = mModel.getWidgetsListForPicker(mContext);
+        List<WidgetsListBaseEntry> second = mModel.getWidgetsListForPicker(mContext);
+
+        assertFalse(first.isEmpty());
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i), second.get(i));
+        }
+    }
+
+    @Test
+    public void getWidgetsListForPicker_iconsUpdated_recreatesOnlyEntriesOfPackage()
+            throws Exception {
+        List<WidgetsListBaseEntry> first = mModel.getWidgetsListForPicker(mContext);
+        PackageItemInfo updated = first.get(0).mPkgItem;
+        MODEL_EXECUTOR.submit(() -> mModel.onPackageIconsUpdated(
+                Set.of(updated.packageName), updated.user, mApp)).get();
+        List<WidgetsListBaseEntry> second = mModel.getWidgetsListForPicker(mContext);
+
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            if (first.get(i).mPkgItem.packageName.equals(updated.packageName)) {
+                assertNotSame(first.get(i), second.get(i));
+            } else {
+                assertSame(first.get(i), second.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void getWidgetsListForPicker_fullUpdate_recreatesAllEntries() throws Exception {
+        List<WidgetsListBaseEntry> first = mModel.getWidgetsListForPicker(mContext);
+        MODEL_EXECUTOR.submit(() -> mModel.update(mApp, null /* packageUser */)).get();
+        List<WidgetsListBaseEntry> second = mModel.getWidgetsListForPicker(mContext);
+
+        for (WidgetsListBaseEntry entry : second) {
+            assertFalse(first.stream().anyMatch(e -> e == entry));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import static com.android.launcher3.search.StringMatcherUtility.matches;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link AppSearchSession}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class AppSearchSessionTest {
+
+    private static final int MAX_RESULTS = 5;
+
+    private static final String[] TITLES = {"Camera", "Calendar", "Calculator", "Call log",
+            "Clock", "Contacts", "Chrome", "Café Mocha", "Cal Poly", "Camera Pro", "Calm",
+            "Candy Crush", "Maps", "Music", "My Calendar", "地图", "日历", "Docs", "Drive"};
+
+    private final StringMatcher mMatcher = StringMatcher.getInstance();
+
+    private List<AppInfo> mApps;
+    private AppTitleIndex mIndex;
+    private AppSearchSession mSession;
+
+    @Before
+    public void setup() {
+        mApps = new ArrayList<>();
+        mIndex = new AppTitleIndex();
+        mSession = new AppSearchSession();
+        for (String title : TITLES) {
+            addApp(title);
+        }
+    }
+
+    @Test
+    public void typing_matchesFullScan() {
+        for (String query : new String[] {"c", "ca", "cal", "calc", "calcu", "calculatorx"}) {
+            assertSearch(query);
+        }
+    }
+
+    @Test
+    public void typing_narrowsCandidates() {
+        assertSearch("c");
+        int afterFirstChar = mSession.getCandidateCount();
+        assertSearch("ca");
+        assertTrue(mSession.getCandidateCount() <= afterFirstChar);
+        assertSearch("cam");
+        assertEquals(2, mSession.getCandidateCount());
+    }
+
+    @Test
+    public void deletionAndEdits_matchFullScan() {
+        for (String query : new String[] {"ca", "cal", "ca", "c", "m", "ma", "mu", "my c",
+                "my ca", "地", "地图", "日", "d", "dr"}) {
+            assertSearch(query);
+        }
+    }
+
+    @Test
+    public void appsChanged_matchesFullScan() {
+        assertSearch("ca");
+        assertSearch("cal");
+        addApp("Calc Plus");
+        mApps.get(0).title = "Calibrate";
+        mIndex.update(mApps.get(0));
+        assertSearch("cali");
+
+        mIndex.remove(mApps.remove(0));
+        assertSearch("calib");
+    }
+
+    @Test
+    public void cancelled_returnsNullAndResetsSession() {
+        assertSearch("ca");
+        assertNull(mSession.search(mApps, mIndex, "cal", MAX_RESULTS, () -> true));
+        assertSearch("calc");
+    }
+
+    private void assertSearch(String query) {
+        assertEquals(query, fullScan(query),
+                mSession.search(mApps, mIndex, query, MAX_RESULTS, () -> false));
+    }
+
+    private List<AppInfo> fullScan(String query) {
+        List<AppInfo> result = new ArrayList<>();
+        String queryLower = query.toLowerCase();
+        for (AppInfo info : mApps) {
+            if (result.size() < MAX_RESULTS
+                    && matches(queryLower, info.title.toString(), mMatcher)) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    private void addApp(String title) {
+        AppInfo info = new AppInfo();
+        info.title = title;
+        mApps.add(info);
+        mIndex.update(info);
+    }
+}
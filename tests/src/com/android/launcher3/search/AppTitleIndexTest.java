@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import static com.android.launcher3.search.StringMatcherUtility.matches;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link AppTitleIndex}
+ */
+@RunWith(AndroidJUnit4.class)
+public class AppTitleIndexTest {
+
+    private static final String TAG = "AppTitleIndexTest";
+
+    private static final StringMatcher MATCHER = StringMatcher.getInstance();
+
+    private static final String[] WORDS = {"Google", "Play", "Store", "YouTube", "t-mobile",
+            "Agar.io", "LEGO®Builder", "Café", "Maps", "Photo Editor", "2048", "Zoom", "my App",
+            "ABC News", "whiteCOW", "Gmail", "Calc", "Calendar", "地图", "Ünïcode"};
+
+    private static final String[] QUERIES = {"g", "go", "goo", "google", "play st", "tube", "you",
+            "mob", "t", "io", "lego", "builder", "caf", "café", "2", "20", "048", "zo", "app",
+            "news", "cow", "cal", "calc", "calen", "e", "ed", "-", "z9", "le", "地", "uni"};
+
+    @Test
+    @SmallTest
+    public void nonIndexableQuery_returnsNull() {
+        AppTitleIndex index = new AppTitleIndex();
+        index.update(newApp("Maps"));
+
+        assertNull(index.getCandidates(""));
+        assertNull(index.getCandidates("play st"));
+        assertNull(index.getCandidates("café"));
+    }
+
+    @Test
+    @SmallTest
+    public void candidates_matchLinearScan() {
+        Random random = new Random(0);
+        List<AppInfo> apps = new ArrayList<>();
+        AppTitleIndex index = new AppTitleIndex();
+        for (int i = 0; i < 500; i++) {
+            AppInfo info = newApp(randomTitle(random));
+            apps.add(info);
+            index.update(info);
+        }
+        // Mirror the updates done by AllAppsList
+        for (int i = 0; i < 50; i++) {
+            index.remove(apps.remove(random.nextInt(apps.size())));
+        }
+        for (int i = 0; i < 50; i++) {
+            AppInfo info = apps.get(random.nextInt(apps.size()));
+            info.title = randomTitle(random);
+            index.update(info);
+        }
+
+        for (String query : QUERIES) {
+            assertEquals(query, linearScan(apps, query), indexedScan(index, apps, query));
+        }
+    }
+
+    @Test
+    @SmallTest
+    public void update_keepsInsertionOrder() {
+        AppTitleIndex index = new AppTitleIndex();
+        AppInfo first = newApp("Alpha");
+        AppInfo second = newApp("Also");
+        index.update(first);
+        index.update(second);
+
+        first.title = "Alps";
+        index.update(first);
+
+        List<AppInfo> candidates = index.getCandidates("al");
+        assertEquals(2, candidates.size());
+        assertEquals(first, candidates.get(0));
+        assertEquals(second, candidates.get(1));
+    }
+
+    /**
+     * Compares the time taken to match all the queries with and without the index. The results
+     * are only logged, as the timings depend on the device.
+     */
+    @Test
+    @LargeTest
+    public void benchmark_indexedVsLinearScan() {
+        for (int appCount : new int[] {100, 1_000, 10_000}) {
+            Random random = new Random(appCount);
+            List<AppInfo> apps = new ArrayList<>();
+            AppTitleIndex index = new AppTitleIndex();
+            for (int i = 0; i < appCount; i++) {
+                AppInfo info = newApp(randomTitle(random) + " " + i);
+                apps.add(info);
+                index.update(info);
+            }
+
+            long linearStart = SystemClock.elapsedRealtimeNanos();
+            for (String query : QUERIES) {
+                linearScan(apps, query);
+            }
+            long linearNanos = SystemClock.elapsedRealtimeNanos() - linearStart;
+
+            long indexedStart = SystemClock.elapsedRealtimeNanos();
+            for (String query : QUERIES) {
+                indexedScan(index, apps, query);
+            }
+            long indexedNanos = SystemClock.elapsedRealtimeNanos() - indexedStart;
+
+            Log.d(TAG, "apps=" + appCount + " queries=" + QUERIES.length
+                    + " linear=" + linearNanos / 1000 + "us"
+                    + " indexed=" + indexedNanos / 1000 + "us");
+        }
+    }
+
+    private static List<AppInfo> linearScan(List<AppInfo> apps, String query) {
+        List<AppInfo> result = new ArrayList<>();
+        for (AppInfo info : apps) {
+            if (matches(query, info.title.toString(), MATCHER)) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    private static List<AppInfo> indexedScan(AppTitleIndex index, List<AppInfo> apps,
+            String query) {
+        List<AppInfo> candidates = index.getCandidates(query);
+        return linearScan(candidates == null ? apps : candidates, query);
+    }
+
+    private static String randomTitle(Random random) {
+        String title = WORDS[random.nextInt(WORDS.length)];
+        if (random.nextBoolean()) {
+            title += " " + WORDS[random.nextInt(WORDS.length)];
+        }
+        return title;
+    }
+
+    private static AppInfo newApp(String title) {
+        AppInfo info = new AppInfo();
+        info.title = title;
+        return info;
+    }
+}
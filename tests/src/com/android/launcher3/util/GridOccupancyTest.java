@@ -4,20 +4,31 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import android.os.SystemClock;
+import android.util.Log;
+
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
 import androidx.test.filters.SmallTest;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Random;
+
 /**
  * Unit tests for {@link GridOccupancy}
  */
-@SmallTest
 @RunWith(AndroidJUnit4.class)
 public class GridOccupancyTest {
 
+    private static final String TAG = "GridOccupancyTest";
+
+    private static final int BENCHMARK_ROUNDS = 200;
+    private static final int MAX_BENCHMARK_SPAN = 4;
+
     @Test
+    @SmallTest
     public void testFindVacantCell() {
         GridOccupancy grid = initGrid(4,
                 1, 1, 1, 0, 0,
@@ -39,6 +50,7 @@ public class GridOccupancyTest {
     }
 
     @Test
+    @SmallTest
     public void testIsRegionVacant() {
         GridOccupancy grid = initGrid(4,
                 1, 1, 1, 0, 0,
@@ -55,13 +67,185 @@ public class GridOccupancyTest {
         assertFalse(grid.isRegionVacant(0, 0, 2, 1));
     }
 
+    @Test
+    @SmallTest
+    public void testIsRegionVacant_withBlock() {
+        GridOccupancy grid = initGrid(3,
+                1, 0, 0, 0,
+                0, 0, 1, 0,
+                0, 0, 0, 0
+        );
+        // L shaped block, vacant on its top right cell
+        GridOccupancy block = initGrid(2,
+                1, 0,
+                1, 1
+        );
+
+        assertTrue(grid.isRegionVacant(0, 1, 2, 2, block));
+        // Interlocks with the occupied cell at (2, 1)
+        assertTrue(grid.isRegionVacant(1, 1, 2, 2, block));
+        assertFalse(grid.isRegionVacant(1, 1, 2, 2));
+        assertFalse(grid.isRegionVacant(1, 0, 2, 2, block));
+        assertFalse(grid.isRegionVacant(3, 1, 2, 2, block));
+    }
+
+    @Test
+    @SmallTest
+    public void testMarkCells_clipsToGrid() {
+        GridOccupancy grid = new GridOccupancy(4, 3);
+        grid.markCells(2, 1, 5, 5, true);
+
+        assertTrue(grid.isOccupied(3, 2));
+        assertFalse(grid.isOccupied(1, 1));
+        assertTrue(grid.isRegionVacant(0, 0, 4, 1));
+
+        grid.markCells(-1, 0, 4, 3, true);
+        assertTrue(grid.isRegionVacant(0, 0, 2, 3));
+    }
+
+    @Test
+    @SmallTest
+    public void testWideGrid_spansSeveralWords() {
+        GridOccupancy grid = new GridOccupancy(150, 2);
+        grid.markCells(60, 1, 10, 1, true);
+
+        assertTrue(grid.isOccupied(63, 1));
+        assertTrue(grid.isOccupied(64, 1));
+        assertFalse(grid.isOccupied(70, 1));
+        assertTrue(grid.isRegionVacant(0, 0, 150, 1));
+        assertFalse(grid.isRegionVacant(0, 0, 150, 2));
+        assertTrue(grid.isRegionVacant(70, 0, 80, 2));
+
+        int[] vacant = new int[2];
+        assertTrue(grid.findVacantCell(vacant, 80, 2));
+        assertEquals(70, vacant[0]);
+        assertEquals(0, vacant[1]);
+
+        GridOccupancy copy = new GridOccupancy(150, 2);
+        grid.copyTo(copy);
+        assertEquals(grid.toString(), copy.toString());
+    }
+
+    @Test
+    @SmallTest
+    public void testRandomOperations_matchCellArray() {
+        Random random = new Random(0);
+        int countX = 10;
+        int countY = 8;
+        GridOccupancy grid = new GridOccupancy(countX, countY);
+        boolean[][] cells = new boolean[countX][countY];
+        for (int i = 0; i < 5_000; i++) {
+            int x = random.nextInt(countX + 2) - 1;
+            int y = random.nextInt(countY + 2) - 1;
+            int spanX = 1 + random.nextInt(4);
+            int spanY = 1 + random.nextInt(4);
+            if (random.nextBoolean()) {
+                boolean value = random.nextBoolean();
+                grid.markCells(x, y, spanX, spanY, value);
+                markCells(cells, x, y, spanX, spanY, value);
+            } else {
+                assertEquals(isRegionVacant(cells, x, y, spanX, spanY),
+                        grid.isRegionVacant(x, y, spanX, spanY));
+            }
+        }
+    }
+
+    /**
+     * Compares scanning every position and span of a grid, as the reorder search does for each
+     * drag update, against a cell by cell scan of a boolean array. The results are only logged,
+     * as the timings depend on the device.
+     */
+    @Test
+    @LargeTest
+    public void benchmark_reorderSearch() {
+        benchmarkReorderSearch("phone", 6, 5);
+        benchmarkReorderSearch("tablet", 10, 8);
+    }
+
+    private void benchmarkReorderSearch(String name, int countX, int countY) {
+        Random random = new Random(countX * countY);
+        GridOccupancy grid = new GridOccupancy(countX, countY);
+        boolean[][] cells = new boolean[countX][countY];
+        for (int x = 0; x < countX; x++) {
+            for (int y = 0; y < countY; y++) {
+                // Leave some room, as a workspace page usually has a few vacant cells
+                boolean occupied = random.nextInt(3) != 0;
+                cells[x][y] = occupied;
+                grid.markCells(x, y, 1, 1, occupied);
+            }
+        }
+
+        long cellArrayNanos = 0;
+        long gridNanos = 0;
+        int cellArrayCount = 0;
+        int gridCount = 0;
+        for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int spanX = 1; spanX <= MAX_BENCHMARK_SPAN; spanX++) {
+                for (int spanY = 1; spanY <= MAX_BENCHMARK_SPAN; spanY++) {
+                    for (int y = 0; y + spanY <= countY; y++) {
+                        for (int x = 0; x + spanX <= countX; x++) {
+                            if (isRegionVacant(cells, x, y, spanX, spanY)) {
+                                cellArrayCount++;
+                            }
+                        }
+                    }
+                }
+            }
+            long scanned = SystemClock.elapsedRealtimeNanos();
+            for (int spanX = 1; spanX <= MAX_BENCHMARK_SPAN; spanX++) {
+                for (int spanY = 1; spanY <= MAX_BENCHMARK_SPAN; spanY++) {
+                    for (int y = 0; y + spanY <= countY; y++) {
+                        for (int x = 0; x + spanX <= countX; x++) {
+                            if (grid.isRegionVacant(x, y, spanX, spanY)) {
+                                gridCount++;
+                            }
+                        }
+                    }
+                }
+            }
+            cellArrayNanos += scanned - start;
+            gridNanos += SystemClock.elapsedRealtimeNanos() - scanned;
+        }
+        assertEquals(cellArrayCount, gridCount);
+
+        Log.d(TAG, "reorderSearch " + name + " " + countX + "x" + countY
+                + " boolean[][]=" + cellArrayNanos / BENCHMARK_ROUNDS / 1000 + "us"
+                + " GridOccupancy=" + gridNanos / BENCHMARK_ROUNDS / 1000 + "us");
+    }
+
+    private static void markCells(boolean[][] cells, int cellX, int cellY, int spanX, int spanY,
+            boolean value) {
+        if (cellX < 0 || cellY < 0) return;
+        for (int x = cellX; x < cellX + spanX && x < cells.length; x++) {
+            for (int y = cellY; y < cellY + spanY && y < cells[x].length; y++) {
+                cells[x][y] = value;
+            }
+        }
+    }
+
+    private static boolean isRegionVacant(boolean[][] cells, int x, int y, int spanX,
+            int spanY) {
+        if (x < 0 || y < 0 || x + spanX > cells.length || y + spanY > cells[0].length) {
+            return false;
+        }
+        for (int i = x; i < x + spanX; i++) {
+            for (int j = y; j < y + spanY; j++) {
+                if (cells[i][j]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     private GridOccupancy initGrid(int rows, int... cells) {
         int cols = cells.length / rows;
         int i = 0;
         GridOccupancy grid = new GridOccupancy(cols, rows);
         for (int y = 0; y < rows; y++) {
             for (int x = 0; x < cols; x++) {
-                grid.cells[x][y] = cells[i] != 0;
+                grid.markCells(x, y, 1, 1, cells[i] != 0);
                 i++;
             }
         }
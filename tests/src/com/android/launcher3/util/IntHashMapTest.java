@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link IntHashMap}
+ */
+@RunWith(AndroidJUnit4.class)
+public class IntHashMapTest {
+
+    private static final String TAG = "IntHashMapTest";
+
+    private static final int BENCHMARK_ITEM_COUNT = 5_000;
+    private static final int BENCHMARK_ROUNDS = 20;
+
+    @Test
+    @SmallTest
+    public void shouldBeEmptyInitially() {
+        IntHashMap<String> map = new IntHashMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+        assertFalse(map.containsKey(0));
+        assertEquals("def", map.get(1, "def"));
+    }
+
+    @Test
+    @SmallTest
+    public void putReplacesExistingValue() {
+        IntHashMap<String> map = new IntHashMap<>();
+        map.put(5, "a");
+        map.put(-3, "b");
+        map.put(5, "c");
+
+        assertThat(map.size()).isEqualTo(2);
+        assertEquals("c", map.get(5));
+        assertEquals("b", map.get(-3));
+    }
+
+    @Test
+    @SmallTest
+    public void removeMovesLastEntry() {
+        IntHashMap<String> map = new IntHashMap<>();
+        map.put(1, "a");
+        map.put(2, "b");
+        map.put(3, "c");
+        map.remove(1);
+
+        assertThat(map.size()).isEqualTo(2);
+        assertEquals(3, map.keyAt(0));
+        assertEquals("c", map.valueAt(0));
+        assertEquals(2, map.keyAt(1));
+        assertEquals(IntArray.wrap(3, 2), map.keys());
+    }
+
+    @Test
+    @SmallTest
+    public void cloneIsIndependent() {
+        IntHashMap<String> map = new IntHashMap<>();
+        map.put(1, "a");
+        IntHashMap<String> clone = map.clone();
+        clone.put(2, "b");
+        clone.remove(1);
+
+        assertEquals("a", map.get(1));
+        assertFalse(map.containsKey(2));
+        assertFalse(clone.containsKey(1));
+    }
+
+    @Test
+    @SmallTest
+    public void iteratesAllValues() {
+        IntHashMap<Integer> map = new IntHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i * 7, i);
+        }
+        int sum = 0;
+        for (Integer value : map) {
+            sum += value;
+        }
+        assertEquals(99 * 100 / 2, sum);
+    }
+
+    @Test
+    @SmallTest
+    public void randomOperations_matchHashMap() {
+        Random random = new Random(0);
+        IntHashMap<Integer> map = new IntHashMap<>();
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(2_000) - 500;
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    map.put(key, i);
+                    expected.put(key, i);
+                    break;
+                case 2:
+                    map.remove(key);
+                    expected.remove(key);
+                    break;
+                default:
+                    if (!map.isEmpty()) {
+                        int index = random.nextInt(map.size());
+                        expected.remove(map.keyAt(index));
+                        map.removeAt(index);
+                    }
+            }
+            assertEquals(expected.size(), map.size());
+            int query = random.nextInt(2_000) - 500;
+            assertEquals(expected.get(query), map.get(query));
+        }
+        for (int i = 0; i < map.size(); i++) {
+            assertEquals(expected.get(map.keyAt(i)), map.valueAt(i));
+            assertEquals(i, map.indexOfKey(map.keyAt(i)));
+        }
+    }
+
+    /**
+     * Compares load, lookup and removal against {@link IntSparseArrayMap} for a large workspace.
+     * The results are only logged, as the timings depend on the device.
+     */
+    @Test
+    @LargeTest
+    public void benchmark_againstIntSparseArrayMap() {
+        Random random = new Random(BENCHMARK_ITEM_COUNT);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < BENCHMARK_ITEM_COUNT; i++) {
+            ids.add(i + 1);
+        }
+        // Items are not necessarily loaded or removed in id order
+        Collections.shuffle(ids, random);
+        int[] keys = ids.stream().mapToInt(Integer::intValue).toArray();
+        Object value = new Object();
+
+        long[] sparse = new long[3];
+        long[] hash = new long[3];
+        for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+            IntSparseArrayMap<Object> sparseMap = new IntSparseArrayMap<>();
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int key : keys) {
+                sparseMap.put(key, value);
+            }
+            long loaded = SystemClock.elapsedRealtimeNanos();
+            for (int key : keys) {
+                sparseMap.get(key);
+            }
+            long looked = SystemClock.elapsedRealtimeNanos();
+            for (int key : keys) {
+                sparseMap.remove(key);
+            }
+            long removed = SystemClock.elapsedRealtimeNanos();
+            sparse[0] += loaded - start;
+            sparse[1] += looked - loaded;
+            sparse[2] += removed - looked;
+
+            IntHashMap<Object> hashMap = new IntHashMap<>();
+            start = SystemClock.elapsedRealtimeNanos();
+            for (int key : keys) {
+                hashMap.put(key, value);
+            }
+            loaded = SystemClock.elapsedRealtimeNanos();
+            for (int key : keys) {
+                hashMap.get(key);
+            }
+            looked = SystemClock.elapsedRealtimeNanos();
+            for (int key : keys) {
+                hashMap.remove(key);
+            }
+            removed = SystemClock.elapsedRealtimeNanos();
+            hash[0] += loaded - start;
+            hash[1] += looked - loaded;
+            hash[2] += removed - looked;
+
+            assertTrue(sparseMap.isEmpty());
+            assertTrue(hashMap.isEmpty());
+        }
+
+        String[] phases = {"load", "lookup", "remove"};
+        for (int i = 0; i < phases.length; i++) {
+            Log.d(TAG, phases[i] + " items=" + BENCHMARK_ITEM_COUNT
+                    + " IntSparseArrayMap=" + sparse[i] / BENCHMARK_ROUNDS / 1000 + "us"
+                    + " IntHashMap=" + hash[i] / BENCHMARK_ROUNDS / 1000 + "us");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link ShardedCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ShardedCacheTest {
+
+    private static final int THREAD_COUNT = 8;
+    private static final int KEY_COUNT = 500;
+    private static final int ITERATIONS = 20_000;
+
+    @Test
+    public void putAndGet() {
+        ShardedCache<String, Integer> cache = new ShardedCache<>(4);
+        assertTrue(cache.put("a", 1, cache.getGeneration()));
+        assertTrue(cache.put("b", 2, cache.getGeneration()));
+
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(Integer.valueOf(2), cache.get("b"));
+        assertNull(cache.get("c"));
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void putAfterInvalidation_isDropped() {
+        ShardedCache<String, Integer> cache = new ShardedCache<>(4);
+        long generation = cache.getGeneration();
+        cache.removeIf(k -> k.startsWith("x"));
+
+        assertFalse(cache.put("a", 1, generation));
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void removeIf_onlyRemovesMatchingKeys() {
+        ShardedCache<String, Integer> cache = new ShardedCache<>(3);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, i, cache.getGeneration());
+        }
+        cache.removeIf(k -> k.endsWith("0"));
+
+        assertEquals(90, cache.size());
+        assertNull(cache.get("key10"));
+        assertEquals(Integer.valueOf(11), cache.get("key11"));
+    }
+
+    /**
+     * Concurrent readers compute values from a versioned source of truth, while a writer keeps
+     * changing the source and then invalidating the cache. A reader must never observe a value
+     * older than the last version whose invalidation completed before its lookup started.
+     */
+    @Test
+    public void concurrentReadersAndInvalidations_neverReturnStaleValues() throws Exception {
+        ShardedCache<Integer, Integer> cache = new ShardedCache<>(8);
+        AtomicInteger sourceVersion = new AtomicInteger();
+        AtomicInteger invalidatedVersion = new AtomicInteger();
+        AtomicInteger staleReads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = newFixedThreadPool(THREAD_COUNT + 1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            final int seed = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    int key = (i * 31 + seed) % KEY_COUNT;
+                    int minVersion = invalidatedVersion.get();
+                    Integer value = cache.get(key);
+                    if (value == null) {
+                        long generation = cache.getGeneration();
+                        value = sourceVersion.get();
+                        cache.put(key, value, generation);
+                    }
+                    if (value < minVersion) {
+                        staleReads.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        futures.add(executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < ITERATIONS / 100; i++) {
+                int version = sourceVersion.incrementAndGet();
+                cache.clear();
+                invalidatedVersion.set(version);
+            }
+            return null;
+        }));
+
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(0, staleReads.get());
+        assertEquals((long) THREAD_COUNT * ITERATIONS,
+                cache.getHitCount() + cache.getMissCount());
+    }
+}
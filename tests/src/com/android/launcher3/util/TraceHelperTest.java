@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link TraceHelper}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class TraceHelperTest {
+
+    private final TraceHelper mTraceHelper = new TraceHelper();
+    private final List<String> mEndedSections = new ArrayList<>();
+
+    @Test
+    public void endSection_reportsNestedSectionsToListener() {
+        getInstrumentation().runOnMainSync(() -> {
+            mTraceHelper.setMainThreadSectionListener(
+                    (name, durationNanos) -> mEndedSections.add(name));
+            Object outer = mTraceHelper.beginSection("outer");
+            Object inner = mTraceHelper.beginSection("inner");
+            mTraceHelper.endSection(inner);
+            mTraceHelper.endSection(outer);
+            mTraceHelper.setMainThreadSectionListener(null);
+        });
+
+        assertEquals(List.of("inner", "outer"), mEndedSections);
+    }
+
+    @Test
+    public void endSection_ignoresSectionsBegunBeforeListenerIsSet() {
+        getInstrumentation().runOnMainSync(() -> {
+            Object outer = mTraceHelper.beginSection("outer");
+            mTraceHelper.setMainThreadSectionListener(
+                    (name, durationNanos) -> mEndedSections.add(name));
+            Object inner = mTraceHelper.beginSection("inner");
+            mTraceHelper.endSection(inner);
+            mTraceHelper.endSection(outer);
+            mTraceHelper.setMainThreadSectionListener(null);
+        });
+
+        assertEquals(List.of("inner"), mEndedSections);
+    }
+
+    @Test
+    public void endSection_doesNotTimeBackgroundSections() {
+        getInstrumentation().runOnMainSync(() -> mTraceHelper.setMainThreadSectionListener(
+                (name, durationNanos) -> mEndedSections.add(name)));
+        mTraceHelper.endSection(mTraceHelper.beginSection("background"));
+        getInstrumentation().runOnMainSync(() -> mTraceHelper.setMainThreadSectionListener(null));
+
+        assertTrue(mEndedSections.isEmpty());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_ADAPTIVE_VIEW_POOLS;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link ViewPoolStats}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ViewPoolStatsTest {
+
+    private static final int MAX_SIZE = 10;
+
+    private SafeCloseable mFlag;
+
+    @Before
+    public void setup() {
+        mFlag = TestUtil.overrideFlag(ENABLE_ADAPTIVE_VIEW_POOLS, true);
+    }
+
+    @After
+    public void tearDown() {
+        mFlag.close();
+    }
+
+    @Test
+    public void misses_growTargetSizeToDemand() {
+        ViewPoolStats stats = new ViewPoolStats(2, MAX_SIZE);
+        take(stats, 2, 5);
+        assertEquals(5, stats.getTargetSize());
+        assertEquals(5, stats.getInUse());
+    }
+
+    @Test
+    public void misses_targetSizeLimitedToMaxSize() {
+        ViewPoolStats stats = new ViewPoolStats(2, MAX_SIZE);
+        take(stats, 2, 20);
+        assertEquals(MAX_SIZE, stats.getTargetSize());
+    }
+
+    @Test
+    public void misses_targetSizeLimitedToAvailableSize() {
+        ViewPoolStats stats = new ViewPoolStats(2, MAX_SIZE);
+        for (int i = 0; i < 6; i++) {
+            stats.onMiss(0, 4);
+        }
+        assertEquals(4, stats.getTargetSize());
+    }
+
+    @Test
+    public void lowerDemand_shrinksTargetSizeHalfway() {
+        ViewPoolStats stats = new ViewPoolStats(8, MAX_SIZE);
+        take(stats, 2, 2);
+        returnAll(stats);
+        assertEquals(5, stats.getTargetSize());
+
+        take(stats, 2, 2);
+        returnAll(stats);
+        assertEquals(3, stats.getTargetSize());
+
+        take(stats, 2, 2);
+        returnAll(stats);
+        assertEquals(2, stats.getTargetSize());
+    }
+
+    @Test
+    public void flagDisabled_keepsTargetSize() {
+        try (SafeCloseable flag = TestUtil.overrideFlag(ENABLE_ADAPTIVE_VIEW_POOLS, false)) {
+            ViewPoolStats stats = new ViewPoolStats(2, MAX_SIZE);
+            take(stats, 2, 5);
+            assertEquals(2, stats.getTargetSize());
+            returnAll(stats);
+            assertEquals(2, stats.getTargetSize());
+        }
+    }
+
+    private static void take(ViewPoolStats stats, int hits, int count) {
+        for (int i = 0; i < count; i++) {
+            if (i < hits) {
+                stats.onHit();
+            } else {
+                stats.onMiss(0, MAX_SIZE);
+            }
+        }
+    }
+
+    private static void returnAll(ViewPoolStats stats) {
+        while (stats.getInUse() > 0) {
+            stats.onReturned();
+        }
+    }
+}
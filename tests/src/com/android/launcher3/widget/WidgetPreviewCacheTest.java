@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.pm.UserCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Collections;
+
+/**
+ * Tests for {@link WidgetPreviewCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WidgetPreviewCacheTest {
+
+    private static final String PACKAGE_NAME = "com.android.launcher3.tests.widget";
+    private static final int PREVIEW_SIZE = 64;
+
+    private Context mContext;
+    private File mCacheDir;
+    private String mDirName;
+    private WidgetPreviewCache.Key mKey;
+
+    @Before
+    public void setup() {
+        mContext = getApplicationContext();
+        mCacheDir = new File(mContext.getCacheDir(), "widget_preview_cache_test");
+        long userSerial = UserCache.INSTANCE.get(mContext)
+                .getSerialNumberForUser(Process.myUserHandle());
+        mDirName = PACKAGE_NAME + "_" + userSerial;
+        mKey = new WidgetPreviewCache.Key(mDirName, "preview");
+    }
+
+    @After
+    public void tearDown() {
+        newCache().clear();
+        mCacheDir.delete();
+    }
+
+    @Test
+    public void get_afterPut_returnsSamePreview() {
+        WidgetPreviewCache cache = newCache();
+        Bitmap preview = createPreview();
+        cache.put(mKey, preview);
+
+        assertSame(preview, cache.getFromMemory(mKey));
+        assertSame(preview, cache.get(mKey));
+    }
+
+    @Test
+    public void get_newCache_loadsPreviewFromDisk() {
+        newCache().writeToDisk(mKey, createPreview());
+
+        WidgetPreviewCache cache = newCache();
+        assertNull(cache.getFromMemory(mKey));
+        Bitmap preview = cache.get(mKey);
+        assertNotNull(preview);
+        assertEquals(PREVIEW_SIZE, preview.getWidth());
+        assertEquals(PREVIEW_SIZE, preview.getHeight());
+        assertSame(preview, cache.getFromMemory(mKey));
+    }
+
+    @Test
+    public void removePackages_removesPreviews() {
+        WidgetPreviewCache cache = newCache();
+        cache.writeToDisk(mKey, createPreview());
+        assertNotNull(cache.get(mKey));
+
+        cache.removePackages(Collections.singleton(PACKAGE_NAME), Process.myUserHandle());
+
+        assertNull(cache.getFromMemory(mKey));
+        assertNull(newCache().get(mKey));
+    }
+
+    @Test
+    public void writeToDisk_keepsDiskCacheWithinBudget() {
+        WidgetPreviewCache cache = new WidgetPreviewCache(mContext, mCacheDir, 1024, 1);
+        for (int i = 0; i < 20; i++) {
+            cache.writeToDisk(new WidgetPreviewCache.Key(mDirName, "preview" + i),
+                    createPreview());
+        }
+
+        long size = 0;
+        for (File dir : mCacheDir.listFiles()) {
+            for (File file : dir.listFiles()) {
+                size += file.length();
+            }
+        }
+        assertTrue(size <= 1024);
+    }
+
+    private WidgetPreviewCache newCache() {
+        return new WidgetPreviewCache(mContext, mCacheDir, 1024, 1024);
+    }
+
+    private static Bitmap createPreview() {
+        Bitmap preview = Bitmap.createBitmap(PREVIEW_SIZE, PREVIEW_SIZE, Bitmap.Config.ARGB_8888);
+        preview.eraseColor(0xFF00FF00);
+        return preview;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget.picker;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_WIDGETS_LIST;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.PackageItemInfo;
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.TestUtil;
+import com.android.launcher3.widget.model.WidgetListSpaceEntry;
+import com.android.launcher3.widget.model.WidgetsListBaseEntry;
+import com.android.launcher3.widget.model.WidgetsListHeaderEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for {@link WidgetsDiffCallback}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WidgetsDiffCallbackTest {
+
+    private final WidgetsListBaseEntry mSpace = new WidgetListSpaceEntry();
+    private final WidgetsListBaseEntry mHeaderA = createHeader("a");
+    private final WidgetsListBaseEntry mHeaderB = createHeader("b");
+    private final WidgetsListBaseEntry mHeaderC = createHeader("c");
+
+    private SafeCloseable mFlagOverride;
+
+    @Before
+    public void setUp() {
+        mFlagOverride = TestUtil.overrideFlag(ENABLE_INCREMENTAL_WIDGETS_LIST, true);
+    }
+
+    @After
+    public void tearDown() {
+        mFlagOverride.close();
+    }
+
+    @Test
+    public void areContentsTheSame_sameEntryInMiddle_returnsTrue() {
+        WidgetsDiffCallback callback = new WidgetsDiffCallback(
+                List.of(mSpace, mHeaderA, mHeaderB, mHeaderC),
+                List.of(mSpace, mHeaderA, mHeaderB, mHeaderC, createHeader("d")));
+
+        assertTrue(callback.areContentsTheSame(1, 1));
+        assertTrue(callback.areContentsTheSame(2, 2));
+    }
+
+    @Test
+    public void areContentsTheSame_newEntry_returnsFalse() {
+        WidgetsDiffCallback callback = new WidgetsDiffCallback(
+                List.of(mSpace, mHeaderA, mHeaderB, mHeaderC),
+                List.of(mSpace, mHeaderA, createHeader("b"), mHeaderC));
+
+        assertTrue(callback.areItemsTheSame(2, 2));
+        assertFalse(callback.areContentsTheSame(2, 2));
+    }
+
+    @Test
+    public void areContentsTheSame_lastEntryNoLongerLast_returnsFalse() {
+        WidgetsDiffCallback callback = new WidgetsDiffCallback(
+                List.of(mSpace, mHeaderA, mHeaderB),
+                List.of(mSpace, mHeaderA, mHeaderB, mHeaderC));
+
+        assertFalse(callback.areContentsTheSame(2, 2));
+    }
+
+    @Test
+    public void areContentsTheSame_entryBecomesLast_returnsFalse() {
+        WidgetsDiffCallback callback = new WidgetsDiffCallback(
+                List.of(mSpace, mHeaderA, mHeaderB),
+                List.of(mSpace, mHeaderA));
+
+        assertFalse(callback.areContentsTheSame(1, 1));
+    }
+
+    @Test
+    public void areContentsTheSame_entryBecomesFirst_returnsFalse() {
+        WidgetsDiffCallback callback = new WidgetsDiffCallback(
+                List.of(mSpace, mHeaderA, mHeaderB, mHeaderC),
+                List.of(mSpace, mHeaderB, mHeaderC));
+
+        assertFalse(callback.areContentsTheSame(2, 1));
+        assertTrue(callback.areContentsTheSame(3, 2));
+    }
+
+    private static WidgetsListHeaderEntry createHeader(String packageName) {
+        PackageItemInfo pkgItem = new PackageItemInfo(packageName, Process.myUserHandle());
+        pkgItem.title = packageName;
+        return WidgetsListHeaderEntry.create(pkgItem, /* titleSectionName= */ "",
+                Collections.emptyList());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget.picker;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.config.FeatureFlags.ENABLE_INCREMENTAL_WIDGETS_LIST;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.os.Process;
+import android.view.LayoutInflater;
+
+import androidx.recyclerview.widget.RecyclerView.AdapterDataObserver;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.PackageItemInfo;
+import com.android.launcher3.util.ActivityContextWrapper;
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.TestUtil;
+import com.android.launcher3.widget.model.WidgetsListBaseEntry;
+import com.android.launcher3.widget.model.WidgetsListHeaderEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the incremental updates of {@link WidgetsListAdapter}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WidgetsListAdapterTest {
+
+    private final WidgetsListBaseEntry mHeaderA = createHeader("a");
+    private final WidgetsListBaseEntry mHeaderB = createHeader("b");
+    private final AdapterDataObserver mObserver = mock(AdapterDataObserver.class);
+
+    private SafeCloseable mFlagOverride;
+    private WidgetsListAdapter mAdapter;
+
+    @Before
+    public void setUp() {
+        mFlagOverride = TestUtil.overrideFlag(ENABLE_INCREMENTAL_WIDGETS_LIST, true);
+        getInstrumentation().runOnMainSync(() -> {
+            ActivityContextWrapper context = new ActivityContextWrapper(getApplicationContext());
+            mAdapter = new WidgetsListAdapter(context, LayoutInflater.from(context),
+                    () -> 0, null, null, null);
+            // The first update is applied synchronously, as nothing is shown yet
+            mAdapter.setWidgets(List.of(mHeaderA, mHeaderB));
+            mAdapter.registerAdapterDataObserver(mObserver);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mFlagOverride.close();
+    }
+
+    @Test
+    public void setWidgets_appendedEntry_rebindsPreviousLastEntry() throws Exception {
+        WidgetsListBaseEntry headerC = createHeader("c");
+        setWidgetsAndWaitForDiff(List.of(mHeaderA, mHeaderB, headerC));
+
+        assertEquals(List.of(mHeaderA, mHeaderB, headerC),
+                mAdapter.getItems().subList(1, mAdapter.getItemCount()));
+        verify(mObserver).onItemRangeInserted(3, 1);
+        // The previous last entry loses its bottom corners, the first entry is unchanged
+        verify(mObserver).onItemRangeChanged(eq(2), eq(1), any());
+        verify(mObserver, never()).onItemRangeChanged(eq(1), anyInt(), any());
+    }
+
+    @Test
+    public void setWidgets_removedLastEntry_rebindsNewLastEntry() throws Exception {
+        setWidgetsAndWaitForDiff(List.of(mHeaderA));
+
+        assertEquals(2, mAdapter.getItemCount());
+        verify(mObserver).onItemRangeRemoved(2, 1);
+        verify(mObserver).onItemRangeChanged(eq(1), eq(1), any());
+    }
+
+    @Test
+    public void setWidgets_updatedAgainBeforeDiff_appliesLatestEntries() throws Exception {
+        WidgetsListBaseEntry headerC = createHeader("c");
+        getInstrumentation().runOnMainSync(() -> {
+            mAdapter.setWidgets(List.of(mHeaderA));
+            mAdapter.setWidgets(List.of(mHeaderA, mHeaderB, headerC));
+        });
+        waitForDiff();
+
+        assertEquals(List.of(mHeaderA, mHeaderB, headerC),
+                mAdapter.getItems().subList(1, mAdapter.getItemCount()));
+        verify(mObserver, never()).onItemRangeRemoved(anyInt(), anyInt());
+    }
+
+    private void setWidgetsAndWaitForDiff(List<WidgetsListBaseEntry> entries) throws Exception {
+        getInstrumentation().runOnMainSync(() -> mAdapter.setWidgets(entries));
+        waitForDiff();
+    }
+
+    private static void waitForDiff() throws Exception {
+        // The diff is computed on the UI helper thread, then applied on the main thread
+        UI_HELPER_EXECUTOR.submit(() -> { }).get();
+        MAIN_EXECUTOR.submit(() -> { }).get();
+    }
+
+    private static WidgetsListHeaderEntry createHeader(String packageName) {
+        PackageItemInfo pkgItem = new PackageItemInfo(packageName, Process.myUserHandle());
+        pkgItem.title = packageName;
+        return WidgetsListHeaderEntry.create(pkgItem, /* titleSectionName= */ "",
+                Collections.emptyList());
+    }
+}
@@ -1930,6 +1930,19 @@ public final class LauncherInstrumentation {
         return activities.length <= 2;
     }
 
+    /**
+     * Returns the frame stats recorded by Launcher for each type of transition, keyed by the
+     * transition type.
+     */
+    public Bundle getTransitionFrameStats() {
+        return getTestInfo(TestProtocol.REQUEST_TRANSITION_FRAME_STATS)
+                .getBundle(TestProtocol.TEST_INFO_RESPONSE_FIELD);
+    }
+
+    public void clearTransitionFrameStats() {
+        getTestInfo(TestProtocol.REQUEST_CLEAR_TRANSITION_FRAME_STATS);
+    }
+
     public int getActivitiesCreated() {
         return getTestInfo(TestProtocol.REQUEST_GET_ACTIVITIES_CREATED_COUNT)
                 .getInt(TestProtocol.TEST_INFO_RESPONSE_FIELD);